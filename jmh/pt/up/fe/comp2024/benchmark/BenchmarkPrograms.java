@@ -0,0 +1,97 @@
+package pt.up.fe.comp2024.benchmark;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+import utils.JmmProgramGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Source programs given to the benchmarks.
+ * <p>
+ * 'cpf' is every program of the test corpus that goes through all the stages without errors. 'generated-N' is a program
+ * of about N lines made by {@link JmmProgramGenerator}, to see how each stage grows with the size of the input.
+ */
+public class BenchmarkPrograms {
+
+    public static final String CPF = "cpf";
+    public static final String GENERATED_PREFIX = "generated-";
+
+    private static final String CORPUS_DIR = "test/pt/up/fe/comp/cpf";
+
+    private BenchmarkPrograms() {
+    }
+
+    public static List<String> get(String name) {
+        if (name.equals(CPF)) {
+            return getCorpus();
+        }
+
+        if (name.startsWith(GENERATED_PREFIX)) {
+            var lines = Integer.parseInt(name.substring(GENERATED_PREFIX.length()));
+            var code = new JmmProgramGenerator().lines(lines).generate();
+            if (!compiles(code)) {
+                throw new RuntimeException("Generated program '" + name + "' does not compile");
+            }
+
+            return List.of(code);
+        }
+
+        throw new RuntimeException("Unknown benchmark program set '" + name + "'");
+    }
+
+    public static int countLines(List<String> programs) {
+        return programs.stream()
+                .mapToInt(program -> (int) program.lines().count())
+                .sum();
+    }
+
+    private static List<String> getCorpus() {
+        var corpusDir = new File(System.getProperty("jmm.corpus", CORPUS_DIR));
+
+        try (Stream<Path> paths = Files.walk(corpusDir.toPath())) {
+            return paths.filter(path -> path.toString().endsWith(".jmm"))
+                    .sorted()
+                    .map(path -> SpecsIo.read(path.toFile()))
+                    .filter(BenchmarkPrograms::compiles)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the corpus in '" + corpusDir.getAbsolutePath()
+                    + "', run the benchmarks from the root of the repository or set -Djmm.corpus", e);
+        }
+    }
+
+    private static boolean compiles(String code) {
+        Map<String, String> config = CompilerConfig.getDefault();
+
+        try {
+            var parserResult = new JmmParserImpl().parse(code, config);
+            if (ReportUtils.anyError(parserResult.getReports())) {
+                return false;
+            }
+
+            var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+            if (ReportUtils.anyError(semanticsResult.getReports())) {
+                return false;
+            }
+
+            var ollirClass = new JmmOptimizationImpl().toOllirClass(semanticsResult);
+            new JasminGenerator(ollirClass).build();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.ClassFileGenerator;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.RegisterAllocation;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each compiler stage, measured on its own over the programs of a {@link BenchmarkPrograms} set.
+ * <p>
+ * One operation compiles every program of the set through the stage. Besides operations per second, JMH reports the
+ * 'lines' counter as source lines per second. Run with '-prof gc' (the default of the jmh task) to also get the
+ * bytes allocated per operation ('gc.alloc.rate.norm').
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class Programs {
+
+        @Param({BenchmarkPrograms.CPF, "generated-1000", "generated-20000"})
+        public String programs;
+
+        public int lines;
+        public List<String> codes;
+        public List<JmmParserResult> parserResults;
+        public List<JmmSemanticsResult> semanticsResults;
+        public List<ClassUnit> ollirClasses;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Map<String, String> config = CompilerConfig.getDefault();
+
+            codes = BenchmarkPrograms.get(programs);
+            lines = BenchmarkPrograms.countLines(codes);
+
+            var parser = new JmmParserImpl();
+            var analysis = new JmmAnalysisImpl();
+            var optimization = new JmmOptimizationImpl();
+
+            parserResults = new ArrayList<>();
+            semanticsResults = new ArrayList<>();
+            ollirClasses = new ArrayList<>();
+            for (var code : codes) {
+                var parserResult = parser.parse(code, config);
+                var semanticsResult = analysis.semanticAnalysis(parserResult);
+
+                parserResults.add(parserResult);
+                semanticsResults.add(semanticsResult);
+                ollirClasses.add(optimization.toOllirClass(semanticsResult));
+            }
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Lines {
+
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+        }
+    }
+
+    @Benchmark
+    public void parse(Programs programs, Lines lines, Blackhole blackhole) {
+        var parser = new JmmParserImpl();
+        var config = CompilerConfig.getDefault();
+
+        for (var code : programs.codes) {
+            blackhole.consume(parser.parse(code, config));
+        }
+
+        lines.lines += programs.lines;
+    }
+
+    @Benchmark
+    public void buildSymbolTable(Programs programs, Lines lines, Blackhole blackhole) {
+        for (var parserResult : programs.parserResults) {
+            blackhole.consume(JmmSymbolTableBuilder.build(parserResult.getRootNode()));
+        }
+
+        lines.lines += programs.lines;
+    }
+
+    @Benchmark
+    public void semanticAnalysis(Programs programs, Lines lines, Blackhole blackhole) {
+        // The passes only add type annotations to the tree, so analysing the same tree again gives the same result
+        var analysis = new JmmAnalysisImpl();
+
+        for (var parserResult : programs.parserResults) {
+            blackhole.consume(analysis.semanticAnalysis(parserResult));
+        }
+
+        lines.lines += programs.lines;
+    }
+
+    @Benchmark
+    public void generateOllir(Programs programs, Lines lines, Blackhole blackhole) {
+        var optimization = new JmmOptimizationImpl();
+
+        for (var semanticsResult : programs.semanticsResults) {
+            blackhole.consume(optimization.toOllirClass(semanticsResult));
+        }
+
+        lines.lines += programs.lines;
+    }
+
+    @Benchmark
+    public void optimize(Programs programs, Lines lines, Blackhole blackhole) {
+        // The '-o' passes change the OLLIR class, so each operation optimizes a class of its own
+        var optimization = new JmmOptimizationImpl();
+        var config = CompilerConfig.getDefault();
+        config.put(CompilerConfig.OPTIMIZE, "true");
+
+        for (var semanticsResult : programs.semanticsResults) {
+            var ollirClass = optimization.toOllirClass(semanticsResult);
+            optimization.optimizeCode(ollirClass, config);
+            blackhole.consume(ollirClass);
+        }
+
+        lines.lines += programs.lines;
+    }
+
+    @Benchmark
+    public void allocateRegisters(Programs programs, Lines lines, Blackhole blackhole) {
+        // The registers only depend on the instructions, allocating them again gives the same result
+        var allocation = new RegisterAllocation(0, CompilerConfig.COLORING_ALLOCATOR);
+
+        for (var ollirClass : programs.ollirClasses) {
+            blackhole.consume(allocation.allocate(ollirClass));
+        }
+
+        lines.lines += programs.lines;
+    }
+
+    @Benchmark
+    public void allocateRegistersLinearScan(Programs programs, Lines lines, Blackhole blackhole) {
+        var allocation = new RegisterAllocation(0, CompilerConfig.LINEAR_SCAN_ALLOCATOR);
+
+        for (var ollirClass : programs.ollirClasses) {
+            blackhole.consume(allocation.allocate(ollirClass));
+        }
+
+        lines.lines += programs.lines;
+    }
+
+    @Benchmark
+    public void generateJasmin(Programs programs, Lines lines, Blackhole blackhole) {
+        for (var ollirClass : programs.ollirClasses) {
+            blackhole.consume(new JasminGenerator(ollirClass).build());
+        }
+
+        lines.lines += programs.lines;
+    }
+
+    @Benchmark
+    public void generateClassFile(Programs programs, Lines lines, Blackhole blackhole) {
+        for (var ollirClass : programs.ollirClasses) {
+            blackhole.consume(new ClassFileGenerator(ollirClass).build());
+        }
+
+        lines.lines += programs.lines;
+    }
+}
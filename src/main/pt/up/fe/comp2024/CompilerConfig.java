@@ -1,23 +1,65 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.comp2024.utils.Timings;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CompilerConfig {
 
     private static final String INPUT_FILE = "inputFile";
-    private static final String OPTIMIZE = "optimize";
-    private static final String REGISTER = "registerAllocation";
+    public static final String OPTIMIZE = "optimize";
+    public static final String REGISTER = "registerAllocation";
+    public static final String ALLOCATOR = "allocator";
+    private static final String OUTPUT_DIR = "outputDir";
+    private static final String JOBS = "jobs";
+    private static final String SERVER = "server";
+    private static final String CACHE_DIR = "cacheDir";
+    private static final String CACHE_SIZE = "cacheSize";
+    private static final String TIMINGS = "timings";
+    private static final String OLLIR = "ollir";
+    public static final String BACKEND = "backend";
+
+    // Set by parseArgs, not an option of its own
+    private static final String PRINT_STAGES = "printStages";
+
+    public static final String JASMIN_BACKEND = "jasmin";
+    public static final String CLASS_BACKEND = "class";
+
+    public static final String COLORING_ALLOCATOR = "coloring";
+    public static final String LINEAR_SCAN_ALLOCATOR = "linear";
+
+    private static final String JMM_EXTENSION = ".jmm";
+
+    private static final long DEFAULT_CACHE_SIZE = 64;
 
 
     static Map<String, String> shortToLong = new HashMap<>();
 
+    // Options that only have a long form, e.g. '--ollir'
+    static Set<String> longOnly = Set.of(CompilerConfig.OLLIR, CompilerConfig.CACHE_SIZE);
+
     static {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("a", CompilerConfig.ALLOCATOR);
+        shortToLong.put("d", CompilerConfig.OUTPUT_DIR);
+        shortToLong.put("j", CompilerConfig.JOBS);
+        shortToLong.put("s", CompilerConfig.SERVER);
+        shortToLong.put("c", CompilerConfig.CACHE_DIR);
+        shortToLong.put("t", CompilerConfig.TIMINGS);
+        shortToLong.put("b", CompilerConfig.BACKEND);
     }
 
 
@@ -32,6 +74,87 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    /**
+     * Returns every source file to compile. The input option accepts a single file, a directory (searched
+     * recursively for .jmm files) or a list of both separated by the platform path separator.
+     *
+     * @param config
+     * @return the input files, sorted by path
+     */
+    public static List<File> getInputFiles(Map<String, String> config) {
+        var inputFile = config.get(INPUT_FILE);
+
+        if (inputFile == null) {
+            return List.of();
+        }
+
+        var files = new ArrayList<File>();
+        for (var path : inputFile.split(File.pathSeparator)) {
+            var file = new File(path);
+
+            if (file.isDirectory()) {
+                files.addAll(collectSources(file));
+            } else {
+                files.add(file);
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * @param config
+     * @return true if the input option names more than one file, or a directory
+     */
+    public static boolean isBatch(Map<String, String> config) {
+        var inputFile = config.get(INPUT_FILE);
+
+        if (inputFile == null) {
+            return false;
+        }
+
+        return inputFile.contains(File.pathSeparator) || new File(inputFile).isDirectory();
+    }
+
+    /**
+     * @param config
+     * @return true if the tree, symbol table and OLLIR code of the input are printed instead of writing its class file,
+     * which is the case for a single input file when no option that is about class files ('-d', '-c', '--ollir' or
+     * '-b') is given
+     */
+    public static boolean printsStages(Map<String, String> config) {
+        return config.containsKey(PRINT_STAGES);
+    }
+
+    /**
+     * Creates a copy of the given configuration where the input option points to a single file.
+     *
+     * @param config
+     * @param inputFile
+     * @return a new configuration map
+     */
+    public static Map<String, String> forInputFile(Map<String, String> config, File inputFile) {
+        var fileConfig = new HashMap<>(config);
+        fileConfig.put(INPUT_FILE, inputFile.getAbsolutePath());
+        return fileConfig;
+    }
+
+    public static File getOutputDir(Map<String, String> config) {
+        return new File(config.getOrDefault(OUTPUT_DIR, "."));
+    }
+
+    private static List<File> collectSources(File dir) {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            return paths.filter(path -> path.toString().endsWith(JMM_EXTENSION))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list source files in '" + dir + "'", e);
+        }
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
@@ -40,6 +163,146 @@ public class CompilerConfig {
         return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
     }
 
+    /**
+     * @param config
+     * @return how registers are allocated with '-r': by coloring the interference graph ('coloring', the default) or
+     * by a linear scan over live intervals ('linear'), as chosen with '-a'
+     */
+    public static String getAllocator(Map<String, String> config) {
+        var allocator = config.getOrDefault(ALLOCATOR, COLORING_ALLOCATOR);
+
+        if (!allocator.equals(COLORING_ALLOCATOR) && !allocator.equals(LINEAR_SCAN_ALLOCATOR)) {
+            throw new RuntimeException("Expected '-a=" + COLORING_ALLOCATOR + "' or '-a=" + LINEAR_SCAN_ALLOCATOR
+                    + "', got '-a=" + allocator + "'");
+        }
+
+        return allocator;
+    }
+
+
+    /**
+     * @param config
+     * @return the number of files compiled in parallel in batch mode, by default one per available core
+     */
+    public static int getJobs(Map<String, String> config) {
+        var jobs = config.get(JOBS);
+
+        if (jobs == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        return Math.max(1, Integer.parseInt(jobs));
+    }
+
+    /**
+     * @param config
+     * @return true if the compiler should run as a daemon that serves compile requests
+     */
+    public static boolean isServer(Map<String, String> config) {
+        return config.containsKey(SERVER);
+    }
+
+    /**
+     * @param config
+     * @return the port the daemon listens on, 0 (any free port) unless given as '-s=<PORT>'
+     */
+    public static int getServerPort(Map<String, String> config) {
+        var port = config.getOrDefault(SERVER, "true");
+
+        if (port.equals("true")) {
+            return 0;
+        }
+
+        return Integer.parseInt(port);
+    }
+
+    /**
+     * @param config
+     * @return the folder where compiled classes are cached between runs, if caching was enabled with '-c=<DIR>'
+     */
+    public static Optional<File> getCacheDir(Map<String, String> config) {
+        var cacheDir = config.get(CACHE_DIR);
+
+        if (cacheDir == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(cacheDir));
+    }
+
+    /**
+     * @param config
+     * @return the most bytes the cache folder holds before the least recently used entries are evicted, 64 MB unless
+     * given in megabytes with '--cacheSize=<MB>'
+     */
+    public static long getCacheSize(Map<String, String> config) {
+        var cacheSize = config.get(CACHE_SIZE);
+
+        if (cacheSize == null) {
+            return DEFAULT_CACHE_SIZE * 1024 * 1024;
+        }
+
+        long megabytes;
+        try {
+            megabytes = Long.parseLong(cacheSize);
+        } catch (NumberFormatException e) {
+            megabytes = -1;
+        }
+
+        if (megabytes <= 0 || megabytes > Long.MAX_VALUE / (1024 * 1024)) {
+            throw new RuntimeException("Expected a positive number of megabytes, use '--" + CACHE_SIZE
+                    + "=<MB>', got '--" + CACHE_SIZE + "=" + cacheSize + "'");
+        }
+
+        return megabytes * 1024 * 1024;
+    }
+
+    /**
+     * @param config
+     * @return the format of the phase timings report ('table' or 'json'), if timings were requested with '-t'
+     */
+    public static Optional<String> getTimings(Map<String, String> config) {
+        var timings = config.get(TIMINGS);
+
+        if (timings == null) {
+            return Optional.empty();
+        }
+
+        if (timings.equals("true")) {
+            return Optional.of(Timings.TABLE);
+        }
+
+        if (!timings.equals(Timings.TABLE) && !timings.equals(Timings.JSON)) {
+            throw new RuntimeException("Expected '-t', '-t=" + Timings.TABLE + "' or '-t=" + Timings.JSON
+                    + "', got '-t=" + timings + "'");
+        }
+
+        return Optional.of(timings);
+    }
+
+    /**
+     * @param config
+     * @return true if the OLLIR code of each class should also be written to the output folder, with '--ollir'
+     */
+    public static boolean getWriteOllir(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(OLLIR, "false"));
+    }
+
+    /**
+     * @param config
+     * @return how class files are generated: through Jasmin code ('jasmin', the default) or directly ('class'), as
+     * chosen with '-b'
+     */
+    public static String getBackend(Map<String, String> config) {
+        var backend = config.getOrDefault(BACKEND, JASMIN_BACKEND);
+
+        if (!backend.equals(JASMIN_BACKEND) && !backend.equals(CLASS_BACKEND)) {
+            throw new RuntimeException("Expected '-b=" + JASMIN_BACKEND + "' or '-b=" + CLASS_BACKEND
+                    + "', got '-b=" + backend + "'");
+        }
+
+        return backend;
+    }
 
     public static Map<String, String> getDefault() {
 
@@ -51,6 +314,12 @@ public class CompilerConfig {
         return config;
     }
 
+    private static File resolve(File workingDir, String path) {
+        var file = new File(path);
+        var resolved = file.isAbsolute() ? file : new File(workingDir, path);
+        return resolved.toPath().normalize().toFile();
+    }
+
     private static String getLongOpt(String shortOpt) {
 
         return shortToLong.get(shortOpt);
@@ -62,6 +331,17 @@ public class CompilerConfig {
     }
 
     public static Map<String, String> parseArgs(String[] args) {
+        return parseArgs(args, new File("").getAbsoluteFile());
+    }
+
+    /**
+     * Parses the command line arguments, resolving relative input and output paths against the given folder.
+     *
+     * @param args
+     * @param workingDir
+     * @return the compiler configuration
+     */
+    public static Map<String, String> parseArgs(String[] args, File workingDir) {
 
         // default options for config
         var config = getDefault();
@@ -72,6 +352,18 @@ public class CompilerConfig {
                 throw new RuntimeException("Arguments should start with '-'");
             }
 
+            // long options, e.g. '--timings=json', use the name of the option in the config
+            if (arg.startsWith("--")) {
+                var separator = arg.indexOf('=');
+                var longOption = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+                if (!shortToLong.containsValue(longOption) && !longOnly.contains(longOption)) {
+                    throw new RuntimeException("Unrecognized option '--" + longOption + "'");
+                }
+
+                config.put(longOption, separator < 0 ? "true" : arg.substring(separator + 1));
+                continue;
+            }
+
             String shortOption = arg.substring(1, 2);
             if (!isShortOpt(shortOption)) {
                 throw new RuntimeException("Unrecognized option '-" + shortOption + "'");
@@ -89,23 +381,56 @@ public class CompilerConfig {
             config.put(getLongOpt(shortOption), value);
         }
 
+        // the daemon receives its inputs with each request
+        if (isServer(config)) {
+            getServerPort(config);
+            getJobs(config);
+            return config;
+        }
+
         if (!config.containsKey(INPUT_FILE)) {
 
             throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
         }
 
-        // make sure we save the absolute path of the input file
-        var inputFile = new File(config.get(INPUT_FILE));
-        if (!inputFile.isFile()) {
-            throw new RuntimeException("Could not find input file '" + inputFile + "'");
+        // make sure we save the absolute path of every input file or directory
+        var absolutePaths = new ArrayList<String>();
+        for (var path : config.get(INPUT_FILE).split(File.pathSeparator)) {
+            var inputFile = resolve(workingDir, path);
+            if (!inputFile.isFile() && !inputFile.isDirectory()) {
+                throw new RuntimeException("Could not find input file '" + inputFile + "'");
+            }
+
+            absolutePaths.add(inputFile.getAbsolutePath());
+        }
+
+        config.put(INPUT_FILE, String.join(File.pathSeparator, absolutePaths));
+
+        var classFileOptions = List.of(OUTPUT_DIR, CACHE_DIR, OLLIR, BACKEND);
+        if (!isBatch(config) && classFileOptions.stream().noneMatch(config::containsKey)) {
+            config.put(PRINT_STAGES, "true");
         }
 
-        var absolutePath = inputFile.getAbsolutePath();
-        config.put(INPUT_FILE, absolutePath);
+        config.put(OUTPUT_DIR, resolve(workingDir, config.getOrDefault(OUTPUT_DIR, ".")).getAbsolutePath());
+
+        if (config.containsKey(CACHE_DIR)) {
+            if (config.get(CACHE_DIR).equals("true")) {
+                throw new RuntimeException("Expected a cache folder, use '-c=<PATH_TO_DIR>'");
+            }
+
+            config.put(CACHE_DIR, resolve(workingDir, config.get(CACHE_DIR)).getAbsolutePath());
+        } else if (config.containsKey(CACHE_SIZE)) {
+            throw new RuntimeException("Option '--" + CACHE_SIZE + "' needs a cache folder, use '-c=<PATH_TO_DIR>'");
+        }
 
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getAllocator(config);
+        getJobs(config);
+        getTimings(config);
+        getBackend(config);
+        getCacheSize(config);
 
         return config;
     }
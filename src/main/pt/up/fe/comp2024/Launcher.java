@@ -7,10 +7,14 @@ import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
 import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.driver.BatchCompiler;
+import pt.up.fe.comp2024.driver.CompileServer;
 import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.OllirPrinter;
 import pt.up.fe.comp2024.parser.JmmParserImpl;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.utils.Timings;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
@@ -23,12 +27,29 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
+        // Keep this JVM alive and serve compile requests from the jmm script
+        if (CompilerConfig.isServer(config)) {
+            new CompileServer(CompilerConfig.getServerPort(config), CompilerConfig.getJobs(config)).run();
+            return;
+        }
+
+        // Several inputs, or options about class files, compile them all in this JVM and write the class files. A
+        // single input with none of those options has its tree and OLLIR code printed instead.
+        if (!CompilerConfig.printsStages(config)) {
+            var results = new BatchCompiler(CompilerConfig.getJobs(config)).compile(CompilerConfig.getInputFiles(config), config);
+            var anyFailed = results.stream().anyMatch(result -> !result.isSuccess());
+            System.exit(anyFailed ? 1 : 0);
+        }
+
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
             throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
         }
         String code = SpecsIo.read(inputFile);
 
+        var timingsFormat = CompilerConfig.getTimings(config);
+        var timings = timingsFormat.isPresent() ? Timings.start() : null;
+
         // Parsing stage
         JmmParserImpl parser = new JmmParserImpl();
         JmmParserResult parserResult = parser.parse(code, config);
@@ -56,8 +77,17 @@ public class Launcher {
         OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
         TestUtils.noErrors(ollirResult.getReports());
 
-        // Print OLLIR code
-        System.out.println(ollirResult.getOllirCode());
+        ollirResult = ollirGen.optimize(ollirResult);
+        TestUtils.noErrors(ollirResult.getReports());
+
+        // Print OLLIR code, from the class since the code of the result is from before the optimizations
+        System.out.println(OllirPrinter.print(ollirResult.getOllirClass()));
+
+        // Print how long each phase took
+        if (timings != null) {
+            Timings.stop();
+            System.out.print(timings.format(timingsFormat.get()));
+        }
 
         /*
         // Code generation stage
@@ -9,41 +9,51 @@ import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.passes.*;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.utils.Timings;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
-    private final List<AnalysisPass> analysisPasses;
+    // Passes keep state while visiting, so a fresh set is created for each analysed program.
+    // This allows the same JmmAnalysisImpl to be reused across several compilations.
+    private final List<Supplier<AnalysisPass>> analysisPasses;
 
     public JmmAnalysisImpl() {
         this.analysisPasses = List.of(
-                new UndeclaredVariable(),
-                new ArrayInvalidExpr(),
-                new MethodVerification(),
-                new AssignInvalidExpr(),
-                new BinaryInvalidExpr(),
-                new ConditionInvalidExpr(),
-                new ReturnInvalidExpr(),
-                new InvalidImportExpr(),
-                new DuplicatedExpr(),
-                new ThisInvalidUse()
+                UndeclaredVariable::new,
+                ArrayInvalidExpr::new,
+                MethodVerification::new,
+                AssignInvalidExpr::new,
+                BinaryInvalidExpr::new,
+                ConditionInvalidExpr::new,
+                ReturnInvalidExpr::new,
+                InvalidImportExpr::new,
+                DuplicatedExpr::new,
+                ThisInvalidUse::new
         );
     }
 
     @Override
     public JmmSemanticsResult semanticAnalysis(JmmParserResult parserResult) {
+        return Timings.measure("analysis", () -> analyse(parserResult));
+    }
+
+    private JmmSemanticsResult analyse(JmmParserResult parserResult) {
 
         JmmNode rootNode = parserResult.getRootNode();
 
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
+        SymbolTable table = Timings.measure("symbol table", () -> JmmSymbolTableBuilder.build(rootNode));
 
         List<Report> reports = new ArrayList<>();
 
         // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
+        for (var passSupplier : analysisPasses) {
+            var analysisPass = passSupplier.get();
             try {
-                List<Report> passReports = analysisPass.analyze(rootNode, table);
+                List<Report> passReports = Timings.measure(analysisPass.getClass().getSimpleName(),
+                        () -> analysisPass.analyze(rootNode, table));
                 reports.addAll(passReports);
                 if(!passReports.isEmpty()){
                     return new JmmSemanticsResult(parserResult, table, reports);
@@ -14,7 +14,7 @@ import java.util.HashSet;
 import java.util.List;
 
 public class DuplicatedExpr extends AnalysisVisitor {
-    private HashSet<String> params = new HashSet<>();
+    private HashMap<JmmNode, HashSet<String>> params = new HashMap<>();
     private HashMap<JmmNode, List<String>> vars = new HashMap<>();
 
     @Override
@@ -24,8 +24,11 @@ public class DuplicatedExpr extends AnalysisVisitor {
     }
 
     private Void visitParam(JmmNode paramNode, SymbolTable table) {
+        // Parameters only clash with parameters of the same method
+        var methodParams = params.computeIfAbsent(paramNode.getParent(), method -> new HashSet<>());
+
         String paramName = paramNode.get("name");
-        if (params.contains(paramName)) {
+        if (methodParams.contains(paramName)) {
             var message = String.format("Duplicate parameter: '%s'", paramName);
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -35,7 +38,7 @@ public class DuplicatedExpr extends AnalysisVisitor {
                     null)
             );
         } else {
-            params.add(paramName);
+            methodParams.add(paramName);
         }
         return null;
     }
@@ -27,6 +27,7 @@ public enum Kind {
     IMPORT_DECL,
     IF_ELSE_STMT,
     WHILE_STMT,
+    BLOCK_STMT,
     METHOD_CALL_EXPR,
     THIS_EXPR,
     STRING_TYPE,
@@ -0,0 +1,119 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.backend.classfile.ClassFileBuilder;
+import pt.up.fe.comp2024.backend.classfile.CodeBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static pt.up.fe.comp2024.backend.classfile.Opcodes.*;
+
+/**
+ * Generates a class file from an OLLIR class, without going through Jasmin code.
+ * <p>
+ * Instructions are selected by the {@link InstructionSelector} shared with {@link JasminGenerator}, but are encoded
+ * straight to bytecode, so no text is built and no assembler is needed. One ClassFileGenerator instance per OLLIR
+ * class.
+ */
+public class ClassFileGenerator {
+
+    private final ClassUnit ollirClass;
+
+    private final JvmNames names;
+
+    private final List<Report> reports;
+
+    private final InstructionSelector selector;
+
+    private ByteBuffer classFile;
+
+    public ClassFileGenerator(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+        this.names = new JvmNames(ollirClass);
+        this.selector = new InstructionSelector(names);
+
+        reports = new ArrayList<>();
+        classFile = null;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public String getClassName() {
+        return ollirClass.getClassName();
+    }
+
+    /**
+     * @return the bytes of the class file, from position 0 to the limit of the buffer
+     */
+    public ByteBuffer build() {
+
+        // This way, build is idempotent
+        if (classFile == null) {
+            classFile = generateClassUnit();
+        }
+
+        return classFile.duplicate();
+    }
+
+    private ByteBuffer generateClassUnit() {
+        var builder = new ClassFileBuilder(ACC_PUBLIC | ACC_SUPER, ollirClass.getClassName(),
+                names.getSuperClassName());
+
+        for (Field field : ollirClass.getFields()) {
+            int access = getAccessFlags(field.getFieldAccessModifier());
+            if (field.isStaticField()) access |= ACC_STATIC;
+            if (field.isFinalField()) access |= ACC_FINAL;
+
+            builder.addField(access, field.getFieldName(), names.getDescriptor(field.getFieldType()));
+        }
+
+        // default constructor
+        var constructor = new CodeBuilder(builder.getConstantPool(), 1);
+        constructor.load(ALOAD, 0);
+        constructor.invoke(INVOKESPECIAL, names.getSuperClassName(), "<init>", "()V");
+        constructor.insn(RETURN);
+        builder.addMethod(ACC_PUBLIC, "<init>", "()V", constructor);
+
+        for (Method method : ollirClass.getMethods()) {
+            if (method.isConstructMethod()) {
+                continue;
+            }
+
+            generateMethod(method, builder);
+        }
+
+        return builder.toByteBuffer();
+    }
+
+    private void generateMethod(Method method, ClassFileBuilder builder) {
+        int access = getAccessFlags(method.getMethodAccessModifier());
+        if (method.isStaticMethod()) access |= ACC_STATIC;
+        if (method.isFinalMethod()) access |= ACC_FINAL;
+
+        var descriptor = new StringBuilder("(");
+        for (Element param : method.getParams()) {
+            descriptor.append(names.getDescriptor(param.getType()));
+        }
+        descriptor.append(")").append(names.getDescriptor(method.getReturnType()));
+
+        int paramSlots = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+        var code = new CodeBuilder(builder.getConstantPool(), paramSlots);
+        selector.generate(method, new LocalSlots(method), code);
+
+        builder.addMethod(access, method.getMethodName(), descriptor.toString(), code);
+    }
+
+    private static int getAccessFlags(AccessModifier modifier) {
+        return switch (modifier) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+    }
+}
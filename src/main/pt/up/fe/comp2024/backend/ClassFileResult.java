@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A class file generated directly from OLLIR, by {@link ClassFileGenerator}.
+ */
+public class ClassFileResult {
+
+    private final String className;
+    private final ByteBuffer classFile;
+    private final List<Report> reports;
+
+    public ClassFileResult(String className, ByteBuffer classFile, List<Report> reports) {
+        this.className = className;
+        this.classFile = classFile;
+        this.reports = reports;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public byte[] getBytes() {
+        var bytes = new byte[classFile.remaining()];
+        classFile.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the class file to the given folder.
+     *
+     * @param outputDir
+     * @return the written file, named after the class
+     */
+    public File write(File outputDir) {
+        var file = new File(outputDir, className + ".class");
+
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = classFile.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class file '" + file + "'", e);
+        }
+
+        return file;
+    }
+}
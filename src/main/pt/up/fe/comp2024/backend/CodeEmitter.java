@@ -0,0 +1,62 @@
+package pt.up.fe.comp2024.backend;
+
+/**
+ * Receives the JVM instructions of a method, chosen by {@link InstructionSelector}. The class file backend encodes
+ * them as bytecode, the Jasmin backend writes them as Jasmin code.
+ * <p>
+ * Opcodes are those of {@link pt.up.fe.comp2024.backend.classfile.Opcodes}.
+ */
+public interface CodeEmitter {
+
+    /**
+     * Places a label before the next instruction.
+     */
+    void label(String name);
+
+    /**
+     * Emits an instruction without operands.
+     */
+    void insn(int opcode);
+
+    /**
+     * Pushes an int constant, with the shortest instruction for its value.
+     */
+    void iconst(int value);
+
+    /**
+     * @param opcode ILOAD or ALOAD
+     */
+    void load(int opcode, int reg);
+
+    /**
+     * @param opcode ISTORE or ASTORE
+     */
+    void store(int opcode, int reg);
+
+    /**
+     * Adds a constant to the int in a local, without touching the stack.
+     */
+    void iinc(int reg, int increment);
+
+    /**
+     * @param opcode NEW
+     */
+    void type(int opcode, String internalName);
+
+    void newArray(int arrayType);
+
+    /**
+     * @param opcode GETFIELD or PUTFIELD
+     */
+    void field(int opcode, String owner, String name, String descriptor);
+
+    /**
+     * @param opcode INVOKEVIRTUAL, INVOKESPECIAL or INVOKESTATIC
+     */
+    void invoke(int opcode, String owner, String name, String descriptor);
+
+    /**
+     * @param opcode GOTO, or any of the IF opcodes
+     */
+    void branch(int opcode, String labelName);
+}
@@ -0,0 +1,417 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static pt.up.fe.comp2024.backend.classfile.Opcodes.*;
+
+/**
+ * Chooses the JVM instructions for the OLLIR instructions of a method, for both the Jasmin and the class file
+ * backends, which only differ in how they write the instructions out.
+ * <p>
+ * Besides translating each OLLIR instruction, the selection keeps variables out of the stack when it can: adding a
+ * constant to a variable is an 'iinc', values of variables that are never read and of calls used as statements are
+ * popped, comparisons with zero and comparisons used as conditions branch directly, and products and divisions by
+ * powers of two are shifts. One InstructionSelector instance per OLLIR class, so the labels it makes up are unique in
+ * the class.
+ */
+public class InstructionSelector {
+
+    private final JvmNames names;
+
+    private final BiConsumerClassMap<TreeNode, CodeEmitter> generators;
+
+    private LocalSlots localSlots;
+
+    private int temporaryLabel = 0;
+
+    public InstructionSelector(JvmNames names) {
+        this.names = names;
+
+        this.generators = new BiConsumerClassMap<>();
+        generators.put(AssignInstruction.class, this::generateAssign);
+        generators.put(SingleOpInstruction.class, this::generateSingleOp);
+        generators.put(LiteralElement.class, this::generateLiteral);
+        generators.put(Operand.class, this::generateOperand);
+        generators.put(ArrayOperand.class, this::generateArrayOperand);
+        generators.put(BinaryOpInstruction.class, this::generateBinaryOp);
+        generators.put(UnaryOpInstruction.class, this::generateUnaryOp);
+        generators.put(ReturnInstruction.class, this::generateReturn);
+        generators.put(PutFieldInstruction.class, this::generatePutField);
+        generators.put(GetFieldInstruction.class, this::generateGetField);
+        generators.put(CallInstruction.class, this::generateCall);
+        generators.put(OpCondInstruction.class, this::generateOpCond);
+        generators.put(SingleOpCondInstruction.class, this::generateSingleOpCond);
+        generators.put(GotoInstruction.class, this::generateGoto);
+    }
+
+    /**
+     * Emits the instructions of a method, with their labels.
+     *
+     * @param localSlots the slots of the variables of the method
+     */
+    public void generate(Method method, LocalSlots localSlots, CodeEmitter code) {
+        this.localSlots = localSlots;
+
+        // Method.getLabels(Instruction) caches its answer, look the labels up directly in case they changed
+        Map<Instruction, List<String>> labels = new HashMap<>();
+        method.getLabels().forEach((label, instruction) ->
+                labels.computeIfAbsent(instruction, key -> new ArrayList<>()).add(label));
+
+        for (var inst : method.getInstructions()) {
+            for (var label : labels.getOrDefault(inst, List.of())) {
+                code.label(label);
+            }
+
+            generators.accept(inst, code);
+
+            // The value of a call used as a statement is not needed, and would be left on the stack
+            if (inst instanceof CallInstruction call
+                    && call.getReturnType().getTypeOfElement() != ElementType.VOID) {
+                code.insn(POP);
+            }
+        }
+
+        this.localSlots = null;
+    }
+
+    private void generateAssign(AssignInstruction assign, CodeEmitter code) {
+        // Adding a constant to a variable only changes its slot
+        var increment = localSlots.getIncrement(assign);
+        if (increment != null) {
+            code.iinc(getRegister((Operand) assign.getDest()), increment);
+            return;
+        }
+
+        if (assign.getDest() instanceof ArrayOperand arrayOperand) {
+            generateArrayOperand(arrayOperand, code);
+        }
+
+        // generate code for loading what's on the right
+        generators.accept(assign.getRhs(), code);
+
+        if (assign.getDest() instanceof ArrayOperand) {
+            code.insn(IASTORE);
+            return;
+        }
+
+        // The value of a variable that is never read is not stored
+        var operand = (Operand) assign.getDest();
+        if (localSlots.isDead(operand.getName())) {
+            code.insn(POP);
+            return;
+        }
+
+        code.store(isInt(operand.getType()) ? ISTORE : ASTORE, getRegister(operand));
+    }
+
+    private void generateSingleOp(SingleOpInstruction singleOp, CodeEmitter code) {
+        generators.accept(singleOp.getSingleOperand(), code);
+
+        if (singleOp.getSingleOperand() instanceof ArrayOperand) {
+            code.insn(IALOAD);
+        }
+    }
+
+    private void generateLiteral(LiteralElement literal, CodeEmitter code) {
+        code.iconst(Integer.parseInt(literal.getLiteral()));
+    }
+
+    private void generateOperand(Operand operand, CodeEmitter code) {
+        code.load(isInt(operand.getType()) ? ILOAD : ALOAD, getRegister(operand));
+    }
+
+    /**
+     * Loads the array and the indexes, for the caller to load or store the element.
+     */
+    private void generateArrayOperand(ArrayOperand arrayOperand, CodeEmitter code) {
+        code.load(ALOAD, getRegister(arrayOperand));
+
+        for (Element element : arrayOperand.getIndexOperands()) {
+            generators.accept(element, code);
+        }
+    }
+
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, CodeEmitter code) {
+        var comparison = getComparison(binaryOp);
+
+        if (comparison != 0) {
+            loadComparedValues(binaryOp, comparison, code);
+            pushBranchResult(comparison, code);
+            return;
+        }
+
+        if (generateShift(binaryOp, code)) {
+            return;
+        }
+
+        // load values on the left and on the right
+        generators.accept(binaryOp.getLeftOperand(), code);
+        generators.accept(binaryOp.getRightOperand(), code);
+
+        // apply operation
+        var op = switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> IADD;
+            case MUL -> IMUL;
+            case SUB -> ISUB;
+            case DIV -> IDIV;
+            case SHL -> ISHL;
+            case SHR -> ISHR;
+            case SHRR -> IUSHR;
+            case AND -> IAND;
+            case OR -> IOR;
+            case XOR -> IXOR;
+            default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
+        };
+
+        code.insn(op);
+    }
+
+    /**
+     * Multiplies by 2^k with a left shift, and divides by 2^k with a right shift, after adding 2^k - 1 to negative
+     * dividends, which is the sign spread over the low k bits, so that the quotient still rounds towards zero.
+     *
+     * @return false if the operation is not a product or a division by a power of two, and nothing was emitted
+     */
+    private boolean generateShift(BinaryOpInstruction binaryOp, CodeEmitter code) {
+        var opType = binaryOp.getOperation().getOpType();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        if (opType == OperationType.MUL && getShift(right) > 0 && !(left instanceof LiteralElement)) {
+            generators.accept(left, code);
+            code.iconst(getShift(right));
+            code.insn(ISHL);
+            return true;
+        }
+
+        if (opType == OperationType.MUL && getShift(left) > 0 && !(right instanceof LiteralElement)) {
+            generators.accept(right, code);
+            code.iconst(getShift(left));
+            code.insn(ISHL);
+            return true;
+        }
+
+        if (opType != OperationType.DIV || getShift(right) == 0 || !(left instanceof Operand dividend)
+                || dividend instanceof ArrayOperand) {
+            return false;
+        }
+
+        int shift = getShift(right);
+        generators.accept(dividend, code);
+        code.insn(DUP);
+        if (shift > 1) {
+            code.iconst(31);
+            code.insn(ISHR);
+        }
+        code.iconst(32 - shift);
+        code.insn(IUSHR);
+        code.insn(IADD);
+        code.iconst(shift);
+        code.insn(ISHR);
+
+        return true;
+    }
+
+    /**
+     * @return k if the element is the constant 2^k, with k at least 1, or 0 otherwise
+     */
+    private static int getShift(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return 0;
+        }
+
+        int value = Integer.parseInt(literal.getLiteral());
+        return value > 1 && Integer.bitCount(value) == 1 ? Integer.numberOfTrailingZeros(value) : 0;
+    }
+
+    /**
+     * @return the branch taken when the comparison holds, or 0 if the operation is not a comparison. Comparisons with
+     * zero branch on the left value alone.
+     */
+    private int getComparison(BinaryOpInstruction binaryOp) {
+        var opType = binaryOp.getOperation().getOpType();
+        if (opType != OperationType.LTH && opType != OperationType.GTE && opType != OperationType.LTE) {
+            return 0;
+        }
+
+        var comparesWithZero = binaryOp.getRightOperand() instanceof LiteralElement literal
+                && literal.getLiteral().equals("0");
+
+        return switch (opType) {
+            case LTH -> comparesWithZero ? IFLT : IF_ICMPLT;
+            case GTE -> comparesWithZero ? IFGE : IF_ICMPGE;
+            default -> comparesWithZero ? IFLE : IF_ICMPLE;
+        };
+    }
+
+    /**
+     * Loads the values the branch compares, only the left one if it compares with zero.
+     */
+    private void loadComparedValues(BinaryOpInstruction binaryOp, int branch, CodeEmitter code) {
+        generators.accept(binaryOp.getLeftOperand(), code);
+        if (branch >= IF_ICMPEQ) {
+            generators.accept(binaryOp.getRightOperand(), code);
+        }
+    }
+
+    private void generateUnaryOp(UnaryOpInstruction unaryOp, CodeEmitter code) {
+        if (unaryOp.getOperation().getOpType() != OperationType.NOTB) {
+            throw new NotImplementedException(unaryOp.getOperation().getOpType());
+        }
+
+        generators.accept(unaryOp.getOperand(), code);
+        pushBranchResult(IFEQ, code);
+    }
+
+    /**
+     * Pushes 1 if the branch is taken and 0 otherwise.
+     */
+    private void pushBranchResult(int branch, CodeEmitter code) {
+        var trueLabel = "temp" + temporaryLabel;
+        var endLabel = "temp" + (temporaryLabel + 1);
+        temporaryLabel += 2;
+
+        code.branch(branch, trueLabel);
+        code.iconst(0);
+        code.branch(GOTO, endLabel);
+        code.label(trueLabel);
+        code.iconst(1);
+        code.label(endLabel);
+    }
+
+    private void generateOpCond(OpCondInstruction opCond, CodeEmitter code) {
+        var condition = opCond.getCondition();
+
+        // Branch on the comparison itself, instead of on the boolean it computes
+        if (condition instanceof BinaryOpInstruction binaryOp && getComparison(binaryOp) != 0) {
+            int branch = getComparison(binaryOp);
+            loadComparedValues(binaryOp, branch, code);
+            code.branch(branch, opCond.getLabel());
+            return;
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            generators.accept(unaryOp.getOperand(), code);
+            code.branch(IFEQ, opCond.getLabel());
+            return;
+        }
+
+        generators.accept(condition, code);
+        code.branch(IFNE, opCond.getLabel());
+    }
+
+    private void generateSingleOpCond(SingleOpCondInstruction singleOpCond, CodeEmitter code) {
+        generators.accept(singleOpCond.getCondition(), code);
+        code.branch(IFNE, singleOpCond.getLabel());
+    }
+
+    private void generateGoto(GotoInstruction gotoInstruction, CodeEmitter code) {
+        code.branch(GOTO, gotoInstruction.getLabel());
+    }
+
+    private void generateCall(CallInstruction callInstruction, CodeEmitter code) {
+        var callType = callInstruction.getInvocationType();
+
+        if (callType.equals(CallType.invokespecial)) {
+            Operand className = (Operand) callInstruction.getOperands().get(0);
+            generators.accept(className, code);
+
+            var owner = className.getName().equals("this") ?
+                    names.getSuperClassName() :
+                    names.getClassName(((ClassType) className.getType()).getName());
+            code.invoke(INVOKESPECIAL, owner, "<init>", "()V");
+
+        } else if (callType.equals(CallType.invokestatic)) {
+            Operand className = (Operand) callInstruction.getOperands().get(0);
+            generateInvoke(INVOKESTATIC, names.getClassName(className.getName()), callInstruction, code);
+
+        } else if (callType.equals(CallType.invokevirtual)) {
+            Operand className = (Operand) callInstruction.getOperands().get(0);
+            generators.accept(className, code);
+
+            var classType = (ClassType) className.getType();
+            generateInvoke(INVOKEVIRTUAL, names.getClassName(classType.getName()), callInstruction, code);
+
+        } else if (callType.equals(CallType.NEW)) {
+            Operand operand = (Operand) callInstruction.getOperands().get(0);
+
+            if (operand.getType().getTypeOfElement().equals(ElementType.ARRAYREF)) {
+                for (Element element : callInstruction.getArguments()) {
+                    generators.accept(element, code);
+                }
+                code.newArray(T_INT);
+            } else {
+                code.type(NEW, names.getClassName(operand.getName()));
+            }
+
+        } else if (callType.equals(CallType.arraylength)) {
+            generators.accept(callInstruction.getOperands().get(0), code);
+            code.insn(ARRAYLENGTH);
+
+        } else {
+            throw new NotImplementedException(callType);
+        }
+    }
+
+    private void generateInvoke(int opcode, String owner, CallInstruction callInstruction, CodeEmitter code) {
+        var methodName = ((LiteralElement) callInstruction.getOperands().get(1)).getLiteral().replace("\"", "");
+
+        var descriptor = new StringBuilder("(");
+        for (Element element : callInstruction.getArguments()) {
+            generators.accept(element, code);
+            descriptor.append(names.getDescriptor(element.getType()));
+        }
+        descriptor.append(")").append(names.getDescriptor(callInstruction.getReturnType()));
+
+        code.invoke(opcode, owner, methodName, descriptor.toString());
+    }
+
+    private void generatePutField(PutFieldInstruction putFieldInstruction, CodeEmitter code) {
+        Operand object = (Operand) putFieldInstruction.getOperands().get(0);
+        Operand field = (Operand) putFieldInstruction.getOperands().get(1);
+        Element value = putFieldInstruction.getOperands().get(2);
+
+        generators.accept(object, code);
+        generators.accept(value, code);
+
+        var owner = names.getClassName(((ClassType) object.getType()).getName());
+        code.field(PUTFIELD, owner, field.getName(), names.getDescriptor(value.getType()));
+    }
+
+    private void generateGetField(GetFieldInstruction getFieldInstruction, CodeEmitter code) {
+        Operand object = (Operand) getFieldInstruction.getOperands().get(0);
+        Operand field = (Operand) getFieldInstruction.getOperands().get(1);
+
+        generators.accept(object, code);
+
+        var owner = names.getClassName(((ClassType) object.getType()).getName());
+        code.field(GETFIELD, owner, field.getName(), names.getDescriptor(field.getType()));
+    }
+
+    private void generateReturn(ReturnInstruction returnInst, CodeEmitter code) {
+        if (!returnInst.hasReturnValue()) {
+            code.insn(RETURN);
+            return;
+        }
+
+        generators.accept(returnInst.getOperand(), code);
+        code.insn(isInt(returnInst.getReturnType()) ? IRETURN : ARETURN);
+    }
+
+    private int getRegister(Operand operand) {
+        return localSlots.getSlot(operand.getName());
+    }
+
+    private static boolean isInt(Type type) {
+        return type.getTypeOfElement().equals(ElementType.INT32) || type.getTypeOfElement().equals(ElementType.BOOLEAN);
+    }
+}
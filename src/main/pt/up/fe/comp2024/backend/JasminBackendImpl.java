@@ -1,8 +1,12 @@
 package pt.up.fe.comp2024.backend;
 
+import org.specs.comp.ollir.ClassUnit;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.utils.Timings;
+
+import java.util.Map;
 
 public class JasminBackendImpl implements JasminBackend {
 
@@ -10,9 +14,39 @@ public class JasminBackendImpl implements JasminBackend {
     public JasminResult toJasmin(OllirResult ollirResult) {
 
         var jasminGenerator = new JasminGenerator(ollirResult);
-        var jasminCode = jasminGenerator.build();
+        var jasminCode = Timings.measure("jasmin generation", jasminGenerator::build);
 
         return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
     }
 
+    /**
+     * Generates Jasmin code from an OLLIR class built in memory, without going through OLLIR code.
+     *
+     * @param ollirClass
+     * @param config
+     * @return the Jasmin code and the reports of the backend
+     */
+    public JasminResult toJasmin(ClassUnit ollirClass, Map<String, String> config) {
+
+        var jasminGenerator = new JasminGenerator(ollirClass);
+        var jasminCode = Timings.measure("jasmin generation", jasminGenerator::build);
+
+        return new JasminResult(ollirClass.getClassName(), jasminCode, jasminGenerator.getReports(), config);
+    }
+
+    /**
+     * Generates the class file of an OLLIR class directly, without Jasmin code or the Jasmin assembler.
+     *
+     * @param ollirClass
+     * @param config
+     * @return the class file and the reports of the backend
+     */
+    public ClassFileResult toClassFile(ClassUnit ollirClass, Map<String, String> config) {
+
+        var classFileGenerator = new ClassFileGenerator(ollirClass);
+        var classFile = Timings.measure("class file generation", classFileGenerator::build);
+
+        return new ClassFileResult(ollirClass.getClassName(), classFile, classFileGenerator.getReports());
+    }
+
 }
@@ -0,0 +1,150 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import static pt.up.fe.comp2024.backend.classfile.Opcodes.*;
+
+/**
+ * Writes the instructions of a method as Jasmin code, one indented line per instruction or label.
+ */
+public class JasminCodeEmitter implements CodeEmitter {
+
+    private static final String NL = "\n";
+    private static final String TAB = "   ";
+
+    private final StringBuilder code = new StringBuilder();
+
+    /**
+     * @return the Jasmin code of the instructions emitted so far
+     */
+    public String getCode() {
+        return code.toString();
+    }
+
+    @Override
+    public void label(String name) {
+        line(name + ":");
+    }
+
+    @Override
+    public void insn(int opcode) {
+        line(getMnemonic(opcode));
+    }
+
+    @Override
+    public void iconst(int value) {
+        if (value == -1) {
+            line("iconst_m1");
+        } else if (value >= 0 && value <= 5) {
+            line("iconst_" + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            line("bipush " + value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            line("sipush " + value);
+        } else {
+            line("ldc " + value);
+        }
+    }
+
+    @Override
+    public void load(int opcode, int reg) {
+        local(opcode, reg);
+    }
+
+    @Override
+    public void store(int opcode, int reg) {
+        local(opcode, reg);
+    }
+
+    /**
+     * The first four slots have instructions of their own, such as 'iload_0'.
+     */
+    private void local(int opcode, int reg) {
+        line(getMnemonic(opcode) + (reg < 4 ? "_" : " ") + reg);
+    }
+
+    @Override
+    public void iinc(int reg, int increment) {
+        line("iinc " + reg + " " + increment);
+    }
+
+    @Override
+    public void type(int opcode, String internalName) {
+        line(getMnemonic(opcode) + " " + internalName);
+    }
+
+    @Override
+    public void newArray(int arrayType) {
+        if (arrayType != T_INT) {
+            throw new NotImplementedException("newarray of type " + arrayType);
+        }
+
+        line("newarray int");
+    }
+
+    @Override
+    public void field(int opcode, String owner, String name, String descriptor) {
+        line(getMnemonic(opcode) + " " + owner + "/" + name + " " + descriptor);
+    }
+
+    @Override
+    public void invoke(int opcode, String owner, String name, String descriptor) {
+        line(getMnemonic(opcode) + " " + owner + "/" + name + descriptor);
+    }
+
+    @Override
+    public void branch(int opcode, String labelName) {
+        line(getMnemonic(opcode) + " " + labelName);
+    }
+
+    private void line(String instruction) {
+        code.append(TAB).append(instruction).append(NL);
+    }
+
+    private static String getMnemonic(int opcode) {
+        return switch (opcode) {
+            case ILOAD -> "iload";
+            case ALOAD -> "aload";
+            case IALOAD -> "iaload";
+            case ISTORE -> "istore";
+            case ASTORE -> "astore";
+            case IASTORE -> "iastore";
+            case POP -> "pop";
+            case DUP -> "dup";
+            case IADD -> "iadd";
+            case ISUB -> "isub";
+            case IMUL -> "imul";
+            case IDIV -> "idiv";
+            case ISHL -> "ishl";
+            case ISHR -> "ishr";
+            case IUSHR -> "iushr";
+            case IAND -> "iand";
+            case IOR -> "ior";
+            case IXOR -> "ixor";
+            case IFEQ -> "ifeq";
+            case IFNE -> "ifne";
+            case IFLT -> "iflt";
+            case IFGE -> "ifge";
+            case IFGT -> "ifgt";
+            case IFLE -> "ifle";
+            case IF_ICMPEQ -> "if_icmpeq";
+            case IF_ICMPNE -> "if_icmpne";
+            case IF_ICMPLT -> "if_icmplt";
+            case IF_ICMPGE -> "if_icmpge";
+            case IF_ICMPGT -> "if_icmpgt";
+            case IF_ICMPLE -> "if_icmple";
+            case GOTO -> "goto";
+            case IRETURN -> "ireturn";
+            case ARETURN -> "areturn";
+            case RETURN -> "return";
+            case GETFIELD -> "getfield";
+            case PUTFIELD -> "putfield";
+            case INVOKEVIRTUAL -> "invokevirtual";
+            case INVOKESPECIAL -> "invokespecial";
+            case INVOKESTATIC -> "invokestatic";
+            case NEW -> "new";
+            case ARRAYLENGTH -> "arraylength";
+            default -> throw new NotImplementedException("opcode " + opcode);
+        };
+    }
+}
@@ -0,0 +1,183 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.specs.util.utilities.StringLines;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the maximum height of the operand stack of a method from its Jasmin code.
+ * <p>
+ * The instructions are interpreted abstractly, keeping only the height of the stack. Every path is followed, through
+ * branches and labels, so the result is the exact '.limit stack' the method needs. Paths that reach the same
+ * instruction with different heights are reported as errors, since the JVM would not verify the method.
+ */
+public class JasminStackAnalysis {
+
+    private final List<String[]> instructions = new ArrayList<>();
+
+    // Index of the instruction that follows each label
+    private final Map<String, Integer> labels = new HashMap<>();
+
+    private JasminStackAnalysis(String methodCode) {
+        for (var line : StringLines.getLines(methodCode)) {
+            line = line.strip();
+
+            if (line.isEmpty() || line.startsWith(".") || line.startsWith(";")) {
+                continue;
+            }
+
+            if (line.endsWith(":")) {
+                labels.put(line.substring(0, line.length() - 1), instructions.size());
+                continue;
+            }
+
+            instructions.add(line.split("\\s+"));
+        }
+    }
+
+    /**
+     * @param methodCode the instructions and labels of a method, one per line; directives are ignored
+     * @return the maximum height of the operand stack over every path of the method
+     */
+    public static int getMaxStack(String methodCode) {
+        return new JasminStackAnalysis(methodCode).analyse();
+    }
+
+    private int analyse() {
+        var heights = new int[instructions.size()];
+        Arrays.fill(heights, -1);
+
+        int maxStack = 0;
+        var worklist = new ArrayDeque<Integer>();
+        reach(0, 0, heights, worklist);
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            var instruction = instructions.get(index);
+            var opcode = instruction[0];
+
+            int height = heights[index] + getStackChange(instruction);
+            if (height < 0) {
+                throw new RuntimeException("Operand stack underflow at '" + String.join(" ", instruction) + "'");
+            }
+            maxStack = Math.max(maxStack, height);
+
+            if (isBranch(opcode)) {
+                reach(getTarget(instruction), height, heights, worklist);
+            }
+
+            if (!endsPath(opcode)) {
+                reach(index + 1, height, heights, worklist);
+            }
+        }
+
+        return maxStack;
+    }
+
+    private void reach(int index, int height, int[] heights, ArrayDeque<Integer> worklist) {
+        // Past the last instruction, only reachable if the method does not return
+        if (index >= instructions.size()) {
+            return;
+        }
+
+        if (heights[index] < 0) {
+            heights[index] = height;
+            worklist.push(index);
+        } else if (heights[index] != height) {
+            throw new RuntimeException("Operand stack height at '" + String.join(" ", instructions.get(index))
+                    + "' is " + heights[index] + " on one path and " + height + " on another");
+        }
+    }
+
+    private int getTarget(String[] instruction) {
+        var target = labels.get(instruction[1]);
+        if (target == null) {
+            throw new RuntimeException("Undefined label '" + instruction[1] + "'");
+        }
+
+        return target;
+    }
+
+    private static boolean isBranch(String opcode) {
+        return opcode.startsWith("if") || opcode.equals("goto");
+    }
+
+    private static boolean endsPath(String opcode) {
+        return opcode.equals("goto") || opcode.endsWith("return") || opcode.equals("athrow");
+    }
+
+    /**
+     * @return how many values the instruction pushes, minus how many it pops
+     */
+    private static int getStackChange(String[] instruction) {
+        var opcode = instruction[0];
+
+        if (opcode.startsWith("iconst_") || opcode.startsWith("iload") || opcode.startsWith("aload")) {
+            return 1;
+        }
+
+        if (opcode.startsWith("istore") || opcode.startsWith("astore")) {
+            return -1;
+        }
+
+        if (opcode.startsWith("if_")) {
+            return -2;
+        }
+
+        if (opcode.startsWith("if")) {
+            return -1;
+        }
+
+        return switch (opcode) {
+            case "bipush", "sipush", "ldc", "new", "dup" -> 1;
+            case "iadd", "isub", "imul", "idiv", "irem", "iand", "ior", "ixor", "ishl", "ishr", "iushr",
+                 "iaload", "aaload", "pop", "ireturn", "areturn", "athrow" -> -1;
+            case "iastore", "aastore" -> -3;
+            case "goto", "return", "ineg", "iinc", "arraylength", "newarray", "anewarray", "checkcast" -> 0;
+            case "getfield" -> slots(instruction[2]) - 1;
+            case "putfield" -> -slots(instruction[2]) - 1;
+            case "getstatic" -> slots(instruction[2]);
+            case "putstatic" -> -slots(instruction[2]);
+            case "invokestatic" -> getInvokeChange(instruction[1]);
+            case "invokevirtual", "invokespecial", "invokeinterface" -> getInvokeChange(instruction[1]) - 1;
+            default -> throw new RuntimeException("Unknown stack change of Jasmin instruction '" + opcode + "'");
+        };
+    }
+
+    /**
+     * @param method the method of an invoke instruction, e.g. 'Class/name(I[ILjava/lang/String;)V'
+     */
+    private static int getInvokeChange(String method) {
+        int start = method.indexOf('(');
+        int end = method.indexOf(')');
+
+        int arguments = 0;
+        int i = start + 1;
+        while (i < end) {
+            arguments += slots(method.substring(i, i + 1));
+
+            while (method.charAt(i) == '[') {
+                i++;
+            }
+            if (method.charAt(i) == 'L') {
+                i = method.indexOf(';', i);
+            }
+            i++;
+        }
+
+        return slots(method.substring(end + 1)) - arguments;
+    }
+
+    private static int slots(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'V' -> 0;
+            case 'J', 'D' -> 2;
+            default -> 1;
+        };
+    }
+}
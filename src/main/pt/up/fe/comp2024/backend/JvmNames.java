@@ -0,0 +1,72 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Type;
+
+/**
+ * Names of the classes and descriptors of the types used by an OLLIR class, as the JVM expects them. Shared by the
+ * Jasmin and class file backends, so both refer to the same classes.
+ */
+public class JvmNames {
+
+    private final ClassUnit ollirClass;
+
+    public JvmNames(ClassUnit ollirClass) {
+        this.ollirClass = ollirClass;
+    }
+
+    public String getDescriptor(Type type) {
+        var ret = new StringBuilder();
+        if (type.getTypeOfElement().equals(ElementType.INT32))
+            ret.append("I");
+        else if (type.getTypeOfElement().equals(ElementType.BOOLEAN))
+            ret.append("Z");
+        else if (type.getTypeOfElement().equals(ElementType.VOID))
+            ret.append("V");
+        else if (type.getTypeOfElement().equals(ElementType.STRING))
+            ret.append("Ljava/lang/String;");
+        else if (type.getTypeOfElement().equals(ElementType.CLASS))
+            ret.append("Ljava/lang/Class;");
+        else if (type.getTypeOfElement().equals(ElementType.ARRAYREF)) {
+            ArrayType array = (ArrayType) type;
+            ret.append("[").append(getDescriptor(array.getElementType()));
+        }
+        else if (type.getTypeOfElement().equals(ElementType.THIS))
+            ret.append("L").append(ollirClass.getClassName()).append(";");
+        else if (type.getTypeOfElement().equals(ElementType.OBJECTREF)) {
+            ClassType classType = (ClassType) type;
+            String importedClass = getClassName(classType.getName());
+            ret.append("L").append(importedClass).append(";");
+        }
+        return ret.toString();
+    }
+
+    /**
+     * @return the full name of the class, with '/' as separator, if it was imported, or the name as it is otherwise
+     */
+    public String getClassName(String className) {
+        var newClassName = "";
+        for (var i : ollirClass.getImports()) {
+            if (i.contains(className))
+                newClassName = i.replace(".", "/");
+        }
+        if (newClassName.isEmpty()) {
+            newClassName = className;
+        }
+        return newClassName;
+    }
+
+    /**
+     * @return the full name of the super class, java/lang/Object if the class does not extend another
+     */
+    public String getSuperClassName() {
+        if (ollirClass.getSuperClass() == null || ollirClass.getSuperClass().equals("Object")) {
+            return "java/lang/Object";
+        }
+
+        return getClassName(ollirClass.getSuperClass());
+    }
+}
@@ -0,0 +1,126 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionVars;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns the JVM local variable slots of a method.
+ * <p>
+ * 'this' and the parameters keep the first slots. Variables that are written but never read, such as temporaries
+ * whose value was not needed, get no slot: their values are popped instead of stored. The other variables get the
+ * next free slots in the order they appear, so '.limit locals' is exactly the number of slots used. Variables the
+ * OLLIR var table puts in the same register share a slot, which keeps the allocation done by '-r'.
+ */
+public class LocalSlots {
+
+    private final Method method;
+
+    // Slot of each virtual register
+    private final Map<Integer, Integer> slots = new HashMap<>();
+
+    private final Set<String> dead = new HashSet<>();
+
+    private int maxLocals;
+
+    public LocalSlots(Method method) {
+        this.method = method;
+
+        var read = new HashSet<String>();
+        for (var instruction : method.getInstructions()) {
+            read.addAll(InstructionVars.getUses(instruction));
+        }
+
+        // 'this' and the parameters are where the caller puts them
+        maxLocals = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+        for (int slot = 0; slot < maxLocals; slot++) {
+            slots.put(slot, slot);
+        }
+
+        for (var instruction : method.getInstructions()) {
+            var def = InstructionVars.getDef(instruction);
+            if (def != null && !read.contains(def)) {
+                dead.add(def);
+            }
+
+            for (var use : InstructionVars.getUses(instruction)) {
+                assign(use);
+            }
+
+            if (def != null && !dead.contains(def)) {
+                assign(def);
+            }
+        }
+    }
+
+    private void assign(String name) {
+        var reg = method.getVarTable().get(name).getVirtualReg();
+
+        if (!slots.containsKey(reg)) {
+            slots.put(reg, maxLocals);
+            maxLocals++;
+        }
+    }
+
+    /**
+     * @return true if the variable is never read, and so has no slot
+     */
+    public boolean isDead(String name) {
+        return dead.contains(name);
+    }
+
+    public int getSlot(String name) {
+        var slot = slots.get(method.getVarTable().get(name).getVirtualReg());
+        if (slot == null) {
+            throw new RuntimeException("Variable '" + name + "' of method '" + method.getMethodName()
+                    + "' has no local slot");
+        }
+
+        return slot;
+    }
+
+    /**
+     * @return the constant the assignment adds to the int in the slot it reads and writes, such as in 'i := i + 1',
+     * or null if it does something else. Increments that fit in 16 bits are a single 'iinc'.
+     */
+    public Integer getIncrement(AssignInstruction assign) {
+        if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand
+                || dest.getType().getTypeOfElement() != ElementType.INT32 || isDead(dest.getName())
+                || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)) {
+            return null;
+        }
+
+        var opType = binaryOp.getOperation().getOpType();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        int increment;
+        if (opType == OperationType.ADD && isSlotOf(dest, left) && right instanceof LiteralElement literal) {
+            increment = Integer.parseInt(literal.getLiteral());
+        } else if (opType == OperationType.ADD && isSlotOf(dest, right) && left instanceof LiteralElement literal) {
+            increment = Integer.parseInt(literal.getLiteral());
+        } else if (opType == OperationType.SUB && isSlotOf(dest, left) && right instanceof LiteralElement literal) {
+            increment = -Integer.parseInt(literal.getLiteral());
+        } else {
+            return null;
+        }
+
+        return increment >= Short.MIN_VALUE && increment <= Short.MAX_VALUE ? increment : null;
+    }
+
+    private boolean isSlotOf(Operand dest, Element element) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && getSlot(operand.getName()) == getSlot(dest.getName());
+    }
+
+    /**
+     * @return the number of slots used by the method, its '.limit locals'
+     */
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+}
@@ -0,0 +1,77 @@
+package pt.up.fe.comp2024.backend.classfile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Growable buffer of big-endian values, for the parts of a class file whose size is only known once written.
+ */
+public class ByteVector {
+
+    private ByteBuffer buffer;
+
+    public ByteVector() {
+        this(64);
+    }
+
+    public ByteVector(int initialCapacity) {
+        buffer = ByteBuffer.allocate(initialCapacity);
+    }
+
+    public ByteVector u1(int value) {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+        return this;
+    }
+
+    public ByteVector u2(int value) {
+        ensureCapacity(2);
+        buffer.putShort((short) value);
+        return this;
+    }
+
+    public ByteVector u4(int value) {
+        ensureCapacity(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    public ByteVector bytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+        return this;
+    }
+
+    public ByteVector bytes(ByteVector bytes) {
+        ensureCapacity(bytes.size());
+        buffer.put(bytes.buffer.array(), 0, bytes.size());
+        return this;
+    }
+
+    /**
+     * Overwrites two bytes already written, e.g. the offset of a forward branch.
+     */
+    public void setU2(int position, int value) {
+        buffer.putShort(position, (short) value);
+    }
+
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Copies the written bytes to the given buffer.
+     */
+    public void writeTo(ByteBuffer out) {
+        out.put(buffer.array(), 0, size());
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+
+        var grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        grown.put(buffer.array(), 0, buffer.position());
+        buffer = grown;
+    }
+}
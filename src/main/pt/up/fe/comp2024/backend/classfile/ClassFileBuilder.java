@@ -0,0 +1,76 @@
+package pt.up.fe.comp2024.backend.classfile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Assembles a class file from its fields and the code of its methods.
+ * <p>
+ * Classes are written with the version Jasmin uses (45.3), so the JVM verifies them by type inference and no
+ * StackMapTable attributes are needed.
+ */
+public class ClassFileBuilder {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MINOR_VERSION = 3;
+    private static final int MAJOR_VERSION = 45;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final ByteVector fields = new ByteVector();
+    private final ByteVector methods = new ByteVector(1024);
+
+    private final int access;
+    private final int thisClass;
+    private final int superClass;
+
+    private int fieldCount = 0;
+    private int methodCount = 0;
+
+    /**
+     * @param access    the access flags of the class
+     * @param name      the internal name of the class, e.g. 'pkg/Name'
+     * @param superName the internal name of the super class
+     */
+    public ClassFileBuilder(int access, String name, String superName) {
+        this.access = access;
+        this.thisClass = pool.classRef(name);
+        this.superClass = pool.classRef(superName);
+    }
+
+    public ConstantPool getConstantPool() {
+        return pool;
+    }
+
+    public void addField(int access, String name, String descriptor) {
+        fields.u2(access).u2(pool.utf8(name)).u2(pool.utf8(descriptor)).u2(0);
+        fieldCount++;
+    }
+
+    /**
+     * @param code the code of the method, encoded with the constant pool of this class
+     */
+    public void addMethod(int access, String name, String descriptor, CodeBuilder code) {
+        methods.u2(access).u2(pool.utf8(name)).u2(pool.utf8(descriptor)).u2(1);
+        code.writeTo(methods);
+        methodCount++;
+    }
+
+    /**
+     * @return the class file, ready to be read or written to a channel
+     */
+    public ByteBuffer toByteBuffer() {
+        var header = new ByteVector(pool.getCount() * 8 + 16);
+        header.u4(MAGIC).u2(MINOR_VERSION).u2(MAJOR_VERSION);
+        pool.writeTo(header);
+        header.u2(access).u2(thisClass).u2(superClass).u2(0);
+
+        var buffer = ByteBuffer.allocate(header.size() + 2 + fields.size() + 2 + methods.size() + 2);
+        header.writeTo(buffer);
+        buffer.putShort((short) fieldCount);
+        fields.writeTo(buffer);
+        buffer.putShort((short) methodCount);
+        methods.writeTo(buffer);
+        buffer.putShort((short) 0);
+
+        return buffer.flip();
+    }
+}
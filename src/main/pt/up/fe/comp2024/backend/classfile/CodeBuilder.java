@@ -0,0 +1,327 @@
+package pt.up.fe.comp2024.backend.classfile;
+
+import pt.up.fe.comp2024.backend.CodeEmitter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static pt.up.fe.comp2024.backend.classfile.Opcodes.*;
+
+/**
+ * Encodes the bytecode of one method into a Code attribute.
+ * <p>
+ * Branches name their targets with labels, which may be placed after the branch; the offsets are filled in when the
+ * label is placed. The height of the operand stack is followed instruction by instruction, so the max_stack and
+ * max_locals of the attribute are exact.
+ */
+public class CodeBuilder implements CodeEmitter {
+
+    private final ConstantPool pool;
+    private final ByteVector code = new ByteVector(256);
+    private final Map<String, Label> labels = new HashMap<>();
+
+    private int stack = 0;
+    private int maxStack = 0;
+    private int maxLocals;
+
+    // False after goto and return, until the next label. The stack of unreachable code is not followed.
+    private boolean reachable = true;
+
+    /**
+     * @param pool       the constant pool of the class
+     * @param paramSlots the locals taken by 'this' and the parameters
+     */
+    public CodeBuilder(ConstantPool pool, int paramSlots) {
+        this.pool = pool;
+        this.maxLocals = paramSlots;
+    }
+
+    /**
+     * Places a label before the next instruction.
+     */
+    @Override
+    public void label(String name) {
+        var label = labels.computeIfAbsent(name, key -> new Label());
+        if (label.offset >= 0) {
+            throw new RuntimeException("Label '" + name + "' is placed twice");
+        }
+
+        label.offset = code.size();
+
+        if (!reachable) {
+            // Only reached by branches, which already gave the height of the stack, if any
+            stack = Math.max(label.stack, 0);
+            reachable = true;
+        } else if (label.stack >= 0 && label.stack != stack) {
+            throw new RuntimeException("Stack height at label '" + name + "' is " + stack
+                    + " when falling through, but " + label.stack + " when branching to it");
+        }
+        label.stack = stack;
+
+        for (int branch : label.branches) {
+            setOffset(branch, label.offset);
+        }
+        label.branches.clear();
+    }
+
+    /**
+     * Emits an instruction without operands.
+     */
+    @Override
+    public void insn(int opcode) {
+        code.u1(opcode);
+
+        switch (opcode) {
+            case DUP -> push(1);
+            case POP, IADD, ISUB, IMUL, IDIV, ISHL, ISHR, IUSHR, IAND, IOR, IXOR, IALOAD -> pop(1);
+            case IASTORE -> pop(3);
+            case ARRAYLENGTH -> {
+            }
+            case IRETURN, ARETURN -> {
+                pop(1);
+                reachable = false;
+            }
+            case RETURN -> reachable = false;
+            default -> throw new RuntimeException("Opcode " + opcode + " has operands");
+        }
+    }
+
+    /**
+     * Pushes an int constant, with the shortest instruction for its value.
+     */
+    @Override
+    public void iconst(int value) {
+        if (value >= -1 && value <= 5) {
+            code.u1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.u1(BIPUSH).u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.u1(SIPUSH).u2(value);
+        } else {
+            int index = pool.integer(value);
+            if (index <= 0xFF) {
+                code.u1(LDC).u1(index);
+            } else {
+                code.u1(LDC_W).u2(index);
+            }
+        }
+
+        push(1);
+    }
+
+    /**
+     * @param opcode ILOAD or ALOAD
+     */
+    @Override
+    public void load(int opcode, int reg) {
+        local(opcode, opcode == ILOAD ? ILOAD_0 : ALOAD_0, reg);
+        push(1);
+    }
+
+    /**
+     * @param opcode ISTORE or ASTORE
+     */
+    @Override
+    public void store(int opcode, int reg) {
+        local(opcode, opcode == ISTORE ? ISTORE_0 : ASTORE_0, reg);
+        pop(1);
+    }
+
+    /**
+     * Adds a constant to the int in a local, without touching the stack.
+     */
+    @Override
+    public void iinc(int reg, int increment) {
+        if (reg <= 0xFF && increment >= Byte.MIN_VALUE && increment <= Byte.MAX_VALUE) {
+            code.u1(IINC).u1(reg).u1(increment);
+        } else {
+            code.u1(WIDE).u1(IINC).u2(reg).u2(increment);
+        }
+
+        maxLocals = Math.max(maxLocals, reg + 1);
+    }
+
+    /**
+     * @param opcode NEW
+     */
+    @Override
+    public void type(int opcode, String internalName) {
+        code.u1(opcode).u2(pool.classRef(internalName));
+        push(1);
+    }
+
+    @Override
+    public void newArray(int arrayType) {
+        code.u1(NEWARRAY).u1(arrayType);
+    }
+
+    /**
+     * @param opcode GETFIELD or PUTFIELD
+     */
+    @Override
+    public void field(int opcode, String owner, String name, String descriptor) {
+        code.u1(opcode).u2(pool.fieldRef(owner, name, descriptor));
+
+        int size = slots(descriptor.charAt(0));
+        if (opcode == GETFIELD) {
+            pop(1);
+            push(size);
+        } else {
+            pop(1 + size);
+        }
+    }
+
+    /**
+     * @param opcode INVOKEVIRTUAL, INVOKESPECIAL or INVOKESTATIC
+     */
+    @Override
+    public void invoke(int opcode, String owner, String name, String descriptor) {
+        code.u1(opcode).u2(pool.methodRef(owner, name, descriptor));
+
+        int returnStart = descriptor.indexOf(')') + 1;
+        pop(argumentSlots(descriptor) + (opcode == INVOKESTATIC ? 0 : 1));
+        push(slots(descriptor.charAt(returnStart)));
+    }
+
+    /**
+     * @param opcode GOTO, or any of the IF opcodes
+     */
+    @Override
+    public void branch(int opcode, String labelName) {
+        int position = code.size();
+        code.u1(opcode).u2(0);
+
+        if (opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE) {
+            pop(2);
+        } else if (opcode != GOTO) {
+            pop(1);
+        }
+
+        var label = labels.computeIfAbsent(labelName, key -> new Label());
+        // Dead code says nothing about the height of the stack at the target
+        if (reachable && label.stack < 0) {
+            label.stack = stack;
+        } else if (reachable && label.stack != stack) {
+            throw new RuntimeException("Stack height at label '" + labelName + "' is " + label.stack
+                    + ", but " + stack + " when branching to it");
+        }
+
+        if (label.offset >= 0) {
+            setOffset(position, label.offset);
+        } else {
+            label.branches.add(position);
+        }
+
+        if (opcode == GOTO) {
+            reachable = false;
+        }
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    /**
+     * Writes the Code attribute of the method, without exception handlers or attributes of its own.
+     */
+    public void writeTo(ByteVector out) {
+        for (var label : labels.entrySet()) {
+            if (label.getValue().offset < 0) {
+                throw new RuntimeException("Label '" + label.getKey() + "' is used but never placed");
+            }
+        }
+
+        if (code.size() > 0xFFFF) {
+            throw new RuntimeException("Method has " + code.size() + " bytes of code, the limit is 65535");
+        }
+
+        out.u2(pool.utf8("Code"));
+        out.u4(2 + 2 + 4 + code.size() + 2 + 2);
+        out.u2(maxStack).u2(maxLocals);
+        out.u4(code.size()).bytes(code);
+        out.u2(0);
+        out.u2(0);
+    }
+
+    private void local(int opcode, int shortOpcode, int reg) {
+        if (reg <= 3) {
+            code.u1(shortOpcode + reg);
+        } else if (reg <= 0xFF) {
+            code.u1(opcode).u1(reg);
+        } else {
+            code.u1(WIDE).u1(opcode).u2(reg);
+        }
+
+        maxLocals = Math.max(maxLocals, reg + 1);
+    }
+
+    private void setOffset(int branch, int target) {
+        int offset = target - branch;
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new RuntimeException("Branch at " + branch + " is too far from its target at " + target);
+        }
+
+        code.setU2(branch + 1, offset);
+    }
+
+    private void push(int slots) {
+        if (!reachable) {
+            return;
+        }
+
+        stack += slots;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void pop(int slots) {
+        if (!reachable) {
+            return;
+        }
+
+        stack -= slots;
+        if (stack < 0) {
+            throw new RuntimeException("Operand stack underflow at offset " + code.size());
+        }
+    }
+
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            slots += slots(c);
+
+            // Skip array dimensions and class names
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            i++;
+        }
+
+        return slots;
+    }
+
+    private static int slots(char descriptorStart) {
+        return switch (descriptorStart) {
+            case 'V' -> 0;
+            case 'J', 'D' -> 2;
+            default -> 1;
+        };
+    }
+
+    private static class Label {
+        private int offset = -1;
+        private int stack = -1;
+        private final List<Integer> branches = new ArrayList<>();
+    }
+}
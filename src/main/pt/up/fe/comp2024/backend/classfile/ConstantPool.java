@@ -0,0 +1,152 @@
+package pt.up.fe.comp2024.backend.classfile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constant pool of a class file. Each constant is added once, asking for it again returns the index of the first
+ * entry.
+ */
+public class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    // The count of a class file is an u2, and index 0 is never used
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private final ByteVector entries = new ByteVector(256);
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    private int count = 1;
+
+    public int utf8(String value) {
+        var key = "utf8 " + value;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        var bytes = modifiedUtf8(value);
+        if (bytes.size() > 0xFFFF) {
+            throw new RuntimeException("Constant is too long for a class file: " + value.substring(0, 32) + "...");
+        }
+
+        entries.u1(UTF8).u2(bytes.size()).bytes(bytes);
+        return add(key);
+    }
+
+    public int integer(int value) {
+        var key = "int " + value;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        entries.u1(INTEGER).u4(value);
+        return add(key);
+    }
+
+    /**
+     * @param internalName the name of the class with '/' as separator, or the descriptor of an array type
+     */
+    public int classRef(String internalName) {
+        return ref(CLASS, "class " + internalName, utf8(internalName));
+    }
+
+    public int string(String value) {
+        return ref(STRING, "string " + value, utf8(value));
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    /**
+     * @return the number of entries, plus one, as written to the class file
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public void writeTo(ByteVector out) {
+        out.u2(count).bytes(entries);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        var key = tag + " " + owner + "." + name + ":" + descriptor;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        int ownerIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+
+        entries.u1(tag).u2(ownerIndex).u2(nameAndTypeIndex);
+        return add(key);
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        var key = "nameAndType " + name + ":" + descriptor;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+
+        entries.u1(NAME_AND_TYPE).u2(nameIndex).u2(descriptorIndex);
+        return add(key);
+    }
+
+    private int ref(int tag, String key, int utf8Index) {
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        entries.u1(tag).u2(utf8Index);
+        return add(key);
+    }
+
+    private int add(String key) {
+        if (count >= MAX_ENTRIES) {
+            throw new RuntimeException("Too many constants for a class file, the limit is " + (MAX_ENTRIES - 1));
+        }
+
+        int index = count++;
+        indexes.put(key, index);
+        return index;
+    }
+
+    /**
+     * Class files encode strings in the modified UTF-8 of {@link java.io.DataOutput#writeUTF(String)}.
+     */
+    private static ByteVector modifiedUtf8(String value) {
+        var bytes = new ByteVector(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != 0 && c < 0x80) {
+                bytes.u1(c);
+            } else if (c < 0x800) {
+                bytes.u1(0xC0 | (c >> 6)).u1(0x80 | (c & 0x3F));
+            } else {
+                bytes.u1(0xE0 | (c >> 12)).u1(0x80 | ((c >> 6) & 0x3F)).u1(0x80 | (c & 0x3F));
+            }
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,149 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.Formatter;
+import pt.up.fe.comp2024.utils.Timings;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles several source files in the same JVM.
+ * <p>
+ * Files are independent from each other, so they are distributed over a fixed pool of worker threads. Each worker
+ * keeps its own {@link JmmCompiler}, which is reused for all the files that worker compiles. Only the first file
+ * declaring a class writes its outputs, the files after it that declare the same class fail.
+ */
+public class BatchCompiler {
+
+    private final int numWorkers;
+    private final PrintStream out;
+
+    public BatchCompiler(int numWorkers, PrintStream out) {
+        this.numWorkers = Math.max(1, numWorkers);
+        this.out = out;
+    }
+
+    public BatchCompiler(int numWorkers) {
+        this(numWorkers, System.out);
+    }
+
+    public BatchCompiler() {
+        this(1);
+    }
+
+    /**
+     * Compiles every file, carrying on after failures.
+     *
+     * @param inputFiles the files to compile
+     * @param config     the compiler options shared by all files
+     * @return one result per input file, in the same order
+     */
+    public List<CompilationResult> compile(List<File> inputFiles, Map<String, String> config) {
+        var results = compileAll(inputFiles, config);
+
+        var failed = results.stream().filter(result -> !result.isSuccess()).count();
+        out.println("Compiled " + (results.size() - failed) + " of " + results.size() + " files");
+
+        CompilerConfig.getTimings(config).ifPresent(format -> printTimings(results, format));
+
+        return results;
+    }
+
+    private List<CompilationResult> compileAll(List<File> inputFiles, Map<String, String> config) {
+        var workers = Math.min(numWorkers, inputFiles.size());
+
+        if (workers <= 1) {
+            return compileSequentially(inputFiles, config);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        ThreadLocal<JmmCompiler> compilers = ThreadLocal.withInitial(JmmCompiler::new);
+        var declared = new DeclaredClasses(inputFiles);
+
+        try {
+            var futures = new ArrayList<Future<CompilationResult>>();
+            for (int i = 0; i < inputFiles.size(); i++) {
+                int index = i;
+                futures.add(pool.submit(() -> compile(compilers.get(), inputFiles, index, config, declared)));
+            }
+
+            var results = new ArrayList<CompilationResult>();
+            for (int i = 0; i < futures.size(); i++) {
+                var result = getResult(futures.get(i), inputFiles.get(i));
+                printResult(result);
+                results.add(result);
+            }
+
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<CompilationResult> compileSequentially(List<File> inputFiles, Map<String, String> config) {
+        var compiler = new JmmCompiler();
+        var declared = new DeclaredClasses(inputFiles);
+        var results = new ArrayList<CompilationResult>();
+
+        for (int i = 0; i < inputFiles.size(); i++) {
+            var result = compile(compiler, inputFiles, i, config, declared);
+            printResult(result);
+            results.add(result);
+        }
+
+        return results;
+    }
+
+    private static CompilationResult compile(JmmCompiler compiler, List<File> inputFiles, int index,
+                                             Map<String, String> config, DeclaredClasses declared) {
+        try {
+            return compiler.compile(inputFiles.get(index), config, className -> declared.declare(index, className));
+        } finally {
+            declared.finish(index);
+        }
+    }
+
+    private CompilationResult getResult(Future<CompilationResult> future, File inputFile) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while compiling '" + inputFile + "'", e);
+        } catch (ExecutionException e) {
+            // JmmCompiler already turns exceptions into reports, this is only reached on errors such as a stack overflow
+            var message = "Error while compiling '" + inputFile + "': " + e.getCause();
+            return CompilationResult.failed(inputFile, List.of(Report.newError(Stage.OTHER, -1, -1, message, null)));
+        }
+    }
+
+    private void printTimings(List<CompilationResult> results, String format) {
+        var total = new Timings();
+        results.forEach(result -> result.getTimings().ifPresent(total::add));
+
+        out.print(total.format(format));
+    }
+
+    private void printResult(CompilationResult result) {
+        if (result.isSuccess()) {
+            var cached = result.isCached() ? " (cached)" : "";
+            out.println("Compiled " + result.getInputFile() + " -> " + result.getClassFile().orElseThrow() + cached);
+            return;
+        }
+
+        out.println(Formatter.errorMsg("Failed to compile " + result.getInputFile()));
+        result.getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .forEach(report -> out.println("   " + report));
+    }
+}
@@ -0,0 +1,77 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.comp2024.utils.Timings;
+
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of compiling a single source file with {@link JmmCompiler}.
+ */
+public class CompilationResult {
+
+    private final File inputFile;
+    private final List<Report> reports;
+    private final String className;
+    private final File classFile;
+    private final boolean cached;
+    private Timings timings;
+
+    public CompilationResult(File inputFile, List<Report> reports, String className, File classFile, boolean cached) {
+        this.inputFile = inputFile;
+        this.reports = reports;
+        this.className = className;
+        this.classFile = classFile;
+        this.cached = cached;
+        this.timings = null;
+    }
+
+    public CompilationResult(File inputFile, List<Report> reports, String className, File classFile) {
+        this(inputFile, reports, className, classFile, false);
+    }
+
+    public static CompilationResult failed(File inputFile, List<Report> reports) {
+        return new CompilationResult(inputFile, reports, null, null);
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public Optional<String> getClassName() {
+        return Optional.ofNullable(className);
+    }
+
+    public Optional<File> getClassFile() {
+        return Optional.ofNullable(classFile);
+    }
+
+    /**
+     * @return true if the outputs were taken from a {@link CompileCache} instead of being compiled
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return the costs of each phase, if they were recorded
+     */
+    public Optional<Timings> getTimings() {
+        return Optional.ofNullable(timings);
+    }
+
+    public void setTimings(Timings timings) {
+        this.timings = timings;
+    }
+
+    public boolean isSuccess() {
+        return classFile != null && !ReportUtils.anyError(reports);
+    }
+}
@@ -0,0 +1,473 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of compiler outputs, addressed by the hash of the source code, of the options that change the
+ * generated code and of the compiler's own classes, so that a cache folder kept across builds of the compiler never
+ * gives the outputs of another build.
+ * <p>
+ * Besides the final outputs (OLLIR code, Jasmin code and class file), the results of the intermediate stages are
+ * cached on their own: the analysed code depends only on the source, the OLLIR code on the analysed code and on
+ * '-o', and the final outputs on the OLLIR code, '-r', '-a' and '-b'. The Jasmin code is empty for classes generated
+ * without Jasmin. Each key is derived from the key of the previous stage,
+ * so changing an option only re-runs the stages after the first one it affects.
+ * <p>
+ * Every entry is a folder named after its key, holding the files of one cached result. Entries are written to a temporary folder and renamed into place, so concurrent compilers (threads of
+ * a batch, or separate processes sharing the folder) never see half-written entries. The total size of the cache is
+ * bounded, the least recently used entries are evicted first. The folder is only measured when the cache is opened,
+ * the entries stored or used afterwards are tracked as they are.
+ */
+public class CompileCache {
+
+    // Other builds of the compiler may generate other code, or lay out the entries differently
+    private static final String BUILD_ID = computeBuildId();
+
+    private static final String OLLIR_FILE = "code.ollir";
+    private static final String JASMIN_FILE = "code.j";
+    private static final String STAGE_FILE = "stage.bin";
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    private static final Map<Path, CompileCache> CACHES = new ConcurrentHashMap<>();
+
+    private final Path dir;
+
+    // The size limit, the entries known to this cache and their total size, guarded by this
+    private long maxBytes;
+    private final Map<Path, CachedDir> entries = new HashMap<>();
+    private long totalBytes;
+
+    /**
+     * Opens the cache in the given folder, measuring the entries already in it.
+     */
+    public CompileCache(File dir, long maxBytes) {
+        this.dir = dir.toPath().toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+
+        scan();
+    }
+
+    /**
+     * Returns the cache stored in the given folder, shared by every compiler of this JVM so that eviction of the
+     * same folder is not run concurrently. A daemon may be asked for the same folder with another limit, which then
+     * replaces the previous one.
+     *
+     * @param dir      the cache folder
+     * @param maxBytes the most bytes the folder holds
+     * @return the cache for that folder
+     */
+    public static CompileCache get(File dir, long maxBytes) {
+        var cache = CACHES.computeIfAbsent(dir.toPath().toAbsolutePath().normalize(),
+                path -> new CompileCache(path.toFile(), maxBytes));
+        cache.setMaxBytes(maxBytes);
+        return cache;
+    }
+
+    private synchronized void setMaxBytes(long maxBytes) {
+        if (this.maxBytes != maxBytes) {
+            this.maxBytes = maxBytes;
+            evict();
+        }
+    }
+
+    public File getDir() {
+        return dir.toFile();
+    }
+
+    /**
+     * @param code the source code
+     * @return the key of the analysed tree and symbol table of the code, which do not depend on any option
+     */
+    public String getSemanticsKey(String code) {
+        return hash(BUILD_ID, "semantics", code);
+    }
+
+    /**
+     * @param semanticsKey the key of the analysed code
+     * @param config       the compiler options
+     * @return the key of the OLLIR code generated from the analysed code, after the '-o' optimizations and before
+     * register allocation
+     */
+    public String getOllirKey(String semanticsKey, Map<String, String> config) {
+        return hash(BUILD_ID, "ollir", semanticsKey,
+                CompilerConfig.OPTIMIZE + "=" + CompilerConfig.getOptimize(config));
+    }
+
+    /**
+     * @param ollirKey the key of the OLLIR code
+     * @param config   the compiler options
+     * @return the key of the Jasmin code and class file generated from the OLLIR code, which also depends on '-r', on
+     * the register allocator and on the backend
+     */
+    public String getClassKey(String ollirKey, Map<String, String> config) {
+        return hash(BUILD_ID, "class", ollirKey,
+                CompilerConfig.REGISTER + "=" + CompilerConfig.getRegisterAllocation(config),
+                CompilerConfig.ALLOCATOR + "=" + CompilerConfig.getAllocator(config),
+                CompilerConfig.BACKEND + "=" + CompilerConfig.getBackend(config));
+    }
+
+    /**
+     * @param code   the source code
+     * @param config the compiler options
+     * @return the key of the outputs of compiling the code with the given options
+     */
+    public String getKey(String code, Map<String, String> config) {
+        return getClassKey(getOllirKey(getSemanticsKey(code), config), config);
+    }
+
+    /**
+     * Looks up a previous compilation, marking it as recently used.
+     *
+     * @param key a key returned by {@link #getKey(String, Map)} or {@link #getClassKey(String, Map)}
+     * @return the cached outputs, or empty if there is no entry for the key
+     */
+    public Optional<Entry> lookup(String key) {
+        var entryDir = dir.resolve(key);
+
+        try {
+            var ollirCode = Files.readString(entryDir.resolve(OLLIR_FILE), StandardCharsets.UTF_8);
+            var jasminCode = Files.readString(entryDir.resolve(JASMIN_FILE), StandardCharsets.UTF_8);
+            var classFile = findClassFile(entryDir);
+            var classBytes = Files.readAllBytes(classFile);
+
+            markUsed(entryDir);
+
+            var fileName = classFile.getFileName().toString();
+            var className = fileName.substring(0, fileName.length() - CLASS_EXTENSION.length());
+            return Optional.of(new Entry(className, ollirCode, jasminCode, classBytes));
+        } catch (IOException e) {
+            // Missing entry, or evicted while being read
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Looks up the result of an intermediate stage, marking it as recently used.
+     *
+     * @param key a key returned by {@link #getSemanticsKey(String)} or {@link #getOllirKey(String, Map)}
+     * @return the stored bytes, or empty if there is no entry for the key
+     */
+    public Optional<byte[]> lookupStage(String key) {
+        var entryDir = dir.resolve(key);
+
+        try {
+            var bytes = Files.readAllBytes(entryDir.resolve(STAGE_FILE));
+            markUsed(entryDir);
+            return Optional.of(bytes);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the outputs of a compilation and evicts old entries if the cache grew past its size limit. Failing to
+     * write to the cache is not an error for the compilation, so it is silently ignored.
+     *
+     * @param key   a key returned by {@link #getKey(String, Map)}
+     * @param entry the outputs to store
+     */
+    public void store(String key, Entry entry) {
+        var files = new LinkedHashMap<String, byte[]>();
+        files.put(OLLIR_FILE, entry.getOllirCode().getBytes(StandardCharsets.UTF_8));
+        files.put(JASMIN_FILE, entry.getJasminCode().getBytes(StandardCharsets.UTF_8));
+        files.put(entry.getClassName() + CLASS_EXTENSION, entry.getClassBytes());
+
+        storeFiles(key, files);
+    }
+
+    /**
+     * Stores the result of an intermediate stage, see {@link #store(String, Entry)}.
+     *
+     * @param key   a key returned by {@link #getSemanticsKey(String)} or {@link #getOllirKey(String, Map)}
+     * @param bytes the serialized result
+     */
+    public void storeStage(String key, byte[] bytes) {
+        storeFiles(key, Map.of(STAGE_FILE, bytes));
+    }
+
+    private void storeFiles(String key, Map<String, byte[]> files) {
+        var entryDir = dir.resolve(key);
+        if (Files.isDirectory(entryDir)) {
+            return;
+        }
+
+        var tempDir = dir.resolve(TEMP_PREFIX + UUID.randomUUID());
+        try {
+            Files.createDirectories(tempDir);
+            for (var file : files.entrySet()) {
+                Files.write(tempDir.resolve(file.getKey()), file.getValue());
+            }
+
+            if (moveIntoPlace(tempDir, entryDir)) {
+                long bytes = 0;
+                for (var contents : files.values()) {
+                    bytes += contents.length;
+                }
+                add(new CachedDir(entryDir, System.currentTimeMillis(), bytes));
+            }
+        } catch (IOException e) {
+            // Leave the cache as it was
+        } finally {
+            deleteRecursively(tempDir);
+        }
+
+        evict();
+    }
+
+    /**
+     * Drops an entry whose contents cannot be used, so that the next compilation stores it again.
+     *
+     * @param key a key given to {@link #store(String, Entry)} or {@link #storeStage(String, byte[])}
+     */
+    public synchronized void remove(String key) {
+        var entryDir = dir.resolve(key);
+        deleteRecursively(entryDir);
+
+        var entry = entries.remove(entryDir);
+        if (entry != null) {
+            totalBytes -= entry.bytes;
+        }
+    }
+
+    /**
+     * Measures the entries in the cache folder, and evicts old ones if it is past its size limit.
+     */
+    private synchronized void scan() {
+        try (Stream<Path> paths = Files.list(dir)) {
+            for (var path : (Iterable<Path>) paths::iterator) {
+                if (path.getFileName().toString().startsWith(TEMP_PREFIX)) {
+                    continue;
+                }
+
+                add(new CachedDir(path, Files.getLastModifiedTime(path).toMillis(), sizeOf(path)));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // No folder yet, or another compiler is changing it; the entries found so far are kept
+        }
+
+        evict();
+    }
+
+    /**
+     * Removes the least recently used entries until the cache is within its size limit.
+     */
+    public synchronized void evict() {
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+
+        var byLastUse = new ArrayList<>(entries.values());
+        byLastUse.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+
+        for (var entry : byLastUse) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+
+            deleteRecursively(entry.path);
+            entries.remove(entry.path);
+            totalBytes -= entry.bytes;
+        }
+    }
+
+    private void markUsed(Path entryDir) throws IOException {
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(entryDir, FileTime.fromMillis(now));
+
+        synchronized (this) {
+            var entry = entries.get(entryDir);
+            if (entry != null) {
+                entry.lastUsed = now;
+                return;
+            }
+        }
+
+        // Stored by another process after this cache was opened
+        add(new CachedDir(entryDir, now, sizeOf(entryDir)));
+    }
+
+    private synchronized void add(CachedDir entry) {
+        var previous = entries.put(entry.path, entry);
+        totalBytes += entry.bytes - (previous == null ? 0 : previous.bytes);
+    }
+
+    /**
+     * @return true if the entry was moved into place, false if another compiler stored it in the meantime
+     */
+    private static boolean moveIntoPlace(Path tempDir, Path entryDir) throws IOException {
+        try {
+            Files.move(tempDir, entryDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Both entries have the same contents
+            return false;
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempDir, entryDir);
+        } catch (IOException e) {
+            // Some platforms report an existing target directory as a generic error
+            if (!Files.isDirectory(entryDir)) {
+                throw e;
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    private static Path findClassFile(Path entryDir) throws IOException {
+        try (Stream<Path> files = Files.list(entryDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(CLASS_EXTENSION))
+                    .findFirst()
+                    .orElseThrow(() -> new IOException("No class file in cache entry " + entryDir));
+        }
+    }
+
+    private static long sizeOf(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            long bytes = 0;
+            for (var file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    bytes += Files.size(file);
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private static void deleteRecursively(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException | UncheckedIOException e) {
+            // Already removed by another compiler
+        }
+    }
+
+    /**
+     * @return a digest of the classes of the compiler, read from its jar or from its classes folder, or a random id,
+     * which shares no entries with other runs, if they cannot be read
+     */
+    private static String computeBuildId() {
+        var codeSource = CompileCache.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            return UUID.randomUUID().toString();
+        }
+
+        try {
+            var location = Path.of(codeSource.getLocation().toURI());
+            var digest = newDigest();
+
+            if (Files.isDirectory(location)) {
+                try (Stream<Path> files = Files.walk(location)) {
+                    for (var file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                        digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                        digest.update(Files.readAllBytes(file));
+                    }
+                }
+            } else {
+                digest.update(Files.readAllBytes(location));
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | UncheckedIOException | URISyntaxException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hash(String... values) {
+        var digest = newDigest();
+
+        for (var value : values) {
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            // Prefix each value with its length, so that different splits of the same text give different keys
+            digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(bytes);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static class CachedDir {
+
+        private final Path path;
+        private long lastUsed;
+        private final long bytes;
+
+        private CachedDir(Path path, long lastUsed, long bytes) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Outputs of one compilation.
+     */
+    public static class Entry {
+
+        private final String className;
+        private final String ollirCode;
+        private final String jasminCode;
+        private final byte[] classBytes;
+
+        public Entry(String className, String ollirCode, String jasminCode, byte[] classBytes) {
+            this.className = className;
+            this.ollirCode = ollirCode;
+            this.jasminCode = jasminCode;
+            this.classBytes = classBytes;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getOllirCode() {
+            return ollirCode;
+        }
+
+        public String getJasminCode() {
+            return jasminCode;
+        }
+
+        public byte[] getClassBytes() {
+            return classBytes;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.Formatter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived compiler process that serves compile requests on a loopback socket, so that the parser and the
+ * backend stay loaded and JIT-compiled between compilations.
+ * <p>
+ * The protocol is line based (UTF-8). A request is the token of the daemon, the command ('compile' or 'stop'), the
+ * working directory of the client, one compiler argument per line and an empty line. The server answers with the
+ * compiler output followed by a last line 'exit CODE', and closes the connection. Requests without the token are
+ * refused, so that other users of the machine cannot compile, read or write files as the user running the daemon.
+ * <p>
+ * A compile request that the launcher would not hand to the batch compiler, such as a single input whose tree and
+ * OLLIR code are printed, or one with arguments it cannot parse, is answered with the single line 'local' instead:
+ * the client runs it in a JVM of its own, so that a running daemon does not change what a command does.
+ * <p>
+ * While running, the listening port and the token are written to {@link #getDaemonFile()}, which is where the jmm
+ * script looks for them. Its folder is in the home of the user and only readable by them.
+ */
+public class CompileServer {
+
+    public static final String COMPILE = "compile";
+    public static final String STOP = "stop";
+    public static final String EXIT_PREFIX = "exit ";
+    public static final String LOCAL = "local";
+
+    private static final String DAEMON_DIR = ".jmm";
+    private static final String DAEMON_FILE = "daemon";
+
+    private final int port;
+    private final int numWorkers;
+    private final ExecutorService connections;
+    private final String token;
+
+    private ServerSocket serverSocket;
+
+    public CompileServer(int port, int numWorkers) {
+        this.port = port;
+        this.numWorkers = numWorkers;
+        this.connections = Executors.newCachedThreadPool();
+        this.token = newToken();
+        this.serverSocket = null;
+    }
+
+    /**
+     * @return the file with the port and the token of the running daemon, one per line
+     */
+    public static File getDaemonFile() {
+        return new File(new File(System.getProperty("user.home"), DAEMON_DIR), DAEMON_FILE);
+    }
+
+    /**
+     * Accepts requests until a 'stop' command is received.
+     */
+    public void run() {
+        var daemonFile = getDaemonFile();
+
+        try (var socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            serverSocket = socket;
+            writeDaemonFile(daemonFile.toPath(), socket.getLocalPort() + "\n" + token + "\n");
+            System.out.println("Compile daemon listening on " + socket.getLocalSocketAddress());
+
+            while (!socket.isClosed()) {
+                try {
+                    var client = socket.accept();
+                    connections.submit(() -> handle(client));
+                } catch (SocketException e) {
+                    // Closed by a 'stop' request
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not run compile daemon on port " + port, e);
+        } finally {
+            daemonFile.delete();
+            connections.shutdown();
+        }
+    }
+
+    private static String newToken() {
+        var bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * Writes the file in a folder only the user can use, readable only by the user, and moves it into place at once so
+     * that clients never read half of it.
+     */
+    private static void writeDaemonFile(Path file, String contents) throws IOException {
+        var dir = file.getParent();
+
+        Path temp;
+        if (dir.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            var ownerOnly = PosixFilePermissions.fromString("rwx------");
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(ownerOnly));
+            // Also for a folder that was already there, which fails if it belongs to another user
+            Files.setPosixFilePermissions(dir, ownerOnly);
+
+            temp = Files.createTempFile(dir, DAEMON_FILE, ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, DAEMON_FILE, ".tmp");
+        }
+
+        try {
+            Files.writeString(temp, contents, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void handle(Socket client) {
+        try (client;
+             var in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             var out = new PrintStream(client.getOutputStream(), true, StandardCharsets.UTF_8)) {
+
+            var clientToken = in.readLine();
+            if (clientToken == null || !MessageDigest.isEqual(clientToken.getBytes(StandardCharsets.UTF_8),
+                    token.getBytes(StandardCharsets.UTF_8))) {
+                out.println(Formatter.errorMsg("Wrong daemon token"));
+                out.println(EXIT_PREFIX + 2);
+                return;
+            }
+
+            var command = in.readLine();
+            var workingDir = in.readLine();
+
+            List<String> args = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                args.add(line);
+            }
+
+            int exitCode;
+            if (COMPILE.equals(command) && workingDir != null) {
+                var config = parseArgs(args, new File(workingDir));
+                if (config == null || CompilerConfig.printsStages(config)) {
+                    out.println(LOCAL);
+                    return;
+                }
+
+                exitCode = compile(config, out);
+            } else if (STOP.equals(command)) {
+                out.println("Compile daemon stopped");
+                exitCode = 0;
+                serverSocket.close();
+            } else {
+                out.println(Formatter.errorMsg("Unknown daemon command '" + command + "'"));
+                exitCode = 2;
+            }
+
+            out.println(EXIT_PREFIX + exitCode);
+        } catch (IOException e) {
+            System.out.println(Formatter.warnMsg("Lost connection with client: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * @return the compiler options, or null if the arguments are not valid, which the launcher reports on its own
+     */
+    private static Map<String, String> parseArgs(List<String> args, File workingDir) {
+        try {
+            return CompilerConfig.parseArgs(args.toArray(String[]::new), workingDir);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private int compile(Map<String, String> config, PrintStream out) {
+        try {
+            var jobs = Math.min(numWorkers, CompilerConfig.getJobs(config));
+            var results = new BatchCompiler(jobs, out).compile(CompilerConfig.getInputFiles(config), config);
+
+            return results.stream().allMatch(CompilationResult::isSuccess) ? 0 : 1;
+        } catch (RuntimeException e) {
+            out.println(Formatter.errorMsg(e.getMessage()));
+            return 1;
+        }
+    }
+}
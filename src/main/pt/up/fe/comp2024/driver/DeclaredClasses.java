@@ -0,0 +1,64 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The classes declared by the files of a batch. Files that declare a class already declared by a file before them in
+ * the batch are errors, so their outputs never replace those of the first file, whatever order the workers compile
+ * them in.
+ * <p>
+ * A file waits for the files before it to know their classes. Workers take files in order, so those files are
+ * already being compiled by other workers.
+ */
+class DeclaredClasses {
+
+    private final List<File> inputFiles;
+
+    // The class of each file, or null if it failed before its class was known
+    private final List<CompletableFuture<String>> classNames;
+
+    DeclaredClasses(List<File> inputFiles) {
+        this.inputFiles = inputFiles;
+        this.classNames = new ArrayList<>();
+
+        for (int i = 0; i < inputFiles.size(); i++) {
+            classNames.add(new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * Records the class declared by a file, once the files before it have recorded theirs.
+     *
+     * @param index     the position of the file in the batch
+     * @param className the class the file declares
+     * @return an error if a file before it declares the same class
+     */
+    Optional<Report> declare(int index, String className) {
+        classNames.get(index).complete(className);
+
+        for (int i = 0; i < index; i++) {
+            if (className.equals(classNames.get(i).join())) {
+                var message = "Class '" + className + "' is already declared by '" + inputFiles.get(i) + "'";
+                return Optional.of(Report.newError(Stage.SEMANTIC, -1, -1, message, null));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Lets the files after this one go on, if it finished without declaring a class.
+     *
+     * @param index the position of the file in the batch
+     */
+    void finish(int index) {
+        classNames.get(index).complete(null);
+    }
+}
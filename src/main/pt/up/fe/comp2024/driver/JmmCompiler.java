@@ -0,0 +1,282 @@
+package pt.up.fe.comp2024.driver;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminUtils;
+import pt.up.fe.comp.jmm.ollir.OllirUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.OllirPrinter;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.comp2024.utils.Timings;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Runs every compilation stage for a source file and writes the resulting .j and .class files, or only the .class
+ * file when it is generated directly ('-b=class').
+ * <p>
+ * The stage implementations are created once and reused for every file given to {@link #compile(File, Map)}, so
+ * compiling a batch of files only pays for class loading and parser warm-up once.
+ * <p>
+ * Instances are not thread-safe, use one per thread when compiling in parallel.
+ */
+public class JmmCompiler {
+
+    // The Jasmin assembler keeps some of its state in static fields, so only one class can be assembled at a time.
+    // Writing the .j file under the same lock also keeps files of equally named classes from being interleaved.
+    private static final Object ASSEMBLER_LOCK = new Object();
+
+    private final JmmParserImpl parser;
+    private final JmmAnalysisImpl analysis;
+    private final JmmOptimizationImpl optimization;
+    private final JasminBackendImpl backend;
+
+    public JmmCompiler() {
+        this.parser = new JmmParserImpl();
+        this.analysis = new JmmAnalysisImpl();
+        this.optimization = new JmmOptimizationImpl();
+        this.backend = new JasminBackendImpl();
+    }
+
+    /**
+     * Compiles a single file. Errors are returned as reports instead of being thrown, so that a batch can carry on
+     * with the remaining files.
+     *
+     * @param inputFile the .jmm file to compile
+     * @param config    the compiler options, the output folder is taken from here
+     * @return the reports of every stage and, on success, the generated class file
+     */
+    public CompilationResult compile(File inputFile, Map<String, String> config) {
+        return compile(inputFile, config, className -> Optional.empty());
+    }
+
+    /**
+     * Compiles a single file of a batch, see {@link #compile(File, Map)}.
+     *
+     * @param declare given the class of the file once it is known, returns an error if the outputs of the file must
+     *                not be written because another file of the batch declares the same class
+     */
+    CompilationResult compile(File inputFile, Map<String, String> config,
+                              Function<String, Optional<Report>> declare) {
+        if (CompilerConfig.getTimings(config).isEmpty()) {
+            return compileFile(inputFile, config, declare);
+        }
+
+        var timings = Timings.start();
+        try {
+            var result = compileFile(inputFile, config, declare);
+            result.setTimings(timings);
+            return result;
+        } finally {
+            Timings.stop();
+        }
+    }
+
+    private CompilationResult compileFile(File inputFile, Map<String, String> config,
+                                          Function<String, Optional<Report>> declare) {
+        var fileConfig = CompilerConfig.forInputFile(config, inputFile);
+
+        try {
+            String code = SpecsIo.read(inputFile);
+            var outputDir = CompilerConfig.getOutputDir(config);
+
+            // Unchanged sources are served from the cache, without parsing them again
+            var cache = CompilerConfig.getCacheDir(config)
+                    .map(dir -> CompileCache.get(dir, CompilerConfig.getCacheSize(config)))
+                    .orElse(null);
+            var semanticsKey = cache == null ? null : cache.getSemanticsKey(code);
+            var ollirKey = cache == null ? null : cache.getOllirKey(semanticsKey, fileConfig);
+            var classKey = cache == null ? null : cache.getClassKey(ollirKey, fileConfig);
+            if (cache != null) {
+                var cached = cache.lookup(classKey);
+                if (cached.isPresent()) {
+                    var duplicate = declare.apply(cached.get().getClassName());
+                    if (duplicate.isPresent()) {
+                        return CompilationResult.failed(inputFile, List.of(duplicate.get()));
+                    }
+
+                    return fromCache(inputFile, cached.get(), outputDir, CompilerConfig.getWriteOllir(config));
+                }
+            }
+
+            // Parsing and Semantic Analysis stages, which do not depend on the options
+            var cachedSemantics = cache == null ? Optional.<byte[]>empty() : cache.lookupStage(semanticsKey);
+            JmmSemanticsResult semanticsResult;
+            if (cachedSemantics.isPresent()) {
+                semanticsResult = StageSerializer.deserialize(cachedSemantics.get(), fileConfig);
+            } else {
+                var parserResult = parser.parse(code, fileConfig);
+                if (ReportUtils.anyError(parserResult.getReports())) {
+                    return CompilationResult.failed(inputFile, parserResult.getReports());
+                }
+
+                semanticsResult = analysis.semanticAnalysis(parserResult);
+                if (ReportUtils.anyError(semanticsResult.getReports())) {
+                    return CompilationResult.failed(inputFile, semanticsResult.getReports());
+                }
+
+                if (cache != null) {
+                    cache.storeStage(semanticsKey, StageSerializer.serialize(semanticsResult));
+                }
+            }
+
+            var duplicate = declare.apply(semanticsResult.getSymbolTable().getClassName());
+            if (duplicate.isPresent()) {
+                return CompilationResult.failed(inputFile, List.of(duplicate.get()));
+            }
+
+            // Optimization stage. The OLLIR code is cached after the '-o' optimizations, so only register allocation
+            // is left when it is found. The OLLIR class is given to the backend as it is, its code is only printed for
+            // the cache or when asked for.
+            var ollirClass = cache == null ? null : parseCachedOllir(cache, ollirKey);
+            if (ollirClass == null) {
+                semanticsResult = optimization.optimize(semanticsResult);
+                ollirClass = optimization.toOllirClass(semanticsResult);
+                optimization.optimizeCode(ollirClass, fileConfig);
+
+                if (cache != null) {
+                    cache.storeStage(ollirKey, OllirPrinter.print(ollirClass).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            var optimizationReports = optimization.allocateRegisters(ollirClass, fileConfig);
+            if (ReportUtils.anyError(optimizationReports)) {
+                return CompilationResult.failed(inputFile, optimizationReports);
+            }
+
+            String ollirCode = null;
+            if (cache != null || CompilerConfig.getWriteOllir(config)) {
+                ollirCode = OllirPrinter.print(ollirClass);
+            }
+
+            // Code generation stage, through Jasmin code or straight to a class file
+            if (CompilerConfig.getBackend(config).equals(CompilerConfig.CLASS_BACKEND)) {
+                return generateClassFile(inputFile, ollirClass, semanticsResult, ollirCode, fileConfig, cache,
+                        classKey);
+            }
+
+            var jasminResult = backend.toJasmin(ollirClass, fileConfig);
+            List<Report> reports = new ArrayList<>(semanticsResult.getReports());
+            reports.addAll(jasminResult.getReports());
+            if (ReportUtils.anyError(reports)) {
+                return CompilationResult.failed(inputFile, reports);
+            }
+
+            if (CompilerConfig.getWriteOllir(config)) {
+                SpecsIo.write(new File(outputDir, jasminResult.getClassName() + ".ollir"), ollirCode);
+            }
+
+            var jasminFile = new File(outputDir, jasminResult.getClassName() + ".j");
+            File classFile;
+            synchronized (ASSEMBLER_LOCK) {
+                SpecsIo.write(jasminFile, jasminResult.getJasminCode());
+                classFile = Timings.measure("assemble", () -> JasminUtils.assemble(jasminFile, outputDir));
+            }
+
+            if (cache != null) {
+                var entry = new CompileCache.Entry(jasminResult.getClassName(), ollirCode,
+                        jasminResult.getJasminCode(), SpecsIo.readAsBytes(classFile));
+                cache.store(classKey, entry);
+            }
+
+            return new CompilationResult(inputFile, reports, jasminResult.getClassName(), classFile);
+        } catch (RuntimeException e) {
+            List<Report> reports = new ArrayList<>();
+            reports.add(Report.newError(Stage.OTHER, -1, -1, "Exception while compiling '" + inputFile + "'", e));
+            return CompilationResult.failed(inputFile, reports);
+        }
+    }
+
+    /**
+     * Writes the class file generated directly from the OLLIR class, without Jasmin code or the assembler.
+     */
+    private CompilationResult generateClassFile(File inputFile, ClassUnit ollirClass,
+                                                JmmSemanticsResult semanticsResult, String ollirCode,
+                                                Map<String, String> config, CompileCache cache, String classKey) {
+        var outputDir = CompilerConfig.getOutputDir(config);
+
+        var classFileResult = backend.toClassFile(ollirClass, config);
+        List<Report> reports = new ArrayList<>(semanticsResult.getReports());
+        reports.addAll(classFileResult.getReports());
+        if (ReportUtils.anyError(reports)) {
+            return CompilationResult.failed(inputFile, reports);
+        }
+
+        if (CompilerConfig.getWriteOllir(config)) {
+            SpecsIo.write(new File(outputDir, classFileResult.getClassName() + ".ollir"), ollirCode);
+        }
+
+        // Classes with the same name are written one at a time, as in the Jasmin backend
+        File classFile;
+        synchronized (ASSEMBLER_LOCK) {
+            classFile = classFileResult.write(outputDir);
+        }
+
+        if (cache != null) {
+            var entry = new CompileCache.Entry(classFileResult.getClassName(), ollirCode, "",
+                    classFileResult.getBytes());
+            cache.store(classKey, entry);
+        }
+
+        return new CompilationResult(inputFile, reports, classFileResult.getClassName(), classFile);
+    }
+
+    /**
+     * @return the class of the cached OLLIR code, or null if there is none. Code that cannot be parsed, such as code
+     * cached by a compiler that printed instructions its parser does not read, is dropped from the cache, so that it
+     * is compiled and stored again.
+     */
+    private static ClassUnit parseCachedOllir(CompileCache cache, String ollirKey) {
+        var cachedOllir = cache.lookupStage(ollirKey);
+        if (cachedOllir.isEmpty()) {
+            return null;
+        }
+
+        var ollirCode = new String(cachedOllir.get(), StandardCharsets.UTF_8);
+        try {
+            return Timings.measure("ollir parsing", () -> OllirUtils.parse(ollirCode));
+        } catch (RuntimeException e) {
+            cache.remove(ollirKey);
+            return null;
+        }
+    }
+
+    private static CompilationResult fromCache(File inputFile, CompileCache.Entry entry, File outputDir,
+                                               boolean writeOllir) {
+        var jasminFile = new File(outputDir, entry.getClassName() + ".j");
+        var classFile = new File(outputDir, entry.getClassName() + ".class");
+
+        if (writeOllir) {
+            SpecsIo.write(new File(outputDir, entry.getClassName() + ".ollir"), entry.getOllirCode());
+        }
+
+        synchronized (ASSEMBLER_LOCK) {
+            // Classes generated without Jasmin have no Jasmin code
+            if (!entry.getJasminCode().isEmpty()) {
+                SpecsIo.write(jasminFile, entry.getJasminCode());
+            }
+            try {
+                Files.write(classFile.toPath(), entry.getClassBytes());
+            } catch (IOException e) {
+                throw new RuntimeException("Could not write class file '" + classFile + "'", e);
+            }
+        }
+
+        return new CompilationResult(inputFile, new ArrayList<>(), entry.getClassName(), classFile, true);
+    }
+}
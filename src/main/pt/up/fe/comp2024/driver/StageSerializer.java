@@ -0,0 +1,340 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.VarargSymbol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of the results of the semantic analysis (the annotated tree, the {@link JmmSymbolTable} and the
+ * reports), used to cache them in a {@link CompileCache}.
+ * <p>
+ * Node kinds, attribute names and most attribute values repeat a lot in a tree, so every string is written once and
+ * afterwards referred to by its index. A serialized tree is several times smaller than its JSON form.
+ * <p>
+ * Exceptions attached to reports are not kept.
+ */
+public class StageSerializer {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte STRING_ATTR = 0;
+    private static final byte BOOLEAN_ATTR = 1;
+    private static final byte INTEGER_ATTR = 2;
+
+    private StageSerializer() {
+    }
+
+    public static byte[] serialize(JmmSemanticsResult semanticsResult) {
+        if (!(semanticsResult.getSymbolTable() instanceof JmmSymbolTable table)) {
+            throw new IllegalArgumentException("Only results with a " + JmmSymbolTable.class.getSimpleName()
+                    + " can be serialized");
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new Writer(new DataOutputStream(bytes))) {
+            out.data.writeInt(FORMAT_VERSION);
+            out.writeNode(semanticsResult.getRootNode());
+            out.writeSymbolTable(table);
+            out.writeReports(semanticsResult.getReports());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not serialize semantic analysis result", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    public static JmmSemanticsResult deserialize(byte[] bytes, Map<String, String> config) {
+        try (var in = new Reader(new DataInputStream(new ByteArrayInputStream(bytes)))) {
+            var version = in.data.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version " + version);
+            }
+
+            var rootNode = in.readNode();
+            var symbolTable = in.readSymbolTable();
+            var reports = in.readReports();
+
+            return new JmmSemanticsResult(rootNode, symbolTable, reports, config);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not deserialize semantic analysis result", e);
+        }
+    }
+
+    private static class Writer implements AutoCloseable {
+
+        private final DataOutputStream data;
+        private final Map<String, Integer> strings;
+
+        private Writer(DataOutputStream data) {
+            this.data = data;
+            this.strings = new HashMap<>();
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                data.writeInt(-1);
+                return;
+            }
+
+            var index = strings.get(value);
+            if (index != null) {
+                data.writeInt(index);
+                return;
+            }
+
+            // First occurrence, written in full and numbered in order
+            strings.put(value, strings.size());
+            data.writeInt(-2);
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        private void writeStrings(List<String> values) throws IOException {
+            data.writeInt(values.size());
+            for (var value : values) {
+                writeString(value);
+            }
+        }
+
+        private void writeNode(JmmNode node) throws IOException {
+            writeString(node.getKind());
+            writeStrings(new ArrayList<>(node.getHierarchy()));
+
+            var attributes = node.getAttributes();
+            data.writeInt(attributes.size());
+            for (var attribute : attributes) {
+                writeString(attribute);
+                writeAttribute(node.getObject(attribute));
+            }
+
+            data.writeInt(node.getNumChildren());
+            for (var child : node.getChildren()) {
+                writeNode(child);
+            }
+        }
+
+        private void writeAttribute(Object value) throws IOException {
+            if (value instanceof Boolean bool) {
+                data.writeByte(BOOLEAN_ATTR);
+                data.writeBoolean(bool);
+            } else if (value instanceof Integer integer) {
+                data.writeByte(INTEGER_ATTR);
+                data.writeInt(integer);
+            } else {
+                data.writeByte(STRING_ATTR);
+                writeString(value == null ? null : value.toString());
+            }
+        }
+
+        private void writeType(Type type) throws IOException {
+            writeString(type == null ? null : type.getName());
+            data.writeBoolean(type != null && type.isArray());
+        }
+
+        private void writeSymbol(Symbol symbol) throws IOException {
+            writeType(symbol.getType());
+            writeString(symbol.getName());
+
+            var vararg = symbol instanceof VarargSymbol varargSymbol ? varargSymbol : null;
+            data.writeBoolean(vararg != null);
+            if (vararg != null) {
+                data.writeBoolean(vararg.isVararg());
+                data.writeBoolean(vararg.isPublic());
+            }
+        }
+
+        private void writeSymbols(List<Symbol> symbols) throws IOException {
+            data.writeInt(symbols.size());
+            for (var symbol : symbols) {
+                writeSymbol(symbol);
+            }
+        }
+
+        private void writeSymbolTable(JmmSymbolTable table) throws IOException {
+            writeStrings(table.getImports());
+            writeString(table.getClassName());
+            writeString(table.getSuper());
+            writeSymbols(table.getFields());
+
+            var methods = table.getMethods();
+            writeStrings(methods);
+            for (var method : methods) {
+                writeType(table.getReturnType(method));
+                writeSymbols(table.getParameters(method));
+                writeSymbols(table.getLocalVariables(method));
+            }
+        }
+
+        private void writeReports(List<Report> reports) throws IOException {
+            data.writeInt(reports.size());
+            for (var report : reports) {
+                data.writeByte(report.getType().ordinal());
+                data.writeByte(report.getStage().ordinal());
+                data.writeInt(report.getLine());
+                data.writeInt(report.getColumn());
+                writeString(report.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+
+    private static class Reader implements AutoCloseable {
+
+        private final DataInputStream data;
+        private final List<String> strings;
+
+        private Reader(DataInputStream data) {
+            this.data = data;
+            this.strings = new ArrayList<>();
+        }
+
+        private String readString() throws IOException {
+            var index = data.readInt();
+
+            if (index == -1) {
+                return null;
+            }
+
+            if (index >= 0) {
+                return strings.get(index);
+            }
+
+            var bytes = new byte[data.readInt()];
+            data.readFully(bytes);
+            var value = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+
+        private List<String> readStrings() throws IOException {
+            var size = data.readInt();
+            var values = new ArrayList<String>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        private JmmNode readNode() throws IOException {
+            var node = new JmmNodeImpl(readString());
+            node.setHierarchy(readStrings());
+
+            var numAttributes = data.readInt();
+            for (int i = 0; i < numAttributes; i++) {
+                var attribute = readString();
+                node.putObject(attribute, readAttribute());
+            }
+
+            var numChildren = data.readInt();
+            for (int i = 0; i < numChildren; i++) {
+                node.add(readNode());
+            }
+
+            return node;
+        }
+
+        private Object readAttribute() throws IOException {
+            var kind = data.readByte();
+
+            return switch (kind) {
+                case BOOLEAN_ATTR -> data.readBoolean();
+                case INTEGER_ATTR -> data.readInt();
+                default -> readString();
+            };
+        }
+
+        private Type readType() throws IOException {
+            var name = readString();
+            var isArray = data.readBoolean();
+            return name == null ? null : new Type(name, isArray);
+        }
+
+        private Symbol readSymbol() throws IOException {
+            var type = readType();
+            var name = readString();
+
+            if (!data.readBoolean()) {
+                return new Symbol(type, name);
+            }
+
+            var isVararg = data.readBoolean();
+            var isPublic = data.readBoolean();
+            return new VarargSymbol(type, name, isVararg, isPublic);
+        }
+
+        private <T extends Symbol> List<T> readSymbols() throws IOException {
+            var size = data.readInt();
+            var symbols = new ArrayList<T>(size);
+            for (int i = 0; i < size; i++) {
+                @SuppressWarnings("unchecked")
+                var symbol = (T) readSymbol();
+                symbols.add(symbol);
+            }
+            return symbols;
+        }
+
+        private JmmSymbolTable readSymbolTable() throws IOException {
+            var imports = readStrings();
+            var className = readString();
+            var superClass = readString();
+            List<VarargSymbol> fields = readSymbols();
+
+            var methods = readStrings();
+            Map<String, Type> returnTypes = new LinkedHashMap<>();
+            Map<String, List<VarargSymbol>> params = new LinkedHashMap<>();
+            Map<String, List<Symbol>> locals = new LinkedHashMap<>();
+            for (var method : methods) {
+                var returnType = readType();
+                if (returnType != null) {
+                    returnTypes.put(method, returnType);
+                }
+                params.put(method, readSymbols());
+                locals.put(method, readSymbols());
+            }
+
+            return new JmmSymbolTable(imports, className, superClass, fields, methods, returnTypes, params, locals);
+        }
+
+        private List<Report> readReports() throws IOException {
+            var size = data.readInt();
+            var reports = new ArrayList<Report>(size);
+            for (int i = 0; i < size; i++) {
+                var type = ReportType.values()[data.readByte()];
+                var stage = Stage.values()[data.readByte()];
+                var line = data.readInt();
+                var column = data.readInt();
+                reports.add(new Report(type, stage, line, column, readString()));
+            }
+            return reports;
+        }
+
+        @Override
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+}
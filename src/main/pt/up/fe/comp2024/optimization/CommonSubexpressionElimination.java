@@ -0,0 +1,271 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.AvailableExpressions;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes each value once, reading it from a variable where it is computed again: operations, array elements, array
+ * lengths and fields.
+ * <p>
+ * Inside each basic block, values are numbered, so that temporaries holding the same value, and operations whose
+ * operands are swapped, are recognized as the same. Across blocks, an expression that is available, computed on every
+ * path with no change to its operands since, is read from a new variable that every computation of it assigns.
+ * Storing to an array forgets the elements read before, and calls forget the elements and the fields.
+ * <p>
+ * The computations left are moved to variables, so copy propagation should run afterwards.
+ */
+public class CommonSubexpressionElimination {
+
+    /**
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit ollirClass) {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            changed |= numberValues(method);
+            changed |= eliminateAvailable(method);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Replaces the values computed again in the same basic block by the variable holding them.
+     *
+     * @return true if the method changed
+     */
+    private boolean numberValues(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        var instructions = method.getInstructions();
+
+        boolean changed = false;
+        ValueNumbers numbers = null;
+        for (int i = 0; i < instructions.size(); i++) {
+            if (numbers == null || startsBlock(cfg, i)) {
+                numbers = new ValueNumbers();
+            }
+
+            var replacement = numbers.visit(instructions.get(i));
+            if (replacement != null) {
+                MethodEdits.replace(method, i, replacement);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private static boolean startsBlock(ControlFlowGraph cfg, int index) {
+        if (index == 0) {
+            return true;
+        }
+
+        var predecessors = cfg.getPredecessors(index);
+        var successors = cfg.getSuccessors(index - 1);
+        return predecessors.length != 1 || predecessors[0] != index - 1
+                || successors.length != 1 || successors[0] != index;
+    }
+
+    /**
+     * The values of the variables in a basic block, numbered so that equal numbers are equal values.
+     */
+    private static class ValueNumbers {
+
+        private final Map<String, Integer> variables = new HashMap<>();
+        private final Map<String, Integer> expressions = new HashMap<>();
+
+        // A variable holding each value, if it still does
+        private final Map<Integer, Operand> holders = new HashMap<>();
+
+        // Changes with each store to an array or a field, and each call, as part of the keys of what they change
+        private int memory;
+
+        private int next;
+
+        /**
+         * @return the instruction to put in the place of the given one, or null to keep it
+         */
+        private Instruction visit(Instruction instruction) {
+            if (!(instruction instanceof AssignInstruction assign)) {
+                if (AvailableExpressions.isCall(instruction) || instruction.getInstType() == InstructionType.PUTFIELD) {
+                    memory++;
+                }
+                return null;
+            }
+
+            var rhs = assign.getRhs();
+            Instruction replacement = null;
+            int value;
+
+            if (rhs instanceof SingleOpInstruction singleOp && !(singleOp.getSingleOperand() instanceof ArrayOperand)) {
+                value = number(singleOp.getSingleOperand());
+            } else {
+                var key = getKey(rhs);
+                if (key == null) {
+                    value = next++;
+                } else if (expressions.containsKey(key)) {
+                    value = expressions.get(key);
+
+                    var holder = holders.get(value);
+                    if (holder != null && holds(holder, value)) {
+                        replacement = new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                                new SingleOpInstruction(MethodEdits.copyOf(holder)));
+                    }
+                } else {
+                    value = next++;
+                    expressions.put(key, value);
+                }
+            }
+
+            if (AvailableExpressions.isCall(assign) || assign.getDest() instanceof ArrayOperand) {
+                memory++;
+            }
+
+            if (assign.getDest() instanceof Operand dest && !(dest instanceof ArrayOperand)) {
+                variables.put(dest.getName(), value);
+
+                var holder = holders.get(value);
+                if (holder == null || !holds(holder, value)) {
+                    holders.put(value, dest);
+                }
+            }
+
+            return replacement;
+        }
+
+        private boolean holds(Operand variable, int value) {
+            var current = variables.get(variable.getName());
+            return current != null && current == value;
+        }
+
+        private int number(Element element) {
+            if (element instanceof LiteralElement literal) {
+                return expressions.computeIfAbsent("#" + literal.getLiteral(), key -> next++);
+            }
+
+            return variables.computeIfAbsent(((Operand) element).getName(), name -> next++);
+        }
+
+        /**
+         * @return a key made of the value numbers of the operands, or null if the instruction is not an operation or a
+         * read
+         */
+        private String getKey(Instruction instruction) {
+            if (instruction instanceof SingleOpInstruction singleOp
+                    && singleOp.getSingleOperand() instanceof ArrayOperand array) {
+                var key = new StringBuilder("load ").append(number(array));
+                array.getIndexOperands().forEach(index -> key.append("[").append(number(index)).append("]"));
+                return key.append(" @").append(memory).toString();
+            }
+
+            if (instruction instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength) {
+                return "arraylength " + number(call.getCaller());
+            }
+
+            if (instruction instanceof GetFieldInstruction getField) {
+                return "getfield " + number(getField.getObject()) + " " + getField.getField().getName() + " @"
+                        + memory;
+            }
+
+            if (instruction instanceof UnaryOpInstruction unaryOp) {
+                return unaryOp.getOperation().getOpType() + " " + number(unaryOp.getOperand());
+            }
+
+            if (instruction instanceof BinaryOpInstruction binaryOp) {
+                var opType = binaryOp.getOperation().getOpType();
+                int left = number(binaryOp.getLeftOperand());
+                int right = number(binaryOp.getRightOperand());
+
+                if (isCommutative(opType) && right < left) {
+                    return opType + " " + right + " " + left;
+                }
+                return opType + " " + left + " " + right;
+            }
+
+            return null;
+        }
+
+        private static boolean isCommutative(OperationType opType) {
+            return switch (opType) {
+                case ADD, MUL, AND, OR, XOR, EQ, NEQ, ANDB, ORB -> true;
+                default -> false;
+            };
+        }
+    }
+
+    /**
+     * Replaces the expressions computed on every path to them by a variable that all their computations assign.
+     *
+     * @return true if the method changed
+     */
+    private boolean eliminateAvailable(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        var available = new AvailableExpressions(cfg);
+        var instructions = method.getInstructions();
+
+        // The computations of each expression, and those whose value is already available
+        Map<String, List<Integer>> computations = new LinkedHashMap<>();
+        var redundant = new BitSet();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!cfg.isReachable(i) || !(instructions.get(i) instanceof AssignInstruction assign)) {
+                continue;
+            }
+
+            var key = AvailableExpressions.getKey(assign.getRhs());
+            if (key == null) {
+                continue;
+            }
+
+            computations.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            if (available.isAvailable(i, key)) {
+                redundant.set(i);
+            }
+        }
+
+        if (redundant.isEmpty()) {
+            return false;
+        }
+
+        // Copies to the original destinations, to insert after the computations
+        var copies = new TreeMap<Integer, Instruction>();
+        for (var indexes : computations.values()) {
+            if (indexes.stream().noneMatch(redundant::get)) {
+                continue;
+            }
+
+            var type = ((AssignInstruction) instructions.get(indexes.get(0))).getTypeOfAssign();
+            var variable = MethodEdits.addVariable(method, "cse", type);
+
+            for (int i : indexes) {
+                var assign = (AssignInstruction) instructions.get(i);
+                var copy = new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                        new SingleOpInstruction(MethodEdits.copyOf(variable)));
+
+                if (redundant.get(i)) {
+                    MethodEdits.replace(method, i, copy);
+                } else {
+                    MethodEdits.replace(method, i, new AssignInstruction(MethodEdits.copyOf(variable), type,
+                            assign.getRhs()));
+                    copies.put(i, copy);
+                }
+            }
+        }
+
+        // From the end, so that the indexes still to insert at do not move
+        for (var entry : copies.descendingMap().entrySet()) {
+            instructions.add(entry.getKey() + 1, entry.getValue());
+        }
+
+        return true;
+    }
+}
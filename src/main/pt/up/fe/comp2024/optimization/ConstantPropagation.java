@@ -0,0 +1,441 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the variables that hold the same constant on every path that can run by the constant, computes the
+ * operations whose operands are all constants, and removes the code that constant branches skip.
+ * <p>
+ * The analysis is sparse conditional constant propagation over the {@link SsaForm} of each method: values follow the
+ * versions from their assignment to their uses, and code is only looked at once a path to it can run. A branch on a
+ * condition that is not known yet takes neither path, and one on a constant condition only the path it takes, so a
+ * value set in a branch that never runs does not stop a phi, or what is computed from it, from being constant.
+ * Variables changed inside a loop are assumed constant until the loop changes them.
+ * <p>
+ * Branches on constant conditions then become gotos, or are removed, with the code no path gets to anymore.
+ */
+public class ConstantPropagation {
+
+    /**
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit ollirClass) {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            changed |= propagate(method);
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return true if the method changed
+     */
+    private boolean propagate(Method method) {
+        if (method.getInstructions().isEmpty()) {
+            return false;
+        }
+
+        var ssa = SsaForm.build(method);
+        var analysis = new Analysis(ssa);
+        analysis.run();
+        boolean changed = analysis.rewrite();
+        ssa.destruct();
+
+        // Branches are only decided now, removing them while in SSA form would change the indexes of the phis
+        return decideBranches(method) || changed;
+    }
+
+    /**
+     * Turns the branches on constant conditions into gotos, or removes them, and then removes the code no path gets to.
+     *
+     * @return true if the method changed
+     */
+    private static boolean decideBranches(Method method) {
+        var instructions = method.getInstructions();
+
+        var neverTaken = new BitSet();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) instanceof CondBranchInstruction branch) {
+                var condition = fold(branch.getCondition());
+                if (condition == null) {
+                    continue;
+                }
+
+                if (isTrue(condition)) {
+                    MethodEdits.replace(method, i, new GotoInstruction(branch.getLabel()));
+                } else {
+                    neverTaken.set(i);
+                }
+            }
+        }
+        MethodEdits.removeAll(method, neverTaken);
+
+        var cfg = new ControlFlowGraph(method);
+        var unreachable = new BitSet();
+        for (int i = 0; i < cfg.size(); i++) {
+            if (!cfg.isReachable(i)) {
+                unreachable.set(i);
+            }
+        }
+        MethodEdits.removeAll(method, unreachable);
+
+        return !neverTaken.isEmpty() || !unreachable.isEmpty();
+    }
+
+    /**
+     * What is known of the value of a version: nothing yet, a constant, or that it may vary.
+     */
+    private static class Value {
+
+        private static final Value UNKNOWN = new Value(null);
+        private static final Value VARYING = new Value(null);
+
+        private final LiteralElement constant;
+
+        private Value(LiteralElement constant) {
+            this.constant = constant;
+        }
+
+        private static Value of(LiteralElement constant) {
+            return constant == null ? VARYING : new Value(constant);
+        }
+
+        /**
+         * @return what is known of a value that may be either of the two
+         */
+        private Value meet(Value other) {
+            if (this == UNKNOWN || this == VARYING) {
+                return this == UNKNOWN ? other : this;
+            }
+            if (other == UNKNOWN) {
+                return this;
+            }
+
+            return other != VARYING && constant.getLiteral().equals(other.constant.getLiteral()) ? this : VARYING;
+        }
+    }
+
+    /**
+     * The values of the versions of a method, and the edges of its control flow graph that can run.
+     */
+    private static class Analysis {
+
+        private final SsaForm ssa;
+        private final ControlFlowGraph cfg;
+        private final List<Instruction> instructions;
+        private final Map<String, List<Integer>> uses;
+
+        private final Map<String, Value> values = new HashMap<>();
+        private final BitSet executed = new BitSet();
+        private final Set<Long> edges = new HashSet<>();
+
+        private final ArrayDeque<int[]> pendingEdges = new ArrayDeque<>();
+        private final ArrayDeque<String> pendingVersions = new ArrayDeque<>();
+
+        private Analysis(SsaForm ssa) {
+            this.ssa = ssa;
+            this.cfg = ssa.getCfg();
+            this.instructions = ssa.getMethod().getInstructions();
+            this.uses = ssa.getUses();
+        }
+
+        private void run() {
+            pendingEdges.add(new int[]{SsaForm.ENTRY, 0});
+
+            while (!pendingEdges.isEmpty() || !pendingVersions.isEmpty()) {
+                while (!pendingEdges.isEmpty()) {
+                    var edge = pendingEdges.poll();
+                    if (!edges.add(key(edge[0], edge[1]))) {
+                        continue;
+                    }
+
+                    int to = edge[1];
+                    evaluatePhis(to);
+                    // An instruction already looked at only has a new edge for its phis to choose from
+                    if (!executed.get(to)) {
+                        executed.set(to);
+                        evaluate(to);
+                    }
+                }
+
+                while (!pendingVersions.isEmpty()) {
+                    for (int use : uses.getOrDefault(pendingVersions.poll(), List.of())) {
+                        if (executed.get(use)) {
+                            evaluatePhis(use);
+                            evaluate(use);
+                        }
+                    }
+                }
+            }
+        }
+
+        private static long key(int from, int to) {
+            return ((long) from << 32) | (to & 0xffffffffL);
+        }
+
+        private boolean isExecutable(int from, int to) {
+            return edges.contains(key(from, to));
+        }
+
+        private void addEdge(int from, int to) {
+            if (!isExecutable(from, to)) {
+                pendingEdges.add(new int[]{from, to});
+            }
+        }
+
+        private void evaluatePhis(int index) {
+            for (var phi : ssa.getPhis(index)) {
+                var value = Value.UNKNOWN;
+                for (var entry : phi.getArguments().entrySet()) {
+                    if (isExecutable(entry.getKey(), index)) {
+                        value = value.meet(valueOf(entry.getValue()));
+                    }
+                }
+
+                // A path with no version of the variable does not set it, so it may hold anything
+                if (hasPathWithoutArgument(phi, index)) {
+                    value = Value.VARYING;
+                }
+
+                set(phi.getDest().getName(), value);
+            }
+        }
+
+        private boolean hasPathWithoutArgument(SsaForm.Phi phi, int index) {
+            var arguments = phi.getArguments();
+            if (index == 0 && !arguments.containsKey(SsaForm.ENTRY)) {
+                return true;
+            }
+
+            for (int predecessor : cfg.getPredecessors(index)) {
+                if (isExecutable(predecessor, index) && !arguments.containsKey(predecessor)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void evaluate(int index) {
+            var instruction = instructions.get(index);
+
+            var def = InstructionVars.getDef(instruction);
+            if (def != null && ssa.isVersion(def)) {
+                set(def, evaluate(((AssignInstruction) instruction).getRhs()));
+            }
+
+            var successors = cfg.getSuccessors(index);
+            if (instruction instanceof CondBranchInstruction branch) {
+                var condition = evaluate(branch.getCondition());
+                if (condition == Value.UNKNOWN) {
+                    return;
+                }
+
+                if (condition != Value.VARYING) {
+                    // The target comes first, then the next instruction, if there is one
+                    boolean taken = isTrue(condition.constant);
+                    if (taken || successors.length > 1) {
+                        addEdge(index, taken ? successors[0] : successors[1]);
+                    }
+                    return;
+                }
+            }
+
+            for (int successor : successors) {
+                addEdge(index, successor);
+            }
+        }
+
+        private void set(String version, Value value) {
+            var previous = values.getOrDefault(version, Value.UNKNOWN);
+            // Values only ever go from unknown to constant to varying
+            var lowered = previous.meet(value);
+            if (lowered != previous) {
+                values.put(version, lowered);
+                pendingVersions.add(version);
+            }
+        }
+
+        private Value valueOf(Element element) {
+            if (element instanceof LiteralElement literal) {
+                return isConstant(literal) ? Value.of(literal) : Value.VARYING;
+            }
+
+            // Parameters until assigned, 'this', arrays and the variables this form does not version
+            var name = ((Operand) element).getName();
+            if (element instanceof ArrayOperand || !ssa.isVersion(name)) {
+                return Value.VARYING;
+            }
+
+            return values.getOrDefault(name, Value.UNKNOWN);
+        }
+
+        private Value evaluate(Instruction instruction) {
+            if (instruction instanceof SingleOpInstruction singleOp) {
+                return valueOf(singleOp.getSingleOperand());
+            }
+
+            if (instruction instanceof UnaryOpInstruction unaryOp) {
+                var operand = valueOf(unaryOp.getOperand());
+                return operand.constant == null ? operand
+                        : Value.of(fold(new UnaryOpInstruction(unaryOp.getOperation(), operand.constant)));
+            }
+
+            if (instruction instanceof BinaryOpInstruction binaryOp) {
+                var left = valueOf(binaryOp.getLeftOperand());
+                var right = valueOf(binaryOp.getRightOperand());
+                if (left == Value.VARYING || right == Value.VARYING) {
+                    return Value.VARYING;
+                }
+                if (left == Value.UNKNOWN || right == Value.UNKNOWN) {
+                    return Value.UNKNOWN;
+                }
+
+                return Value.of(fold(new BinaryOpInstruction(left.constant, binaryOp.getOperation(), right.constant)));
+            }
+
+            // Calls, fields, array lengths and new objects
+            return Value.VARYING;
+        }
+
+        private LiteralElement getConstant(String name) {
+            var value = ssa.isVersion(name) ? values.get(name) : null;
+            return value == null ? null : value.constant;
+        }
+
+        /**
+         * Puts the constants in place of the versions that hold them, and drops the phi arguments of the edges that
+         * never run. Branches are left to be decided once out of SSA form.
+         *
+         * @return true if the method changed
+         */
+        private boolean rewrite() {
+            var method = ssa.getMethod();
+            boolean changed = false;
+
+            for (int i = 0; i < instructions.size(); i++) {
+                var instruction = instructions.get(i);
+                changed |= new UseRewriter(operand -> {
+                    var constant = getConstant(operand.getName());
+                    return constant == null ? operand : new LiteralElement(constant.getLiteral(), constant.getType());
+                }).rewrite(instruction);
+
+                if (!executed.get(i)) {
+                    continue;
+                }
+
+                var def = InstructionVars.getDef(instruction);
+                var constant = def == null ? null : getConstant(def);
+                if (constant != null && instruction instanceof AssignInstruction assign
+                        && !(assign.getRhs() instanceof SingleOpInstruction)) {
+                    MethodEdits.replace(method, i, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                            new SingleOpInstruction(new LiteralElement(constant.getLiteral(), constant.getType()))));
+                    changed = true;
+                }
+            }
+
+            for (int join : ssa.getJoins()) {
+                var phis = ssa.getPhis(join);
+                // The constants are already in place of their versions
+                phis.removeIf(phi -> getConstant(phi.getDest().getName()) != null);
+
+                for (var phi : phis) {
+                    if (executed.get(join)) {
+                        phi.getArguments().keySet().removeIf(predecessor -> !isExecutable(predecessor, join));
+                    }
+                    phi.getArguments().replaceAll((predecessor, argument) -> {
+                        var constant = argument instanceof Operand operand && !(operand instanceof ArrayOperand)
+                                ? getConstant(operand.getName()) : null;
+                        return constant == null ? argument
+                                : new LiteralElement(constant.getLiteral(), constant.getType());
+                    });
+                }
+            }
+
+            return changed;
+        }
+    }
+
+    private static boolean isConstant(Element element) {
+        if (!(element instanceof LiteralElement)) {
+            return false;
+        }
+
+        var type = element.getType().getTypeOfElement();
+        return type == ElementType.INT32 || type == ElementType.BOOLEAN;
+    }
+
+    private static int getValue(Element literal) {
+        return Integer.parseInt(((LiteralElement) literal).getLiteral());
+    }
+
+    private static boolean isTrue(Element literal) {
+        return getValue(literal) != 0;
+    }
+
+    /**
+     * @return the constant the instruction computes, or null if it is not an operation on constants
+     */
+    private static LiteralElement fold(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp && isConstant(singleOp.getSingleOperand())) {
+            return (LiteralElement) singleOp.getSingleOperand();
+        }
+
+        if (instruction instanceof UnaryOpInstruction unaryOp && isConstant(unaryOp.getOperand())) {
+            return switch (unaryOp.getOperation().getOpType()) {
+                case NOTB, NOT -> bool(!isTrue(unaryOp.getOperand()));
+                default -> null;
+            };
+        }
+
+        if (instruction instanceof BinaryOpInstruction binaryOp && isConstant(binaryOp.getLeftOperand())
+                && isConstant(binaryOp.getRightOperand())) {
+            int left = getValue(binaryOp.getLeftOperand());
+            int right = getValue(binaryOp.getRightOperand());
+
+            return switch (binaryOp.getOperation().getOpType()) {
+                case ADD -> integer(left + right);
+                case SUB -> integer(left - right);
+                case MUL -> integer(left * right);
+                // Division by zero is left for the program to throw
+                case DIV -> right == 0 ? null : integer(left / right);
+                case SHL -> integer(left << right);
+                case SHR -> integer(left >> right);
+                case SHRR -> integer(left >>> right);
+                case AND -> integer(left & right);
+                case OR -> integer(left | right);
+                case XOR -> integer(left ^ right);
+                case LTH -> bool(left < right);
+                case GTH -> bool(left > right);
+                case LTE -> bool(left <= right);
+                case GTE -> bool(left >= right);
+                case EQ -> bool(left == right);
+                case NEQ -> bool(left != right);
+                case ANDB -> bool(left != 0 && right != 0);
+                case ORB -> bool(left != 0 || right != 0);
+                default -> null;
+            };
+        }
+
+        return null;
+    }
+
+    private static LiteralElement integer(int value) {
+        return new LiteralElement(String.valueOf(value), OllirTypes.intType());
+    }
+
+    private static LiteralElement bool(boolean value) {
+        return new LiteralElement(value ? "1" : "0", OllirTypes.boolType());
+    }
+}
@@ -0,0 +1,195 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.AvailableCopies;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Liveness;
+import pt.up.fe.comp2024.optimization.dataflow.Variables;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Removes the moves between variables that the OLLIR generator leaves behind, such as
+ * {@code tmp1 := a; tmp2 := tmp1 + b; x := tmp2}.
+ * <p>
+ * Variables that are copies of others are first replaced by the variable they copy, where neither has changed since
+ * the copy, and the copies nothing reads anymore are removed. Then a temporary assigned right before it is moved to
+ * another variable, and not read afterwards, is coalesced with it: the value is assigned to the other variable
+ * directly. A temporary holding a comparison that a branch reads is replaced by the comparison in the branch, which
+ * the backends turn into a single conditional jump.
+ */
+public class CopyPropagation {
+
+    /**
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit ollirClass) {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            // A copy of a copy reads the original variable after one pass, and can be replaced in the next
+            while (propagate(method)) {
+                changed = true;
+            }
+            changed |= removeDeadCopies(method);
+            changed |= coalesce(method);
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return true if the method changed
+     */
+    private boolean propagate(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        var copies = new AvailableCopies(cfg);
+        var instructions = method.getInstructions();
+
+        boolean changed = false;
+        var removed = new BitSet();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!cfg.isReachable(i)) {
+                continue;
+            }
+
+            int index = i;
+            var instruction = instructions.get(i);
+            changed |= new UseRewriter(operand -> {
+                var source = copies.getCopied(index, operand.getName());
+                return source == null ? operand : MethodEdits.copyOf(source);
+            }).rewrite(instruction);
+
+            // 'x := y' after 'y := x'
+            if (isSelfCopy(instruction)) {
+                removed.set(i);
+            }
+        }
+
+        MethodEdits.removeAll(method, removed);
+
+        return changed || !removed.isEmpty();
+    }
+
+    /**
+     * @return true if a copy was removed
+     */
+    private boolean removeDeadCopies(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        var liveness = new Liveness(cfg, new Variables(method));
+        var instructions = method.getInstructions();
+
+        var removed = new BitSet();
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            if (AvailableCopies.getSource(instruction) != null
+                    && !liveness.isLiveOut(i, InstructionVars.getDef(instruction))) {
+                removed.set(i);
+            }
+        }
+
+        MethodEdits.removeAll(method, removed);
+
+        return !removed.isEmpty();
+    }
+
+    /**
+     * @return true if a temporary was coalesced
+     */
+    private boolean coalesce(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        var liveness = new Liveness(cfg, new Variables(method));
+        var instructions = method.getInstructions();
+
+        // The move must happen right after the assignment, on every path that reaches it
+        Set<Instruction> labeled = Collections.newSetFromMap(new IdentityHashMap<>());
+        labeled.addAll(method.getLabels().values());
+
+        var removed = new BitSet();
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            var next = instructions.get(i + 1);
+            if (!(instructions.get(i) instanceof AssignInstruction assign) || labeled.contains(next)) {
+                continue;
+            }
+
+            var temp = InstructionVars.getDef(assign);
+            if (temp == null || liveness.isLiveOut(i + 1, temp)) {
+                continue;
+            }
+
+            var coalesced = coalesce(assign.getRhs(), temp, next);
+            if (coalesced != null) {
+                MethodEdits.replace(method, i, coalesced);
+                removed.set(i + 1);
+                i++;
+            }
+        }
+
+        MethodEdits.removeAll(method, removed);
+
+        return !removed.isEmpty();
+    }
+
+    /**
+     * @return the instruction that does what the next one does with the value of the temporary, computing the value
+     * itself, or null if the next instruction does something else with the temporary
+     */
+    private static Instruction coalesce(Instruction value, String temp, Instruction next) {
+        if (next instanceof AssignInstruction move && reads(move.getRhs(), temp) && !writesElementOf(move, temp)) {
+            return new AssignInstruction(move.getDest(), move.getTypeOfAssign(), value);
+        }
+
+        if (next instanceof SingleOpCondInstruction branch && reads(branch.getCondition(), temp)
+                && isBranchCondition(value)) {
+            var opCond = new OpCondInstruction((OpInstruction) value);
+            opCond.setLabel(branch.getLabel());
+            return opCond;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true if the instruction is the variable on its own
+     */
+    private static boolean reads(Instruction instruction, String name) {
+        return instruction instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand operand
+                && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    /**
+     * @return true if the assignment stores to an array element that the variable locates
+     */
+    private static boolean writesElementOf(AssignInstruction assign, String name) {
+        if (!(assign.getDest() instanceof ArrayOperand array)) {
+            return false;
+        }
+
+        return array.getName().equals(name) || array.getIndexOperands().stream()
+                .anyMatch(index -> index instanceof Operand operand && operand.getName().equals(name));
+    }
+
+    /**
+     * @return true if both backends can branch on the operation without computing its boolean first
+     */
+    private static boolean isBranchCondition(Instruction instruction) {
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            var opType = binaryOp.getOperation().getOpType();
+            return opType == OperationType.LTH || opType == OperationType.GTE || opType == OperationType.LTE;
+        }
+
+        return instruction instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB;
+    }
+
+    private static boolean isSelfCopy(Instruction instruction) {
+        return instruction instanceof AssignInstruction assign
+                && !(assign.getDest() instanceof ArrayOperand)
+                && reads(assign.getRhs(), ((Operand) assign.getDest()).getName());
+    }
+}
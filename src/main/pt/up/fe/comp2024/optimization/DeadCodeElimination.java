@@ -0,0 +1,142 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Liveness;
+import pt.up.fe.comp2024.optimization.dataflow.Variables;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Removes the instructions of a method that have no effect: those that cannot be reached, gotos to the next
+ * instruction, and assignments to variables that are not live afterwards. Labels that nothing jumps to, and variables
+ * that no instruction mentions anymore, are removed too.
+ * <p>
+ * A call assigned to a dead variable is kept as a call on its own, and operations that may throw, such as reading an
+ * array element or dividing by a variable, are kept as they are. Removing an assignment can make the variables it
+ * reads dead too, so liveness is computed again until nothing else is removed.
+ */
+public class DeadCodeElimination {
+
+    /**
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit ollirClass) {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            while (removeDeadCode(method)) {
+                changed = true;
+            }
+            changed |= removeUnusedVariables(method);
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return true if the method changed
+     */
+    private boolean removeDeadCode(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        var liveness = new Liveness(cfg, new Variables(method));
+        var instructions = method.getInstructions();
+
+        boolean changed = false;
+        var removed = new BitSet();
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+
+            if (!cfg.isReachable(i)) {
+                removed.set(i);
+            } else if (instruction instanceof GotoInstruction) {
+                if (cfg.getSuccessors(i)[0] == i + 1) {
+                    removed.set(i);
+                }
+            } else if (instruction instanceof AssignInstruction assign) {
+                var def = InstructionVars.getDef(assign);
+                if (def == null || liveness.isLiveOut(i, def)) {
+                    continue;
+                }
+
+                if (assign.getRhs() instanceof CallInstruction call) {
+                    // The backend drops the value of a call used as a statement
+                    MethodEdits.replace(method, i, call);
+                    changed = true;
+                } else if (!mayThrow(assign.getRhs())) {
+                    removed.set(i);
+                }
+            }
+        }
+
+        MethodEdits.removeAll(method, removed);
+        changed |= removeUnusedLabels(method);
+
+        return changed || !removed.isEmpty();
+    }
+
+    /**
+     * @return true if a label was removed
+     */
+    private static boolean removeUnusedLabels(Method method) {
+        Set<String> targets = new HashSet<>();
+        for (var instruction : method.getInstructions()) {
+            if (instruction instanceof GotoInstruction gotoInstruction) {
+                targets.add(gotoInstruction.getLabel());
+            } else if (instruction instanceof CondBranchInstruction branch) {
+                targets.add(branch.getLabel());
+            }
+        }
+
+        return method.getLabels().keySet().retainAll(targets);
+    }
+
+    /**
+     * @return true if the instruction may throw an exception, which must still happen
+     */
+    static boolean mayThrow(Instruction instruction) {
+        if (instruction instanceof OpInstruction op) {
+            if (op.getOperands().stream().anyMatch(ArrayOperand.class::isInstance)) {
+                return true;
+            }
+
+            return op instanceof BinaryOpInstruction binaryOp
+                    && binaryOp.getOperation().getOpType() == OperationType.DIV
+                    && !(binaryOp.getRightOperand() instanceof LiteralElement literal
+                    && Integer.parseInt(literal.getLiteral()) != 0);
+        }
+
+        // The length of a null array
+        if (instruction instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength) {
+            return true;
+        }
+
+        return instruction instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof ArrayOperand;
+    }
+
+    /**
+     * @return true if a variable was removed
+     */
+    private boolean removeUnusedVariables(Method method) {
+        Set<String> mentioned = new HashSet<>();
+        for (var instruction : method.getInstructions()) {
+            mentioned.addAll(InstructionVars.getUses(instruction));
+
+            var def = InstructionVars.getDef(instruction);
+            if (def != null) {
+                mentioned.add(def);
+            }
+
+            // Class names, for 'new' and 'invokestatic'
+            if (instruction instanceof CallInstruction call && call.getCaller() instanceof Operand caller) {
+                mentioned.add(caller.getName());
+            }
+        }
+
+        return method.getVarTable().entrySet().removeIf(entry -> entry.getValue().getScope() == VarScope.LOCAL
+                && !entry.getKey().equals("this") && !mentioned.contains(entry.getKey()));
+    }
+}
@@ -0,0 +1,133 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Colors an interference graph with Chaitin's simplify and select phases, with Briggs' optimistic coloring.
+ * <p>
+ * Nodes with fewer neighbors than colors are removed first, since they can always be colored. When none is left, the
+ * node with the most neighbors is removed anyway, in the hope that its neighbors end up sharing colors. The nodes
+ * are then colored in the reverse order, each with the lowest color its neighbors do not have. 'this' and the
+ * parameters keep the colors of their registers.
+ */
+public class GraphColoring {
+
+    private final InterferenceGraph graph;
+
+    private final Map<String, Integer> precolored;
+
+    /**
+     * @param graph
+     * @param precolored the colors of 'this' and the parameters
+     */
+    public GraphColoring(InterferenceGraph graph, Map<String, Integer> precolored) {
+        this.graph = graph;
+        this.precolored = precolored;
+    }
+
+    /**
+     * @return the color of each node, or null if the coloring needs more than the given number of colors
+     */
+    public Map<String, Integer> color(int colors) {
+        var coloring = new HashMap<>(precolored);
+        if (precolored.values().stream().anyMatch(color -> color >= colors)) {
+            return null;
+        }
+
+        // Simplify
+        var remaining = new LinkedHashSet<String>();
+        var degrees = new HashMap<String, Integer>();
+        var lowDegree = new ArrayDeque<String>();
+        for (var node : graph.getNodes()) {
+            if (precolored.containsKey(node)) {
+                continue;
+            }
+
+            remaining.add(node);
+            degrees.put(node, graph.getNeighbors(node).size());
+            if (graph.getNeighbors(node).size() < colors) {
+                lowDegree.add(node);
+            }
+        }
+
+        var stack = new ArrayDeque<String>();
+        while (!remaining.isEmpty()) {
+            var node = lowDegree.poll();
+            if (node == null) {
+                node = getMaxDegree(remaining, degrees);
+            } else if (!remaining.contains(node)) {
+                continue;
+            }
+
+            remaining.remove(node);
+            stack.push(node);
+
+            for (var neighbor : graph.getNeighbors(node)) {
+                if (remaining.contains(neighbor)) {
+                    int degree = degrees.merge(neighbor, -1, Integer::sum);
+                    if (degree == colors - 1) {
+                        lowDegree.add(neighbor);
+                    }
+                }
+            }
+        }
+
+        // Select
+        while (!stack.isEmpty()) {
+            var node = stack.pop();
+
+            var taken = new HashSet<Integer>();
+            for (var neighbor : graph.getNeighbors(node)) {
+                var color = coloring.get(neighbor);
+                if (color != null) {
+                    taken.add(color);
+                }
+            }
+
+            int color = 0;
+            while (taken.contains(color)) {
+                color++;
+            }
+
+            if (color >= colors) {
+                return null;
+            }
+
+            coloring.put(node, color);
+        }
+
+        return coloring;
+    }
+
+    /**
+     * @return the coloring with the fewest colors this heuristic finds
+     */
+    public Map<String, Integer> colorMinimum() {
+        int colors = precolored.values().stream().mapToInt(color -> color + 1).max().orElse(0);
+
+        // Every node in its own color always works
+        while (true) {
+            var coloring = color(colors);
+            if (coloring != null) {
+                return coloring;
+            }
+
+            colors++;
+        }
+    }
+
+    private static String getMaxDegree(LinkedHashSet<String> nodes, Map<String, Integer> degrees) {
+        String maxNode = null;
+        for (var node : nodes) {
+            if (maxNode == null || degrees.get(node) > degrees.get(maxNode)) {
+                maxNode = node;
+            }
+        }
+
+        return maxNode;
+    }
+}
@@ -0,0 +1,380 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Loops;
+import pt.up.fe.comp2024.optimization.dataflow.ReachingDefinitions;
+import pt.up.fe.comp2024.optimization.dataflow.Variables;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces calls to small methods of the class with a copy of their code, so that the passes after it see through
+ * the call.
+ * <p>
+ * Methods of Java-- classes are virtual, and a class that extends this one may override them, so a call is only
+ * known to run the method of this class when its object was created with 'new' of this class. Calls on 'this' are
+ * kept, except in a copy inlined for such an object, where 'this' is that object. Methods that may call themselves,
+ * directly or through others, are never inlined.
+ * <p>
+ * A method is inlined when it has few instructions, with more allowed inside loops, where the call runs more often.
+ * The variables and labels of the copy get names of their own in the caller. Parameters become variables that are
+ * assigned the arguments, and returns assign the value of the call and jump to the instruction after it.
+ */
+public class Inliner {
+
+    // Largest method inlined, in instructions, outside and inside loops
+    private static final int MAX_SIZE = 20;
+    private static final int MAX_LOOP_SIZE = 60;
+
+    // Methods are not inlined into callers that are already this large
+    private static final int MAX_CALLER_SIZE = 2000;
+
+    /**
+     * @return true if any call was inlined
+     */
+    public boolean optimize(ClassUnit ollirClass) {
+        Map<String, Method> methods = new HashMap<>();
+        for (var method : ollirClass.getMethods()) {
+            if (!method.isConstructMethod()) {
+                methods.put(method.getMethodName(), method);
+            }
+        }
+
+        var recursive = getRecursive(ollirClass, methods);
+
+        boolean changed = false;
+        for (var method : ollirClass.getMethods()) {
+            // Inlined code may have calls of its own
+            while (inline(ollirClass, method, methods, recursive)) {
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the names of the methods that may call themselves
+     */
+    private static Set<String> getRecursive(ClassUnit ollirClass, Map<String, Method> methods) {
+        // The call graph, by method name
+        Map<String, Set<String>> callees = new HashMap<>();
+        for (var method : methods.values()) {
+            var called = new HashSet<String>();
+            for (var instruction : method.getInstructions()) {
+                var call = getCall(instruction);
+                if (call != null && isCallToClass(ollirClass, call) && methods.containsKey(getMethodName(call))) {
+                    called.add(getMethodName(call));
+                }
+            }
+            callees.put(method.getMethodName(), called);
+        }
+
+        var recursive = new HashSet<String>();
+        for (var name : methods.keySet()) {
+            // Whether the method is reachable from its own callees
+            var visited = new HashSet<String>();
+            var pending = new ArrayList<>(callees.get(name));
+            while (!pending.isEmpty()) {
+                var callee = pending.remove(pending.size() - 1);
+                if (callee.equals(name)) {
+                    recursive.add(name);
+                    break;
+                }
+                if (visited.add(callee)) {
+                    pending.addAll(callees.get(callee));
+                }
+            }
+        }
+
+        return recursive;
+    }
+
+    private static CallInstruction getCall(Instruction instruction) {
+        if (instruction instanceof CallInstruction call) {
+            return call;
+        }
+        if (instruction instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction call) {
+            return call;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true if the call may run a method of this class, whatever its object
+     */
+    private static boolean isCallToClass(ClassUnit ollirClass, CallInstruction call) {
+        if (call.getInvocationType() != CallType.invokevirtual) {
+            return false;
+        }
+
+        return call.getCaller().getType() instanceof ClassType classType
+                && classType.getName().equals(ollirClass.getClassName());
+    }
+
+    private static String getMethodName(CallInstruction call) {
+        var literal = ((LiteralElement) call.getMethodName()).getLiteral();
+        return literal.substring(1, literal.length() - 1);
+    }
+
+    /**
+     * @return true if a call was inlined
+     */
+    private boolean inline(ClassUnit ollirClass, Method method, Map<String, Method> methods, Set<String> recursive) {
+        var instructions = method.getInstructions();
+        if (instructions.size() >= MAX_CALLER_SIZE) {
+            return false;
+        }
+
+        var cfg = new ControlFlowGraph(method);
+        var reaching = new ReachingDefinitions(cfg, new Variables(method));
+
+        var inLoops = new BitSet();
+        new Loops(cfg).getLoops().forEach(loop -> inLoops.or(loop.getBody()));
+
+        // The calls to inline, and the methods they run
+        Map<Integer, Method> sites = new HashMap<>();
+        int size = instructions.size();
+        for (int i = 0; i < instructions.size(); i++) {
+            var call = getCall(instructions.get(i));
+            if (call == null || !cfg.isReachable(i) || !isCallToClass(ollirClass, call)) {
+                continue;
+            }
+
+            var callee = methods.get(getMethodName(call));
+            if (callee == null || recursive.contains(callee.getMethodName()) || callee.isStaticMethod()
+                    || callee.isVarargs() || !hasArgumentsFor(callee, call)) {
+                continue;
+            }
+
+            int calleeSize = callee.getInstructions().size();
+            if (calleeSize > (inLoops.get(i) ? MAX_LOOP_SIZE : MAX_SIZE) || size + calleeSize > MAX_CALLER_SIZE) {
+                continue;
+            }
+
+            if (call.getCaller() instanceof Operand object && !object.getName().equals("this")
+                    && isCreatedHere(ollirClass, instructions, reaching, i, object.getName(), new HashSet<>())) {
+                sites.put(i, callee);
+                size += calleeSize;
+            }
+        }
+
+        if (sites.isEmpty()) {
+            return false;
+        }
+
+        // From the end, so that the calls still to inline do not move
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            var callee = sites.get(i);
+            if (callee != null) {
+                inlineCall(method, i, callee);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if each argument of the call is of the kind of its parameter, which is not so for the values of
+     * variable arguments
+     */
+    private static boolean hasArgumentsFor(Method callee, CallInstruction call) {
+        var params = callee.getParams();
+        var arguments = call.getArguments();
+        if (params.size() != arguments.size()) {
+            return false;
+        }
+
+        for (int k = 0; k < params.size(); k++) {
+            if (params.get(k).getType().getTypeOfElement() != arguments.get(k).getType().getTypeOfElement()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the variable holds, at the instruction, an object created with 'new' of this class
+     */
+    private static boolean isCreatedHere(ClassUnit ollirClass, List<Instruction> instructions,
+                                         ReachingDefinitions reaching, int index, String name, Set<Integer> visited) {
+        var definitions = reaching.getReaching(index, name);
+        if (definitions.isEmpty()) {
+            return false;
+        }
+
+        for (int definition : definitions) {
+            if (definition == ReachingDefinitions.ENTRY) {
+                return false;
+            }
+
+            // A copy already being followed adds no other objects
+            if (!visited.add(definition)) {
+                continue;
+            }
+
+            var rhs = ((AssignInstruction) instructions.get(definition)).getRhs();
+            if (rhs instanceof CallInstruction call && call.getInvocationType() == CallType.NEW
+                    && call.getCaller() instanceof Operand type && type.getName().equals(ollirClass.getClassName())) {
+                continue;
+            }
+
+            if (!(rhs instanceof SingleOpInstruction singleOp) || !(singleOp.getSingleOperand() instanceof Operand copied)
+                    || copied instanceof ArrayOperand
+                    || !isCreatedHere(ollirClass, instructions, reaching, definition, copied.getName(), visited)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void inlineCall(Method method, int index, Method callee) {
+        var instruction = method.getInstructions().get(index);
+        var call = getCall(instruction);
+        var result = instruction instanceof AssignInstruction assign ? assign : null;
+
+        var copy = new InlinedCopy(method, callee, (Operand) call.getCaller(), result);
+        var code = copy.build(call.getArguments());
+
+        var instructions = method.getInstructions();
+        var next = instructions.get(index + 1);
+        if (code.isEmpty()) {
+            MethodEdits.remove(method, index);
+        } else {
+            MethodEdits.replace(method, index, code.get(0));
+            instructions.addAll(index + 1, code.subList(1, code.size()));
+        }
+
+        // Returns, and labels at the end of the method, go to the instruction after the call
+        copy.getEndLabels().forEach(label -> method.getLabels().put(label, next));
+    }
+
+    /**
+     * The code of a method, copied into a caller for one call.
+     */
+    private static class InlinedCopy {
+
+        private final Method method;
+        private final Method callee;
+        private final Operand object;
+        private final AssignInstruction result;
+
+        // The caller variable that takes the place of each callee variable, and the labels of the copy
+        private final Map<String, Operand> variables = new HashMap<>();
+        private final Map<String, String> labels = new HashMap<>();
+
+        private final InstructionCopier copier;
+
+        private final String endLabel;
+        private boolean jumpsToEnd = false;
+        private final List<String> pendingLabels = new ArrayList<>();
+
+        private InlinedCopy(Method method, Method callee, Operand object, AssignInstruction result) {
+            this.method = method;
+            this.callee = callee;
+            this.object = object;
+            this.result = result;
+
+            callee.getVarTable().forEach((name, descriptor) -> {
+                if (!name.equals("this")) {
+                    variables.put(name, MethodEdits.addVariable(method, callee.getMethodName() + "_" + name,
+                            descriptor.getVarType()));
+                }
+            });
+
+            // The same suffix for every label of the copy, not used by any label of the caller
+            int number = 0;
+            while (hasLabelWithSuffix("_" + callee.getMethodName() + number)) {
+                number++;
+            }
+            var suffix = "_" + callee.getMethodName() + number;
+            callee.getLabels().keySet().forEach(label -> labels.put(label, label + suffix));
+            endLabel = "inline_end" + suffix;
+
+            copier = new InstructionCopier(this::copyVariable, labels::get);
+        }
+
+        /**
+         * @return the caller variable in place of the callee variable, and the object of the call in place of 'this'
+         */
+        private Operand copyVariable(Operand operand) {
+            if (operand.getName().equals("this")) {
+                return MethodEdits.copyOf(object);
+            }
+
+            var variable = variables.get(operand.getName());
+            return new Operand(variable.getName(), operand.getType());
+        }
+
+        private boolean hasLabelWithSuffix(String suffix) {
+            if (method.getLabels().containsKey("inline_end" + suffix)) {
+                return true;
+            }
+
+            return callee.getLabels().keySet().stream().anyMatch(label -> method.getLabels().containsKey(label + suffix));
+        }
+
+        /**
+         * @return the labels to put on the instruction after the call
+         */
+        private List<String> getEndLabels() {
+            var endLabels = new ArrayList<>(pendingLabels);
+            if (jumpsToEnd) {
+                endLabels.add(endLabel);
+            }
+            return endLabels;
+        }
+
+        private List<Instruction> build(List<Element> arguments) {
+            var code = new ArrayList<Instruction>();
+
+            var params = callee.getParams();
+            for (int k = 0; k < params.size(); k++) {
+                var param = variables.get(((Operand) params.get(k)).getName());
+                if (param != null) {
+                    add(code, new AssignInstruction(MethodEdits.copyOf(param), param.getType(),
+                            new SingleOpInstruction(InstructionCopier.same().copy(arguments.get(k)))));
+                }
+            }
+
+            var instructions = callee.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var instruction = instructions.get(i);
+                for (var label : Preheaders.getLabels(callee, instruction)) {
+                    pendingLabels.add(labels.get(label));
+                }
+
+                if (instruction instanceof ReturnInstruction ret) {
+                    if (ret.hasReturnValue() && result != null) {
+                        add(code, new AssignInstruction(InstructionCopier.same().copy(result.getDest()),
+                                result.getTypeOfAssign(), new SingleOpInstruction(copier.copy(ret.getOperand()))));
+                    }
+                    if (i < instructions.size() - 1) {
+                        add(code, new GotoInstruction(endLabel));
+                        jumpsToEnd = true;
+                    }
+                } else {
+                    add(code, copier.copy(instruction));
+                }
+            }
+
+            return code;
+        }
+
+        private void add(List<Instruction> code, Instruction instruction) {
+            pendingLabels.forEach(label -> method.getLabels().put(label, instruction));
+            pendingLabels.clear();
+            code.add(instruction);
+        }
+    }
+}
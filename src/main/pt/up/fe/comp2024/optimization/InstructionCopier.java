@@ -0,0 +1,115 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.function.UnaryOperator;
+
+/**
+ * Copies OLLIR instructions, with other variables in place of the ones they read and write, and other labels in place
+ * of the ones they jump to. Copies share no elements with the original, so both can be changed on their own.
+ * <p>
+ * Fields, and the class names given to 'new' and 'invokestatic', are not variables and are copied as they are.
+ */
+class InstructionCopier {
+
+    private final UnaryOperator<Operand> variables;
+    private final UnaryOperator<String> labels;
+
+    /**
+     * @param variables gives a new operand for the variable that takes the place of the one given, or for itself
+     * @param labels gives the label that takes the place of the one given
+     */
+    InstructionCopier(UnaryOperator<Operand> variables, UnaryOperator<String> labels) {
+        this.variables = variables;
+        this.labels = labels;
+    }
+
+    /**
+     * @return a copier that keeps the variables and labels
+     */
+    static InstructionCopier same() {
+        return new InstructionCopier(MethodEdits::copyOf, UnaryOperator.identity());
+    }
+
+    Instruction copy(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                var assign = (AssignInstruction) instruction;
+                yield new AssignInstruction(copy(assign.getDest()), assign.getTypeOfAssign(), copy(assign.getRhs()));
+            }
+            case CALL -> {
+                var call = (CallInstruction) instruction;
+                var callType = call.getInvocationType();
+
+                var caller = callType == CallType.NEW || callType == CallType.invokestatic
+                        ? MethodEdits.copyOf((Operand) call.getCaller()) : copy(call.getCaller());
+                var methodName = call.getMethodNameTry().map(this::copy).orElse(null);
+                var arguments = new ArrayList<Element>();
+                call.getArguments().forEach(argument -> arguments.add(copy(argument)));
+
+                yield new CallInstruction(callType, caller, methodName, arguments, call.getReturnType(),
+                        call.isIsolated());
+            }
+            case GETFIELD -> {
+                var getField = (GetFieldInstruction) instruction;
+                yield new GetFieldInstruction((Operand) copy(getField.getObject()),
+                        MethodEdits.copyOf(getField.getField()), getField.getFieldType());
+            }
+            case PUTFIELD -> {
+                var putField = (PutFieldInstruction) instruction;
+                yield new PutFieldInstruction((Operand) copy(putField.getObject()),
+                        MethodEdits.copyOf(putField.getField()), copy(putField.getValue()), putField.getFieldType());
+            }
+            case BRANCH -> {
+                var branch = (CondBranchInstruction) instruction;
+                CondBranchInstruction copy = branch instanceof OpCondInstruction opCond
+                        ? new OpCondInstruction((OpInstruction) copy(opCond.getCondition()))
+                        : new SingleOpCondInstruction((SingleOpInstruction) copy(branch.getCondition()));
+                copy.setLabel(labels.apply(branch.getLabel()));
+                yield copy;
+            }
+            case GOTO -> new GotoInstruction(labels.apply(((GotoInstruction) instruction).getLabel()));
+            case RETURN -> {
+                var ret = (ReturnInstruction) instruction;
+                var copy = ret.hasReturnValue() ? new ReturnInstruction(copy(ret.getOperand())) : new ReturnInstruction();
+                copy.setReturnType(ret.getReturnType());
+                yield copy;
+            }
+            case UNARYOPER -> {
+                var unaryOp = (UnaryOpInstruction) instruction;
+                yield new UnaryOpInstruction(copy(unaryOp.getOperation()), copy(unaryOp.getOperand()));
+            }
+            case BINARYOPER -> {
+                var binaryOp = (BinaryOpInstruction) instruction;
+                yield new BinaryOpInstruction(copy(binaryOp.getLeftOperand()), copy(binaryOp.getOperation()),
+                        copy(binaryOp.getRightOperand()));
+            }
+            case NOPER -> new SingleOpInstruction(copy(((SingleOpInstruction) instruction).getSingleOperand()));
+        };
+    }
+
+    private static Operation copy(Operation operation) {
+        return new Operation(operation.getOpType(), operation.getTypeInfo());
+    }
+
+    Element copy(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return new LiteralElement(literal.getLiteral(), literal.getType());
+        }
+
+        if (element instanceof ArrayOperand array) {
+            var indexes = new ArrayList<Element>();
+            array.getIndexOperands().forEach(index -> indexes.add(copy(index)));
+
+            var variable = variables.apply(array);
+            var copy = new ArrayOperand(variable.getName(), array.getType(), indexes);
+            if (variable.isParameter()) {
+                copy.setParamId(variable.getParamId());
+            }
+            return copy;
+        }
+
+        return variables.apply((Operand) element);
+    }
+}
@@ -0,0 +1,92 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The local variables an OLLIR instruction writes and reads.
+ * <p>
+ * Fields, and the class names given to 'new' and 'invokestatic', are not variables. Storing to an element of an array
+ * reads the array variable, it does not write it.
+ */
+public class InstructionVars {
+
+    private InstructionVars() {
+    }
+
+    /**
+     * @return the name of the variable the instruction writes, or null if it writes none
+     */
+    public static String getDef(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)) {
+            return ((Operand) assign.getDest()).getName();
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the names of the variables the instruction reads, in the order they are read, with repetitions
+     */
+    public static List<String> getUses(Instruction instruction) {
+        var uses = new ArrayList<String>();
+        addUses(instruction, uses);
+        return uses;
+    }
+
+    private static void addUses(Instruction instruction, List<String> uses) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                var assign = (AssignInstruction) instruction;
+                if (assign.getDest() instanceof ArrayOperand array) {
+                    addUses(array, uses);
+                }
+                addUses(assign.getRhs(), uses);
+            }
+            case CALL -> {
+                var call = (CallInstruction) instruction;
+                var callType = call.getInvocationType();
+                if (callType != CallType.NEW && callType != CallType.invokestatic) {
+                    addUses(call.getCaller(), uses);
+                }
+                call.getArguments().forEach(argument -> addUses(argument, uses));
+            }
+            case GETFIELD -> addUses(((GetFieldInstruction) instruction).getObject(), uses);
+            case PUTFIELD -> {
+                var putField = (PutFieldInstruction) instruction;
+                addUses(putField.getObject(), uses);
+                addUses(putField.getValue(), uses);
+            }
+            case BRANCH -> addUses(((CondBranchInstruction) instruction).getCondition(), uses);
+            case RETURN -> {
+                var ret = (ReturnInstruction) instruction;
+                if (ret.hasReturnValue()) {
+                    addUses(ret.getOperand(), uses);
+                }
+            }
+            case UNARYOPER -> addUses(((UnaryOpInstruction) instruction).getOperand(), uses);
+            case BINARYOPER -> {
+                var binaryOp = (BinaryOpInstruction) instruction;
+                addUses(binaryOp.getLeftOperand(), uses);
+                addUses(binaryOp.getRightOperand(), uses);
+            }
+            case NOPER -> addUses(((SingleOpInstruction) instruction).getSingleOperand(), uses);
+            case GOTO -> {
+            }
+        }
+    }
+
+    private static void addUses(Element element, List<String> uses) {
+        if (!(element instanceof Operand operand)) {
+            return;
+        }
+
+        uses.add(operand.getName());
+
+        if (operand instanceof ArrayOperand array) {
+            array.getIndexOperands().forEach(index -> addUses(index, uses));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.Liveness;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The variables of an OLLIR method, connected when they are live at the same time and so cannot share a register.
+ * <p>
+ * 'this', when used, and the parameters are always nodes. Variables that are written but never read are left out, the backend
+ * gives them no register.
+ */
+public class InterferenceGraph {
+
+    // Insertion order, so the allocation does not change from run to run
+    private final Map<String, Set<String>> neighbors = new LinkedHashMap<>();
+
+    private final List<String> params = new ArrayList<>();
+
+    private InterferenceGraph() {
+    }
+
+    public static InterferenceGraph build(Method method, Liveness liveness) {
+        var graph = new InterferenceGraph();
+
+        // 'this' is only in the var table when the method uses it
+        if (method.getVarTable().containsKey("this")) {
+            graph.params.add("this");
+        }
+        for (var param : method.getParams()) {
+            graph.params.add(((Operand) param).getName());
+        }
+        graph.params.forEach(graph::addNode);
+
+        var instructions = method.getInstructions();
+        for (var instruction : instructions) {
+            InstructionVars.getUses(instruction).forEach(graph::addNode);
+        }
+
+        // A variable written by an instruction interferes with the ones that stay live after it
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            var def = InstructionVars.getDef(instruction);
+            if (def == null || !graph.neighbors.containsKey(def)) {
+                continue;
+            }
+
+            var copied = getCopiedVariable(instruction);
+            for (var live : liveness.getVariables().getNames(liveness.getLiveOut(i))) {
+                // After a copy both variables hold the same value, they can share a register
+                if (!live.equals(copied)) {
+                    graph.addEdge(def, live);
+                }
+            }
+        }
+
+        // The parameters are all written when the method starts
+        if (!instructions.isEmpty()) {
+            for (var param : graph.params) {
+                for (var live : liveness.getVariables().getNames(liveness.getLiveIn(0))) {
+                    graph.addEdge(param, live);
+                }
+            }
+        }
+
+        return graph;
+    }
+
+    /**
+     * @return the variable copied by an assignment like 'a.i32 :=.i32 b.i32', or null
+     */
+    private static String getCopiedVariable(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand operand
+                && !(operand instanceof ArrayOperand)) {
+            return operand.getName();
+        }
+
+        return null;
+    }
+
+    private void addNode(String name) {
+        neighbors.computeIfAbsent(name, key -> new HashSet<>());
+    }
+
+    private void addEdge(String a, String b) {
+        if (a.equals(b) || !neighbors.containsKey(a) || !neighbors.containsKey(b)) {
+            return;
+        }
+
+        neighbors.get(a).add(b);
+        neighbors.get(b).add(a);
+    }
+
+    /**
+     * @return 'this', when the method uses it, and the parameters, in the order of their registers
+     */
+    public List<String> getParams() {
+        return params;
+    }
+
+    public Set<String> getNodes() {
+        return neighbors.keySet();
+    }
+
+    public Set<String> getNeighbors(String node) {
+        return neighbors.get(node);
+    }
+}
@@ -1,27 +1,120 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.ClassUnit;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.Timings;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
+        var ollirCode = OllirPrinter.print(toOllirClass(semanticsResult));
 
-        OllirGeneratorVisitor visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        // OllirResult parses the code into a ClassUnit again, the compiler itself uses toOllirClass
+        return Timings.measure("ollir parsing",
+                () -> new OllirResult(semanticsResult, ollirCode, Collections.emptyList()));
+    }
+
+    /**
+     * Builds the OLLIR class of the program directly, without writing and parsing OLLIR code.
+     *
+     * @param semanticsResult
+     * @return the OLLIR class, ready for the backend
+     */
+    public ClassUnit toOllirClass(JmmSemanticsResult semanticsResult) {
+        OptUtils.resetCounters();
 
-        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
+        var generator = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
+        return Timings.measure("ollir generation", () -> generator.generate(semanticsResult.getRootNode()));
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
-
-        //TODO: Do your OLLIR-based optimizations here
+        var reports = optimize(ollirResult.getOllirClass(), ollirResult.getConfig());
+        ollirResult.getReports().addAll(reports);
 
         return ollirResult;
     }
+
+    /**
+     * Optimizes the OLLIR class in place.
+     *
+     * @param ollirClass
+     * @param config
+     * @return the reports of the optimizations
+     */
+    public List<Report> optimize(ClassUnit ollirClass, Map<String, String> config) {
+        optimizeCode(ollirClass, config);
+        return allocateRegisters(ollirClass, config);
+    }
+
+    /**
+     * Runs the '-o' optimizations on the OLLIR class in place, if they are enabled.
+     *
+     * @param ollirClass
+     * @param config
+     */
+    public void optimizeCode(ClassUnit ollirClass, Map<String, String> config) {
+        if (!CompilerConfig.getOptimize(config)) {
+            return;
+        }
+
+        // Methods left with no recursion may then be inlined
+        var tailCalls = new TailCallElimination();
+        Timings.measure("tail call elimination", () -> tailCalls.optimize(ollirClass));
+
+        // Before the other passes, so that they see the code of the methods inlined
+        var inliner = new Inliner();
+        Timings.measure("inlining", () -> inliner.optimize(ollirClass));
+
+        var propagation = new ConstantPropagation();
+        Timings.measure("constant propagation", () -> propagation.optimize(ollirClass));
+
+        var copies = new CopyPropagation();
+        Timings.measure("copy propagation", () -> copies.optimize(ollirClass));
+
+        var invariants = new LoopInvariantCodeMotion();
+        Timings.measure("loop invariant code motion", () -> invariants.optimize(ollirClass));
+
+        // Reduced products are copied from the variables that now hold them
+        var reduction = new StrengthReduction();
+        if (Timings.measure("strength reduction", () -> reduction.optimize(ollirClass))) {
+            Timings.measure("copy propagation", () -> copies.optimize(ollirClass));
+        }
+
+        // Each pass reads values from variables that copy propagation may then forward to further computations
+        var subexpressions = new CommonSubexpressionElimination();
+        while (Timings.measure("common subexpression elimination", () -> subexpressions.optimize(ollirClass))) {
+            Timings.measure("copy propagation", () -> copies.optimize(ollirClass));
+        }
+
+        var deadCode = new DeadCodeElimination();
+        Timings.measure("dead code elimination", () -> deadCode.optimize(ollirClass));
+    }
+
+    /**
+     * Allocates the registers of the OLLIR class in place, if '-r' asks for it.
+     *
+     * @param ollirClass
+     * @param config
+     * @return the reports of the allocation
+     */
+    public List<Report> allocateRegisters(ClassUnit ollirClass, Map<String, String> config) {
+        int registers = CompilerConfig.getRegisterAllocation(config);
+        if (registers < 0) {
+            return new ArrayList<>();
+        }
+
+        var allocation = new RegisterAllocation(registers, CompilerConfig.getAllocator(config));
+        return Timings.measure("register allocation", () -> allocation.allocate(ollirClass));
+    }
 }
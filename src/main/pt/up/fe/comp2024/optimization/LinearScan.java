@@ -0,0 +1,182 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Assigns registers to the variables of an OLLIR method with a linear scan over their live intervals.
+ * <p>
+ * The interval of a variable goes from its first to its last appearance in the instructions, in their order. A loop
+ * (a jump back to an earlier instruction) stretches the intervals of the variables whose values go around it: those
+ * that are set before the loop and appear inside it, and those read inside the loop before they are set. No
+ * liveness sets or interference graph are built, so the time grows almost linearly with the size of the method, at
+ * the cost of a few more registers than {@link GraphColoring}.
+ */
+public class LinearScan {
+
+    private static class Interval {
+        private final String name;
+        private int start;
+        private int end;
+
+        // The value is written at the start, so a register freed by the same instruction can be reused
+        private boolean startsWithWrite;
+
+        private Interval(String name, int start, boolean startsWithWrite) {
+            this.name = name;
+            this.start = start;
+            this.end = start;
+            this.startsWithWrite = startsWithWrite;
+        }
+    }
+
+    private final Method method;
+
+    private final Map<String, Interval> intervals = new LinkedHashMap<>();
+
+    private final List<String> params = new ArrayList<>();
+
+    public LinearScan(Method method) {
+        this.method = method;
+
+        // 'this' and the parameters are set before the first instruction; 'this' is only in the var table if used
+        if (method.getVarTable().containsKey("this")) {
+            params.add("this");
+        }
+        for (var param : method.getParams()) {
+            params.add(((Operand) param).getName());
+        }
+        for (var param : params) {
+            intervals.put(param, new Interval(param, -1, false));
+        }
+
+        buildIntervals();
+    }
+
+    private void buildIntervals() {
+        var instructions = method.getInstructions();
+
+        var read = new HashSet<String>();
+        for (var instruction : instructions) {
+            read.addAll(InstructionVars.getUses(instruction));
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+
+            for (var use : InstructionVars.getUses(instruction)) {
+                extend(use, i, false);
+            }
+
+            // Variables that are never read get no register
+            var def = InstructionVars.getDef(instruction);
+            if (def != null && read.contains(def)) {
+                extend(def, i, true);
+            }
+        }
+
+        // Jumps back to an earlier instruction, the start and the end of a loop
+        var loops = new ArrayList<int[]>();
+        var cfg = new ControlFlowGraph(method);
+        for (int i = 0; i < cfg.size(); i++) {
+            for (int successor : cfg.getSuccessors(i)) {
+                if (successor <= i) {
+                    loops.add(new int[]{successor, i});
+                }
+            }
+        }
+
+        // Stretching an interval over a loop can make it overlap an enclosing loop
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (var loop : loops) {
+                for (var interval : intervals.values()) {
+                    changed |= stretch(interval, loop[0], loop[1]);
+                }
+            }
+        }
+    }
+
+    private void extend(String name, int index, boolean write) {
+        var interval = intervals.get(name);
+
+        if (interval == null) {
+            intervals.put(name, new Interval(name, index, write));
+        } else {
+            interval.end = index;
+        }
+    }
+
+    /**
+     * @return true if the interval changed
+     */
+    private static boolean stretch(Interval interval, int loopStart, int loopEnd) {
+        // Set before the loop and used inside it, the value must survive every iteration
+        if (interval.start < loopStart && interval.end >= loopStart && interval.end < loopEnd) {
+            interval.end = loopEnd;
+            return true;
+        }
+
+        // Read inside the loop before being set, the value comes from the previous iteration
+        if (!interval.startsWithWrite && interval.start >= loopStart && interval.start <= loopEnd
+                && (interval.start > loopStart || interval.end < loopEnd)) {
+            interval.start = loopStart;
+            interval.end = Math.max(interval.end, loopEnd);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the register of each variable; 'this' and the parameters keep theirs
+     */
+    public Map<String, Integer> allocate() {
+        var sorted = new ArrayList<>(intervals.values());
+        sorted.sort(Comparator.comparingInt(interval -> interval.start));
+
+        Map<String, Integer> registers = new HashMap<>();
+        var active = new PriorityQueue<Interval>(Comparator.comparingInt(interval -> interval.end));
+        var free = new PriorityQueue<Integer>();
+
+        // The registers of 'this' and the parameters are taken even if unused, except for an unused 'this'
+        int nextRegister = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+        if (!method.isStaticMethod() && !params.contains("this")) {
+            free.add(0);
+        }
+
+        for (var interval : sorted) {
+            // Free the registers of the intervals that ended
+            while (!active.isEmpty() && (active.peek().end < interval.start
+                    || (active.peek().end == interval.start && interval.startsWithWrite))) {
+                free.add(registers.get(active.poll().name));
+            }
+
+            int register;
+            if (params.contains(interval.name)) {
+                register = method.getVarTable().get(interval.name).getVirtualReg();
+            } else if (!free.isEmpty()) {
+                register = free.poll();
+            } else {
+                register = nextRegister++;
+            }
+
+            registers.put(interval.name, register);
+            active.add(interval);
+        }
+
+        return registers;
+    }
+}
@@ -0,0 +1,282 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.AvailableExpressions;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Dominators;
+import pt.up.fe.comp2024.optimization.dataflow.Liveness;
+import pt.up.fe.comp2024.optimization.dataflow.Loops;
+import pt.up.fe.comp2024.optimization.dataflow.ReachingDefinitions;
+import pt.up.fe.comp2024.optimization.dataflow.Variables;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the computations whose value does not change inside a loop to right before the loop, so that they run once.
+ * <p>
+ * An assignment is invariant when the variables it reads are only assigned outside the loop, or by another invariant
+ * assignment. Array elements are invariant if the loop stores to no array and makes no calls, and fields if it stores
+ * to no field and makes no calls; array lengths never change. The assigned variable must be assigned nowhere else in
+ * the loop, and not read in it before being assigned, so that every read in the loop, and after it, still gets the
+ * same value.
+ * <p>
+ * Moved computations run even if the loop body does not, so the ones that may throw, such as reading an array element
+ * or its length, are only moved from the start of the header, where they run every time the loop is reached, before
+ * anything else with an effect.
+ */
+public class LoopInvariantCodeMotion {
+
+    /**
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit ollirClass) {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            // Computations moved out of an inner loop may be invariant in the enclosing loop too
+            while (hoist(method)) {
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return true if the method changed
+     */
+    private boolean hoist(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        if (cfg.size() == 0) {
+            return false;
+        }
+
+        var loops = new Loops(cfg, new Dominators(cfg)).getLoops();
+        if (loops.isEmpty()) {
+            return false;
+        }
+
+        var context = new Context(cfg);
+
+        // Instructions to put before the header of each loop, in order
+        Map<Loops.Loop, List<Integer>> preheaders = new HashMap<>();
+        Map<Integer, Loops.Loop> headers = new HashMap<>();
+        var hoisted = new BitSet();
+        for (var loop : loops) {
+            if (!context.preheaders.hasPlace(loop)) {
+                continue;
+            }
+
+            var invariant = findInvariant(context, loop, hoisted);
+            if (!invariant.isEmpty()) {
+                preheaders.put(loop, invariant);
+                headers.put(loop.getHeader(), loop);
+                invariant.forEach(hoisted::set);
+            }
+        }
+
+        if (preheaders.isEmpty()) {
+            return false;
+        }
+
+        var instructions = method.getInstructions();
+        var reordered = new ArrayList<Instruction>(instructions.size());
+
+        // The labels of moved instructions go to the instruction that takes their place
+        var pendingLabels = new ArrayList<String>();
+        for (int i = 0; i < instructions.size(); i++) {
+            var loop = headers.get(i);
+            if (loop != null) {
+                var preheader = preheaders.get(loop);
+                var first = instructions.get(preheader.get(0));
+                context.preheaders.moveEntryLabels(loop, first);
+                moveLabels(method, pendingLabels, first);
+                preheader.forEach(index -> reordered.add(instructions.get(index)));
+            }
+
+            var instruction = instructions.get(i);
+            if (hoisted.get(i)) {
+                pendingLabels.addAll(Preheaders.getLabels(method, instruction));
+            } else {
+                moveLabels(method, pendingLabels, instruction);
+                reordered.add(instruction);
+            }
+        }
+
+        instructions.clear();
+        instructions.addAll(reordered);
+
+        return true;
+    }
+
+    /**
+     * The analyses of a method, shared by its loops.
+     */
+    private static class Context {
+
+        private final ControlFlowGraph cfg;
+        private final ReachingDefinitions reaching;
+        private final Liveness liveness;
+        private final Preheaders preheaders;
+
+        private Context(ControlFlowGraph cfg) {
+            this.cfg = cfg;
+            this.reaching = new ReachingDefinitions(cfg, new Variables(cfg.getMethod()));
+            this.liveness = new Liveness(cfg, new Variables(cfg.getMethod()));
+            this.preheaders = new Preheaders(cfg);
+        }
+    }
+
+    private static void moveLabels(Method method, List<String> labels, Instruction to) {
+        labels.forEach(label -> method.getLabels().put(label, to));
+        labels.clear();
+    }
+
+    /**
+     * @return the indexes of the invariant instructions of the loop, each after the ones it reads
+     */
+    private static List<Integer> findInvariant(Context context, Loops.Loop loop, BitSet hoisted) {
+        var cfg = context.cfg;
+        var instructions = cfg.getInstructions();
+        var body = loop.getBody();
+
+        boolean storesArrays = false;
+        boolean storesFields = false;
+        Map<String, Integer> assignments = new HashMap<>();
+        for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+            var instruction = instructions.get(i);
+            if (AvailableExpressions.isCall(instruction)) {
+                storesArrays = true;
+                storesFields = true;
+            } else if (instruction instanceof AssignInstruction assign && assign.getDest() instanceof ArrayOperand) {
+                storesArrays = true;
+            } else if (instruction.getInstType() == InstructionType.PUTFIELD) {
+                storesFields = true;
+            }
+
+            var def = InstructionVars.getDef(instruction);
+            if (def != null) {
+                assignments.merge(def, 1, Integer::sum);
+            }
+        }
+
+        int headerEnd = getHeaderEnd(cfg, loop);
+
+        var invariant = new ArrayList<Integer>();
+        var marked = new BitSet();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+                if (marked.get(i) || hoisted.get(i) || !cfg.isReachable(i)
+                        || !(instructions.get(i) instanceof AssignInstruction assign)
+                        || !(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand) {
+                    continue;
+                }
+
+                var rhs = assign.getRhs();
+                if (!isPure(rhs)
+                        || (readsElement(rhs) && storesArrays)
+                        || (rhs instanceof GetFieldInstruction && storesFields)
+                        || assignments.get(dest.getName()) != 1
+                        || context.liveness.isLiveIn(loop.getHeader(), dest.getName())
+                        || !readsInvariants(context, loop, marked, i, rhs)) {
+                    continue;
+                }
+
+                // Throwing first must not skip effects, or exceptions, of the instructions before
+                if (DeadCodeElimination.mayThrow(rhs) && !throwsFirst(instructions, loop, marked, i, headerEnd)) {
+                    continue;
+                }
+
+                marked.set(i);
+                invariant.add(i);
+                changed = true;
+            }
+        }
+
+        return invariant;
+    }
+
+    /**
+     * @return the index after the straight run of assignments at the start of the loop, with no calls nor stores
+     */
+    private static int getHeaderEnd(ControlFlowGraph cfg, Loops.Loop loop) {
+        var instructions = cfg.getInstructions();
+
+        int end = loop.getHeader();
+        while (end < instructions.size() && loop.contains(end)
+                && instructions.get(end) instanceof AssignInstruction assign
+                && !(assign.getDest() instanceof ArrayOperand)
+                && !AvailableExpressions.isCall(assign)
+                && (end == loop.getHeader() || Arrays.equals(cfg.getPredecessors(end), new int[]{end - 1}))) {
+            end++;
+        }
+
+        return end;
+    }
+
+    private static boolean throwsFirst(List<Instruction> instructions, Loops.Loop loop, BitSet marked, int index,
+                                       int headerEnd) {
+        if (index >= headerEnd) {
+            return false;
+        }
+
+        for (int i = loop.getHeader(); i < index; i++) {
+            if (!marked.get(i) && DeadCodeElimination.mayThrow(((AssignInstruction) instructions.get(i)).getRhs())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if every variable the instruction reads is assigned only outside the loop, or by one invariant
+     * assignment
+     */
+    private static boolean readsInvariants(Context context, Loops.Loop loop, BitSet marked, int index,
+                                           Instruction rhs) {
+        for (var name : InstructionVars.getUses(rhs)) {
+            var definitions = context.reaching.getReaching(index, name);
+
+            boolean inside = definitions.stream()
+                    .anyMatch(definition -> definition != ReachingDefinitions.ENTRY && loop.contains(definition));
+            if (!inside) {
+                continue;
+            }
+
+            if (definitions.size() != 1 || !marked.get(definitions.get(0))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if computing the instruction has no effect other than its value, and maybe an exception
+     */
+    private static boolean isPure(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case NOPER, UNARYOPER, BINARYOPER, GETFIELD -> true;
+            case CALL -> ((CallInstruction) instruction).getInvocationType() == CallType.arraylength;
+            default -> false;
+        };
+    }
+
+    private static boolean readsElement(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            return singleOp.getSingleOperand() instanceof ArrayOperand;
+        }
+
+        return instruction instanceof OpInstruction op
+                && op.getOperands().stream().anyMatch(ArrayOperand.class::isInstance);
+    }
+}
@@ -0,0 +1,39 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appends the instructions of an OLLIR method in order. Labels are kept until the next instruction is added, which
+ * is the instruction they point to, like labels in OLLIR code.
+ */
+public class MethodBuilder {
+
+    private final Method method;
+    private final List<String> pendingLabels;
+
+    public MethodBuilder(Method method) {
+        this.method = method;
+        this.pendingLabels = new ArrayList<>();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public void addLabel(String label) {
+        pendingLabels.add(label);
+    }
+
+    public void add(Instruction instruction) {
+        for (var label : pendingLabels) {
+            method.addLabel(label, instruction);
+        }
+        pendingLabels.clear();
+
+        method.addInstr(instruction);
+    }
+}
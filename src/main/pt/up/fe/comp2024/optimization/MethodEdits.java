@@ -0,0 +1,128 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Descriptor;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Type;
+import org.specs.comp.ollir.VarScope;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Changes the instructions of an OLLIR method without losing their labels, and adds variables to it.
+ * <p>
+ * Labels are looked up in {@link Method#getLabels()}, which maps each label to the instruction it is on, so an
+ * instruction that takes the place of another, or that follows a removed one, must take its labels too.
+ */
+public class MethodEdits {
+
+    private MethodEdits() {
+    }
+
+    /**
+     * Puts another instruction in the place of the instruction at the index, with the same labels.
+     */
+    public static void replace(Method method, int index, Instruction instruction) {
+        var previous = method.getInstructions().set(index, instruction);
+        moveLabels(method, previous, instruction);
+    }
+
+    /**
+     * Removes the instruction at the index; its labels move to the next instruction.
+     */
+    public static void remove(Method method, int index) {
+        var instructions = method.getInstructions();
+        var removed = instructions.get(index);
+
+        if (index + 1 < instructions.size()) {
+            moveLabels(method, removed, instructions.get(index + 1));
+        } else if (method.getLabels().containsValue(removed)) {
+            throw new RuntimeException("Cannot remove the last instruction of method '" + method.getMethodName()
+                    + "', it has labels");
+        }
+
+        instructions.remove(index);
+    }
+
+    /**
+     * Removes the instructions at the indexes in the set; their labels move to the next instruction that is kept. Labels
+     * with no instruction left after them are dropped, nothing can jump to them.
+     */
+    public static void removeAll(Method method, BitSet indexes) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        var instructions = method.getInstructions();
+
+        // The instruction each removed one hands its labels to, if any
+        Map<Instruction, Instruction> next = new IdentityHashMap<>();
+        Instruction kept = null;
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            if (indexes.get(i)) {
+                next.put(instructions.get(i), kept);
+            } else {
+                kept = instructions.get(i);
+            }
+        }
+
+        var labels = method.getLabels();
+        labels.replaceAll((label, instruction) -> next.containsKey(instruction) ? next.get(instruction) : instruction);
+        labels.values().removeIf(Objects::isNull);
+
+        var remaining = new ArrayList<Instruction>(instructions.size() - indexes.cardinality());
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!indexes.get(i)) {
+                remaining.add(instructions.get(i));
+            }
+        }
+        instructions.clear();
+        instructions.addAll(remaining);
+    }
+
+    /**
+     * Adds a local variable named after the prefix, in a register of its own.
+     *
+     * @return an operand for the new variable
+     */
+    public static Operand addVariable(Method method, String prefix, Type type) {
+        var varTable = method.getVarTable();
+
+        int number = 0;
+        while (varTable.containsKey(prefix + number)) {
+            number++;
+        }
+
+        varTable.put(prefix + number, new Descriptor(VarScope.LOCAL, getNextRegister(method), type));
+
+        return new Operand(prefix + number, type);
+    }
+
+    /**
+     * @return the register after the highest one in the var table, which no variable uses
+     */
+    public static int getNextRegister(Method method) {
+        return method.getVarTable().values().stream().mapToInt(Descriptor::getVirtualReg).max().orElse(-1) + 1;
+    }
+
+    /**
+     * @return a new operand for the same variable, since elements are not shared between instructions
+     */
+    public static Operand copyOf(Operand operand) {
+        var copy = new Operand(operand.getName(), operand.getType());
+        if (operand.isParameter()) {
+            copy.setParamId(operand.getParamId());
+        }
+
+        return copy;
+    }
+
+    private static void moveLabels(Method method, Instruction from, Instruction to) {
+        method.getLabels().replaceAll((label, instruction) -> instruction == from ? to : instruction);
+    }
+}
@@ -1,25 +1,22 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
-import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
-import pt.up.fe.comp2024.ast.TypeUtils;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
-import static pt.up.fe.comp2024.optimization.OptUtils.toOllirType;
 
 /**
- * Generates OLLIR code from JmmNodes that are expressions.
+ * Generates OLLIR instructions from JmmNodes that are expressions.
+ * <p>
+ * The instructions that compute an expression are added to the given method, and the visit returns the element that
+ * holds its value: a literal, a variable or a temporary.
  */
-public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult> {
-    private static final String SPACE = " ";
-    private static final String ASSIGN = ":=";
-    private final String END_STMT = ";\n";
+public class OllirExprGeneratorVisitor extends AJmmVisitor<MethodBuilder, Element> {
     private final SymbolTable table;
 
     public OllirExprGeneratorVisitor(SymbolTable table) {
@@ -45,317 +42,224 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         setDefaultVisit(this::defaultVisit);
     }
 
-    private OllirExprResult visitInteger(JmmNode node, Void unused) {
-        String code = node.get("value") + OptUtils.toOllirType("int");
-        return new OllirExprResult(code);
+    private Element visitInteger(JmmNode node, MethodBuilder code) {
+        return new LiteralElement(node.get("value"), OllirTypes.intType());
     }
 
-    private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
-        var lhs = visit(node.getJmmChild(0));
-        var rhs = visit(node.getJmmChild(1));
-
-        StringBuilder computation = new StringBuilder();
-
-        boolean lhsIsArrayAccess = node.getJmmChild(0).getKind().equals("ArrayAccessExpr");
-        boolean rhsIsArrayAccess = node.getJmmChild(1).getKind().equals("ArrayAccessExpr");
-
-        if (lhsIsArrayAccess || rhsIsArrayAccess) {
-            String lhsTemp = lhsIsArrayAccess ? OptUtils.getTemp() + OptUtils.toOllirType(node, table) : lhs.getCode();
-            if (lhsIsArrayAccess) {
-                computation.append(lhsTemp)
-                        .append(SPACE)
-                        .append(ASSIGN)
-                        .append(OptUtils.toOllirType(node, table))
-                        .append(SPACE)
-                        .append(lhs.getCode())
-                        .append(END_STMT);
-            }
-
-            String rhsTemp = rhsIsArrayAccess ? OptUtils.getTemp() + OptUtils.toOllirType(node, table) : rhs.getCode();
-            if (rhsIsArrayAccess) {
-                computation.append(rhsTemp)
-                        .append(SPACE)
-                        .append(ASSIGN)
-                        .append(OptUtils.toOllirType(node, table))
-                        .append(SPACE)
-                        .append(rhs.getCode())
-                        .append(END_STMT);
-            }
-
-            String resultTemp = OptUtils.getTemp() + OptUtils.toOllirType(node, table);
-            computation.append(resultTemp)
-                    .append(SPACE)
-                    .append(ASSIGN)
-                    .append(OptUtils.toOllirType(node, table))
-                    .append(SPACE)
-                    .append(lhsTemp)
-                    .append(SPACE)
-                    .append(node.get("op"))
-                    .append(OptUtils.toOllirType(node, table))
-                    .append(SPACE)
-                    .append(rhsTemp)
-                    .append(END_STMT);
-
-            return new OllirExprResult(resultTemp, computation);
-        }
-
+    private Element visitBinExpr(JmmNode node, MethodBuilder code) {
         if (node.get("op").equals("&&")) {
             // Label for the short-circuit evaluation
             String trueLabel = OptUtils.getLabel("true");
             String endLabel = OptUtils.getLabel("end");
 
-            computation.append(lhs.getComputation());
-            String tmp1 = OptUtils.getTemp() + ".bool";
-            computation.append("if(").append(lhs.getCode()).append(") goto ").append(trueLabel).append(END_STMT);
-            computation.append(tmp1).append(" :=.bool 0.bool").append(END_STMT);
-            computation.append("goto ").append(endLabel).append(END_STMT);
+            var lhs = visit(node.getJmmChild(0), code);
+            String temp = OptUtils.getTemp();
 
-            computation.append(trueLabel).append(":\n");
-            String tmp2 = OptUtils.getTemp() + ".bool";
-            computation.append(tmp2).append(" :=.bool ").append(rhs.getCode()).append(END_STMT);
-            computation.append(tmp1).append(" :=.bool ").append(tmp2).append(END_STMT);
+            var condition = new SingleOpCondInstruction(new SingleOpInstruction(lhs));
+            condition.setLabel(trueLabel);
+            code.add(condition);
+            code.add(assign(temp, OllirTypes.boolType(),
+                    new SingleOpInstruction(new LiteralElement("0", OllirTypes.boolType()))));
+            code.add(new GotoInstruction(endLabel));
 
-            computation.append(endLabel).append(":\n");
-            return new OllirExprResult(tmp1, computation);
-        }
+            // The right operand is only computed when the left one is true
+            code.addLabel(trueLabel);
+            var rhs = visit(node.getJmmChild(1), code);
+            code.add(assign(temp, OllirTypes.boolType(), new SingleOpInstruction(rhs)));
 
-        if(rhs.getCode().contains("invoke")){
-            String temp = OptUtils.getTemp() + OptUtils.toOllirType(node, table);
-            computation.append(lhs.getComputation());
-
-            String lhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(node, table);
-            computation.append(lhsTemp)
-                    .append(SPACE)
-                    .append(ASSIGN)
-                    .append(OptUtils.toOllirType(node, table))
-                    .append(SPACE)
-                    .append(lhs.getCode())
-                    .append(END_STMT);
-
-            String rhsTemp = OptUtils.getTemp() + OptUtils.toOllirType(node, table);
-            computation.append(rhsTemp)
-                    .append(SPACE)
-                    .append(ASSIGN)
-                    .append(OptUtils.toOllirType(node, table))
-                    .append(SPACE)
-                    .append(rhs.getCode())
-                    .append(END_STMT);
-
-            String resultTemp = OptUtils.getTemp() + OptUtils.toOllirType(node, table);
-            computation.append(resultTemp)
-                    .append(SPACE)
-                    .append(ASSIGN)
-                    .append(OptUtils.toOllirType(node, table))
-                    .append(SPACE)
-                    .append(lhsTemp)
-                    .append(SPACE)
-                    .append(node.get("op"))
-                    .append(OptUtils.toOllirType(node, table))
-                    .append(SPACE)
-                    .append(rhsTemp)
-                    .append(END_STMT);
-
-            return new OllirExprResult(resultTemp, computation);
+            code.addLabel(endLabel);
+            return new Operand(temp, OllirTypes.boolType());
         }
 
-        computation.append(lhs.getComputation());
-        computation.append(rhs.getComputation());
+        return toTemp(OllirTypes.of(node, table), getBinaryOp(node, code), code);
+    }
 
-        String resOllirType = OptUtils.toOllirType(node, table);
-        String code = OptUtils.getTemp() + resOllirType;
+    private BinaryOpInstruction getBinaryOp(JmmNode node, MethodBuilder code) {
+        // Operands are always plain values, anything more complex was already moved to a temporary
+        var lhs = visit(node.getJmmChild(0), code);
+        var rhs = visit(node.getJmmChild(1), code);
 
-        computation.append(code).append(SPACE)
-                .append(ASSIGN).append(resOllirType).append(SPACE)
-                .append(lhs.getCode()).append(SPACE);
+        var operation = new Operation(toOperationType(node.get("op")), OllirTypes.of(node, table));
 
-        computation.append(node.get("op")).append(OptUtils.toOllirType(node, table)).append(SPACE)
-                .append(rhs.getCode()).append(END_STMT);
+        return new BinaryOpInstruction(lhs, operation, rhs);
+    }
 
-        return new OllirExprResult(code, computation);
+    /**
+     * Visits an expression whose value a statement assigns itself. Operations on plain values are returned as they
+     * are, without a temporary, so that 'i = i + 1' stays a single assignment.
+     *
+     * @return the instruction that computes the value
+     */
+    public Instruction visitValue(JmmNode node, MethodBuilder code) {
+        if (BINARY_EXPR.check(node) && !node.get("op").equals("&&")) {
+            return getBinaryOp(node, code);
+        }
+
+        return new SingleOpInstruction(visit(node, code));
     }
 
-    private OllirExprResult visitVarRef(JmmNode node, Void unused) {
+    private static OperationType toOperationType(String op) {
+        return switch (op) {
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "<" -> OperationType.LTH;
+            case "&&" -> OperationType.ANDB;
+            case "!" -> OperationType.NOTB;
+            default -> throw new RuntimeException("Unknown operator '" + op + "'");
+        };
+    }
+
+    private Element visitVarRef(JmmNode node, MethodBuilder code) {
         var id = node.get("name");
-        String ollirType = OptUtils.toOllirType(node,table);
 
-        String parameterNumber = OptUtils.getParameterNumber(node, table);
-        String code;
-        if (!parameterNumber.isEmpty()) {
-            code = parameterNumber + "." + id + ollirType;
-        } else {
-            code = id + ollirType;
+        var type = OllirTypes.of(node, table);
+
+        if (OptUtils.isField(node, table)) {
+            return toTemp(type, new GetFieldInstruction(thisOperand(), new Operand(id, type), type), code);
         }
 
-        return new OllirExprResult(code);
-    }
+        var operand = new Operand(id, type);
+        var parameterIndex = OptUtils.getParameterIndex(node, table);
+        if (parameterIndex > 0) {
+            operand.setParamId(parameterIndex);
+        }
 
-    private OllirExprResult visitMethodCall(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
-        StringBuilder code = new StringBuilder();
+        return operand;
+    }
 
+    /*
+    Calls used as statements are only added to the method and return null. Otherwise, the returned value is saved to a
+    temporary, so that calls can be operands of other expressions and arguments of other calls.
+    */
+    private Element visitMethodCall(JmmNode node, MethodBuilder code) {
         String methodName = node.get("name");
-        String methodType;
 
         JmmNode caller = node.getJmmChild(0);
-        String callerName, callerType;
-
-        Type callerTypeNode = TypeUtils.getExprType(caller, table);
+        CallType invokeType;
+        Element callerElement;
 
         if (caller.getKind().equals("ThisExpr")) {
-            callerName = "this";
-            callerType = table.getClassName();
+            invokeType = CallType.invokevirtual;
+            callerElement = thisOperand();
+        } else if (caller.getKind().equals("VarRefExpr") && OptUtils.isClassName(caller, table)) {
+            // Calls on the name of a class, such as 'io.println(a)', are static
+            invokeType = CallType.invokestatic;
+            callerElement = new Operand(caller.get("name"), OllirTypes.staticType(caller.get("name")));
         } else {
-            callerName = caller.get("name");
-            callerType = callerTypeNode.getName();
+            invokeType = CallType.invokevirtual;
+            callerElement = visit(caller, code);
         }
 
-        String invokeType;
-        if (callerType.equals(table.getClassName()) || callerType.equals("this")) {
-            invokeType = "invokevirtual";
-            methodType = toOllirType(node,table);
+        boolean isStatement = node.getParent().getKind().equals("ExprStmt");
+        Type methodType;
+        if (table.getMethods().contains(methodName)) {
+            methodType = OllirTypes.of(table.getReturnType(methodName));
+        } else if (isStatement) {
+            methodType = OllirTypes.voidType();
         } else {
-            if (table.getImports().contains(callerType)) {
-                invokeType = "invokevirtual";
-            } else {
-                invokeType = "invokestatic";
-            }
-            methodType = ".V";
+            methodType = getExpectedType(node);
         }
 
-        ArrayList<String> args = new ArrayList<String>();
+        var args = new ArrayList<Element>();
         for (int i = 1; i < node.getNumChildren(); i++) {
-            String arg = visit(node.getJmmChild(i)).getCode();
-            args.add(arg);
+            args.add(visit(node.getJmmChild(i), code));
         }
 
-        String argsString;
-        if (args.size() > 0) {
-            argsString = ", " + String.join(", ", args);
-        } else {
-            argsString = "";
+        var name = new LiteralElement("\"" + methodName + "\"", OllirTypes.stringType());
+
+        if (isStatement || methodType.getTypeOfElement() == ElementType.VOID) {
+            code.add(new CallInstruction(invokeType, callerElement, name, args, methodType, true));
+            return null;
         }
 
-        code.append(invokeType)
-            .append("(")
-            .append(callerName)
-            .append(".")
-            .append(callerType)
-            .append(", ")
-            .append("\"")
-            .append(methodName)
-            .append("\"")
-            .append(argsString)
-            .append(")")
-            .append(methodType);
-
-        OllirExprResult result = new OllirExprResult(code.toString(), computation.toString());
-        return result;
-    }
-    
-    private OllirExprResult visitNewObjectExpr(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
-        StringBuilder code = new StringBuilder();
-
-        String newObj = "new(" + node.get("type") + ")" + OptUtils.toOllirType(node,table);
-
-        String temp = OptUtils.getTemp() + OptUtils.toOllirType(node,table);
-
-        computation
-                .append(temp)
-                .append(SPACE)
-                .append(ASSIGN)
-                .append(OptUtils.toOllirType(node,table))
-                .append(SPACE)
-                .append(newObj)
-                .append(END_STMT)
-                .append("invokespecial(")
-                .append(temp)
-                .append(",\"<init>\").V;\n");
-
-        return new OllirExprResult(temp, computation);
+        return toTemp(methodType, new CallInstruction(invokeType, callerElement, name, args, methodType), code);
     }
 
-    private OllirExprResult visitNewArrayObjectExpr(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
-        StringBuilder code = new StringBuilder();
+    /**
+     * The return type of methods of other classes is not known, it is taken from where the value is used.
+     */
+    private Type getExpectedType(JmmNode node) {
+        var parent = node.getParent();
+
+        return switch (parent.getKind()) {
+            case "AssignStmt", "ReturnStmt" -> OllirTypes.of(parent, table);
+            case "BinaryExpr" -> parent.get("op").equals("&&") ? OllirTypes.boolType() : OllirTypes.intType();
+            case "UnaryExpr" -> OllirTypes.boolType();
+            case "ArrayAccessExpr", "ArrayAssignStmt", "SpecificTypeNewArrayExpr" -> OllirTypes.intType();
+            case "IfElseStmt", "WhileStmt" -> OllirTypes.boolType();
+            default -> OllirTypes.voidType();
+        };
+    }
 
-        String size = visit(node.getJmmChild(0)).getCode();
-        String type = OptUtils.toOllirType(node,table);
+    private Element visitNewObjectExpr(JmmNode node, MethodBuilder code) {
+        String className = node.get("type");
+        var type = OllirTypes.of(node, table);
 
-        String temp = OptUtils.getTemp() + type;
+        var newObject = new CallInstruction(CallType.NEW, new Operand(className, OllirTypes.classType(className)),
+                new ArrayList<>(), type);
+        var temp = toTemp(type, newObject, code);
 
-        computation.append(temp)
-                    .append(SPACE)
-                    .append(ASSIGN)
-                    .append(type)
-                    .append(SPACE)
-                    .append("new(array,")
-                    .append(size).append(")")
-                    .append(type)
-                    .append(END_STMT);
+        code.add(new CallInstruction(CallType.invokespecial, new Operand(temp.getName(), type),
+                new LiteralElement("\"<init>\"", OllirTypes.stringType()), new ArrayList<>(), OllirTypes.voidType(),
+                true));
 
-        return new OllirExprResult(temp, computation);
+        return temp;
     }
 
-    private OllirExprResult visitUnspecifiedTypeNewArrayExpr(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+    private Element visitNewArrayObjectExpr(JmmNode node, MethodBuilder code) {
+        var size = visit(node.getJmmChild(0), code);
+        var type = OllirTypes.of(node, table);
+
+        var newArray = new CallInstruction(CallType.NEW, new Operand("array", new ArrayType()), elements(size), type);
 
+        return toTemp(type, newArray, code);
+    }
+
+    private Element visitUnspecifiedTypeNewArrayExpr(JmmNode node, MethodBuilder code) {
         List<JmmNode> values = node.getChildren();
         int size = values.size();
 
-        String arrayType = OptUtils.toOllirType(node, table);
-        String tempArray = OptUtils.getTemp() + arrayType;
-        code.append(tempArray).append(" :=").append(arrayType).append(" new(array, ").append(size).append(".i32)").append(arrayType).append(END_STMT);
+        var arrayType = OllirTypes.of(node, table);
+        var newArray = new CallInstruction(CallType.NEW, new Operand("array", new ArrayType()),
+                elements(new LiteralElement(String.valueOf(size), OllirTypes.intType())), arrayType);
+        var tempArray = toTemp(arrayType, newArray, code);
 
         for (int i = 0; i < size; i++) {
             JmmNode value = values.get(i);
-            OllirExprResult valueResult = visit(value);
-            code.append(valueResult.getComputation());
+            var valueElement = visit(value, code);
 
-            String indexTemp = OptUtils.getTemp() + ".i32";
-            code.append(indexTemp).append(" :=.i32 ").append(i).append(".i32").append(END_STMT);
+            var index = toTemp(OllirTypes.intType(),
+                    new SingleOpInstruction(new LiteralElement(String.valueOf(i), OllirTypes.intType())), code);
 
-            code.append(tempArray).append("[").append(indexTemp).append("]").append(OptUtils.toOllirType(value, table)).append(" :=").append(OptUtils.toOllirType(value, table)).append(" ").append(valueResult.getCode()).append(END_STMT);
+            var valueType = OllirTypes.of(value, table);
+            var element = new ArrayOperand(tempArray.getName(), valueType, elements(index));
+            code.add(new AssignInstruction(element, valueType, new SingleOpInstruction(valueElement)));
         }
 
-        return new OllirExprResult(tempArray, code);
+        return tempArray;
     }
 
-    private OllirExprResult visitUnaryExpr(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
-
-        String op = node.get("op");
+    private Element visitUnaryExpr(JmmNode node, MethodBuilder code) {
+        var child = visit(node.getJmmChild(0), code);
 
-        var child = visit(node.getJmmChild(0));
-        computation.append(child.getComputation());
+        var type = OllirTypes.of(node, table);
+        var operation = new Operation(toOperationType(node.get("op")), type);
 
-        String resOllirType = OptUtils.toOllirType(node,table);
-        String code = op + resOllirType + SPACE + child.getCode();
-
-        return new OllirExprResult(code, computation);
+        return toTemp(type, new UnaryOpInstruction(operation, child), code);
     }
 
-    private OllirExprResult visitBooleanLiteral(JmmNode node, Void unused) {
-        String ollirBoolType = OptUtils.toOllirType(node,table);
-        String code = node.get("value") + ollirBoolType;
-        return new OllirExprResult(code);
+    private Element visitBooleanLiteral(JmmNode node, MethodBuilder code) {
+        String value = node.get("value").equals("true") ? "1" : "0";
+        return new LiteralElement(value, OllirTypes.of(node, table));
     }
 
-    private OllirExprResult visitArrayLengthExpr(JmmNode node, Void unused) {
-        JmmNode arrayNode = node.getJmmChild(0);
-        OllirExprResult arrayResult = visit(arrayNode);
-
-        StringBuilder computation = new StringBuilder();
-        computation.append(arrayResult.getComputation());
+    private Element visitArrayLengthExpr(JmmNode node, MethodBuilder code) {
+        var array = visit(node.getJmmChild(0), code);
 
-        String temp = OptUtils.getTemp() + OptUtils.toOllirType("int");
-        computation.append(temp)
-                .append(" :=.i32 ")
-                .append("arraylength(")
-                .append(arrayResult.getCode())
-                .append(").i32;\n");
-
-        return new OllirExprResult(temp, computation);
+        return toTemp(OllirTypes.intType(), new CallInstruction(CallType.arraylength, array, OllirTypes.intType()),
+                code);
     }
 
     /*
@@ -367,43 +271,56 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                VarRefExpr (name: a, isArray: true, type: int)
                IntegerLiteral (isArray: false, type: int, value: 0)
     OLLIR we want to generate:
-            result.i32 :=.i32 $1.a[0.i32].i32;
+            tmp0.i32 :=.i32 $1.a[0.i32].i32;
     */
-    private OllirExprResult visitArrayAccessExpr(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
-        JmmNode arrayNode = node.getJmmChild(0);
-        JmmNode indexNode = node.getJmmChild(1);
+    private Element visitArrayAccessExpr(JmmNode node, MethodBuilder code) {
+        var array = (Operand) visit(node.getJmmChild(0), code);
+        var index = visit(node.getJmmChild(1), code);
+
+        var type = OllirTypes.of(node, table);
+        var element = new ArrayOperand(array.getName(), type, elements(index));
+        if (array.isParameter()) {
+            element.setParamId(array.getParamId());
+        }
 
-        OllirExprResult arrayResult = visit(arrayNode);
-        OllirExprResult indexResult = visit(indexNode);
+        return toTemp(type, new SingleOpInstruction(element), code);
+    }
 
-        code.append(arrayResult.getComputation());
-        code.append(indexResult.getComputation());
+    /**
+     * Assigns the result of the instruction to a new temporary.
+     *
+     * @return the temporary
+     */
+    private static Operand toTemp(Type type, Instruction rhs, MethodBuilder code) {
+        String temp = OptUtils.getTemp();
+        code.add(assign(temp, type, rhs));
 
-        String arrayName = "temp" + OptUtils.getNextTempNum() + OptUtils.toOllirType(arrayNode, table);
-        code.append(arrayName).append(" :=").append(OptUtils.toOllirType(arrayNode, table)).append(" ").append(arrayResult.getCode()).append(END_STMT);
+        return new Operand(temp, type);
+    }
 
-        String indexTemp = "temp" + OptUtils.getNextTempNum() + OptUtils.toOllirType(indexNode, table);
-        code.append(indexTemp).append(" :=").append(OptUtils.toOllirType(indexNode, table)).append(" ").append(indexResult.getCode()).append(END_STMT);
+    private static AssignInstruction assign(String name, Type type, Instruction rhs) {
+        return new AssignInstruction(new Operand(name, type), type, rhs);
+    }
 
-        String resultTemp = "temp" + OptUtils.getNextTempNum() + OptUtils.toOllirType(node, table);
-        code.append(resultTemp).append(" :=").append(OptUtils.toOllirType(node, table)).append(" ").append(arrayName).append("[").append(indexTemp).append("]").append(OptUtils.toOllirType(node, table)).append(END_STMT);
+    private static ArrayList<Element> elements(Element... elements) {
+        return new ArrayList<>(List.of(elements));
+    }
 
-        return new OllirExprResult(resultTemp, code);
+    private Operand thisOperand() {
+        return new Operand("this", OllirTypes.thisType(table.getClassName()));
     }
 
     /**
-     * Default visitor. Visits every child node and return an empty result.
+     * Default visitor. Visits every child node and returns null.
      *
      * @param node
-     * @param unused
+     * @param code
      * @return
      */
-    private OllirExprResult defaultVisit(JmmNode node, Void unused) {
+    private Element defaultVisit(JmmNode node, MethodBuilder code) {
         for (var child : node.getChildren()) {
-            visit(child);
+            visit(child, code);
         }
-        return OllirExprResult.EMPTY;
+        return null;
     }
 }
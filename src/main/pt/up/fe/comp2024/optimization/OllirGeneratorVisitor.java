@@ -1,103 +1,81 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
-import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2024.ast.NodeUtils;
-import pt.up.fe.comp2024.ast.TypeUtils;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
-import static pt.up.fe.comp2024.optimization.OptUtils.toOllirType;
 
 /**
- * Generates OLLIR code from JmmNodes that are not expressions.
+ * Generates the OLLIR class of a program from JmmNodes that are not expressions.
+ * <p>
+ * The class is built in memory, as the OLLIR parser would build it from OLLIR code, so it can be given straight to the
+ * backend. Use {@link OllirPrinter} to get the corresponding OLLIR code.
  */
-public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
-    private static final String SPACE = " ";
-    private static final String ASSIGN = ":=";
-    private final String END_STMT = ";\n";
-    private final String NL = "\n";
-    private final String L_BRACKET = " {\n";
-    private final String R_BRACKET = "}\n";
-
+public class OllirGeneratorVisitor extends AJmmVisitor<MethodBuilder, Void> {
 
     private final SymbolTable table;
     private final OllirExprGeneratorVisitor exprVisitor;
 
+    private ClassUnit ollirClass;
+
     public OllirGeneratorVisitor(SymbolTable table) {
         this.table = table;
         exprVisitor = new OllirExprGeneratorVisitor(table);
     }
 
+    /**
+     * @param root the root of the program
+     * @return the OLLIR class of the program, with its variable tables already built
+     */
+    public ClassUnit generate(JmmNode root) {
+        ollirClass = new ClassUnit();
+        visit(root);
+        ollirClass.buildVarTables();
+
+        return ollirClass;
+    }
+
     @Override
     protected void buildVisitor() {
         addVisit(PROGRAM, this::visitProgram);
         addVisit(CLASS_DECL, this::visitClass);
         addVisit(METHOD_DECL, this::visitMethodDecl);
-        addVisit(PARAM, this::visitParam);
         addVisit(RETURN_STMT, this::visitReturn);
         addVisit(ASSIGN_STMT, this::visitAssignStmt);
         addVisit(ARRAY_ASSIGN_STMT, this::visitArrayAssignStmt);
-        addVisit(METHOD_CALL_EXPR, this::visitMethodCallExpr);
         addVisit(IMPORT_DECL, this::visitImportDecl);
         addVisit(EXPR_STMT, this::visitExprStmt);
         addVisit(IF_ELSE_STMT, this::visitIfElseStmt);
         addVisit(WHILE_STMT, this::visitWhileStmt);
+        addVisit(BLOCK_STMT, this::visitBlockStmt);
 
         setDefaultVisit(this::defaultVisit);
     }
 
-    private String visitAssignStmt(JmmNode node, Void unused) {
+    private Void visitAssignStmt(JmmNode node, MethodBuilder code) {
         String varName = node.get("name");
 
-        var rhs = exprVisitor.visit(node.getJmmChild(0));
-        StringBuilder code = new StringBuilder();
-
-        code.append(rhs.getComputation());
-        String typeString = toOllirType(node.getJmmChild(0), table);
-
-        String lhsType = toOllirType(node,table);
-        if(rhs.getCode().contains("invoke")){
-            String temp = OptUtils.getTemp() + typeString;
-            code.append(temp);
-            code.append(SPACE);
-            code.append(ASSIGN);
-            code.append(typeString);
-            code.append(SPACE);
-            code.append(rhs.getCode());
-            code.append(END_STMT);
-
-            code.append(varName);
-            code.append(lhsType);
-            code.append(SPACE);
-            code.append(ASSIGN);
-            code.append(typeString);
-            code.append(SPACE);
-            code.append(temp);
-            code.append(END_STMT);
-            return code.toString();
-        }
-        else{
-        code.append(varName);
-        code.append(lhsType);
-        code.append(SPACE);
+        var rhsType = OllirTypes.of(node.getJmmChild(0), table);
+        var lhsType = OllirTypes.of(node, table);
+        if (OptUtils.isField(node, table)) {
+            var rhs = exprVisitor.visit(node.getJmmChild(0), code);
+            code.add(new PutFieldInstruction(thisOperand(), new Operand(varName, lhsType), rhs,
+                    OllirTypes.voidType()));
+            return null;
         }
 
-        code.append(ASSIGN);
-        code.append(typeString);
-        code.append(SPACE);
+        var rhs = exprVisitor.visitValue(node.getJmmChild(0), code);
+        code.add(new AssignInstruction(new Operand(varName, lhsType), rhsType, rhs));
 
-        code.append(rhs.getCode());
-
-        code.append(END_STMT);
-
-        return code.toString();
+        return null;
     }
 
     /*
@@ -112,350 +90,239 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     $1.a[0.i32].i32 :=.i32 1.i32;
 
     */
-    private String visitArrayAssignStmt(JmmNode node, Void unused){
+    private Void visitArrayAssignStmt(JmmNode node, MethodBuilder code) {
         String varName = node.get("name");
 
-        var index = exprVisitor.visit(node.getJmmChild(0));
-        var value = exprVisitor.visit(node.getJmmChild(1));
+        var index = exprVisitor.visit(node.getJmmChild(0), code);
+        var value = exprVisitor.visit(node.getJmmChild(1), code);
 
-        StringBuilder code = new StringBuilder();
+        var type = OllirTypes.of(node.getJmmChild(1), table);
+        var indexes = new ArrayList<Element>();
+        indexes.add(index);
 
-        code.append(index.getComputation());
-        code.append(value.getComputation());
+        var element = new ArrayOperand(varName, type, indexes);
+        var parameterIndex = OptUtils.getParameterIndex(node, table);
+        if (parameterIndex > 0) {
+            element.setParamId(parameterIndex);
+        }
 
-        String typeString = toOllirType(node.getJmmChild(1), table);
-        String parameterNumber = OptUtils.getParameterNumber(node, table);
+        code.add(new AssignInstruction(element, type, new SingleOpInstruction(value)));
 
-        if(!parameterNumber.isEmpty()){
-            code.append(parameterNumber);
-            code.append(".");
-        }
-        code.append(varName);
-        code.append("[");
-
-        code.append(index.getCode());
-        code.append("]");
-        code.append(typeString);
-        code.append(SPACE);
-        code.append(ASSIGN);
-        code.append(typeString);
-        code.append(SPACE);
-        code.append(value.getCode());
-        code.append(END_STMT);
-
-        return code.toString();
+        return null;
     }
-    private String visitReturn(JmmNode node, Void unused) {
-        String typeString = toOllirType(node,table);
 
-        StringBuilder code = new StringBuilder();
+    private Void visitReturn(JmmNode node, MethodBuilder code) {
+        ReturnInstruction ret;
 
         if (node.getNumChildren() > 0) {
-            var expr = exprVisitor.visit(node.getJmmChild(0));
-            code.append(expr.getComputation());
-            code.append("ret");
-            code.append(typeString);
-            code.append(SPACE);
-            code.append(expr.getCode());
-            code.append(END_STMT);
+            ret = new ReturnInstruction(exprVisitor.visit(node.getJmmChild(0), code));
         } else {
-            code.append("ret");
-            code.append(typeString);
-            code.append(";\n");
+            ret = new ReturnInstruction();
         }
 
-        return code.toString();
-    }
-
-    private String visitParam(JmmNode node, Void unused) {
-        var typeCode = toOllirType(node.getJmmChild(0),table);
-        var id = node.get("name");
+        ret.setReturnType(OllirTypes.of(node, table));
+        code.add(ret);
 
-        return id + typeCode;
+        return null;
     }
 
-    private String visitMethodDecl(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder(".method ");
+    private Void visitMethodDecl(JmmNode node, MethodBuilder unused) {
+        var method = new Method(ollirClass);
 
         boolean isPublic = NodeUtils.getBooleanAttribute(node, "isPublic", "false");
         boolean isStatic = node.getOptional("name").map(name -> name.equals("main")).orElse(false);
 
         if (isPublic) {
-            code.append("public ");
+            method.setMethodAccessModifier(AccessModifier.PUBLIC);
         }
 
         if (isStatic) {
-            code.append("static ");
+            method.setStaticMethod();
         }
 
         var name = node.get("name");
-        code.append(name);
-
-        String paramCode = "";
-        List<Symbol> parameters = table.getParameters(name);
-        for (Symbol parameter : parameters) {
-            String paramName = parameter.getName();
-            String paramType = toOllirType(parameter.getType());
-            if (parameter.getType().isArray()) {
-                paramType = ".array" + paramType;
-            }
-            paramCode += paramName + paramType + ", ";
+        method.setMethodName(name);
+
+        // Parameters are numbered from 1, 0 is 'this', except in static methods
+        int paramId = isStatic ? 0 : 1;
+        for (Symbol parameter : table.getParameters(name)) {
+            var param = new Operand(parameter.getName(), OllirTypes.of(parameter.getType()));
+            param.setParamId(paramId++);
+            method.addParam(param);
         }
 
-        if (!parameters.isEmpty()) {
-            paramCode = paramCode.substring(0, paramCode.length() - 2);
-        }
-        code.append("(" + paramCode + ")");
-
-        String retType = "";
         if (name.equals("main")) {
-            retType = ".V";
-        }
-        else if (node.getNumChildren() > 0) {
-            retType = toOllirType(node.getJmmChild(0),table);
+            method.setReturnType(OllirTypes.voidType());
+        } else if (node.getNumChildren() > 0) {
+            method.setReturnType(OllirTypes.of(node.getJmmChild(0), table));
         }
 
-        code.append(retType);
-        code.append(L_BRACKET);
+        var code = new MethodBuilder(method);
 
         int numParams = table.getParameters(name).size();
-        if (name.equals("main")){
+        if (name.equals("main")) {
             for (var child : node.getChildren()) {
-                code.append(visit(child));
+                visit(child, code);
             }
         } else {
-            if(node.getNumChildren() > numParams) {
-                var children = node.getChildren().subList(numParams+1, node.getNumChildren());
+            if (node.getNumChildren() > numParams) {
+                var children = node.getChildren().subList(numParams + 1, node.getNumChildren());
                 for (var child : children) {
-                    code.append(visit(child));
+                    visit(child, code);
                 }
             }
         }
 
         if (name.equals("main")) {
-            code.append("ret.V;\n");
+            var ret = new ReturnInstruction();
+            ret.setReturnType(OllirTypes.voidType());
+            code.add(ret);
         }
 
-        code.append(R_BRACKET);
-        code.append(NL);
+        ollirClass.addMethod(method);
 
-        return code.toString();
+        return null;
     }
 
-    private String visitClass(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
-        code.append(table.getClassName());
+    private Void visitClass(JmmNode node, MethodBuilder unused) {
+        ollirClass.setClassName(table.getClassName());
 
         String superClass = table.getSuper();
         if (superClass != null && !superClass.isEmpty()) {
-            code.append(" extends ");
-            code.append(superClass);
+            ollirClass.setSuperClass(superClass);
         }
 
-        code.append(L_BRACKET);
-        code.append(NL);
-
         for (Symbol field : table.getFields()) {
-            String fieldName = field.getName();
-            String fieldType = toOllirType(field.getType());
-            if (field.getType().isArray()) {
-                fieldType = "array" + fieldType;
-            }
-            code.append(".field private ");
-            code.append(fieldName);
-            code.append(fieldType);
-            code.append(";\n");
+            var ollirField = new Field();
+            ollirField.setFieldAccessModifier(AccessModifier.PRIVATE);
+            ollirField.setFieldName(field.getName());
+            ollirField.setFieldType(OllirTypes.of(field.getType()));
+            ollirClass.addField(ollirField);
         }
 
-        code.append(NL);
-
-        var needNl = true;
         for (var child : node.getChildren()) {
-            var result = visit(child);
-
-            if (METHOD_DECL.check(child) && needNl) {
-                code.append(NL);
-                needNl = false;
-            }
-
-            code.append(result);
+            visit(child);
         }
 
-        code.append(buildConstructor());
-        code.append(R_BRACKET);
+        ollirClass.addMethod(buildConstructor());
 
-        return code.toString();
-    }
-    private String buildConstructor() {
-        return ".construct " + table.getClassName() + "().V {\n" +
-                "invokespecial(this, \"<init>\").V;\n" +
-                "}\n";
+        return null;
     }
 
-    private String visitProgram(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+    private Method buildConstructor() {
+        var constructor = new Method(ollirClass);
+        constructor.setConstructMethod();
+        constructor.setMethodName(table.getClassName());
+        constructor.setReturnType(OllirTypes.voidType());
 
-        node.getChildren().stream()
-                .map(this::visit)
-                .forEach(code::append);
+        constructor.addInstr(new CallInstruction(CallType.invokespecial, thisOperand(),
+                new LiteralElement("\"<init>\"", OllirTypes.stringType()), new ArrayList<>(), OllirTypes.voidType(),
+                true));
 
-        return code.toString();
+        return constructor;
     }
 
-    private String visitMethodCallExpr(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
-        String methodName = node.get("name");
-
-        List<JmmNode> arguments = new ArrayList<>();
-        if (node.getNumChildren() > 0) {
-            arguments = node.getChildren().subList(1, node.getNumChildren());
+    private Void visitProgram(JmmNode node, MethodBuilder unused) {
+        for (var child : node.getChildren()) {
+            visit(child);
         }
 
-        for (JmmNode argument : arguments) {
-            var arg = exprVisitor.visit(argument);
-            code.append(arg.getComputation());
-        }
+        return null;
+    }
 
-        code.append("invokestatic(");
-        code.append(node.get("type"));
-        code.append(", \"");
-        code.append(methodName);
-        code.append("\"");
-        for (int i = 0; i < arguments.size(); i++) {
-            JmmNode argument = arguments.get(i);
-            code.append(", ");
-            switch (argument.getKind()) {
-                case "IntegerLiteral":
-                    code.append(argument.get("value"));
-                    code.append(toOllirType(new Type("int", false)));
-                    break;
-                case "BooleanLiteral":
-                    code.append(argument.get("value"));
-                    code.append(toOllirType(new Type("bool", false)));
-                    break;
-                case "BinaryExpr":
-                case "ArrayAccessExpr":
-                    code.append(exprVisitor.visit(argument).getCode());
-                    break;
-                default:
-                    code.append(argument.get("name"));
-                    code.append(toOllirType(argument, table));
-                    break;
-            }
-            if (i < arguments.size() - 1) {
-                code.append(", ");
-            }
-        }
-        code.append(").V;\n");
+    private Void visitImportDecl(JmmNode node, MethodBuilder unused) {
+        List<String> names = node.getChildren().stream()
+                .map(child -> child.get("name"))
+                .collect(Collectors.toList());
 
-        return code.toString();
-    }
+        ollirClass.addImport(String.join(".", names));
 
-    private String visitImportDecl(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
+        return null;
+    }
 
-        code.append("import ");
+    private Void visitExprStmt(JmmNode node, MethodBuilder code) {
         for (var child : node.getChildren()) {
-            code.append(child.get("name"));
+            exprVisitor.visit(child, code);
         }
-        code.append(";\n");
 
-        return code.toString();
+        return null;
     }
 
-    private String visitExprStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
+    private Void visitBlockStmt(JmmNode node, MethodBuilder code) {
         for (var child : node.getChildren()) {
-            code.append(visit(child));
+            visit(child, code);
         }
 
-        return code.toString();
+        return null;
     }
 
-    private String visitIfElseStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
+    private Void visitIfElseStmt(JmmNode node, MethodBuilder code) {
         JmmNode condition = node.getJmmChild(0);
-        OllirExprResult conditionResult = exprVisitor.visit(condition);
-        code.append(conditionResult.getComputation());
+        var conditionResult = exprVisitor.visit(condition, code);
 
         String trueLabel = OptUtils.getLabel("true");
         String falseLabel = OptUtils.getLabel("false");
         String endLabel = OptUtils.getLabel("end");
 
-        code.append("if (");
-        code.append(conditionResult.getCode());
-        code.append(") goto ").append(trueLabel).append(";\n");
-        code.append("goto ").append(falseLabel).append(";\n");
+        code.add(branch(conditionResult, trueLabel));
+        code.add(new GotoInstruction(falseLabel));
 
-        code.append(trueLabel).append(":\n");
-        code.append(visitIfElseBranch(node.getJmmChild(1)));
+        code.addLabel(trueLabel);
+        visit(node.getJmmChild(1), code);
+        code.add(new GotoInstruction(endLabel));
 
-        code.append(falseLabel).append(":\n");
-        code.append(visitIfElseBranch(node.getJmmChild(2)));
+        code.addLabel(falseLabel);
+        visit(node.getJmmChild(2), code);
 
-        code.append(endLabel).append(":\n");
+        code.addLabel(endLabel);
 
-        return code.toString();
+        return null;
     }
 
-    private String visitIfElseBranch(JmmNode node) {
-        StringBuilder code = new StringBuilder();
-
-        if (node.getKind().equals("IfElseStmt")) {
-            code.append(visit(node));
-        }
-        else {
-            for (var child : node.getChildren()) {
-                code.append(visit(child));
-            }
-        }
-
-        return code.toString();
-    }
-    private String visitWhileStmt(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-
+    private Void visitWhileStmt(JmmNode node, MethodBuilder code) {
         String conditionLabel = OptUtils.getLabel("loop_condition");
-        code.append(conditionLabel).append(":\n");
+        code.addLabel(conditionLabel);
 
         JmmNode condition = node.getJmmChild(0);
-        OllirExprResult conditionResult = exprVisitor.visit(condition);
-        code.append(conditionResult.getComputation());
-
-        code.append("if (");
-        code.append(conditionResult.getCode());
-        code.append(") goto loop_body;\n");
-        code.append("goto loop_end;\n");
+        var conditionResult = exprVisitor.visit(condition, code);
 
         String bodyLabel = OptUtils.getLabel("loop_body");
-        code.append(bodyLabel).append(":\n");
-        code.append(visit(node.getJmmChild(1)));
-        code.append("goto ").append(conditionLabel).append(";\n");
-
         String endLabel = OptUtils.getLabel("loop_end");
-        code.append(endLabel).append(":\n");
+        code.add(branch(conditionResult, bodyLabel));
+        code.add(new GotoInstruction(endLabel));
+
+        code.addLabel(bodyLabel);
+        visit(node.getJmmChild(1), code);
+        code.add(new GotoInstruction(conditionLabel));
 
-        return code.toString();
+        code.addLabel(endLabel);
+
+        return null;
     }
 
+    private static CondBranchInstruction branch(Element condition, String label) {
+        var branch = new SingleOpCondInstruction(new SingleOpInstruction(condition));
+        branch.setLabel(label);
 
+        return branch;
+    }
+
+    private Operand thisOperand() {
+        return new Operand("this", OllirTypes.thisType(table.getClassName()));
+    }
 
     /**
-     * Default visitor. Visits every child node and return an empty string.
+     * Default visitor. Visits every child node.
      *
      * @param node
-     * @param unused
+     * @param code
      * @return
      */
-    private String defaultVisit(JmmNode node, Void unused) {
+    private Void defaultVisit(JmmNode node, MethodBuilder code) {
         for (var child : node.getChildren()) {
-            visit(child);
+            visit(child, code);
         }
 
-        return "";
+        return null;
     }
 }
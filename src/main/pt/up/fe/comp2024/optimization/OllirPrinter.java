@@ -0,0 +1,244 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes an OLLIR class as OLLIR code, which the OLLIR parser reads back into an equivalent class.
+ * <p>
+ * Compilation does not need the code, it is only printed for {@link pt.up.fe.comp.jmm.ollir.OllirResult}, the cache
+ * and debugging.
+ */
+public class OllirPrinter {
+
+    private static final String NL = "\n";
+    private static final String END_STMT = ";\n";
+
+    private OllirPrinter() {
+    }
+
+    public static String print(ClassUnit ollirClass) {
+        var code = new StringBuilder();
+
+        for (var importName : ollirClass.getImports()) {
+            code.append("import ").append(importName).append(END_STMT);
+        }
+        if (!ollirClass.getImports().isEmpty()) {
+            code.append(NL);
+        }
+
+        code.append(ollirClass.getClassName());
+        if (ollirClass.getSuperClass() != null) {
+            code.append(" extends ").append(ollirClass.getSuperClass());
+        }
+        code.append(" {").append(NL).append(NL);
+
+        for (var field : ollirClass.getFields()) {
+            code.append(".field ").append(modifier(field.getFieldAccessModifier()));
+            if (field.isStaticField()) {
+                code.append("static ");
+            }
+            if (field.isFinalField()) {
+                code.append("final ");
+            }
+            code.append(field.getFieldName()).append(type(field.getFieldType())).append(END_STMT);
+        }
+
+        for (var method : ollirClass.getMethods()) {
+            code.append(NL);
+            printMethod(method, code);
+        }
+
+        code.append("}").append(NL);
+
+        return code.toString();
+    }
+
+    private static void printMethod(Method method, StringBuilder code) {
+        code.append(method.isConstructMethod() ? ".construct " : ".method ");
+        code.append(modifier(method.getMethodAccessModifier()));
+        if (method.isStaticMethod()) {
+            code.append("static ");
+        }
+        if (method.isFinalMethod()) {
+            code.append("final ");
+        }
+        if (method.isVarargs()) {
+            code.append("varargs ");
+        }
+
+        var params = method.getParams().stream()
+                .map(param -> ((Operand) param).getName() + type(param.getType()))
+                .collect(Collectors.joining(", "));
+        code.append(method.getMethodName()).append("(").append(params).append(")")
+                .append(type(method.getReturnType())).append(" {").append(NL);
+
+        // Method.getLabels(Instruction) caches its answer, look the labels up directly in case they changed
+        Map<Instruction, List<String>> labels = new HashMap<>();
+        method.getLabels().forEach((label, instruction) ->
+                labels.computeIfAbsent(instruction, key -> new ArrayList<>()).add(label));
+
+        for (var instruction : method.getInstructions()) {
+            for (var label : labels.getOrDefault(instruction, List.of())) {
+                code.append(label).append(":").append(NL);
+            }
+
+            code.append("    ").append(instruction(instruction)).append(END_STMT);
+        }
+
+        code.append("}").append(NL);
+    }
+
+    /**
+     * @return the OLLIR code of the instruction, without the final ';'
+     */
+    public static String instruction(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign) {
+            return element(assign.getDest()) + " :=" + type(assign.getTypeOfAssign()) + " "
+                    + instruction(assign.getRhs());
+        }
+
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            return element(singleOp.getSingleOperand());
+        }
+
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            return element(binaryOp.getLeftOperand()) + " " + operation(binaryOp.getOperation()) + " "
+                    + element(binaryOp.getRightOperand());
+        }
+
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            return operation(unaryOp.getOperation()) + " " + element(unaryOp.getOperand());
+        }
+
+        if (instruction instanceof CallInstruction call) {
+            return call(call);
+        }
+
+        if (instruction instanceof GetFieldInstruction getField) {
+            return "getfield(" + element(getField.getObject()) + ", " + element(getField.getField()) + ")"
+                    + type(getField.getFieldType());
+        }
+
+        if (instruction instanceof PutFieldInstruction putField) {
+            return "putfield(" + element(putField.getObject()) + ", " + element(putField.getField()) + ", "
+                    + element(putField.getValue()) + ").V";
+        }
+
+        if (instruction instanceof SingleOpCondInstruction branch) {
+            return "if (" + instruction(branch.getCondition()) + ") goto " + branch.getLabel();
+        }
+
+        if (instruction instanceof OpCondInstruction branch) {
+            return "if (" + instruction(branch.getCondition()) + ") goto " + branch.getLabel();
+        }
+
+        if (instruction instanceof GotoInstruction gotoInstruction) {
+            return "goto " + gotoInstruction.getLabel();
+        }
+
+        if (instruction instanceof ReturnInstruction ret) {
+            var code = "ret" + type(ret.getReturnType());
+            return ret.hasReturnValue() ? code + " " + element(ret.getOperand()) : code;
+        }
+
+        throw new RuntimeException("Cannot print instruction " + instruction.getInstType());
+    }
+
+    private static String call(CallInstruction call) {
+        var args = new ArrayList<String>();
+
+        // The class of 'new' and 'invokestatic' is written without a type, as is the 'array' of 'new(array, n)'
+        var callType = call.getInvocationType();
+        if (callType == CallType.NEW || callType == CallType.invokestatic) {
+            args.add(((Operand) call.getCaller()).getName());
+        } else {
+            args.add(element(call.getCaller()));
+        }
+
+        call.getMethodNameTry().ifPresent(name -> args.add(((LiteralElement) name).getLiteral()));
+        call.getArguments().stream().map(OllirPrinter::element).forEach(args::add);
+
+        var name = callType == CallType.NEW ? "new" : callType.name();
+        return name + "(" + String.join(", ", args) + ")" + type(call.getReturnType());
+    }
+
+    public static String element(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getLiteral() + type(literal.getType());
+        }
+
+        var operand = (Operand) element;
+        if (operand.getType().getTypeOfElement() == ElementType.THIS) {
+            return "this";
+        }
+
+        var code = new StringBuilder();
+        if (operand.isParameter()) {
+            code.append("$").append(operand.getParamId()).append(".");
+        }
+        code.append(operand.getName());
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            for (var index : arrayOperand.getIndexOperands()) {
+                code.append("[").append(element(index)).append("]");
+            }
+        }
+
+        return code.append(type(operand.getType())).toString();
+    }
+
+    public static String type(Type type) {
+        if (type instanceof ArrayType arrayType) {
+            return ".array".repeat(arrayType.getNumDimensions()) + type(arrayType.getElementType());
+        }
+
+        if (type instanceof ClassType classType) {
+            return "." + classType.getName();
+        }
+
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> ".i32";
+            case BOOLEAN -> ".bool";
+            case STRING -> ".String";
+            case VOID -> ".V";
+            default -> throw new RuntimeException("Cannot print type " + type.getTypeOfElement());
+        };
+    }
+
+    private static String operation(Operation operation) {
+        var symbol = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case SHR -> ">>";
+            case SHL -> "<<";
+            case SHRR -> ">>>";
+            case XOR -> "^";
+            case AND -> "&";
+            case OR -> "|";
+            case LTH -> "<";
+            case GTH -> ">";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB -> "!";
+            case NOT -> "~";
+        };
+
+        return symbol + type(operation.getTypeInfo());
+    }
+
+    private static String modifier(AccessModifier modifier) {
+        return modifier == AccessModifier.DEFAULT ? "" : modifier.name().toLowerCase() + " ";
+    }
+}
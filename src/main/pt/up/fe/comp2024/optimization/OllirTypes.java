@@ -0,0 +1,84 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Type;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+/**
+ * Builds the OLLIR types of Java-- types, as the OLLIR parser would create them from '.i32', '.array.i32', etc.
+ */
+public class OllirTypes {
+
+    private OllirTypes() {
+    }
+
+    public static Type of(JmmNode node, SymbolTable table) {
+        return of(TypeUtils.getExprType(node, table));
+    }
+
+    public static Type of(pt.up.fe.comp.jmm.analysis.table.Type type) {
+        var elementType = toElementType(type.getName());
+
+        if (!type.isArray()) {
+            return elementType == ElementType.OBJECTREF ? classType(type.getName()) : new Type(elementType);
+        }
+
+        var arrayType = new ArrayType();
+        arrayType.setNumDimensions(1);
+        arrayType.setTypeOfElements(elementType);
+        if (elementType == ElementType.OBJECTREF || elementType == ElementType.STRING) {
+            arrayType.setElementClass(type.getName());
+        }
+
+        return arrayType;
+    }
+
+    public static Type intType() {
+        return new Type(ElementType.INT32);
+    }
+
+    public static Type boolType() {
+        return new Type(ElementType.BOOLEAN);
+    }
+
+    public static Type voidType() {
+        return new Type(ElementType.VOID);
+    }
+
+    public static Type stringType() {
+        return new Type(ElementType.STRING);
+    }
+
+    public static Type intArrayType() {
+        return of(new pt.up.fe.comp.jmm.analysis.table.Type("int", true));
+    }
+
+    public static ClassType classType(String className) {
+        return new ClassType(ElementType.OBJECTREF, className);
+    }
+
+    public static ClassType thisType(String className) {
+        return new ClassType(ElementType.THIS, className);
+    }
+
+    /**
+     * @return the type of the class named by the caller of a static call, such as 'io' in 'io.println(a)'
+     */
+    public static ClassType staticType(String className) {
+        return new ClassType(ElementType.CLASS, className);
+    }
+
+    private static ElementType toElementType(String typeName) {
+        return switch (typeName) {
+            case "int" -> ElementType.INT32;
+            case "boolean" -> ElementType.BOOLEAN;
+            case "String" -> ElementType.STRING;
+            case "void" -> ElementType.VOID;
+            default -> ElementType.OBJECTREF;
+        };
+    }
+}
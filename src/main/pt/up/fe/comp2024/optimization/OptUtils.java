@@ -15,9 +15,21 @@ import java.util.Optional;
 import static pt.up.fe.comp2024.ast.Kind.TYPE;
 
 public class OptUtils {
-    private static int tempNumber = -1;
-    private static int labelCounter = 0;
+    // Numbering of temporaries and labels belongs to the compilation running on the current thread,
+    // so that several programs can be converted to OLLIR concurrently
+    private static final ThreadLocal<Counters> COUNTERS = ThreadLocal.withInitial(Counters::new);
 
+    private static class Counters {
+        private int tempNumber = -1;
+        private int labelCounter = 0;
+    }
+
+    /**
+     * Restarts the numbering of temporaries and labels. Called at the start of each OLLIR generation.
+     */
+    public static void resetCounters() {
+        COUNTERS.set(new Counters());
+    }
 
     public static String getTemp() {
         return getTemp("tmp");
@@ -28,76 +40,69 @@ public class OptUtils {
     }
 
     public static int getNextTempNum() {
-        tempNumber += 1;
-        return tempNumber;
+        var counters = COUNTERS.get();
+        counters.tempNumber += 1;
+        return counters.tempNumber;
     }
 
-    public static String toOllirType(JmmNode typeNode, SymbolTable table){
-        return toOllirType(typeNode, table, true);
+    public static String getLabel(String prefix) {
+        var counters = COUNTERS.get();
+        String label = prefix + "_" + counters.labelCounter;
+        counters.labelCounter++;
+        return label;
     }
-    public static String toOllirType(JmmNode typeNode, SymbolTable table, boolean showArray) {
-        Type type = TypeUtils.getExprType(typeNode, table);
 
-        String result = ".";
-
-        if (type.isArray() && showArray) {
-            result += "array.";
+    /**
+     * @return the OLLIR number of the parameter the name of the node refers to, starting at 1, or 0 if it is not a
+     * parameter
+     */
+    public static int getParameterIndex(JmmNode node, SymbolTable table){
+        List<Symbol> parameters = table.getParameters(getMethodName(node));
+        for (int i = 0; i < parameters.size(); i++) {
+            if(parameters.get(i).getName().equals(node.get("name"))){
+                return i + 1;
+            }
         }
 
-        result += switch (type.getName()) {
-            case "int" -> "i32";
-            case "boolean" -> "bool";
-            case "String" -> "String";
-            default -> type.getName();
-        };
+        return 0;
+    }
+
+    /**
+     * @return true if the name of the node refers to a field, i.e. it is not shadowed by a local or parameter
+     */
+    public static boolean isField(JmmNode node, SymbolTable table) {
+        String name = node.get("name");
 
-        return result;
+        return !isLocal(name, getMethodName(node), table) && hasSymbol(table.getFields(), name);
     }
 
-    public static String toOllirType(Type type) {
-        String result = "";
-        if(type.isArray()){
-            result += "array.";
+    /**
+     * @return true if the name of the node refers to a class instead of a variable, as in 'io.println(a)'
+     */
+    public static boolean isClassName(JmmNode node, SymbolTable table) {
+        String name = node.get("name");
+
+        if (isLocal(name, getMethodName(node), table) || hasSymbol(table.getFields(), name)) {
+            return false;
         }
-        result += "." + switch (type.getName()) {
-            case "int" -> "i32";
-            case "boolean" -> "bool";
-            case "String" -> "String";
-            default -> type.getName();
-        };
-
-        return toOllirType(type.getName());
+
+        return table.getImports().contains(name) || table.getClassName().equals(name);
     }
 
-    public static String toOllirType(String typeName) {
-        String type = "." + switch (typeName) {
-            case "int" -> "i32";
-            case "boolean" -> "bool";
-            case "String" -> "String";
-            default -> typeName;
-        };
-        return type;
+    private static boolean isLocal(String name, String methodName, SymbolTable table) {
+        return hasSymbol(table.getLocalVariables(methodName), name) || hasSymbol(table.getParameters(methodName), name);
     }
 
-    public static String getLabel(String prefix) {
-        String label = prefix + "_" + labelCounter;
-        labelCounter++;
-        return label;
+    private static boolean hasSymbol(List<Symbol> symbols, String name) {
+        return symbols != null && symbols.stream().anyMatch(symbol -> symbol.getName().equals(name));
     }
 
-    public static String getParameterNumber(JmmNode node, SymbolTable table){
+    private static String getMethodName(JmmNode node) {
         JmmNode method = node.getParent();
         while ( !method.getKind().equals("PublicStaticVoidMethodDecl") && !method.getKind().equals("PublicMethodDecl")) {
             method = method.getParent();
         }
 
-        List<Symbol> parameters = table.getParameters(method.get("name"));
-        for (int i = 0; i < parameters.size(); i++) {
-            if(parameters.get(i).getName().equals(node.get("name"))){
-                return "$" + (i+1);
-            }
-        }
-
-        return "";
+        return method.get("name");
     }
 }
@@ -0,0 +1,106 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Loops;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds where code can be put right before the header of a loop, so that it runs once each time the loop is entered,
+ * and not on every iteration.
+ * <p>
+ * The code goes between the header and the instruction before it. Jumps to the header from outside the loop must go
+ * to the new code instead, and jumps from inside the loop must still go to the header, so a label both jump to leaves
+ * no place for it.
+ */
+class Preheaders {
+
+    private final ControlFlowGraph cfg;
+
+    // The instructions that jump to each label
+    private final Map<String, List<Integer>> jumps = new HashMap<>();
+
+    Preheaders(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+
+        var instructions = cfg.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            if (instruction instanceof GotoInstruction gotoInstruction) {
+                jumps.computeIfAbsent(gotoInstruction.getLabel(), label -> new ArrayList<>()).add(i);
+            } else if (instruction instanceof CondBranchInstruction branch) {
+                jumps.computeIfAbsent(branch.getLabel(), label -> new ArrayList<>()).add(i);
+            }
+        }
+    }
+
+    /**
+     * @return true if code can be put right before the header, to run only when the loop is entered
+     */
+    boolean hasPlace(Loops.Loop loop) {
+        int header = loop.getHeader();
+
+        // The previous instruction would run the code on every iteration
+        if (header > 0 && loop.contains(header - 1) && isFallThrough(header - 1)) {
+            return false;
+        }
+
+        // The labels of the header go to the new code or stay, depending on where the jumps to them come from
+        for (var label : getLabels(cfg.getMethod(), cfg.getInstructions().get(header))) {
+            if (isJumpedTo(label, true, loop) && isJumpedTo(label, false, loop)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the labels of the header that jumps from outside the loop go to, so that those jumps run the new code.
+     *
+     * @param first the first instruction of the code put before the header
+     */
+    void moveEntryLabels(Loops.Loop loop, Instruction first) {
+        var method = cfg.getMethod();
+        for (var label : getLabels(method, cfg.getInstructions().get(loop.getHeader()))) {
+            if (isJumpedTo(label, false, loop)) {
+                method.getLabels().put(label, first);
+            }
+        }
+    }
+
+    private boolean isFallThrough(int index) {
+        for (int successor : cfg.getSuccessors(index)) {
+            if (successor == index + 1 && cfg.getInstructions().get(index).getInstType() != InstructionType.GOTO) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if an instruction inside the loop, or outside it, jumps to the label
+     */
+    private boolean isJumpedTo(String label, boolean inside, Loops.Loop loop) {
+        return jumps.getOrDefault(label, List.of()).stream().anyMatch(jump -> loop.contains(jump) == inside);
+    }
+
+    static List<String> getLabels(Method method, Instruction instruction) {
+        var labels = new ArrayList<String>();
+        method.getLabels().forEach((label, target) -> {
+            if (target == instruction) {
+                labels.add(label);
+            }
+        });
+        return labels;
+    }
+}
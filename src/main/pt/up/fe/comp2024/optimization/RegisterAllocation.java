@@ -0,0 +1,117 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Liveness;
+import pt.up.fe.comp2024.optimization.dataflow.Variables;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the variables of each method onto as few registers as requested with '-r', by coloring their interference
+ * graph or by a linear scan over their live intervals. The registers are stored in the var tables, where the backend
+ * takes them from.
+ */
+public class RegisterAllocation {
+
+    private final int maxRegisters;
+
+    private final String allocator;
+
+    /**
+     * @param maxRegisters the most registers a method can use, counting 'this' and the parameters; 0 uses as few as
+     *                     possible
+     * @param allocator    {@link CompilerConfig#COLORING_ALLOCATOR} or {@link CompilerConfig#LINEAR_SCAN_ALLOCATOR}
+     */
+    public RegisterAllocation(int maxRegisters, String allocator) {
+        this.maxRegisters = maxRegisters;
+        this.allocator = allocator;
+    }
+
+    /**
+     * @return an error for each method that needs more registers than allowed; those methods are left unchanged
+     */
+    public List<Report> allocate(ClassUnit ollirClass) {
+        List<Report> reports = new ArrayList<>();
+
+        for (var method : ollirClass.getMethods()) {
+            if (method.isConstructMethod()) {
+                continue;
+            }
+
+            var error = allocate(method);
+            if (error != null) {
+                reports.add(error);
+            }
+        }
+
+        return reports;
+    }
+
+    /**
+     * @return an error if the method needs more registers than allowed
+     */
+    private Report allocate(Method method) {
+        Map<String, Integer> registers;
+        if (allocator.equals(CompilerConfig.LINEAR_SCAN_ALLOCATOR)) {
+            registers = new LinearScan(method).allocate();
+        } else {
+            var coloring = getColoring(method);
+            registers = maxRegisters == 0 ? coloring.colorMinimum() : coloring.color(maxRegisters);
+
+            // Not enough registers, find how many are needed
+            if (registers == null) {
+                registers = coloring.colorMinimum();
+            }
+        }
+
+        int used = getRegisterCount(registers);
+        if (maxRegisters > 0 && used > maxRegisters) {
+            return Report.newError(Stage.OPTIMIZATION, -1, -1, getTooFewMessage(method, used), null);
+        }
+
+        registers.forEach((name, register) -> method.getVarTable().get(name).setVirtualReg(register));
+        return null;
+    }
+
+    /**
+     * The linear scan does not look for the fewest registers, so the least number named is the one coloring finds.
+     */
+    private String getTooFewMessage(Method method, int used) {
+        var name = "Method '" + method.getMethodName() + "'";
+        if (!allocator.equals(CompilerConfig.LINEAR_SCAN_ALLOCATOR)) {
+            return name + " needs at least " + used + " registers, but -r=" + maxRegisters + " was given";
+        }
+
+        int needed = getRegisterCount(getColoring(method).colorMinimum());
+        if (needed <= maxRegisters) {
+            return name + " fits in -r=" + maxRegisters + " registers with -a=" + CompilerConfig.COLORING_ALLOCATOR
+                    + ", but the linear scan used " + used;
+        }
+
+        return name + " needs at least " + needed + " registers, but -r=" + maxRegisters + " was given (the linear"
+                + " scan used " + used + ")";
+    }
+
+    private static GraphColoring getColoring(Method method) {
+        var graph = InterferenceGraph.build(method, new Liveness(new ControlFlowGraph(method), new Variables(method)));
+
+        Map<String, Integer> precolored = new HashMap<>();
+        for (var param : graph.getParams()) {
+            precolored.put(param, method.getVarTable().get(param).getVirtualReg());
+        }
+
+        return new GraphColoring(graph, precolored);
+    }
+
+    private static int getRegisterCount(Map<String, Integer> registers) {
+        return registers.values().stream().mapToInt(register -> register + 1).max().orElse(0);
+    }
+}
@@ -0,0 +1,651 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Dominators;
+import pt.up.fe.comp2024.optimization.dataflow.Liveness;
+import pt.up.fe.comp2024.optimization.dataflow.Variables;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An OLLIR method in static single assignment form, where each variable is written by a single instruction, so the
+ * value a variable holds is known from its name alone and analyses can follow values from their definition to their
+ * uses, with no sets of variables per instruction.
+ * <p>
+ * Each assignment writes a version of its variable of its own, a new variable named after it. Where paths with
+ * different versions meet, a phi chooses the version of the path taken. OLLIR has no phi instructions, so the phis
+ * are kept here, by the index of the instruction where the paths meet, and only for variables that are read after it.
+ * Versions are numbered walking the dominator tree, so that each instruction reads the versions of the assignments
+ * that dominate it; the parameters, until assigned, keep their names.
+ * <p>
+ * {@link #destruct()} turns the phis into copies on the edges they choose from. The copies of a phi run as if all at
+ * once, so they are ordered, with a temporary where they read each other in a cycle. Versions of the same variable
+ * that are never live at the same time then share its name again, and the copies between them go away.
+ * <p>
+ * Instructions that cannot run are removed first, and instructions must keep their indexes until the form is
+ * destructed; they may be replaced, phi arguments may be replaced or dropped, and phis whose versions are no longer
+ * read may be removed.
+ */
+public class SsaForm {
+
+    /**
+     * The start of the method, as a predecessor of the first instruction.
+     */
+    public static final int ENTRY = -1;
+
+    /**
+     * The choice of a version of a variable, by the path taken to an instruction.
+     */
+    public static class Phi {
+
+        private final String variable;
+        private Operand dest;
+
+        // By predecessor; a predecessor that has no version of the variable has no argument
+        private final Map<Integer, Element> arguments = new LinkedHashMap<>();
+
+        private Phi(String variable) {
+            this.variable = variable;
+        }
+
+        /**
+         * @return the variable this phi chooses a version of
+         */
+        public String getVariable() {
+            return variable;
+        }
+
+        /**
+         * @return the version the phi writes
+         */
+        public Operand getDest() {
+            return dest;
+        }
+
+        /**
+         * @return the value chosen when coming from each predecessor, or from {@link #ENTRY}
+         */
+        public Map<Integer, Element> getArguments() {
+            return arguments;
+        }
+    }
+
+    private final Method method;
+    private final ControlFlowGraph cfg;
+    private final Dominators dominators;
+
+    private final Map<Integer, List<Phi>> phis = new HashMap<>();
+
+    // The variable each version is of, in the order the versions were made
+    private final Map<String, String> versions = new LinkedHashMap<>();
+
+    // The instruction that writes each version, the one of its phi for versions of phis
+    private final Map<String, Integer> definitions = new HashMap<>();
+
+    private final Map<String, Operand> params = new HashMap<>();
+
+    // Versions are added once per assignment, so they take the next free register and number without looking through
+    // the var table; nothing else adds variables to the method while it is in SSA form
+    private int nextRegister;
+    private final Map<String, Integer> nextNumbers = new HashMap<>();
+
+    private SsaForm(Method method) {
+        this.method = method;
+
+        var reachable = new ControlFlowGraph(method);
+        var unreachable = new BitSet();
+        for (int i = 0; i < reachable.size(); i++) {
+            if (!reachable.isReachable(i)) {
+                unreachable.set(i);
+            }
+        }
+        MethodEdits.removeAll(method, unreachable);
+
+        this.cfg = unreachable.isEmpty() ? reachable : new ControlFlowGraph(method);
+        this.dominators = new Dominators(cfg);
+
+        for (var param : method.getParams()) {
+            params.put(((Operand) param).getName(), (Operand) param);
+        }
+
+        this.nextRegister = MethodEdits.getNextRegister(method);
+    }
+
+    /**
+     * Puts the method in SSA form.
+     */
+    public static SsaForm build(Method method) {
+        var ssa = new SsaForm(method);
+        if (ssa.cfg.size() > 0) {
+            var assignments = ssa.getAssignments();
+            ssa.insertPhis(assignments);
+            new Renaming(ssa, assignments.keySet()).run();
+        }
+
+        return ssa;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public ControlFlowGraph getCfg() {
+        return cfg;
+    }
+
+    public Dominators getDominators() {
+        return dominators;
+    }
+
+    /**
+     * @return the phis at the start of the instruction, which choose among the values of its predecessors
+     */
+    public List<Phi> getPhis(int index) {
+        return phis.getOrDefault(index, List.of());
+    }
+
+    /**
+     * @return the instructions that have phis, in index order
+     */
+    public List<Integer> getJoins() {
+        return phis.keySet().stream().sorted().toList();
+    }
+
+    /**
+     * @return true if the variable is a version made by this form
+     */
+    public boolean isVersion(String name) {
+        return versions.containsKey(name);
+    }
+
+    /**
+     * @return the index of the instruction that writes the version, or of the instruction its phi is at
+     */
+    public int getDefinition(String version) {
+        return definitions.get(version);
+    }
+
+    /**
+     * @return for each version, the indexes of the instructions that read it or whose phis do, in index order
+     */
+    public Map<String, List<Integer>> getUses() {
+        Map<String, Set<Integer>> uses = new HashMap<>();
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            for (var name : InstructionVars.getUses(instructions.get(i))) {
+                uses.computeIfAbsent(name, key -> new LinkedHashSet<>()).add(i);
+            }
+        }
+        phis.forEach((index, atIndex) -> {
+            for (var phi : atIndex) {
+                for (var argument : phi.arguments.values()) {
+                    if (argument instanceof Operand operand) {
+                        uses.computeIfAbsent(operand.getName(), key -> new LinkedHashSet<>()).add(index);
+                    }
+                }
+            }
+        });
+
+        Map<String, List<Integer>> sorted = new HashMap<>();
+        uses.forEach((name, indexes) -> sorted.put(name, indexes.stream().sorted().toList()));
+        return sorted;
+    }
+
+    /**
+     * @return the indexes of the instructions that write each variable, in the order of their first assignment
+     */
+    private Map<String, BitSet> getAssignments() {
+        Map<String, BitSet> assignments = new LinkedHashMap<>();
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            var def = InstructionVars.getDef(instructions.get(i));
+            if (def != null && method.getVarTable().containsKey(def)) {
+                assignments.computeIfAbsent(def, key -> new BitSet()).set(i);
+            }
+        }
+
+        return assignments;
+    }
+
+    /**
+     * Puts a phi for each variable in the dominance frontier of its assignments, and of its phis, where it is read
+     * afterwards.
+     */
+    private void insertPhis(Map<String, BitSet> assignments) {
+        var liveness = new Liveness(cfg, new Variables(method));
+
+        for (var variable : assignments.keySet()) {
+            var assigned = (BitSet) assignments.get(variable).clone();
+            var hasPhi = new BitSet();
+            var pending = new ArrayDeque<Integer>();
+            assigned.stream().forEach(pending::add);
+            while (!pending.isEmpty()) {
+                var frontier = dominators.getFrontier(pending.poll());
+                for (int join = frontier.nextSetBit(0); join >= 0; join = frontier.nextSetBit(join + 1)) {
+                    if (hasPhi.get(join) || !liveness.isLiveIn(join, variable)) {
+                        continue;
+                    }
+
+                    hasPhi.set(join);
+                    phis.computeIfAbsent(join, key -> new ArrayList<>()).add(new Phi(variable));
+                    if (!assigned.get(join)) {
+                        assigned.set(join);
+                        pending.add(join);
+                    }
+                }
+            }
+        }
+    }
+
+    private Operand newVersion(String variable, int definition) {
+        var varTable = method.getVarTable();
+        var type = varTable.get(variable).getVarType();
+
+        int number = nextNumbers.getOrDefault(variable, 0);
+        while (varTable.containsKey(variable + "_" + number)) {
+            number++;
+        }
+        nextNumbers.put(variable, number + 1);
+
+        var name = variable + "_" + number;
+        varTable.put(name, new Descriptor(VarScope.LOCAL, nextRegister++, type));
+        versions.put(name, variable);
+        definitions.put(name, definition);
+        return new Operand(name, type);
+    }
+
+    /**
+     * Numbers the versions of the variables, walking the dominator tree from the first instruction.
+     */
+    private static class Renaming {
+
+        private final SsaForm ssa;
+        private final Set<String> variables;
+
+        // The versions of each variable that dominate the instruction being renamed, the closest last
+        private final Map<String, ArrayDeque<String>> current = new HashMap<>();
+
+        private final InstructionCopier copier;
+
+        private Renaming(SsaForm ssa, Set<String> variables) {
+            this.ssa = ssa;
+            this.variables = variables;
+            variables.forEach(variable -> current.put(variable, new ArrayDeque<>()));
+            copier = new InstructionCopier(this::read, label -> label);
+        }
+
+        private void run() {
+            for (var phi : ssa.getPhis(0)) {
+                setArgument(phi, ENTRY);
+            }
+
+            // Each entry is an instruction and how many of its children were already visited
+            var stack = new ArrayDeque<int[]>();
+            stack.push(new int[]{0, 0});
+            Map<Integer, List<String>> written = new HashMap<>();
+            written.put(0, enter(0));
+
+            while (!stack.isEmpty()) {
+                var entry = stack.peek();
+                var children = ssa.dominators.getChildren(entry[0]);
+
+                if (entry[1] < children.size()) {
+                    int child = children.get(entry[1]++);
+                    written.put(child, enter(child));
+                    stack.push(new int[]{child, 0});
+                } else {
+                    for (var variable : written.remove(entry[0])) {
+                        current.get(variable).pop();
+                    }
+                    stack.pop();
+                }
+            }
+        }
+
+        /**
+         * Renames the phis and the instruction at the index, and gives the phis of its successors the versions it
+         * leaves.
+         *
+         * @return the variables it wrote a version of
+         */
+        private List<String> enter(int index) {
+            var written = new ArrayList<String>();
+
+            for (var phi : ssa.getPhis(index)) {
+                phi.dest = write(phi.variable, index);
+                written.add(phi.variable);
+            }
+
+            var instruction = ssa.method.getInstructions().get(index);
+            var def = InstructionVars.getDef(instruction);
+
+            Instruction renamed;
+            if (def != null && variables.contains(def)) {
+                // What it reads is renamed before the new version takes over
+                var assign = (AssignInstruction) instruction;
+                var rhs = copier.copy(assign.getRhs());
+                renamed = new AssignInstruction(write(def, index), assign.getTypeOfAssign(), rhs);
+                written.add(def);
+            } else {
+                renamed = copier.copy(instruction);
+            }
+            MethodEdits.replace(ssa.method, index, renamed);
+
+            for (int successor : ssa.cfg.getSuccessors(index)) {
+                for (var phi : ssa.getPhis(successor)) {
+                    setArgument(phi, index);
+                }
+            }
+
+            return written;
+        }
+
+        private Operand write(String variable, int index) {
+            var version = ssa.newVersion(variable, index);
+            current.get(variable).push(version.getName());
+            return MethodEdits.copyOf(version);
+        }
+
+        private Operand read(Operand operand) {
+            var versions = current.get(operand.getName());
+            if (versions == null || versions.isEmpty()) {
+                return MethodEdits.copyOf(operand);
+            }
+
+            return new Operand(versions.peek(), operand.getType());
+        }
+
+        private void setArgument(Phi phi, int predecessor) {
+            var versions = current.get(phi.variable);
+            if (!versions.isEmpty()) {
+                var type = ssa.method.getVarTable().get(phi.variable).getVarType();
+                phi.arguments.put(predecessor, new Operand(versions.peek(), type));
+            } else if (ssa.params.containsKey(phi.variable)) {
+                phi.arguments.put(predecessor, MethodEdits.copyOf(ssa.params.get(phi.variable)));
+            }
+        }
+    }
+
+    /**
+     * Takes the method out of SSA form, with copies in place of the phis.
+     */
+    public void destruct() {
+        if (!phis.isEmpty()) {
+            placeCopies();
+        }
+        phis.clear();
+
+        coalesce();
+    }
+
+    /**
+     * Puts the copies of the phis on the edges they choose from: at the start for the edge from {@link #ENTRY},
+     * before a goto, after an instruction that falls through to the join, and in a block of their own at the end of
+     * the method for a branch that jumps to the join, since the branch may go elsewhere.
+     */
+    private void placeCopies() {
+        var instructions = method.getInstructions();
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
+
+        Map<Integer, List<Instruction>> before = new HashMap<>();
+        Map<Integer, List<Instruction>> after = new HashMap<>();
+        var blocks = new ArrayList<Instruction>();
+
+        for (int join : getJoins()) {
+            // The copies of each edge into the join
+            Map<Integer, List<Operand>> dests = new LinkedHashMap<>();
+            Map<Integer, List<Element>> sources = new LinkedHashMap<>();
+            for (var phi : phis.get(join)) {
+                phi.arguments.forEach((predecessor, argument) -> {
+                    dests.computeIfAbsent(predecessor, key -> new ArrayList<>()).add(phi.dest);
+                    sources.computeIfAbsent(predecessor, key -> new ArrayList<>()).add(argument);
+                });
+            }
+
+            for (var predecessor : dests.keySet()) {
+                var code = sequentialize(dests.get(predecessor), sources.get(predecessor));
+                if (code.isEmpty()) {
+                    continue;
+                }
+
+                if (predecessor == ENTRY) {
+                    after.computeIfAbsent(ENTRY, key -> new ArrayList<>()).addAll(code);
+                    continue;
+                }
+
+                var instruction = instructions.get(predecessor);
+                if (instruction instanceof GotoInstruction) {
+                    before.computeIfAbsent(predecessor, key -> new ArrayList<>()).addAll(code);
+                    continue;
+                }
+
+                if (instruction instanceof CondBranchInstruction branch
+                        && indexes.get(method.getLabels().get(branch.getLabel())) == join) {
+                    var label = OptUtils.getLabel("phi");
+                    method.getLabels().put(label, code.get(0));
+                    blocks.addAll(code);
+                    blocks.add(new GotoInstruction(branch.getLabel()));
+                    branch.setLabel(label);
+
+                    // The branch may also fall through to the join
+                    if (predecessor + 1 != join) {
+                        continue;
+                    }
+                    code = sequentialize(dests.get(predecessor), sources.get(predecessor));
+                }
+
+                after.computeIfAbsent(predecessor, key -> new ArrayList<>()).addAll(code);
+            }
+        }
+
+        var code = new ArrayList<Instruction>(instructions.size() + blocks.size());
+        code.addAll(after.getOrDefault(ENTRY, List.of()));
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+
+            var copies = before.get(i);
+            if (copies != null) {
+                for (var label : Preheaders.getLabels(method, instruction)) {
+                    method.getLabels().put(label, copies.get(0));
+                }
+                code.addAll(copies);
+            }
+
+            code.add(instruction);
+            code.addAll(after.getOrDefault(i, List.of()));
+        }
+        code.addAll(blocks);
+
+        instructions.clear();
+        instructions.addAll(code);
+    }
+
+    /**
+     * @return copies that give each dest its source, as if all were copied at once
+     */
+    private List<Instruction> sequentialize(List<Operand> dests, List<Element> sources) {
+        var code = new ArrayList<Instruction>();
+
+        // The copies still to make, by dest
+        Map<String, Operand> pendingDests = new LinkedHashMap<>();
+        Map<String, Element> pendingSources = new HashMap<>();
+        for (int k = 0; k < dests.size(); k++) {
+            var dest = dests.get(k);
+            var source = sources.get(k);
+            if (!(source instanceof Operand operand && operand.getName().equals(dest.getName()))) {
+                pendingDests.put(dest.getName(), dest);
+                pendingSources.put(dest.getName(), source);
+            }
+        }
+
+        while (!pendingDests.isEmpty()) {
+            // A dest no other copy reads can be written now
+            String ready = null;
+            for (var dest : pendingDests.keySet()) {
+                if (pendingSources.values().stream()
+                        .noneMatch(source -> source instanceof Operand operand && operand.getName().equals(dest))) {
+                    ready = dest;
+                    break;
+                }
+            }
+
+            if (ready == null) {
+                // The copies left read each other in cycles; one dest is saved, and read from the temporary
+                var saved = pendingDests.values().iterator().next();
+                var temporary = newVersion(versions.getOrDefault(saved.getName(), saved.getName()), ENTRY);
+                code.add(copy(temporary, saved));
+                pendingSources.replaceAll((dest, source) -> source instanceof Operand operand
+                        && operand.getName().equals(saved.getName()) ? temporary : source);
+                continue;
+            }
+
+            code.add(copy(pendingDests.remove(ready), pendingSources.remove(ready)));
+        }
+
+        return code;
+    }
+
+    private static AssignInstruction copy(Operand dest, Element source) {
+        return new AssignInstruction(MethodEdits.copyOf(dest), dest.getType(),
+                new SingleOpInstruction(InstructionCopier.same().copy(source)));
+    }
+
+    /**
+     * Gives versions of the same variable that do not interfere the same name, the name of the variable when they
+     * can, and removes the copies left between a name and itself.
+     */
+    private void coalesce() {
+        if (versions.isEmpty()) {
+            return;
+        }
+
+        var liveness = new Liveness(new ControlFlowGraph(method), new Variables(method));
+        var graph = InterferenceGraph.build(method, liveness);
+
+        // The instructions that write each name
+        Map<String, List<Integer>> writes = new HashMap<>();
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            var def = InstructionVars.getDef(instructions.get(i));
+            if (def != null) {
+                writes.computeIfAbsent(def, key -> new ArrayList<>()).add(i);
+            }
+        }
+
+        // The versions of each variable, the variable first
+        Map<String, List<String>> byVariable = new LinkedHashMap<>();
+        versions.forEach((version, variable) -> byVariable
+                .computeIfAbsent(variable, key -> new ArrayList<>(List.of(variable))).add(version));
+
+        Map<String, String> names = new HashMap<>();
+        byVariable.forEach((variable, group) -> {
+            // Each class holds names that may share one, with the names they interfere with
+            List<List<String>> classes = new ArrayList<>();
+            List<Set<String>> neighbors = new ArrayList<>();
+
+            var unread = new ArrayList<String>();
+            for (var name : group) {
+                // Names written and never read are not in the graph
+                if (!graph.getNodes().contains(name)) {
+                    unread.add(name);
+                    continue;
+                }
+
+                int k = 0;
+                while (k < classes.size() && neighbors.get(k).contains(name)) {
+                    k++;
+                }
+                if (k == classes.size()) {
+                    classes.add(new ArrayList<>());
+                    neighbors.add(new HashSet<>());
+                }
+                classes.get(k).add(name);
+                neighbors.get(k).addAll(graph.getNeighbors(name));
+            }
+
+            // Their stores may share a name none of whose names is live after them
+            for (var name : unread) {
+                var stores = writes.getOrDefault(name, List.of());
+                if (stores.isEmpty()) {
+                    continue;
+                }
+
+                int k = 0;
+                while (k < classes.size() && isLiveAfter(liveness, classes.get(k), stores)) {
+                    k++;
+                }
+                if (k == classes.size()) {
+                    classes.add(new ArrayList<>());
+                }
+                classes.get(k).add(name);
+            }
+
+            for (int k = 0; k < classes.size(); k++) {
+                var members = classes.get(k);
+                // The variable takes the first class even when it is not read itself, then nothing else uses its name
+                var name = k == 0 && (members.contains(variable) || !graph.getNodes().contains(variable))
+                        ? variable : members.get(0);
+                members.forEach(member -> names.put(member, name));
+            }
+        });
+
+        var copier = new InstructionCopier(operand -> rename(operand, names), label -> label);
+        var redundant = new BitSet();
+        for (int i = 0; i < instructions.size(); i++) {
+            var renamed = copier.copy(instructions.get(i));
+            MethodEdits.replace(method, i, renamed);
+
+            if (renamed instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest
+                    && !(dest instanceof ArrayOperand) && assign.getRhs() instanceof SingleOpInstruction singleOp
+                    && singleOp.getSingleOperand() instanceof Operand source && !(source instanceof ArrayOperand)
+                    && source.getName().equals(dest.getName())) {
+                redundant.set(i);
+            }
+        }
+        MethodEdits.removeAll(method, redundant);
+
+        names.forEach((version, name) -> {
+            if (!version.equals(name)) {
+                method.getVarTable().remove(version);
+            }
+        });
+        versions.clear();
+    }
+
+    private static boolean isLiveAfter(Liveness liveness, List<String> names, List<Integer> indexes) {
+        for (int index : indexes) {
+            for (var name : names) {
+                if (liveness.isLiveOut(index, name)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private Operand rename(Operand operand, Map<String, String> names) {
+        var name = names.get(operand.getName());
+        if (name == null || name.equals(operand.getName())) {
+            return MethodEdits.copyOf(operand);
+        }
+
+        // Parameters keep their number
+        var param = params.get(name);
+        return param != null ? MethodEdits.copyOf(param) : new Operand(name, operand.getType());
+    }
+}
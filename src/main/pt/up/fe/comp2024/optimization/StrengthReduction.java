@@ -0,0 +1,271 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Loops;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces operations with cheaper ones that compute the same value.
+ * <p>
+ * A variable whose only assignment in a loop adds a constant to itself, such as 'i := i + 1', is an induction
+ * variable of the loop. A product of it by a value the loop does not change is kept in a variable of its own, set
+ * before the loop and increased right after the induction variable, so that iterations add instead of multiplying.
+ * <p>
+ * Products and divisions by a power of two stay as they are, since the OLLIR parser cannot read shifts back, and
+ * become shifts in {@link pt.up.fe.comp2024.backend.InstructionSelector}.
+ */
+public class StrengthReduction {
+
+    /**
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit ollirClass) {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            changed |= reduceInductions(method);
+        }
+
+        return changed;
+    }
+
+    /**
+     * An induction variable, and how much its assignment adds to it.
+     */
+    private static class Induction {
+
+        private final int index;
+        private final Operand variable;
+        private final int step;
+
+        private Induction(int index, Operand variable, int step) {
+            this.index = index;
+            this.variable = variable;
+            this.step = step;
+        }
+    }
+
+    /**
+     * @return true if the method changed
+     */
+    private boolean reduceInductions(Method method) {
+        var cfg = new ControlFlowGraph(method);
+        if (cfg.size() == 0) {
+            return false;
+        }
+
+        var loops = new Loops(cfg).getLoops();
+        if (loops.isEmpty()) {
+            return false;
+        }
+
+        var preheaders = new Preheaders(cfg);
+        var instructions = method.getInstructions();
+
+        // New instructions to put before the header of loops, and right after induction variables
+        Map<Integer, List<Instruction>> before = new HashMap<>();
+        Map<Integer, Loops.Loop> headers = new HashMap<>();
+        Map<Integer, List<Instruction>> after = new HashMap<>();
+        var reduced = new BitSet();
+
+        for (var loop : loops) {
+            if (!preheaders.hasPlace(loop)) {
+                continue;
+            }
+
+            var body = loop.getBody();
+            Map<String, Integer> assignments = new HashMap<>();
+            for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+                var def = InstructionVars.getDef(instructions.get(i));
+                if (def != null) {
+                    assignments.merge(def, 1, Integer::sum);
+                }
+            }
+
+            Map<String, Induction> inductions = new HashMap<>();
+            for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+                var induction = getInduction(cfg, i);
+                if (induction != null && assignments.get(induction.variable.getName()) == 1) {
+                    inductions.put(induction.variable.getName(), induction);
+                }
+            }
+
+            if (inductions.isEmpty()) {
+                continue;
+            }
+
+            // The variable that holds each product, by induction variable and factor
+            Map<String, Operand> products = new HashMap<>();
+            var preheader = new ArrayList<Instruction>();
+            for (int i = body.nextSetBit(0); i >= 0; i = body.nextSetBit(i + 1)) {
+                if (reduced.get(i) || !cfg.isReachable(i)
+                        || !(instructions.get(i) instanceof AssignInstruction assign)
+                        || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)
+                        || binaryOp.getOperation().getOpType() != OperationType.MUL) {
+                    continue;
+                }
+
+                var left = binaryOp.getLeftOperand();
+                var right = binaryOp.getRightOperand();
+                var induction = getInductionOperand(inductions, left);
+                var factor = right;
+                if (induction == null || !isInvariant(assignments, factor)) {
+                    induction = getInductionOperand(inductions, right);
+                    factor = left;
+                }
+                if (induction == null || !isInvariant(assignments, factor)) {
+                    continue;
+                }
+
+                var key = induction.variable.getName() + " " + getKey(factor);
+                var product = products.get(key);
+                if (product == null) {
+                    product = MethodEdits.addVariable(method, "iv", OllirTypes.intType());
+                    products.put(key, product);
+
+                    preheader.add(assign(product, new BinaryOpInstruction(MethodEdits.copyOf(induction.variable),
+                            operation(OperationType.MUL), copyOf(factor))));
+                    after.computeIfAbsent(induction.index, index -> new ArrayList<>())
+                            .add(getIncrease(method, product, factor, induction.step, preheader));
+                }
+
+                MethodEdits.replace(method, i, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                        new SingleOpInstruction(MethodEdits.copyOf(product))));
+                reduced.set(i);
+            }
+
+            if (!preheader.isEmpty()) {
+                before.put(loop.getHeader(), preheader);
+                headers.put(loop.getHeader(), loop);
+            }
+        }
+
+        if (reduced.isEmpty()) {
+            return false;
+        }
+
+        var rebuilt = new ArrayList<Instruction>(instructions.size());
+        for (int i = 0; i < instructions.size(); i++) {
+            var preheader = before.get(i);
+            if (preheader != null) {
+                preheaders.moveEntryLabels(headers.get(i), preheader.get(0));
+                rebuilt.addAll(preheader);
+            }
+
+            rebuilt.add(instructions.get(i));
+            rebuilt.addAll(after.getOrDefault(i, List.of()));
+        }
+
+        instructions.clear();
+        instructions.addAll(rebuilt);
+
+        return true;
+    }
+
+    /**
+     * @return the induction the instruction is, 'i := i + c', 'i := c + i' or 'i := i - c', or null if it is not one
+     */
+    private static Induction getInduction(ControlFlowGraph cfg, int index) {
+        if (!cfg.isReachable(index)
+                || !(cfg.getInstructions().get(index) instanceof AssignInstruction assign)
+                || !(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand
+                || dest.getType().getTypeOfElement() != ElementType.INT32
+                || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)) {
+            return null;
+        }
+
+        var opType = binaryOp.getOperation().getOpType();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        if (opType == OperationType.ADD && isVariable(left, dest) && right instanceof LiteralElement literal) {
+            return new Induction(index, dest, Integer.parseInt(literal.getLiteral()));
+        }
+        if (opType == OperationType.ADD && isVariable(right, dest) && left instanceof LiteralElement literal) {
+            return new Induction(index, dest, Integer.parseInt(literal.getLiteral()));
+        }
+        if (opType == OperationType.SUB && isVariable(left, dest) && right instanceof LiteralElement literal) {
+            return new Induction(index, dest, -Integer.parseInt(literal.getLiteral()));
+        }
+
+        return null;
+    }
+
+    private static boolean isVariable(Element element, Operand variable) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(variable.getName());
+    }
+
+    private static Induction getInductionOperand(Map<String, Induction> inductions, Element element) {
+        if (!(element instanceof Operand operand) || operand instanceof ArrayOperand) {
+            return null;
+        }
+
+        return inductions.get(operand.getName());
+    }
+
+    /**
+     * @return true if the element is a constant, or a variable the loop does not assign
+     */
+    private static boolean isInvariant(Map<String, Integer> assignments, Element element) {
+        if (element instanceof LiteralElement) {
+            return true;
+        }
+
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getType().getTypeOfElement() == ElementType.INT32
+                && !assignments.containsKey(operand.getName());
+    }
+
+    private static String getKey(Element element) {
+        return element instanceof LiteralElement literal ? literal.getLiteral() : "$" + ((Operand) element).getName();
+    }
+
+    /**
+     * @param preheader where to compute the increase first, if it is not a constant
+     * @return the instruction that keeps the product equal to the induction variable times the factor
+     */
+    private static Instruction getIncrease(Method method, Operand product, Element factor, int step,
+                                           List<Instruction> preheader) {
+        if (factor instanceof LiteralElement literal) {
+            var increase = integer(step * Integer.parseInt(literal.getLiteral()));
+            return assign(product, new BinaryOpInstruction(MethodEdits.copyOf(product), operation(OperationType.ADD),
+                    increase));
+        }
+
+        if (step == 1 || step == -1) {
+            var opType = step == 1 ? OperationType.ADD : OperationType.SUB;
+            return assign(product, new BinaryOpInstruction(MethodEdits.copyOf(product), operation(opType),
+                    copyOf(factor)));
+        }
+
+        var increase = MethodEdits.addVariable(method, "iv", OllirTypes.intType());
+        preheader.add(assign(increase, new BinaryOpInstruction(copyOf(factor), operation(OperationType.MUL),
+                integer(step))));
+        return assign(product, new BinaryOpInstruction(MethodEdits.copyOf(product), operation(OperationType.ADD),
+                MethodEdits.copyOf(increase)));
+    }
+
+    private static Operation operation(OperationType opType) {
+        return new Operation(opType, OllirTypes.intType());
+    }
+
+    private static LiteralElement integer(int value) {
+        return new LiteralElement(String.valueOf(value), OllirTypes.intType());
+    }
+
+    private static Element copyOf(Element element) {
+        return element instanceof Operand operand ? MethodEdits.copyOf(operand) : integer(
+                Integer.parseInt(((LiteralElement) element).getLiteral()));
+    }
+
+    private static AssignInstruction assign(Operand dest, Instruction rhs) {
+        return new AssignInstruction(MethodEdits.copyOf(dest), OllirTypes.intType(), rhs);
+    }
+}
@@ -0,0 +1,213 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns calls of a method to itself, on 'this', whose value is returned right away, into a jump to the start of the
+ * method with the arguments in its parameters, so that the recursion runs as a loop in a single frame.
+ * <p>
+ * Java-- has no 'super' calls, so a method of this class only runs on objects whose class does not override it, and
+ * a call to it on 'this' runs the same method again.
+ * <p>
+ * The arguments may read the parameters they replace, so those are first copied to variables of their own; copy
+ * propagation removes the copies that are not needed.
+ */
+public class TailCallElimination {
+
+    /**
+     * @return true if any method changed
+     */
+    public boolean optimize(ClassUnit ollirClass) {
+        boolean changed = false;
+
+        for (var method : ollirClass.getMethods()) {
+            changed |= optimize(method);
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return true if the method changed
+     */
+    private boolean optimize(Method method) {
+        if (method.isStaticMethod() || method.isConstructMethod() || method.isVarargs()) {
+            return false;
+        }
+
+        String start = null;
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            if (!isTailCall(method, i)) {
+                continue;
+            }
+
+            if (start == null) {
+                start = getStartLabel(method);
+            }
+
+            var call = (CallInstruction) (instruction instanceof AssignInstruction assign ? assign.getRhs()
+                    : instruction);
+            var code = passArguments(method, call.getArguments());
+            code.add(new GotoInstruction(start));
+
+            MethodEdits.replace(method, i, code.get(0));
+            instructions.addAll(i + 1, code.subList(1, code.size()));
+            i += code.size() - 1;
+        }
+
+        return start != null;
+    }
+
+    /**
+     * @return true if the instruction calls the method on 'this' and the method then returns what the call returned
+     */
+    private static boolean isTailCall(Method method, int index) {
+        var instruction = method.getInstructions().get(index);
+
+        String result = null;
+        CallInstruction call;
+        if (instruction instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction rhs
+                && assign.getDest() instanceof Operand dest && !(dest instanceof ArrayOperand)) {
+            call = rhs;
+            result = dest.getName();
+        } else if (instruction instanceof CallInstruction statement) {
+            call = statement;
+        } else {
+            return false;
+        }
+
+        if (call.getInvocationType() != CallType.invokevirtual || !(call.getCaller() instanceof Operand caller)
+                || !caller.getName().equals("this")
+                || !((LiteralElement) call.getMethodName()).getLiteral().equals("\"" + method.getMethodName() + "\"")
+                || call.getArguments().size() != method.getParams().size()) {
+            return false;
+        }
+
+        return returnsRightAway(method, index + 1, result);
+    }
+
+    /**
+     * Follows the code from the index through jumps and copies of the result, which are not needed once the call is
+     * gone.
+     *
+     * @param result the variable that holds the value of the call, or null if it is not kept
+     * @return true if that code returns the result, with nothing else in between
+     */
+    private static boolean returnsRightAway(Method method, int index, String result) {
+        var instructions = method.getInstructions();
+        Set<Integer> visited = new HashSet<>();
+
+        while (index < instructions.size() && visited.add(index)) {
+            var instruction = instructions.get(index);
+
+            if (instruction instanceof ReturnInstruction ret) {
+                if (!ret.hasReturnValue()) {
+                    return true;
+                }
+                return result != null && ret.getOperand() instanceof Operand operand
+                        && operand.getName().equals(result);
+            }
+
+            if (instruction instanceof GotoInstruction gotoInstruction) {
+                index = instructions.indexOf(method.getLabels().get(gotoInstruction.getLabel()));
+                continue;
+            }
+
+            var source = result == null ? null : getCopied(instruction);
+            if (source == null || !source.equals(result)) {
+                return false;
+            }
+
+            result = ((Operand) ((AssignInstruction) instruction).getDest()).getName();
+            index++;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the name of the variable a copy reads, or null if the instruction is not a copy between variables
+     */
+    private static String getCopied(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest
+                && !(dest instanceof ArrayOperand) && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand source && !(source instanceof ArrayOperand)) {
+            return source.getName();
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the label on the first instruction, which is added if there is none
+     */
+    private static String getStartLabel(Method method) {
+        var first = method.getInstructions().get(0);
+        var labels = Preheaders.getLabels(method, first);
+        if (!labels.isEmpty()) {
+            return labels.get(0);
+        }
+
+        var label = OptUtils.getLabel("tail_call");
+        method.getLabels().put(label, first);
+        return label;
+    }
+
+    /**
+     * @return the assignments of the arguments to the parameters, as if all were assigned at once
+     */
+    private static List<Instruction> passArguments(Method method, List<Element> arguments) {
+        var params = method.getParams();
+
+        Set<String> changed = new HashSet<>();
+        for (int k = 0; k < params.size(); k++) {
+            if (!isParam(arguments.get(k), (Operand) params.get(k))) {
+                changed.add(((Operand) params.get(k)).getName());
+            }
+        }
+
+        var code = new ArrayList<Instruction>();
+        var values = new ArrayList<Element>(arguments);
+        for (int k = 0; k < params.size(); k++) {
+            // A parameter assigned before this one would be read with its new value
+            if (arguments.get(k) instanceof Operand operand && changed.contains(operand.getName())
+                    && !isParam(operand, (Operand) params.get(k))) {
+                var copy = MethodEdits.addVariable(method, "tail", operand.getType());
+                code.add(new AssignInstruction(copy, copy.getType(),
+                        new SingleOpInstruction(MethodEdits.copyOf(operand))));
+                values.set(k, MethodEdits.copyOf(copy));
+            }
+        }
+
+        for (int k = 0; k < params.size(); k++) {
+            var param = (Operand) params.get(k);
+            if (changed.contains(param.getName())) {
+                code.add(new AssignInstruction(MethodEdits.copyOf(param), param.getType(),
+                        new SingleOpInstruction(copyOf(values.get(k)))));
+            }
+        }
+
+        return code;
+    }
+
+    private static boolean isParam(Element argument, Operand param) {
+        return argument instanceof Operand operand && !(operand instanceof ArrayOperand)
+                && operand.getName().equals(param.getName());
+    }
+
+    private static Element copyOf(Element element) {
+        if (element instanceof Operand operand) {
+            return MethodEdits.copyOf(operand);
+        }
+
+        var literal = (LiteralElement) element;
+        return new LiteralElement(literal.getLiteral(), literal.getType());
+    }
+}
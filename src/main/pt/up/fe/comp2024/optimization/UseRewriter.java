@@ -0,0 +1,101 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Replaces the variables an OLLIR instruction reads, in the same places {@link InstructionVars#getUses} finds them.
+ * <p>
+ * Only plain variables are replaced, including the indexes of array elements; arrays, the objects of calls and
+ * fields keep their variables.
+ */
+public class UseRewriter {
+
+    private final Function<Operand, Element> replacement;
+
+    private boolean changed;
+
+    /**
+     * @param replacement gives the element that takes the place of a variable, or the variable itself to keep it
+     */
+    public UseRewriter(Function<Operand, Element> replacement) {
+        this.replacement = replacement;
+    }
+
+    /**
+     * @return true if a variable was replaced
+     */
+    public boolean rewrite(Instruction instruction) {
+        changed = false;
+        rewriteUses(instruction);
+        return changed;
+    }
+
+    private void rewriteUses(Instruction instruction) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                var assign = (AssignInstruction) instruction;
+                if (assign.getDest() instanceof ArrayOperand array) {
+                    rewriteAll(array.getIndexOperands());
+                }
+                rewriteUses(assign.getRhs());
+            }
+            case CALL -> rewriteAll(((CallInstruction) instruction).getArguments());
+            case PUTFIELD -> {
+                var putField = (PutFieldInstruction) instruction;
+                var value = rewrite(putField.getValue());
+                if (value != putField.getValue()) {
+                    putField.setOperands(putField.getObject(), putField.getField(), value);
+                }
+            }
+            case BRANCH -> rewriteUses(((CondBranchInstruction) instruction).getCondition());
+            case RETURN -> {
+                var ret = (ReturnInstruction) instruction;
+                if (ret.hasReturnValue()) {
+                    ret.setOperand(rewrite(ret.getOperand()));
+                }
+            }
+            case UNARYOPER -> {
+                var unaryOp = (UnaryOpInstruction) instruction;
+                unaryOp.setOperand(rewrite(unaryOp.getOperand()));
+            }
+            case BINARYOPER -> {
+                var binaryOp = (BinaryOpInstruction) instruction;
+                binaryOp.setLeftOperand(rewrite(binaryOp.getLeftOperand()));
+                binaryOp.setRightOperand(rewrite(binaryOp.getRightOperand()));
+            }
+            case NOPER -> {
+                var singleOp = (SingleOpInstruction) instruction;
+                singleOp.setSingleOperand(rewrite(singleOp.getSingleOperand()));
+            }
+            case GETFIELD, GOTO -> {
+            }
+        }
+    }
+
+    private void rewriteAll(List<Element> elements) {
+        for (int k = 0; k < elements.size(); k++) {
+            elements.set(k, rewrite(elements.get(k)));
+        }
+    }
+
+    private Element rewrite(Element element) {
+        if (element instanceof ArrayOperand array) {
+            rewriteAll(array.getIndexOperands());
+            return array;
+        }
+
+        if (!(element instanceof Operand operand)) {
+            return element;
+        }
+
+        var replaced = replacement.apply(operand);
+        if (replaced != operand) {
+            changed = true;
+        }
+
+        return replaced;
+    }
+}
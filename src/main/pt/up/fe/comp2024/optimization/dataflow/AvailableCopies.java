@@ -0,0 +1,113 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionVars;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The copies between variables made on every path to each instruction of an OLLIR method, where neither variable has
+ * changed since.
+ * <p>
+ * A copy is an assignment of a variable to another, such as {@code x := y}; where it is available, reading {@code x}
+ * gives the same value as reading {@code y}. Facts are indexed in the order the copies first appear, and copies of the
+ * same variable to the same variable are the same fact wherever they are made.
+ */
+public class AvailableCopies extends DataflowAnalysis {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    // The variable each copy reads
+    private final List<Operand> sources = new ArrayList<>();
+
+    // Copies that write each variable
+    private final Map<String, BitSet> copiesTo = new HashMap<>();
+
+    public AvailableCopies(ControlFlowGraph cfg) {
+        super(cfg, Direction.FORWARD, Meet.INTERSECTION);
+
+        // Copies that read or write each variable
+        Map<String, BitSet> mentions = new HashMap<>();
+
+        var instructions = cfg.getInstructions();
+        var copies = new int[instructions.size()];
+        for (int i = 0; i < instructions.size(); i++) {
+            copies[i] = -1;
+
+            var source = getSource(instructions.get(i));
+            if (source == null) {
+                continue;
+            }
+
+            var dest = InstructionVars.getDef(instructions.get(i));
+            var key = dest + " " + source.getName();
+            if (!indexes.containsKey(key)) {
+                int index = sources.size();
+                indexes.put(key, index);
+                sources.add(source);
+
+                copiesTo.computeIfAbsent(dest, name -> new BitSet()).set(index);
+                mentions.computeIfAbsent(dest, name -> new BitSet()).set(index);
+                mentions.computeIfAbsent(source.getName(), name -> new BitSet()).set(index);
+            }
+
+            copies[i] = indexes.get(key);
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var def = InstructionVars.getDef(instructions.get(i));
+            if (def != null && mentions.containsKey(def)) {
+                kill[i].or(mentions.get(def));
+            }
+
+            if (copies[i] >= 0) {
+                gen[i].set(copies[i]);
+            }
+        }
+
+        solve();
+    }
+
+    /**
+     * @return the variable the instruction copies to another, or null if it is not a copy
+     */
+    public static Operand getSource(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign
+                && !(assign.getDest() instanceof ArrayOperand)
+                && assign.getRhs() instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof Operand source
+                && !(source instanceof ArrayOperand)
+                && !source.getName().equals(((Operand) assign.getDest()).getName())) {
+            return source;
+        }
+
+        return null;
+    }
+
+    @Override
+    protected int getFactCount() {
+        return sources.size();
+    }
+
+    /**
+     * @return the variable that holds the same value as the given one right before the instruction, or null if there
+     * is none
+     */
+    public Operand getCopied(int index, String name) {
+        var copies = copiesTo.get(name);
+        if (copies == null) {
+            return null;
+        }
+
+        // Each copy to the variable kills the others, so at most one of them is available
+        var available = (BitSet) getIn(index).clone();
+        available.and(copies);
+
+        int copy = available.nextSetBit(0);
+        return copy >= 0 ? sources.get(copy) : null;
+    }
+}
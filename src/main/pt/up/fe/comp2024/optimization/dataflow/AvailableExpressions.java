@@ -0,0 +1,168 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2024.optimization.InstructionVars;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The expressions already computed on every path to each instruction of an OLLIR method, whose operands have not
+ * changed since.
+ * <p>
+ * The expressions are the binary and unary operations, array elements, array lengths and fields assigned to
+ * variables, identified by {@link #getKey}. Facts are indexed in the order the expressions first appear.
+ */
+public class AvailableExpressions extends DataflowAnalysis {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    private final List<String> keys = new ArrayList<>();
+
+    // Expressions that read array elements, and fields
+    private final BitSet arrayReaders = new BitSet();
+    private final BitSet fieldReaders = new BitSet();
+
+    public AvailableExpressions(ControlFlowGraph cfg) {
+        super(cfg, Direction.FORWARD, Meet.INTERSECTION);
+
+        // Expressions that read each variable
+        Map<String, BitSet> readers = new HashMap<>();
+
+        var instructions = cfg.getInstructions();
+        var computed = new int[instructions.size()];
+        for (int i = 0; i < instructions.size(); i++) {
+            computed[i] = -1;
+
+            if (!(instructions.get(i) instanceof AssignInstruction assign)) {
+                continue;
+            }
+
+            var key = getKey(assign.getRhs());
+            if (key == null) {
+                continue;
+            }
+
+            if (!indexes.containsKey(key)) {
+                int index = keys.size();
+                indexes.put(key, index);
+                keys.add(key);
+
+                for (var operand : InstructionVars.getUses(assign.getRhs())) {
+                    readers.computeIfAbsent(operand, name -> new BitSet()).set(index);
+                }
+
+                if (key.contains("[")) {
+                    arrayReaders.set(index);
+                } else if (key.startsWith("getfield")) {
+                    fieldReaders.set(index);
+                }
+            }
+
+            computed[i] = indexes.get(key);
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            var def = InstructionVars.getDef(instruction);
+            if (def != null && readers.containsKey(def)) {
+                kill[i].or(readers.get(def));
+            }
+
+            // An expression that reads the variable it is assigned to is gone as soon as it is computed
+            if (computed[i] >= 0 && !kill[i].get(computed[i])) {
+                gen[i].set(computed[i]);
+            }
+
+            // A call may change the elements of any array, and any field
+            if (isCall(instruction)) {
+                kill[i].or(arrayReaders);
+                kill[i].or(fieldReaders);
+            } else if (instruction instanceof AssignInstruction assign && assign.getDest() instanceof ArrayOperand) {
+                kill[i].or(arrayReaders);
+            } else if (instruction.getInstType() == InstructionType.PUTFIELD) {
+                kill[i].or(fieldReaders);
+            }
+        }
+
+        solve();
+    }
+
+    /**
+     * @return true if the instruction calls a method, on its own or to assign its result, which may change the elements
+     * of any array and any field
+     */
+    public static boolean isCall(Instruction instruction) {
+        var call = instruction instanceof AssignInstruction assign ? assign.getRhs() : instruction;
+        if (!(call instanceof CallInstruction callInstruction)) {
+            return false;
+        }
+
+        var callType = callInstruction.getInvocationType();
+        return callType != CallType.arraylength && callType != CallType.NEW;
+    }
+
+    /**
+     * @return a key that is the same for instructions that compute the same value from the same variables, or null if
+     * the instruction is not an operation or a read
+     */
+    public static String getKey(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp && singleOp.getSingleOperand() instanceof ArrayOperand) {
+            return getKey(singleOp.getSingleOperand());
+        }
+
+        if (instruction instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength) {
+            return "arraylength " + getKey(call.getCaller());
+        }
+
+        if (instruction instanceof GetFieldInstruction getField) {
+            return "getfield " + getKey(getField.getObject()) + " " + getField.getField().getName();
+        }
+
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            return binaryOp.getOperation().getOpType() + " " + getKey(binaryOp.getLeftOperand()) + " "
+                    + getKey(binaryOp.getRightOperand());
+        }
+
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            return unaryOp.getOperation().getOpType() + " " + getKey(unaryOp.getOperand());
+        }
+
+        return null;
+    }
+
+    private static String getKey(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getLiteral();
+        }
+
+        var operand = (Operand) element;
+        if (operand instanceof ArrayOperand array) {
+            var key = new StringBuilder("$").append(array.getName());
+            array.getIndexOperands().forEach(index -> key.append("[").append(getKey(index)).append("]"));
+            return key.toString();
+        }
+
+        return "$" + operand.getName();
+    }
+
+    @Override
+    protected int getFactCount() {
+        return keys.size();
+    }
+
+    /**
+     * @return true if the value of the expression is known right before the instruction
+     */
+    public boolean isAvailable(int index, String key) {
+        var expression = indexes.get(key);
+        return expression != null && getIn(index).get(expression);
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+}
@@ -0,0 +1,123 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The control flow between the instructions of an OLLIR method, by instruction index.
+ * <p>
+ * Every instruction falls through to the next one, except gotos and returns, and branches also go to the instruction
+ * of their label. The edges are taken from the instructions themselves, so {@link Method#buildCFG()} is not needed.
+ */
+public class ControlFlowGraph {
+
+    private final Method method;
+
+    private final List<Instruction> instructions;
+
+    private final int[][] successors;
+    private final int[][] predecessors;
+
+    // Instructions on some path from the first one
+    private final BitSet reachable;
+
+    public ControlFlowGraph(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
+
+        int size = instructions.size();
+        successors = new int[size][];
+        var predecessorLists = new ArrayList<List<Integer>>(size);
+        for (int i = 0; i < size; i++) {
+            predecessorLists.add(new ArrayList<>(2));
+        }
+
+        for (int i = 0; i < size; i++) {
+            var instruction = instructions.get(i);
+            boolean hasNext = i + 1 < size;
+
+            successors[i] = switch (instruction.getInstType()) {
+                case GOTO -> new int[]{getTarget(((GotoInstruction) instruction).getLabel(), indexes)};
+                case BRANCH -> {
+                    int target = getTarget(((CondBranchInstruction) instruction).getLabel(), indexes);
+                    yield hasNext ? new int[]{target, i + 1} : new int[]{target};
+                }
+                case RETURN -> new int[0];
+                default -> hasNext ? new int[]{i + 1} : new int[0];
+            };
+
+            for (int successor : successors[i]) {
+                predecessorLists.get(successor).add(i);
+            }
+        }
+
+        predecessors = new int[size][];
+        for (int i = 0; i < size; i++) {
+            predecessors[i] = predecessorLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        reachable = new BitSet(size);
+        var pending = new ArrayDeque<Integer>();
+        if (size > 0) {
+            reachable.set(0);
+            pending.add(0);
+        }
+        while (!pending.isEmpty()) {
+            for (int successor : successors[pending.poll()]) {
+                if (!reachable.get(successor)) {
+                    reachable.set(successor);
+                    pending.add(successor);
+                }
+            }
+        }
+    }
+
+    private int getTarget(String label, Map<Instruction, Integer> indexes) {
+        // Method.getLabels(Instruction) caches its answer, look the label up directly in case it changed
+        var target = indexes.get(method.getLabels().get(label));
+        if (target == null) {
+            throw new RuntimeException("Label '" + label + "' of method '" + method.getMethodName()
+                    + "' is not on any of its instructions");
+        }
+
+        return target;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    public int size() {
+        return instructions.size();
+    }
+
+    public int[] getSuccessors(int index) {
+        return successors[index];
+    }
+
+    public int[] getPredecessors(int index) {
+        return predecessors[index];
+    }
+
+    /**
+     * @return false if no path from the first instruction gets to the instruction
+     */
+    public boolean isReachable(int index) {
+        return reachable.get(index);
+    }
+}
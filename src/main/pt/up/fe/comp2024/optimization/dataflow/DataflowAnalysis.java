@@ -0,0 +1,167 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import java.util.BitSet;
+
+/**
+ * A dataflow analysis over the instructions of a method, with the facts of each instruction in a bitset.
+ * <p>
+ * Subclasses give the set each instruction generates and the set it kills, so that the facts after an instruction
+ * (before it, going backwards) are {@code gen | (facts & ~kill)}. The facts of the paths that meet at an instruction
+ * are joined with union, for 'may' analyses, or intersection, for 'must' analyses. A worklist revisits only the
+ * instructions whose input changed, in order, so most methods settle after one or two passes.
+ * <p>
+ * Going forward, instructions that cannot be reached keep their initial facts, none for 'may' analyses and all of them
+ * for 'must' analyses, so that they do not affect the instructions they jump to.
+ */
+public abstract class DataflowAnalysis {
+
+    public enum Direction {
+        FORWARD,
+        BACKWARD
+    }
+
+    public enum Meet {
+        UNION,
+        INTERSECTION
+    }
+
+    protected final ControlFlowGraph cfg;
+
+    private final Direction direction;
+    private final Meet meet;
+
+    protected final BitSet[] gen;
+    protected final BitSet[] kill;
+
+    // Facts before and after each instruction, in execution order
+    private final BitSet[] in;
+    private final BitSet[] out;
+
+    protected DataflowAnalysis(ControlFlowGraph cfg, Direction direction, Meet meet) {
+        this.cfg = cfg;
+        this.direction = direction;
+        this.meet = meet;
+
+        int size = cfg.size();
+        this.gen = new BitSet[size];
+        this.kill = new BitSet[size];
+        this.in = new BitSet[size];
+        this.out = new BitSet[size];
+
+        for (int i = 0; i < size; i++) {
+            gen[i] = new BitSet();
+            kill[i] = new BitSet();
+        }
+    }
+
+    /**
+     * @return the number of facts, the size of the bitsets
+     */
+    protected abstract int getFactCount();
+
+    /**
+     * @return the facts that hold when the method starts, going forward, or when it returns, going backwards
+     */
+    protected BitSet getBoundary() {
+        return new BitSet();
+    }
+
+    /**
+     * Computes the facts of every instruction. Subclasses call it once their gen and kill sets are filled in.
+     */
+    protected void solve() {
+        int size = cfg.size();
+        boolean forward = direction == Direction.FORWARD;
+
+        // 'Must' analyses start from every fact and remove the ones that do not hold on some path
+        var initial = new BitSet();
+        if (meet == Meet.INTERSECTION) {
+            initial.set(0, getFactCount());
+        }
+
+        for (int i = 0; i < size; i++) {
+            in[i] = (BitSet) initial.clone();
+            out[i] = (BitSet) initial.clone();
+        }
+
+        // Pending instructions are taken in sweeps in the direction of the analysis, so that an instruction is
+        // usually visited after the instructions it depends on
+        var pending = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (!forward || cfg.isReachable(i)) {
+                pending.set(i);
+            }
+        }
+
+        var scratch = new BitSet();
+        int cursor = forward ? 0 : size - 1;
+        while (!pending.isEmpty()) {
+            int i = forward ? pending.nextSetBit(cursor) : pending.previousSetBit(cursor);
+            if (i < 0) {
+                i = forward ? pending.nextSetBit(0) : pending.previousSetBit(size - 1);
+            }
+            pending.clear(i);
+            cursor = i;
+
+            // Facts flowing into the instruction: before it going forward, after it going backwards
+            var sources = forward ? cfg.getPredecessors(i) : cfg.getSuccessors(i);
+            var input = forward ? in[i] : out[i];
+            if (forward ? i == 0 : sources.length == 0) {
+                input.clear();
+                input.or(getBoundary());
+            }
+            for (int k = 0; k < sources.length; k++) {
+                var facts = forward ? out[sources[k]] : in[sources[k]];
+                if (k == 0 && !(forward && i == 0)) {
+                    input.clear();
+                    input.or(facts);
+                } else if (meet == Meet.UNION) {
+                    input.or(facts);
+                } else {
+                    input.and(facts);
+                }
+            }
+
+            var output = scratch;
+            output.clear();
+            output.or(input);
+            output.andNot(kill[i]);
+            output.or(gen[i]);
+
+            var previous = forward ? out[i] : in[i];
+            if (output.equals(previous)) {
+                continue;
+            }
+
+            // The previous facts are no longer needed, they become the scratch set of the next instruction
+            if (forward) {
+                out[i] = output;
+            } else {
+                in[i] = output;
+            }
+            scratch = previous;
+
+            for (int next : forward ? cfg.getSuccessors(i) : cfg.getPredecessors(i)) {
+                pending.set(next);
+            }
+        }
+    }
+
+    /**
+     * @return the facts that hold right before the instruction
+     */
+    public BitSet getIn(int index) {
+        return in[index];
+    }
+
+    /**
+     * @return the facts that hold right after the instruction
+     */
+    public BitSet getOut(int index) {
+        return out[index];
+    }
+
+    public ControlFlowGraph getCfg() {
+        return cfg;
+    }
+}
@@ -0,0 +1,202 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The dominators of the instructions of an OLLIR method: an instruction dominates another if every path from the first
+ * instruction to the other goes through it.
+ * <p>
+ * Only the immediate dominator of each instruction is kept, found with the iterative algorithm of Cooper, Harvey and
+ * Kennedy over the instructions in reverse postorder. Instructions that cannot be reached have no dominators.
+ * <p>
+ * The dominance frontier of an instruction holds the instructions where its dominance ends: those it does not strictly
+ * dominate, but that have a predecessor it dominates. It is found when first asked for.
+ */
+public class Dominators {
+
+    private final ControlFlowGraph cfg;
+
+    private final int[] immediate;
+
+    // Position of each instruction in reverse postorder, -1 if it cannot be reached
+    private final int[] order;
+
+    // The instructions each one immediately dominates, and the dominance frontiers
+    private List<List<Integer>> children;
+    private BitSet[] frontiers;
+
+    public Dominators(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+
+        int size = cfg.size();
+        immediate = new int[size];
+        order = new int[size];
+        Arrays.fill(immediate, -1);
+        Arrays.fill(order, -1);
+
+        if (size == 0) {
+            return;
+        }
+
+        var postorder = getPostorder(cfg);
+        var reversePostorder = new int[postorder.length];
+        for (int k = 0; k < postorder.length; k++) {
+            reversePostorder[k] = postorder[postorder.length - 1 - k];
+            order[reversePostorder[k]] = k;
+        }
+
+        immediate[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int k = 1; k < reversePostorder.length; k++) {
+                int instruction = reversePostorder[k];
+
+                int dominator = -1;
+                for (int predecessor : cfg.getPredecessors(instruction)) {
+                    if (immediate[predecessor] < 0) {
+                        continue;
+                    }
+                    dominator = dominator < 0 ? predecessor : intersect(predecessor, dominator);
+                }
+
+                if (immediate[instruction] != dominator) {
+                    immediate[instruction] = dominator;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private static int[] getPostorder(ControlFlowGraph cfg) {
+        int size = cfg.size();
+        var postorder = new int[size];
+        int count = 0;
+
+        // Each entry is an instruction and how many of its successors were already visited
+        var stack = new int[size][];
+        int top = 0;
+        var visited = new boolean[size];
+        stack[top++] = new int[]{0, 0};
+        visited[0] = true;
+
+        while (top > 0) {
+            var entry = stack[top - 1];
+            var successors = cfg.getSuccessors(entry[0]);
+
+            if (entry[1] < successors.length) {
+                int successor = successors[entry[1]++];
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stack[top++] = new int[]{successor, 0};
+                }
+            } else {
+                postorder[count++] = entry[0];
+                top--;
+            }
+        }
+
+        return Arrays.copyOf(postorder, count);
+    }
+
+    private int intersect(int first, int second) {
+        while (first != second) {
+            while (order[first] > order[second]) {
+                first = immediate[first];
+            }
+            while (order[second] > order[first]) {
+                second = immediate[second];
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     * @return the closest instruction that dominates the given one, itself for the first instruction, or -1 if it
+     * cannot be reached
+     */
+    public int getImmediateDominator(int index) {
+        return immediate[index];
+    }
+
+    /**
+     * @return true if every path to the second instruction goes through the first; an instruction dominates itself
+     */
+    public boolean dominates(int dominator, int index) {
+        if (order[dominator] < 0 || order[index] < 0) {
+            return false;
+        }
+
+        // Dominators come earlier in reverse postorder
+        while (order[index] > order[dominator]) {
+            index = immediate[index];
+        }
+
+        return index == dominator;
+    }
+
+    /**
+     * @return the instructions whose immediate dominator is the given one, in index order; these are its children in
+     * the dominator tree, whose root is the first instruction
+     */
+    public List<Integer> getChildren(int index) {
+        if (children == null) {
+            children = new ArrayList<>(cfg.size());
+            for (int i = 0; i < cfg.size(); i++) {
+                children.add(new ArrayList<>());
+            }
+            for (int i = 1; i < cfg.size(); i++) {
+                if (immediate[i] >= 0) {
+                    children.get(immediate[i]).add(i);
+                }
+            }
+        }
+
+        return children.get(index);
+    }
+
+    /**
+     * @return the dominance frontier of the instruction. The first instruction is in the frontier of the instructions
+     * that jump back to it, since the start of the method also leads to it.
+     */
+    public BitSet getFrontier(int index) {
+        if (frontiers == null) {
+            computeFrontiers();
+        }
+
+        return frontiers[index];
+    }
+
+    private void computeFrontiers() {
+        int size = cfg.size();
+        frontiers = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            frontiers[i] = new BitSet();
+        }
+
+        // Only joins are in frontiers: from each predecessor, up the tree to the immediate dominator of the join
+        for (int join = 0; join < size; join++) {
+            var predecessors = cfg.getPredecessors(join);
+            int edges = predecessors.length + (join == 0 ? 1 : 0);
+            if (edges < 2 || immediate[join] < 0) {
+                continue;
+            }
+
+            for (int predecessor : predecessors) {
+                int runner = predecessor;
+                while (immediate[runner] >= 0 && (runner != immediate[join] || join == 0)) {
+                    frontiers[runner].set(join);
+                    if (runner == 0) {
+                        break;
+                    }
+                    runner = immediate[runner];
+                }
+            }
+        }
+    }
+}
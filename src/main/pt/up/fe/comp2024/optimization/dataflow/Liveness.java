@@ -0,0 +1,66 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import pt.up.fe.comp2024.optimization.InstructionVars;
+
+import java.util.BitSet;
+
+/**
+ * The variables live before and after each instruction of an OLLIR method, those whose current value may still be
+ * read. Facts are indexed by {@link Variables}.
+ */
+public class Liveness extends DataflowAnalysis {
+
+    private final Variables variables;
+
+    public Liveness(ControlFlowGraph cfg, Variables variables) {
+        super(cfg, Direction.BACKWARD, Meet.UNION);
+        this.variables = variables;
+
+        var instructions = cfg.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+
+            for (var use : InstructionVars.getUses(instruction)) {
+                gen[i].set(variables.getIndex(use));
+            }
+
+            var def = InstructionVars.getDef(instruction);
+            if (def != null) {
+                kill[i].set(variables.getIndex(def));
+            }
+        }
+
+        solve();
+    }
+
+    @Override
+    protected int getFactCount() {
+        return variables.size();
+    }
+
+    public Variables getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the variables whose value may be read after reaching the instruction
+     */
+    public BitSet getLiveIn(int index) {
+        return getIn(index);
+    }
+
+    /**
+     * @return the variables whose value may be read after executing the instruction
+     */
+    public BitSet getLiveOut(int index) {
+        return getOut(index);
+    }
+
+    public boolean isLiveIn(int index, String name) {
+        return getIn(index).get(variables.getIndex(name));
+    }
+
+    public boolean isLiveOut(int index, String name) {
+        return getOut(index).get(variables.getIndex(name));
+    }
+}
@@ -0,0 +1,96 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The natural loops of an OLLIR method.
+ * <p>
+ * A back edge is a jump to an instruction that dominates the jump, the header of the loop. The body of the loop is the
+ * header and every instruction that can get to the jump without going through the header. Back edges to the same
+ * header make one loop. Loops are listed innermost first, so that a loop comes before the loops that contain it.
+ */
+public class Loops {
+
+    /**
+     * A loop, by the indexes of its instructions.
+     */
+    public static class Loop {
+
+        private final int header;
+        private final BitSet body = new BitSet();
+
+        private Loop(int header) {
+            this.header = header;
+            body.set(header);
+        }
+
+        /**
+         * @return the only instruction of the loop that instructions outside it go to
+         */
+        public int getHeader() {
+            return header;
+        }
+
+        public BitSet getBody() {
+            return body;
+        }
+
+        public boolean contains(int index) {
+            return body.get(index);
+        }
+    }
+
+    private final List<Loop> loops = new ArrayList<>();
+
+    public Loops(ControlFlowGraph cfg) {
+        this(cfg, new Dominators(cfg));
+    }
+
+    public Loops(ControlFlowGraph cfg, Dominators dominators) {
+        Map<Integer, Loop> byHeader = new TreeMap<>();
+
+        for (int i = 0; i < cfg.size(); i++) {
+            for (int successor : cfg.getSuccessors(i)) {
+                if (dominators.dominates(successor, i)) {
+                    addBody(cfg, byHeader.computeIfAbsent(successor, Loop::new), i);
+                }
+            }
+        }
+
+        loops.addAll(byHeader.values());
+        loops.sort(Comparator.comparingInt(loop -> loop.body.cardinality()));
+    }
+
+    /**
+     * Adds to the loop the instructions that get to the back edge source without going through the header.
+     */
+    private static void addBody(ControlFlowGraph cfg, Loop loop, int source) {
+        var pending = new ArrayList<Integer>();
+        if (!loop.body.get(source)) {
+            loop.body.set(source);
+            pending.add(source);
+        }
+
+        while (!pending.isEmpty()) {
+            int instruction = pending.remove(pending.size() - 1);
+            for (int predecessor : cfg.getPredecessors(instruction)) {
+                if (cfg.isReachable(predecessor) && !loop.body.get(predecessor)) {
+                    loop.body.set(predecessor);
+                    pending.add(predecessor);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the loops, innermost first
+     */
+    public List<Loop> getLoops() {
+        return loops;
+    }
+}
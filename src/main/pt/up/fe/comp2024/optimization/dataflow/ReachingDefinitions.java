@@ -0,0 +1,97 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import pt.up.fe.comp2024.optimization.InstructionVars;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The assignments that may have set the value of each variable before and after each instruction of an OLLIR method.
+ * <p>
+ * Facts are the indexes of the instructions that assign a variable, followed by one fact per variable, in
+ * {@link Variables} order, for the value it has when the method starts: a parameter, or no value at all.
+ */
+public class ReachingDefinitions extends DataflowAnalysis {
+
+    /**
+     * Stands for the value a variable has when the method starts.
+     */
+    public static final int ENTRY = -1;
+
+    private final Variables variables;
+
+    // Instructions that assign each variable
+    private final List<BitSet> definitions;
+
+    public ReachingDefinitions(ControlFlowGraph cfg, Variables variables) {
+        super(cfg, Direction.FORWARD, Meet.UNION);
+        this.variables = variables;
+        this.definitions = new ArrayList<>();
+
+        var instructions = cfg.getInstructions();
+        var defs = new int[instructions.size()];
+        for (int i = 0; i < instructions.size(); i++) {
+            var def = InstructionVars.getDef(instructions.get(i));
+            defs[i] = def == null ? -1 : variables.getIndex(def);
+
+            if (def != null) {
+                getDefinitions(defs[i]).set(i);
+            }
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (defs[i] < 0) {
+                continue;
+            }
+
+            gen[i].set(i);
+            kill[i].or(definitions.get(defs[i]));
+            kill[i].set(getEntryFact(defs[i]));
+        }
+
+        solve();
+    }
+
+    private BitSet getDefinitions(int variable) {
+        while (definitions.size() <= variable) {
+            definitions.add(new BitSet());
+        }
+
+        return definitions.get(variable);
+    }
+
+    private int getEntryFact(int variable) {
+        return cfg.size() + variable;
+    }
+
+    @Override
+    protected int getFactCount() {
+        return cfg.size() + variables.size();
+    }
+
+    @Override
+    protected BitSet getBoundary() {
+        var boundary = new BitSet();
+        boundary.set(cfg.size(), cfg.size() + variables.size());
+        return boundary;
+    }
+
+    /**
+     * @return the indexes of the instructions whose assignment to the variable may reach the instruction, and
+     * {@link #ENTRY} if the variable may still have the value it had when the method started
+     */
+    public List<Integer> getReaching(int index, String name) {
+        int variable = variables.getIndex(name);
+        var reaching = (BitSet) getIn(index).clone();
+        reaching.and(getDefinitions(variable));
+
+        var result = new ArrayList<Integer>(reaching.cardinality() + 1);
+        if (getIn(index).get(getEntryFact(variable))) {
+            result.add(ENTRY);
+        }
+        reaching.stream().forEach(result::add);
+
+        return result;
+    }
+}
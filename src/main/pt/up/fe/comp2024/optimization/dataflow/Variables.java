@@ -0,0 +1,73 @@
+package pt.up.fe.comp2024.optimization.dataflow;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.VarScope;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the variables of an OLLIR method, to index the bitsets of the dataflow analyses.
+ * <p>
+ * Variables are numbered in the order of their var table registers, so the parameters come first. Variables that
+ * already share a register still get indexes of their own.
+ */
+public class Variables {
+
+    private final List<String> names = new ArrayList<>();
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    public Variables(Method method) {
+        var varTable = method.getVarTable();
+
+        var sorted = new ArrayList<String>();
+        for (var entry : varTable.entrySet()) {
+            if (entry.getValue().getScope() != VarScope.FIELD) {
+                sorted.add(entry.getKey());
+            }
+        }
+        sorted.sort(Comparator.<String>comparingInt(name -> varTable.get(name).getVirtualReg())
+                .thenComparing(Comparator.naturalOrder()));
+
+        for (var name : sorted) {
+            add(name);
+        }
+    }
+
+    private int add(String name) {
+        indexes.put(name, names.size());
+        names.add(name);
+        return names.size() - 1;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @return the index of the variable; variables that are not in the var table, such as new temporaries, get the
+     * next index
+     */
+    public int getIndex(String name) {
+        var index = indexes.get(name);
+        return index != null ? index : add(name);
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * @return the names of the variables in the set, in index order
+     */
+    public List<String> getNames(BitSet set) {
+        var result = new ArrayList<String>(set.cardinality());
+        set.stream().forEach(index -> result.add(names.get(index)));
+        return result;
+    }
+}
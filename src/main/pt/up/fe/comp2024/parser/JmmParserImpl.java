@@ -7,9 +7,14 @@ import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.utils.Timings;
+import pt.up.fe.specs.util.SpecsSystem;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Copyright 2022 SPeCS.
@@ -26,6 +31,10 @@ import java.util.Map;
 
 public class JmmParserImpl implements JmmParser {
 
+    // AntlrParser finds the rule method through a reflection cache that is not thread-safe. Resolving each rule
+    // once, under a lock, means that concurrent parses only ever read from that cache.
+    private static final Set<String> RESOLVED_RULES = ConcurrentHashMap.newKeySet();
+
     @Override
     public String getDefaultRule() {
         return "program";
@@ -33,8 +42,14 @@ public class JmmParserImpl implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        return Timings.measure("parse", () -> parseRule(jmmCode, startingRule, config));
+    }
+
+    private JmmParserResult parseRule(String jmmCode, String startingRule, Map<String, String> config) {
 
         try {
+            resolveRule(startingRule);
+
             // Convert code string into a character stream
             var input = new ANTLRInputStream(jmmCode);
             // Transform characters into tokens using the lexer
@@ -53,4 +68,17 @@ public class JmmParserImpl implements JmmParser {
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
         }
     }
+
+    private static void resolveRule(String rule) {
+        if (RESOLVED_RULES.contains(rule)) {
+            return;
+        }
+
+        synchronized (RESOLVED_RULES) {
+            if (!RESOLVED_RULES.contains(rule)) {
+                SpecsSystem.getMethod(JavammParser.class, rule);
+                RESOLVED_RULES.add(rule);
+            }
+        }
+    }
 }
@@ -16,4 +16,8 @@ public class VarargSymbol extends Symbol {
     public boolean isVararg() {
         return isVararg;
     }
+
+    public boolean isPublic() {
+        return isPublic;
+    }
 }
@@ -0,0 +1,193 @@
+package pt.up.fe.comp2024.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of each compiler phase.
+ * <p>
+ * Recording is enabled per thread with {@link #start()}; while it is, every {@link #measure(String, Supplier)} call
+ * made by that thread is added to the recorder. Phases measured inside other phases are kept as children of those,
+ * e.g. 'analysis/UndeclaredVariable'. When recording is disabled, measuring a phase only runs it.
+ * <p>
+ * CPU time and allocated bytes are taken from the {@link ThreadMXBean} of the JVM, and are reported as -1 when it
+ * does not support them.
+ */
+public class Timings {
+
+    public static final String TABLE = "table";
+    public static final String JSON = "json";
+
+    private static final ThreadLocal<Timings> CURRENT = new ThreadLocal<>();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, Phase> phases;
+    private final Deque<String> openPhases;
+
+    public Timings() {
+        this.phases = new LinkedHashMap<>();
+        this.openPhases = new ArrayDeque<>();
+    }
+
+    /**
+     * Starts recording the phases run by the current thread.
+     *
+     * @return the recorder that receives the phases, until {@link #stop()} is called
+     */
+    public static Timings start() {
+        var timings = new Timings();
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * Stops recording the phases run by the current thread.
+     */
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Runs a phase, recording its costs if the current thread is recording.
+     *
+     * @param name   the name of the phase
+     * @param action the work of the phase
+     * @return the value returned by the action
+     */
+    public static <T> T measure(String name, Supplier<T> action) {
+        var timings = CURRENT.get();
+
+        if (timings == null) {
+            return action.get();
+        }
+
+        return timings.record(name, action);
+    }
+
+    /**
+     * Adds the phases recorded by another recorder to this one, e.g. to report the total of a batch.
+     *
+     * @param other
+     */
+    public void add(Timings other) {
+        for (var phase : other.phases.values()) {
+            getPhase(phase.path, phase.depth).add(phase);
+        }
+    }
+
+    /**
+     * @param format {@link #TABLE} or {@link #JSON}
+     * @return the recorded phases, in the order they were first run
+     */
+    public String format(String format) {
+        return switch (format) {
+            case TABLE -> toTable();
+            case JSON -> toJson();
+            default -> throw new RuntimeException("Unknown timings format '" + format + "', expected '"
+                    + TABLE + "' or '" + JSON + "'");
+        };
+    }
+
+    public String toTable() {
+        var table = new StringBuilder();
+        table.append(String.format("%-40s %6s %12s %12s %14s%n", "Phase", "Calls", "Wall (ms)", "CPU (ms)", "Alloc (KB)"));
+
+        for (var phase : phases.values()) {
+            var name = "  ".repeat(phase.depth) + phase.getName();
+            table.append(String.format("%-40s %6d %12.3f %12s %14s%n", name, phase.calls, phase.wallNanos / 1e6,
+                    phase.cpuNanos < 0 ? "-" : String.format("%.3f", phase.cpuNanos / 1e6),
+                    phase.allocatedBytes < 0 ? "-" : String.valueOf(phase.allocatedBytes / 1024)));
+        }
+
+        return table.toString();
+    }
+
+    public String toJson() {
+        return phases.values().stream()
+                .map(phase -> "    {\"phase\": \"" + phase.path + "\", \"calls\": " + phase.calls
+                        + ", \"wallNanos\": " + phase.wallNanos + ", \"cpuNanos\": " + phase.cpuNanos
+                        + ", \"allocatedBytes\": " + phase.allocatedBytes + "}")
+                .collect(Collectors.joining(",\n", "{\n  \"phases\": [\n", "\n  ]\n}\n"));
+    }
+
+    private <T> T record(String name, Supplier<T> action) {
+        var path = openPhases.isEmpty() ? name : openPhases.peek() + "/" + name;
+
+        // Created before running, so that parents are listed before their children
+        var phase = getPhase(path, openPhases.size());
+        openPhases.push(path);
+
+        long wallStart = System.nanoTime();
+        long cpuStart = cpuTime();
+        long allocatedStart = allocatedBytes();
+
+        try {
+            return action.get();
+        } finally {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = cpuStart < 0 ? -1 : cpuTime() - cpuStart;
+            long allocated = allocatedStart < 0 ? -1 : allocatedBytes() - allocatedStart;
+
+            phase.add(1, wall, cpu, allocated);
+            openPhases.pop();
+        }
+    }
+
+    private Phase getPhase(String path, int depth) {
+        return phases.computeIfAbsent(path, key -> new Phase(key, depth));
+    }
+
+    private static long cpuTime() {
+        if (!THREADS.isCurrentThreadCpuTimeSupported() || !THREADS.isThreadCpuTimeEnabled()) {
+            return -1;
+        }
+
+        return THREADS.getCurrentThreadCpuTime();
+    }
+
+    private static long allocatedBytes() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    private static class Phase {
+
+        private final String path;
+        private final int depth;
+
+        private int calls;
+        private long wallNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+
+        private Phase(String path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+
+        private String getName() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        private void add(int calls, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.calls += calls;
+            this.wallNanos += wallNanos;
+            this.cpuNanos = cpuNanos < 0 ? -1 : this.cpuNanos + cpuNanos;
+            this.allocatedBytes = allocatedBytes < 0 ? -1 : this.allocatedBytes + allocatedBytes;
+        }
+
+        private void add(Phase other) {
+            add(other.calls, other.wallNanos, other.cpuNanos, other.allocatedBytes);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package pt.up.fe.comp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.driver.BatchCompiler;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchCompilerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private static String getClass(String name, int value) {
+        return """
+                import io;
+                class %s {
+                    public static void main(String[] args) {
+                        io.println(%d);
+                    }
+                }
+                """.formatted(name, value);
+    }
+
+    @Test
+    public void classDeclaredTwiceIsAnError() throws Exception {
+        var sources = temp.newFolder();
+        var outputDir = temp.newFolder();
+
+        // More files than workers, so the order they finish in varies
+        for (int i = 0; i < 8; i++) {
+            SpecsIo.write(new File(sources, "A" + i + ".jmm"), getClass(i % 2 == 0 ? "A" : "B" + i, i));
+        }
+
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + sources, "-d=" + outputDir});
+        var results = new BatchCompiler(4, new PrintStream(OutputStream.nullOutputStream()))
+                .compile(CompilerConfig.getInputFiles(config), config);
+
+        assertTrue(results.get(0).isSuccess());
+        for (int i = 1; i < 8; i++) {
+            var result = results.get(i);
+            assertEquals(i % 2 == 1, result.isSuccess());
+
+            if (i % 2 == 0) {
+                assertTrue(result.getReports().get(0).getMessage().contains("Class 'A' is already declared by"));
+            }
+        }
+
+        // The class file of 'A' is the one of the first file
+        var classpath = outputDir.getAbsolutePath() + File.pathSeparator + TestUtils.getLibsClasspath();
+        var output = SpecsSystem.runProcess(List.of("java", "-cp", classpath, "A"), true, false);
+        assertEquals("0", output.getOutput().trim());
+    }
+}
@@ -0,0 +1,99 @@
+package pt.up.fe.comp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirUtils;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.backend.ClassFileGenerator;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+import pt.up.fe.specs.util.SpecsSystem;
+import utils.JmmProgramGenerator;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Class files written directly from OLLIR must run as the ones assembled from Jasmin code.
+ */
+public class ClassFileBackendTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private String run(ClassUnit ollirClass) throws Exception {
+        var generator = new ClassFileGenerator(ollirClass);
+        var classFileResult = new ClassFileResult(ollirClass.getClassName(), generator.build(),
+                generator.getReports());
+        TestUtils.noErrors(classFileResult.getReports());
+
+        var outputDir = temp.newFolder();
+        classFileResult.write(outputDir);
+
+        var classpath = outputDir.getAbsolutePath() + File.pathSeparator + TestUtils.getLibsClasspath();
+        var output = SpecsSystem.runProcess(List.of("java", "-cp", classpath, ollirClass.getClassName()), true,
+                false);
+
+        return SpecsStrings.normalizeFileContents(output.getOutput(), true);
+    }
+
+    private void testOllir(String resource, String expected) throws Exception {
+        var ollirClass = OllirUtils.parse(SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/" + resource));
+
+        assertEquals(expected, run(ollirClass));
+    }
+
+    private void testSameOutput(String code) throws Exception {
+        var semanticsResult = TestUtils.analyse(code);
+        TestUtils.noErrors(semanticsResult.getReports());
+        var ollirClass = new JmmOptimizationImpl().toOllirClass(semanticsResult);
+
+        var jasminCode = new JasminGenerator(ollirClass).build();
+        var jasminResult = new JasminResult(ollirClass.getClassName(), jasminCode, List.of(),
+                CompilerConfig.getDefault());
+        var expected = SpecsStrings.normalizeFileContents(jasminResult.run(), true);
+
+        assertEquals(expected, run(ollirClass));
+    }
+
+    @Test
+    public void arithmetic() throws Exception {
+        testOllir("arithmetic/Arithmetic_and.ollir", "1");
+        testOllir("arithmetic/Arithmetic_less.ollir", "1");
+        testOllir("arithmetic/Arithmetic_not.ollir", "false");
+    }
+
+    @Test
+    public void controlFlow() throws Exception {
+        testOllir("control_flow/SimpleIfElseNot.ollir", "10\n200");
+        testOllir("control_flow/SimpleWhileStat.ollir", "Result: 0\nResult: 1\nResult: 2");
+        testOllir("control_flow/IfWhileNested.ollir", "Result: 1\nResult: 2\nResult: 1");
+    }
+
+    @Test
+    public void arrays() throws Exception {
+        testOllir("arrays/ArrayAccess.ollir", "Result: 1\nResult: 2\nResult: 3\nResult: 4\nResult: 5");
+        testOllir("calls/ConditionArgsFuncCall.ollir", "Result: 10");
+    }
+
+    @Test
+    public void corpusPrograms() throws Exception {
+        testSameOutput(SpecsIo.getResource("pt/up/fe/comp/cpf/3_ollir/control_flow/SwitchStat.jmm"));
+        testSameOutput(SpecsIo.getResource("pt/up/fe/comp/cpf/3_ollir/arrays/ComplexArrayAccess.jmm"));
+    }
+
+    @Test
+    public void generatedPrograms() throws Exception {
+        for (int seed = 0; seed < 3; seed++) {
+            testSameOutput(new JmmProgramGenerator().methods(10).nesting(3).seed(seed).generate());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp2024.optimization.CommonSubexpressionElimination;
+
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static utils.OptimizationTestUtils.assertSameOutput;
+import static utils.OptimizationTestUtils.getMethod;
+
+public class CommonSubexpressionEliminationTest {
+
+    private static long count(Method method, Predicate<Instruction> rhs) {
+        return method.getInstructions().stream()
+                .filter(instruction -> instruction instanceof AssignInstruction assign && rhs.test(assign.getRhs()))
+                .count();
+    }
+
+    private static boolean isElementRead(Instruction instruction) {
+        return instruction instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof ArrayOperand;
+    }
+
+    private static boolean isArrayLength(Instruction instruction) {
+        return instruction instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength;
+    }
+
+    @Test
+    public void numbersValuesInBlocks() {
+        var method = getMethod("""
+                class A {
+                    public int f(int[] a, int i) {
+                        int x;
+                        int y;
+                        x = a[i] * 3 + a.length;
+                        y = 3 * a[i] + a.length;
+                        return x + y;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // 'y' is 'x', even with the product swapped
+        assertEquals(1, count(method, CommonSubexpressionEliminationTest::isElementRead));
+        assertEquals(1, count(method, CommonSubexpressionEliminationTest::isArrayLength));
+        assertEquals(1, count(method, instruction -> instruction instanceof BinaryOpInstruction binaryOp
+                && binaryOp.getOperation().getOpType() == OperationType.MUL));
+    }
+
+    @Test
+    public void reusesValuesAcrossBlocks() {
+        var method = getMethod("""
+                class A {
+                    int g;
+                    public int f(int[] a, int i, int j) {
+                        int x;
+                        int y;
+                        x = a[i] + g;
+                        if (i < j) {
+                            y = a[i] + g;
+                        } else {
+                            y = g;
+                        }
+                        return x + y + g;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // Read before the branch, on every path
+        assertEquals(1, count(method, CommonSubexpressionEliminationTest::isElementRead));
+        assertEquals(1, count(method, GetFieldInstruction.class::isInstance));
+    }
+
+    @Test
+    public void storesAndCallsForgetValues() {
+        var method = getMethod("""
+                class A {
+                    int g;
+                    public int f(int[] a, int i, int j) {
+                        int x;
+                        int y;
+                        int z;
+                        x = a[i] + g;
+                        a[j] = 3;
+                        y = a[i] + g;
+                        z = this.h();
+                        return x + y + z + g;
+                    }
+                    public int h() {
+                        g = g + 1;
+                        return g;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // 'j' may be 'i', and 'h' changes 'g'
+        assertEquals(2, count(method, CommonSubexpressionEliminationTest::isElementRead));
+        assertEquals(2, count(method, GetFieldInstruction.class::isInstance));
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(6, 9, new CommonSubexpressionElimination()::optimize);
+    }
+}
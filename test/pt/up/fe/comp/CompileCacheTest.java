@@ -0,0 +1,108 @@
+package pt.up.fe.comp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.driver.CompilationResult;
+import pt.up.fe.comp2024.driver.CompileCache;
+import pt.up.fe.comp2024.driver.JmmCompiler;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompileCacheTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                public static void main(String[] args) {
+                    int a;
+                    int i;
+                    a = args.length - 7;
+                    i = 0;
+                    while (i < 3) {
+                        io.println(a * 8);
+                        io.println(a / 4);
+                        a = a + i * 5;
+                        i = i + 1;
+                    }
+                }
+            }
+            """;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File source;
+    private File cacheDir;
+
+    private CompilationResult compile(String... options) throws Exception {
+        if (source == null) {
+            source = new File(temp.newFolder(), "A.jmm");
+            SpecsIo.write(source, CODE);
+            cacheDir = temp.newFolder();
+        }
+
+        var outputDir = temp.newFolder();
+        var args = new ArrayList<>(List.of("-i=" + source, "-d=" + outputDir, "-c=" + cacheDir));
+        args.addAll(List.of(options));
+
+        var result = new JmmCompiler().compile(source, CompilerConfig.parseArgs(args.toArray(String[]::new)));
+        TestUtils.noErrors(result.getReports());
+        return result;
+    }
+
+    private static String run(CompilationResult result) {
+        var classFile = result.getClassFile().orElseThrow();
+        var classpath = classFile.getParent() + File.pathSeparator + TestUtils.getLibsClasspath();
+        var output = SpecsSystem.runProcess(List.of("java", "-cp", classpath, "A"), true, false);
+        return SpecsStrings.normalizeFileContents(output.getOutput(), true);
+    }
+
+    @Test
+    public void optimizedOllirIsReadBack() throws Exception {
+        var expected = run(compile());
+
+        // Only the register allocation changes, so the optimized OLLIR of the first run is parsed again
+        var optimized = compile("-o");
+        assertFalse(optimized.isCached());
+        assertEquals(expected, run(optimized));
+
+        for (var options : List.of(new String[]{"-o", "-r=0"}, new String[]{"-o", "-r=0", "-a=linear"},
+                new String[]{"-o", "-r=4", "-b=class"})) {
+            var result = compile(options);
+            assertFalse(result.isCached());
+            assertEquals(expected, run(result));
+        }
+    }
+
+    @Test
+    public void unreadableOllirIsCompiledAgain() throws Exception {
+        var expected = run(compile("-o"));
+
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + source, "-c=" + cacheDir, "-o"});
+        var cache = CompileCache.get(cacheDir, CompilerConfig.getCacheSize(config));
+        var ollirKey = cache.getOllirKey(cache.getSemanticsKey(CODE), CompilerConfig.forInputFile(config, source));
+        assertTrue(cache.lookupStage(ollirKey).isPresent());
+
+        cache.remove(ollirKey);
+        cache.storeStage(ollirKey, "A { << }".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(expected, run(compile("-o", "-r=0")));
+
+        // And stored again, readable this time
+        var ollirCode = new String(cache.lookupStage(ollirKey).orElseThrow(), StandardCharsets.UTF_8);
+        assertFalse(ollirCode.contains("<<"));
+        assertEquals(expected, run(compile("-o", "-r=0", "-a=linear")));
+    }
+}
@@ -0,0 +1,178 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.ReturnInstruction;
+import pt.up.fe.comp2024.optimization.ConstantPropagation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.assertSameOutput;
+import static utils.OptimizationTestUtils.getMethod;
+
+public class ConstantPropagationTest {
+
+    private static String getReturnedLiteral(Method method) {
+        var instructions = method.getInstructions();
+        var ret = (ReturnInstruction) instructions.get(instructions.size() - 1);
+
+        return ret.getOperand() instanceof LiteralElement literal ? literal.getLiteral() : null;
+    }
+
+    @Test
+    public void foldsExpressions() {
+        var method = getMethod("""
+                class A {
+                    public int f() {
+                        int a;
+                        int b;
+                        a = 3;
+                        b = a * 4 - 2;
+                        return b / 5 + a;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        assertEquals("5", getReturnedLiteral(method));
+    }
+
+    @Test
+    public void foldsConditions() {
+        var method = getMethod("""
+                class A {
+                    public int f() {
+                        int a;
+                        boolean b;
+                        boolean c;
+                        a = 1;
+                        c = a < 0;
+                        b = a < 2 && !c;
+                        if (b) {
+                            a = 7;
+                        } else {
+                            a = 8;
+                        }
+                        return a;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // The branches of '&&' and of the if are decided, so only one value of 'a' is left
+        assertEquals("7", getReturnedLiteral(method));
+        assertTrue(method.getInstructions().stream().noneMatch(CondBranchInstruction.class::isInstance));
+    }
+
+    @Test
+    public void valuesChangedInLoopsAreNotConstant() {
+        var method = getMethod("""
+                class A {
+                    public int f(int n) {
+                        int i;
+                        int step;
+                        i = 0;
+                        step = 2;
+                        while (i < n) {
+                            i = i + step;
+                        }
+                        return i;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        assertNull(getReturnedLiteral(method));
+        assertTrue(method.getInstructions().stream().anyMatch(CondBranchInstruction.class::isInstance));
+    }
+
+    @Test
+    public void removesBranchesDecidedByOtherBranches() {
+        var method = getMethod("""
+                import io;
+                class A {
+                    public int f() {
+                        boolean flag;
+                        int mode;
+                        int a;
+                        flag = true;
+                        if (flag) {
+                            mode = 1;
+                        } else {
+                            mode = 2;
+                        }
+                        if (mode < 2) {
+                            a = 10;
+                        } else {
+                            io.println(mode);
+                            a = 20;
+                        }
+                        return a;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        assertEquals("10", getReturnedLiteral(method));
+        assertTrue(method.getInstructions().stream().noneMatch(CondBranchInstruction.class::isInstance));
+        assertTrue(method.getInstructions().stream().noneMatch(CallInstruction.class::isInstance));
+    }
+
+    @Test
+    public void valuesOnlyChangedByBranchesThatNeverRunAreConstant() {
+        var method = getMethod("""
+                class A {
+                    public int f(int n) {
+                        int i;
+                        int x;
+                        i = 0;
+                        x = 1;
+                        while (i < n) {
+                            if (x < 1) {
+                                x = 2;
+                            } else {
+                            }
+                            i = i + 1;
+                        }
+                        return x;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // 'x' is 1 when the loop starts, so the branch that sets it to 2 never runs
+        assertEquals("1", getReturnedLiteral(method));
+        assertEquals(1, method.getInstructions().stream().filter(CondBranchInstruction.class::isInstance).count());
+    }
+
+    @Test
+    public void divisionByZeroIsKept() {
+        var method = getMethod("""
+                class A {
+                    public int f() {
+                        int a;
+                        a = 0;
+                        return 1 / a;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        assertNull(getReturnedLiteral(method));
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(0, 3, new ConstantPropagation()::optimize);
+    }
+}
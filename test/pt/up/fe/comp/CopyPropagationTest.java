@@ -0,0 +1,83 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.OpCondInstruction;
+import pt.up.fe.comp2024.optimization.CopyPropagation;
+import pt.up.fe.comp2024.optimization.InstructionVars;
+import pt.up.fe.comp2024.optimization.dataflow.AvailableCopies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.assertSameOutput;
+import static utils.OptimizationTestUtils.getMethod;
+
+public class CopyPropagationTest {
+
+    @Test
+    public void removesMovesInLoops() {
+        var method = getMethod("""
+                class A {
+                    public int f(int n) {
+                        int i;
+                        int s;
+                        int x;
+                        int y;
+                        i = 0;
+                        s = 0;
+                        while (i < n) {
+                            x = i * 2;
+                            y = x;
+                            s = s + y;
+                            i = i + 1;
+                        }
+                        return s;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // 'y' and the temporaries are gone, the loop branches on 'i < n' itself
+        assertTrue(method.getInstructions().stream()
+                .noneMatch(instruction -> AvailableCopies.getSource(instruction) != null));
+        assertTrue(method.getInstructions().stream()
+                .noneMatch(instruction -> "y".equals(InstructionVars.getDef(instruction))));
+        assertTrue(method.getInstructions().stream()
+                .filter(CondBranchInstruction.class::isInstance)
+                .allMatch(OpCondInstruction.class::isInstance));
+        // i = 0, s = 0, the product before the loop, the sum into s, the increments of the product and of i
+        assertEquals(6, method.getInstructions().stream().filter(AssignInstruction.class::isInstance).count());
+    }
+
+    @Test
+    public void keepsCopiesOfChangedVariables() {
+        var method = getMethod("""
+                class A {
+                    public int f(int n) {
+                        int a;
+                        int b;
+                        a = 0;
+                        b = 0;
+                        while (b < n) {
+                            a = b;
+                            b = b + 1;
+                        }
+                        return a;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // 'b' changes after the copy, so the return still reads 'a'
+        assertTrue(method.getInstructions().stream()
+                .anyMatch(instruction -> InstructionVars.getUses(instruction).contains("a")));
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(3, 6, new CopyPropagation()::optimize);
+    }
+}
@@ -0,0 +1,118 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.optimization.dataflow.AvailableExpressions;
+import pt.up.fe.comp2024.optimization.dataflow.ControlFlowGraph;
+import pt.up.fe.comp2024.optimization.dataflow.Liveness;
+import pt.up.fe.comp2024.optimization.dataflow.ReachingDefinitions;
+import pt.up.fe.comp2024.optimization.dataflow.Variables;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.getMethod;
+import static utils.OptimizationTestUtils.toOllirClass;
+
+public class DataflowTest {
+
+    // Instructions of f:
+    //  0: a = p             1: c = a + b         2: i = 0
+    //  3: tmp0 = i < c      4: if (tmp0) goto 6  5: goto 8
+    //  6: i = i + 1         7: goto 3            8: tmp1 = a < b
+    //  9: if (tmp1) goto 11                     10: goto 13
+    // 11: c = a + b        12: goto 14          13: a = 1
+    // 14: tmp2 = c + i     15: return tmp2
+    private static final String CODE = """
+            class A {
+                public int f(int p, int b) {
+                    int a;
+                    int c;
+                    int i;
+                    a = p;
+                    c = a + b;
+                    i = 0;
+                    while (i < c) {
+                        i = i + 1;
+                    }
+                    if (a < b) {
+                        c = a + b;
+                    } else {
+                        a = 1;
+                    }
+                    return c + i;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    @Test
+    public void controlFlow() {
+        var cfg = new ControlFlowGraph(getMethod(toOllirClass(CODE), "f"));
+
+        assertEquals(16, cfg.size());
+        assertArrayEquals(new int[]{6, 5}, cfg.getSuccessors(4));
+        assertArrayEquals(new int[]{2, 7}, cfg.getPredecessors(3));
+        assertArrayEquals(new int[0], cfg.getSuccessors(15));
+    }
+
+    @Test
+    public void variablesFollowRegisters() {
+        var method = getMethod(toOllirClass(CODE), "f");
+        var variables = new Variables(method);
+
+        var varTable = method.getVarTable();
+        for (int index = 1; index < variables.size(); index++) {
+            var previous = varTable.get(variables.getName(index - 1));
+            assertTrue(previous.getVirtualReg() <= varTable.get(variables.getName(index)).getVirtualReg());
+        }
+
+        // 'this' is not used, so it is not in the var table
+        assertEquals(0, variables.getIndex("p"));
+    }
+
+    @Test
+    public void liveness() {
+        var method = getMethod(toOllirClass(CODE), "f");
+        var liveness = new Liveness(new ControlFlowGraph(method), new Variables(method));
+
+        // The loop condition needs 'i' and 'c', the code after the loop needs 'a' and 'b', 'p' is no longer needed
+        var live = liveness.getVariables().getNames(liveness.getLiveIn(3));
+        assertEquals(Set.of("a", "b", "c", "i"), new HashSet<>(live));
+
+        // 'a' is not read after it is set in the else branch
+        assertFalse(liveness.isLiveOut(13, "a"));
+        assertTrue(liveness.isLiveOut(11, "c"));
+        assertTrue(liveness.getLiveOut(15).isEmpty());
+    }
+
+    @Test
+    public void reachingDefinitions() {
+        var method = getMethod(toOllirClass(CODE), "f");
+        var reaching = new ReachingDefinitions(new ControlFlowGraph(method), new Variables(method));
+
+        assertEquals(List.of(ReachingDefinitions.ENTRY), reaching.getReaching(0, "p"));
+        assertEquals(List.of(2, 6), reaching.getReaching(3, "i"));
+        assertEquals(List.of(1, 11), reaching.getReaching(14, "c"));
+        assertEquals(List.of(0, 13), reaching.getReaching(14, "a"));
+    }
+
+    @Test
+    public void availableExpressions() {
+        var available = new AvailableExpressions(new ControlFlowGraph(getMethod(toOllirClass(CODE), "f")));
+
+        // Computed before the loop, which changes neither operand
+        assertTrue(available.isAvailable(11, "ADD $a $b"));
+
+        // Not computed on the first iteration
+        assertFalse(available.isAvailable(6, "ADD $i 1"));
+
+        // 'a' changes in the else branch
+        assertFalse(available.isAvailable(14, "ADD $a $b"));
+    }
+}
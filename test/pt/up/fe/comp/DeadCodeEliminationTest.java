@@ -0,0 +1,115 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.DeadCodeElimination;
+import pt.up.fe.comp2024.optimization.InstructionVars;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.getMethod;
+import static utils.OptimizationTestUtils.toOllirClass;
+
+public class DeadCodeEliminationTest {
+
+    private static boolean assigns(Method method, String name) {
+        return method.getInstructions().stream()
+                .anyMatch(instruction -> name.equals(InstructionVars.getDef(instruction)));
+    }
+
+    @Test
+    public void removesDeadStores() {
+        var ollirClass = toOllirClass("""
+                class A {
+                    public int f(int n) {
+                        int a;
+                        int b;
+                        a = n + 1;
+                        b = n * 2;
+                        a = n;
+                        return a;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+        var method = getMethod(ollirClass, "f");
+        int before = method.getInstructions().size();
+
+        new DeadCodeElimination().optimize(ollirClass);
+
+        // Only 'a = n' and the return are left
+        assertEquals(before - 2, method.getInstructions().size());
+        assertFalse(assigns(method, "b"));
+        assertFalse(method.getVarTable().containsKey("b"));
+        assertTrue(method.getVarTable().containsKey("n"));
+    }
+
+    @Test
+    public void keepsCallsAndExceptions() {
+        var ollirClass = toOllirClass("""
+                class A {
+                    public int f() {
+                        int a;
+                        int[] array;
+                        array = new int[1];
+                        a = this.g();
+                        a = array[5];
+                        return 0;
+                    }
+                    public int g() {
+                        return 1;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+        var method = getMethod(ollirClass, "f");
+
+        new DeadCodeElimination().optimize(ollirClass);
+
+        // The call is kept on its own, the element is still read and may be out of bounds
+        assertTrue(method.getInstructions().stream().anyMatch(CallInstruction.class::isInstance));
+        assertTrue(method.getInstructions().stream().anyMatch(instruction ->
+                instruction instanceof AssignInstruction assign
+                        && assign.getRhs() instanceof SingleOpInstruction singleOp
+                        && singleOp.getSingleOperand() instanceof ArrayOperand));
+    }
+
+    @Test
+    public void removesUnreachableCode() {
+        Map<String, String> config = new HashMap<>();
+        config.put(CompilerConfig.OPTIMIZE, "true");
+
+        var ollirResult = TestUtils.optimize("""
+                class A {
+                    public int f(int n) {
+                        int a;
+                        if (1 < 2) {
+                            a = n + 1;
+                        } else {
+                            a = n + 7;
+                        }
+                        return a;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """, config);
+        TestUtils.noErrors(ollirResult.getReports());
+
+        // The else branch and the gotos around it are gone, the method is 'a = n + 1; ret a'
+        var method = getMethod(ollirResult.getOllirClass(), "f");
+        assertEquals(2, method.getInstructions().size());
+        assertTrue(method.getLabels().isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.specs.util.SpecsStrings;
+import utils.JmmProgramGenerator;
+import utils.OptimizationTestUtils;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles large generated programs through every stage, to catch constructs and sizes the test corpus does not cover.
+ */
+public class GeneratedProgramsTest {
+
+    private static JasminResult compile(String code) {
+        var jasminResult = TestUtils.backend(code);
+        TestUtils.noErrors(jasminResult.getReports());
+
+        return jasminResult;
+    }
+
+    @Test
+    public void sameSeedSameProgram() {
+        var first = new JmmProgramGenerator().methods(20).seed(42).generate();
+        var second = new JmmProgramGenerator().methods(20).seed(42).generate();
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void linesEstimate() {
+        var lines = new JmmProgramGenerator().lines(5000).generate().lines().count();
+
+        assertTrue("Expected about 5000 lines, got " + lines, lines > 2500 && lines < 10000);
+    }
+
+    @Test
+    public void largeProgram() {
+        var code = new JmmProgramGenerator().lines(5000).seed(1).generate();
+        var result = compile(code).runWithFullOutput(Collections.emptyList(),
+                Collections.singletonList(TestUtils.getLibsClasspath()), null);
+
+        assertEquals(0, (int) result.getReturnValue());
+        assertFalse(result.getStdOut().isBlank());
+    }
+
+    @Test
+    public void optimizedSameOutput() {
+        for (int seed = 0; seed < 3; seed++) {
+            var code = new JmmProgramGenerator().methods(10).nesting(3).seed(seed).generate();
+
+            var expected = TestUtils.backend(code, OptimizationTestUtils.getConfig(false)).run();
+            var optimized = TestUtils.backend(code, OptimizationTestUtils.getConfig(true)).run();
+            assertEquals(SpecsStrings.normalizeFileContents(expected, true),
+                    SpecsStrings.normalizeFileContents(optimized, true));
+        }
+    }
+
+    @Test(timeout = 20_000)
+    public void largeMethodsOptimized() {
+        // About 5000 lines in a few methods, so that passes that grow faster than the size of a method show up. The
+        // '-o' passes take about 10 s here, and took 24 s when SSA form went through the method once per variable
+        var code = new JmmProgramGenerator().methods(4).statements(15).seed(5).generate();
+        assertTrue(code.lines().count() > 3000);
+
+        var ollirResult = TestUtils.optimize(code, OptimizationTestUtils.getConfig(true));
+        TestUtils.noErrors(ollirResult.getReports());
+    }
+
+    @Test
+    public void deepNesting() {
+        compile(new JmmProgramGenerator().methods(5).nesting(8).statements(2).seed(2).generate());
+    }
+
+    @Test
+    public void largeExpressions() {
+        compile(new JmmProgramGenerator().methods(5).expressionSize(200).seed(3).generate());
+    }
+
+    @Test
+    public void manyLocalsAndCalls() {
+        compile(new JmmProgramGenerator().methods(50).locals(100).callFanOut(10).seed(4).generate());
+    }
+}
@@ -0,0 +1,146 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2024.optimization.Inliner;
+
+import static org.junit.Assert.assertEquals;
+import static utils.OptimizationTestUtils.assertSameOutput;
+import static utils.OptimizationTestUtils.getMethod;
+import static utils.OptimizationTestUtils.getOllir;
+
+public class InlinerTest {
+
+    /**
+     * @return the number of calls in the method to the method of the class with the name
+     */
+    private static long countCalls(Method method, String name) {
+        return method.getInstructions().stream()
+                .flatMap(instruction -> instruction.getChildren().stream())
+                .filter(CallInstruction.class::isInstance)
+                .map(CallInstruction.class::cast)
+                .filter(call -> call.getInvocationType() == CallType.invokevirtual)
+                .filter(call -> ((LiteralElement) call.getMethodName()).getLiteral().equals("\"" + name + "\""))
+                .count();
+    }
+
+    @Test
+    public void inlinesCallsOnNewObjects() {
+        var ollirClass = getOllir("""
+                import io;
+                class A {
+                    int g;
+                    public int add(int a, int b) {
+                        g = a;
+                        return a + b;
+                    }
+                    public int twice(int a) {
+                        return this.add(a, a);
+                    }
+                    public static void main(String[] args) {
+                        A x;
+                        x = new A();
+                        io.println(x.twice(args.length));
+                    }
+                }
+                """, true).getOllirClass();
+
+        // Once inlined into main, the call on 'this' in 'twice' is a call on 'x'
+        var main = getMethod(ollirClass, "main");
+        assertEquals(0, countCalls(main, "twice"));
+        assertEquals(0, countCalls(main, "add"));
+    }
+
+    @Test
+    public void keepsCallsOnThis() {
+        var ollirClass = getOllir("""
+                class A {
+                    public int add(int a, int b) {
+                        return a + b;
+                    }
+                    public int twice(int a) {
+                        return this.add(a, a);
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """, true).getOllirClass();
+
+        // A class that extends this one may run another 'add'
+        assertEquals(1, countCalls(getMethod(ollirClass, "twice"), "add"));
+    }
+
+    @Test
+    public void keepsRecursiveCalls() {
+        var ollirClass = getOllir("""
+                import io;
+                class A {
+                    public int even(int n) {
+                        int result;
+                        A x;
+                        x = new A();
+                        result = 1;
+                        if (0 < n) {
+                            result = x.odd(n - 1);
+                        } else {
+                        }
+                        return result;
+                    }
+                    public int odd(int n) {
+                        int result;
+                        A x;
+                        x = new A();
+                        result = 0;
+                        if (0 < n) {
+                            result = x.even(n - 1);
+                        } else {
+                        }
+                        return result;
+                    }
+                    public static void main(String[] args) {
+                        A x;
+                        x = new A();
+                        io.println(x.even(4));
+                    }
+                }
+                """, true).getOllirClass();
+
+        assertEquals(1, countCalls(getMethod(ollirClass, "even"), "odd"));
+        assertEquals(1, countCalls(getMethod(ollirClass, "odd"), "even"));
+        assertEquals(1, countCalls(getMethod(ollirClass, "main"), "even"));
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput("""
+                import io;
+                class A {
+                    int g;
+                    public int add(int a, int b) {
+                        g = a;
+                        return a + b;
+                    }
+                    public int twice(int a) {
+                        return this.add(a, a);
+                    }
+                    public int getG() {
+                        return g;
+                    }
+                    public static void main(String[] args) {
+                        A x;
+                        int i;
+                        x = new A();
+                        i = 0;
+                        while (i < 3) {
+                            io.println(x.twice(i + args.length));
+                            io.println(x.getG());
+                            i = i + 1;
+                        }
+                    }
+                }
+                """, new Inliner()::optimize);
+    }
+}
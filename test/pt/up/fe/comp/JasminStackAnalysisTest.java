@@ -0,0 +1,106 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.backend.JasminStackAnalysis;
+
+import static org.junit.Assert.assertEquals;
+
+public class JasminStackAnalysisTest {
+
+    @Test
+    public void straightLine() {
+        var code = """
+                aload_0
+                iconst_3
+                iconst_4
+                invokevirtual LocalLimits/func(II)I
+                istore_3
+                iconst_1
+                ireturn
+                """;
+
+        assertEquals(3, JasminStackAnalysis.getMaxStack(code));
+    }
+
+    @Test
+    public void nestedCalls() {
+        var code = """
+                aload_0
+                aload_0
+                iload_1
+                iload_2
+                invokevirtual A/f(II)I
+                aload_1
+                iload_2
+                iaload
+                invokevirtual A/g(II)I
+                pop
+                return
+                """;
+
+        assertEquals(4, JasminStackAnalysis.getMaxStack(code));
+    }
+
+    @Test
+    public void branches() {
+        // The stack is only deep on the path that skips the comparison
+        var code = """
+                iload_1
+                ifne big
+                iload_1
+                iload_2
+                if_icmplt temp0
+                iconst_0
+                goto temp1
+                temp0:
+                iconst_1
+                temp1:
+                ireturn
+                big:
+                iload_1
+                iload_1
+                iload_1
+                iadd
+                iadd
+                ireturn
+                .end method
+                """;
+
+        assertEquals(3, JasminStackAnalysis.getMaxStack(code));
+    }
+
+    @Test
+    public void loops() {
+        var code = """
+                loop:
+                iload_1
+                iconst_0
+                if_icmpge end
+                aload_0
+                iload_1
+                invokestatic io/println(I)V
+                pop
+                goto loop
+                end:
+                return
+                """;
+
+        assertEquals(2, JasminStackAnalysis.getMaxStack(code));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void differentHeightsAtLabel() {
+        // A value left on the stack on each iteration
+        var code = """
+                loop:
+                iload_1
+                ifeq end
+                iload_1
+                goto loop
+                end:
+                return
+                """;
+
+        JasminStackAnalysis.getMaxStack(code);
+    }
+}
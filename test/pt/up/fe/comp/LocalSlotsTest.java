@@ -0,0 +1,88 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import pt.up.fe.comp2024.backend.LocalSlots;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.getMethod;
+import static utils.OptimizationTestUtils.toOllirClass;
+
+public class LocalSlotsTest {
+
+    @Test
+    public void unreadVariablesGetNoSlot() {
+        var method = getMethod(toOllirClass("""
+                class A {
+                    public int f(int a) {
+                        int b;
+                        int c;
+                        b = a + 1;
+                        c = b * 2;
+                        return b;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """), "f");
+
+        var slots = new LocalSlots(method);
+
+        // 'c' is never read
+        assertTrue(slots.isDead("c"));
+        assertFalse(slots.isDead("b"));
+        assertEquals(1, slots.getSlot("a"));
+        assertEquals(2, slots.getSlot("b"));
+        assertEquals(3, slots.getMaxLocals());
+    }
+
+    @Test
+    public void incrementsOfTheSameSlot() {
+        var method = getMethod(toOllirClass("""
+                class A {
+                    public int f(int a) {
+                        int b;
+                        b = a - 3;
+                        b = b - 3;
+                        b = 40000 + b;
+                        b = b * 1;
+                        return b;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """), "f");
+
+        var slots = new LocalSlots(method);
+        var instructions = method.getInstructions();
+
+        // 'b = a - 3' reads another slot, and 40000 does not fit in 16 bits
+        assertNull(slots.getIncrement((AssignInstruction) instructions.get(0)));
+        assertEquals(Integer.valueOf(-3), slots.getIncrement((AssignInstruction) instructions.get(1)));
+        assertNull(slots.getIncrement((AssignInstruction) instructions.get(2)));
+        assertNull(slots.getIncrement((AssignInstruction) instructions.get(3)));
+    }
+
+    @Test
+    public void staticMethodStartsAtZero() {
+        var method = getMethod(toOllirClass("""
+                class A {
+                    public static void main(String[] args) {
+                        int[] a;
+                        a = new int[2];
+                        a[0] = args.length;
+                    }
+                }
+                """), "main");
+
+        var slots = new LocalSlots(method);
+
+        // The new array and the length are first kept in temporaries
+        assertEquals(0, slots.getSlot("args"));
+        assertEquals(2, slots.getSlot("a"));
+        assertEquals(4, slots.getMaxLocals());
+    }
+}
@@ -0,0 +1,126 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp2024.optimization.LoopInvariantCodeMotion;
+
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.assertSameOutput;
+import static utils.OptimizationTestUtils.getLoopStart;
+import static utils.OptimizationTestUtils.getMethod;
+
+public class LoopInvariantCodeMotionTest {
+
+    /**
+     * @return the index of the first instruction whose right-hand side matches, or -1 if there is none
+     */
+    private static int indexOf(Method method, Predicate<Instruction> rhs) {
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) instanceof AssignInstruction assign && rhs.test(assign.getRhs())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static Predicate<Instruction> isOperation(OperationType opType) {
+        return instruction -> instruction instanceof BinaryOpInstruction binaryOp
+                && binaryOp.getOperation().getOpType() == opType;
+    }
+
+    @Test
+    public void hoistsInvariants() {
+        var method = getMethod("""
+                class A {
+                    int g;
+                    public int f(int[] a, int n, int k) {
+                        int i;
+                        int s;
+                        i = 0;
+                        s = 0;
+                        while (i < a.length) {
+                            s = s + n * k + g;
+                            i = i + 1;
+                        }
+                        return s;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        int loopStart = getLoopStart(method);
+        int length = indexOf(method, instruction -> instruction instanceof CallInstruction);
+        assertTrue(length >= 0 && length < loopStart);
+        assertTrue(indexOf(method, isOperation(OperationType.MUL)) < loopStart);
+        assertTrue(indexOf(method, GetFieldInstruction.class::isInstance) < loopStart);
+    }
+
+    @Test
+    public void keepsWhatMayThrowInTheBody() {
+        var method = getMethod("""
+                class A {
+                    public int f(int[] a, int n, int k) {
+                        int i;
+                        int s;
+                        i = 0;
+                        s = 0;
+                        while (i < n) {
+                            s = s + n / k + a[0];
+                            i = i + 1;
+                        }
+                        return s;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // The loop may not run, and then neither may throw
+        int loopStart = getLoopStart(method);
+        assertTrue(indexOf(method, isOperation(OperationType.DIV)) > loopStart);
+    }
+
+    @Test
+    public void keepsValuesReadBeforeAssigned() {
+        var method = getMethod("""
+                class A {
+                    public int f(int n) {
+                        int i;
+                        int s;
+                        int x;
+                        i = 0;
+                        s = 0;
+                        x = 1;
+                        while (i < n) {
+                            s = s + x;
+                            x = n * 3;
+                            i = i + 1;
+                        }
+                        return s;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // The first iteration reads the 'x' from before the loop
+        assertTrue(indexOf(method, isOperation(OperationType.MUL)) > getLoopStart(method));
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput(9, 12, new LoopInvariantCodeMotion()::optimize);
+    }
+}
@@ -0,0 +1,87 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ElementType;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirUtils;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.OllirPrinter;
+import pt.up.fe.specs.util.SpecsIo;
+import utils.JmmProgramGenerator;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The OLLIR class built in memory must give the same Jasmin code as the OLLIR code printed from it, once parsed.
+ */
+public class OllirInMemoryTest {
+
+    private static void testSameJasmin(String code) {
+        JmmSemanticsResult semanticsResult = TestUtils.analyse(code);
+        TestUtils.noErrors(semanticsResult.getReports());
+
+        var ollirClass = new JmmOptimizationImpl().toOllirClass(semanticsResult);
+        var parsedClass = OllirUtils.parse(OllirPrinter.print(ollirClass));
+
+        assertEquals(new JasminGenerator(parsedClass).build(), new JasminGenerator(ollirClass).build());
+    }
+
+    @Test
+    public void corpusPrograms() {
+        testSameJasmin(SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/const_prop/PropWithLoop.jmm"));
+        testSameJasmin(SpecsIo.getResource("pt/up/fe/comp/cpf/3_ollir/control_flow/SwitchStat.jmm"));
+        testSameJasmin(SpecsIo.getResource("pt/up/fe/comp/cpf/3_ollir/arrays/ComplexArrayAccess.jmm"));
+        testSameJasmin(SpecsIo.getResource("pt/up/fe/comp/cpf/3_ollir/arithmetic/Arithmetic_and.jmm"));
+    }
+
+    @Test
+    public void generatedPrograms() {
+        for (int seed = 0; seed < 5; seed++) {
+            testSameJasmin(new JmmProgramGenerator().methods(10).nesting(3).seed(seed).generate());
+        }
+    }
+
+    @Test
+    public void staticCallsAreOnTheirClass() {
+        var semanticsResult = TestUtils.analyse("""
+                import io;
+                class A {
+                    public static void main(String[] args) {
+                        io.println(1);
+                    }
+                }
+                """);
+        var ollirClass = new JmmOptimizationImpl().toOllirClass(semanticsResult);
+
+        var call = ollirClass.getMethods().stream()
+                .flatMap(method -> method.getInstructions().stream())
+                .filter(CallInstruction.class::isInstance)
+                .map(CallInstruction.class::cast)
+                .filter(instruction -> instruction.getInvocationType() == CallType.invokestatic)
+                .findFirst()
+                .orElseThrow();
+
+        // Not the class being compiled, which is what the OLLIR parser gives to every static caller
+        var callerType = (ClassType) call.getCaller().getType();
+        assertEquals(ElementType.CLASS, callerType.getTypeOfElement());
+        assertEquals("io", callerType.getName());
+    }
+
+    @Test
+    public void printedCodeParses() {
+        var semanticsResult = TestUtils.analyse(new JmmProgramGenerator().methods(3).seed(1).generate());
+        var ollirClass = new JmmOptimizationImpl().toOllirClass(semanticsResult);
+
+        var parsedClass = OllirUtils.parse(OllirPrinter.print(ollirClass));
+
+        assertEquals(ollirClass.getNumMethods(), parsedClass.getNumMethods());
+        for (int i = 0; i < ollirClass.getNumMethods(); i++) {
+            assertEquals(ollirClass.getMethod(i).getInstructions().size(),
+                    parsedClass.getMethod(i).getInstructions().size());
+        }
+    }
+}
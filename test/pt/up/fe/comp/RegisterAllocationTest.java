@@ -0,0 +1,129 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.backend.LocalSlots;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+import utils.JmmProgramGenerator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.getMethod;
+
+public class RegisterAllocationTest {
+
+    private static final String REG_ALLOC = "pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm";
+
+    private static Map<String, String> getConfig(int registers) {
+        return getConfig(registers, CompilerConfig.COLORING_ALLOCATOR);
+    }
+
+    private static Map<String, String> getConfig(int registers, String allocator) {
+        Map<String, String> config = new HashMap<>();
+        config.put(CompilerConfig.REGISTER, String.valueOf(registers));
+        config.put(CompilerConfig.ALLOCATOR, allocator);
+        return config;
+    }
+
+    private static int countLocals(OllirResult ollirResult) {
+        return ollirResult.getOllirClass().getMethods().stream()
+                .filter(method -> !method.isConstructMethod())
+                .mapToInt(method -> new LocalSlots(method).getMaxLocals())
+                .sum();
+    }
+
+    @Test
+    public void fewestRegisters() {
+        var ollirResult = TestUtils.optimize(SpecsIo.getResource(REG_ALLOC), getConfig(0));
+        TestUtils.noErrors(ollirResult.getReports());
+
+        // 'this' is never used, the copies share its register
+        var slots = new LocalSlots(getMethod(ollirResult.getOllirClass(), "soManyRegisters"));
+        assertEquals(2, slots.getMaxLocals());
+    }
+
+    @Test
+    public void tooFewRegisters() {
+        var ollirResult = TestUtils.optimize(SpecsIo.getResource(REG_ALLOC), getConfig(1));
+
+        var errors = ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .toList();
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getMessage().contains("needs at least 2 registers"));
+    }
+
+    @Test
+    public void tooFewRegistersNamesTheMinimumWithLinearScan() {
+        var ollirResult = TestUtils.optimize(SpecsIo.getResource(REG_ALLOC),
+                getConfig(1, CompilerConfig.LINEAR_SCAN_ALLOCATOR));
+
+        var errors = ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .toList();
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getMessage().contains("needs at least 2 registers"));
+    }
+
+    @Test
+    public void liveVariablesGetDifferentRegisters() {
+        var ollirResult = TestUtils.optimize("""
+                class A {
+                    public int f(int n) {
+                        int a;
+                        int b;
+                        a = n;
+                        b = n + 1;
+                        return a * b * n;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """, getConfig(0));
+        TestUtils.noErrors(ollirResult.getReports());
+
+        var varTable = getMethod(ollirResult.getOllirClass(), "f").getVarTable();
+        assertNotEquals(varTable.get("a").getVirtualReg(), varTable.get("b").getVirtualReg());
+        assertNotEquals(varTable.get("n").getVirtualReg(), varTable.get("b").getVirtualReg());
+    }
+
+    @Test
+    public void sameOutput() {
+        for (int seed = 0; seed < 3; seed++) {
+            var code = new JmmProgramGenerator().methods(10).nesting(3).seed(seed).generate();
+
+            var expected = SpecsStrings.normalizeFileContents(TestUtils.backend(code, getConfig(-1)).run(), true);
+            for (var allocator : List.of(CompilerConfig.COLORING_ALLOCATOR, CompilerConfig.LINEAR_SCAN_ALLOCATOR)) {
+                var allocated = TestUtils.backend(code, getConfig(0, allocator)).run();
+                assertEquals(allocator, expected, SpecsStrings.normalizeFileContents(allocated, true));
+            }
+        }
+    }
+
+    @Test
+    public void linearScanCloseToColoring() {
+        var code = new JmmProgramGenerator().methods(10).nesting(3).seed(1).generate();
+
+        int coloring = countLocals(TestUtils.optimize(code, getConfig(0, CompilerConfig.COLORING_ALLOCATOR)));
+        int linearScan = countLocals(TestUtils.optimize(code, getConfig(0, CompilerConfig.LINEAR_SCAN_ALLOCATOR)));
+
+        assertTrue(linearScan + " locals with linear scan, " + coloring + " with coloring",
+                coloring <= linearScan && linearScan <= coloring * 5 / 4);
+    }
+
+    @Test
+    public void linearScanTooFewRegisters() {
+        var ollirResult = TestUtils.optimize(SpecsIo.getResource(REG_ALLOC),
+                getConfig(1, CompilerConfig.LINEAR_SCAN_ALLOCATOR));
+
+        assertTrue(ollirResult.getReports().stream().anyMatch(report -> report.getType() == ReportType.ERROR));
+    }
+}
@@ -0,0 +1,156 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.InstructionVars;
+import pt.up.fe.comp2024.optimization.MethodEdits;
+import pt.up.fe.comp2024.optimization.SsaForm;
+import pt.up.fe.specs.util.SpecsStrings;
+import utils.JmmProgramGenerator;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.getConfig;
+import static utils.OptimizationTestUtils.getMethod;
+import static utils.OptimizationTestUtils.getOllir;
+
+public class SsaFormTest {
+
+    private static final String LOOP = """
+            import io;
+            class A {
+                public int f(int n) {
+                    int i;
+                    int s;
+                    int a;
+                    int b;
+                    int t;
+                    i = 0;
+                    s = 0;
+                    a = 1;
+                    b = 2;
+                    while (i < n) {
+                        s = s + a;
+                        t = a;
+                        a = b;
+                        b = t;
+                        i = i + 1;
+                    }
+                    return s * 10 + a;
+                }
+                public static void main(String[] args) {
+                    A x;
+                    x = new A();
+                    io.println(x.f(5));
+                    io.println(x.f(6));
+                }
+            }
+            """;
+
+    private static String run(OllirResult ollirResult) {
+        return SpecsStrings.normalizeFileContents(TestUtils.backend(ollirResult).run(), true);
+    }
+
+    @Test
+    public void assignsEachVersionOnce() {
+        var method = getMethod(getOllir(LOOP, false).getOllirClass(), "f");
+        var ssa = SsaForm.build(method);
+
+        Set<String> written = new HashSet<>();
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            for (var phi : ssa.getPhis(i)) {
+                assertTrue(written.add(phi.getDest().getName()));
+            }
+            var def = InstructionVars.getDef(instructions.get(i));
+            if (def != null) {
+                assertTrue(written.add(def));
+            }
+        }
+    }
+
+    @Test
+    public void choosesVersionsAtLoopHeaders() {
+        var method = getMethod(getOllir(LOOP, false).getOllirClass(), "f");
+        var ssa = SsaForm.build(method);
+
+        // The loop condition reads 'i' from before the loop and from the end of the body, and so do the variables
+        // read after it, but not 't', which is only read in the body where it is written
+        var header = method.getInstructions().indexOf(method.getLabels().get("loop_condition_0"));
+        Set<String> variables = new HashSet<>();
+        for (var phi : ssa.getPhis(header)) {
+            variables.add(phi.getVariable());
+            assertEquals(2, phi.getArguments().size());
+            assertTrue(ssa.isVersion(phi.getDest().getName()));
+        }
+        assertEquals(Set.of("i", "s", "a", "b"), variables);
+    }
+
+    @Test
+    public void destructsToTheSameVariables() {
+        var ollirResult = getOllir(LOOP, false);
+        var method = getMethod(ollirResult.getOllirClass(), "f");
+        int instructions = method.getInstructions().size();
+        int variables = method.getVarTable().size();
+
+        SsaForm.build(method).destruct();
+
+        // Versions that are never live at the same time share the name of their variable
+        assertEquals(instructions, method.getInstructions().size());
+        assertEquals(variables, method.getVarTable().size());
+        assertEquals("72\n91", run(ollirResult));
+    }
+
+    @Test
+    public void copiesPhisAllAtOnce() {
+        var ollirResult = getOllir(LOOP, false);
+        var method = getMethod(ollirResult.getOllirClass(), "f");
+        var ssa = SsaForm.build(method);
+
+        // Phis that read the versions copied by the swap read each other in a cycle
+        Map<String, Element> copies = new HashMap<>();
+        for (var instruction : method.getInstructions()) {
+            if (instruction instanceof AssignInstruction assign
+                    && assign.getRhs() instanceof SingleOpInstruction singleOp
+                    && singleOp.getSingleOperand() instanceof Operand source) {
+                copies.put(((Operand) assign.getDest()).getName(), source);
+            }
+        }
+        for (int join : ssa.getJoins()) {
+            for (var phi : ssa.getPhis(join)) {
+                phi.getArguments().replaceAll((predecessor, argument) -> {
+                    while (argument instanceof Operand operand && copies.containsKey(operand.getName())) {
+                        argument = MethodEdits.copyOf((Operand) copies.get(operand.getName()));
+                    }
+                    return argument;
+                });
+            }
+        }
+
+        ssa.destruct();
+        assertEquals("72\n91", run(ollirResult));
+    }
+
+    @Test
+    public void sameOutput() {
+        for (int seed = 21; seed < 24; seed++) {
+            var code = new JmmProgramGenerator().methods(10).nesting(3).seed(seed).generate();
+            var expected = SpecsStrings.normalizeFileContents(TestUtils.backend(code, getConfig(false)).run(), true);
+
+            var ollirResult = getOllir(code, false);
+            for (var method : ollirResult.getOllirClass().getMethods()) {
+                SsaForm.build(method).destruct();
+            }
+            assertEquals(expected, run(ollirResult));
+        }
+    }
+}
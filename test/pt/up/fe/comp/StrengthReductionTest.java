@@ -0,0 +1,170 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.jmm.ollir.OllirUtils;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.OllirPrinter;
+import pt.up.fe.comp2024.optimization.StrengthReduction;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static utils.OptimizationTestUtils.assertSameOutput;
+import static utils.OptimizationTestUtils.getConfig;
+import static utils.OptimizationTestUtils.getLoopStart;
+import static utils.OptimizationTestUtils.getMethod;
+import static utils.OptimizationTestUtils.getOllir;
+
+public class StrengthReductionTest {
+
+    private static boolean isOperation(Instruction instruction, OperationType opType) {
+        return instruction instanceof AssignInstruction assign
+                && assign.getRhs() instanceof BinaryOpInstruction binaryOp
+                && binaryOp.getOperation().getOpType() == opType;
+    }
+
+    private static long count(Method method, OperationType opType, int from) {
+        var instructions = method.getInstructions();
+        return instructions.subList(from, instructions.size()).stream()
+                .filter(instruction -> isOperation(instruction, opType))
+                .count();
+    }
+
+    @Test
+    public void addsInsteadOfMultiplying() {
+        var method = getMethod("""
+                class A {
+                    public int f(int[] a, int n, int k) {
+                        int i;
+                        int s;
+                        i = 0;
+                        s = 0;
+                        while (i < n) {
+                            s = s + a[i * 3] + i * k;
+                            i = i + 1;
+                        }
+                        return s;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        // Both products are only computed before the loop
+        assertEquals(0, count(method, OperationType.MUL, getLoopStart(method)));
+        assertEquals(2, count(method, OperationType.MUL, 0));
+    }
+
+    @Test
+    public void keepsProductsOfChangedFactors() {
+        var method = getMethod("""
+                class A {
+                    public int f(int n, int k) {
+                        int i;
+                        int s;
+                        int m;
+                        i = 0;
+                        s = 0;
+                        m = k;
+                        while (i < n) {
+                            s = s + i * m;
+                            m = m + i;
+                            i = i + 1;
+                        }
+                        return s;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        assertEquals(1, count(method, OperationType.MUL, getLoopStart(method)));
+    }
+
+    @Test
+    public void shiftsPowersOfTwo() {
+        var ollirClass = getOllir("""
+                class A {
+                    public int f(int a) {
+                        int b;
+                        b = a * 8;
+                        return b / 4;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """, true).getOllirClass();
+
+        // The products stay in the OLLIR, which can be read back
+        var parsedClass = OllirUtils.parse(OllirPrinter.print(ollirClass));
+        assertEquals(1, count(getMethod(parsedClass, "f"), OperationType.MUL, 0));
+        assertEquals(1, count(getMethod(parsedClass, "f"), OperationType.DIV, 0));
+
+        // And are shifts in the code
+        var jasmin = new JasminGenerator(ollirClass).build();
+        assertTrue(jasmin.contains("ishl"));
+        assertTrue(jasmin.contains("ishr"));
+        assertFalse(jasmin.contains("imul"));
+        assertFalse(jasmin.contains("idiv"));
+    }
+
+    @Test
+    public void dividesNegativeValues() {
+        var code = """
+                import io;
+                class A {
+                    public static void main(String[] args) {
+                        int a;
+                        int b;
+                        a = args.length - 7;
+                        b = args.length - 1;
+                        io.println(a / 2);
+                        io.println(a / 4);
+                        io.println(b / 8);
+                        io.println(b * 16);
+                    }
+                }
+                """;
+
+        // Rounded towards zero, as with no shifts
+        var output = TestUtils.backend(code, getConfig(true)).run();
+        assertEquals("-3\n-1\n0\n-16", SpecsStrings.normalizeFileContents(output, true));
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput("""
+                import io;
+                class A {
+                    public static void main(String[] args) {
+                        int i;
+                        int k;
+                        int s;
+                        int[] a;
+                        k = args.length + 3;
+                        a = new int[30];
+                        i = 0;
+                        s = 0;
+                        while (i < 10) {
+                            a[i * 3] = i * k;
+                            s = s + a[i * 3] + i * 5;
+                            i = i + 1;
+                        }
+                        io.println(s);
+                        i = 20;
+                        while (0 < i) {
+                            s = s - i * k;
+                            i = i - 2;
+                        }
+                        io.println(s);
+                    }
+                }
+                """, new StrengthReduction()::optimize);
+    }
+}
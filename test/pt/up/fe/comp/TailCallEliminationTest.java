@@ -0,0 +1,130 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2024.optimization.TailCallElimination;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import static org.junit.Assert.assertEquals;
+import static utils.OptimizationTestUtils.assertSameOutput;
+import static utils.OptimizationTestUtils.getConfig;
+import static utils.OptimizationTestUtils.getMethod;
+
+public class TailCallEliminationTest {
+
+    private static long countSelfCalls(Method method) {
+        return method.getInstructions().stream()
+                .flatMap(instruction -> instruction.getChildren().stream())
+                .filter(CallInstruction.class::isInstance)
+                .map(CallInstruction.class::cast)
+                .filter(call -> call.getInvocationType() == CallType.invokevirtual)
+                .filter(call -> ((LiteralElement) call.getMethodName()).getLiteral().equals("\"f\""))
+                .count();
+    }
+
+    @Test
+    public void jumpsInsteadOfCalling() {
+        var method = getMethod("""
+                class A {
+                    public int f(int n, int acc) {
+                        int r;
+                        if (n < 2) {
+                            r = acc;
+                        } else {
+                            r = this.f(n - 1, acc * n);
+                        }
+                        return r;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        assertEquals(0, countSelfCalls(method));
+    }
+
+    @Test
+    public void keepsCallsWhoseValueIsUsed() {
+        var method = getMethod("""
+                class A {
+                    public int f(int n) {
+                        int r;
+                        if (n < 2) {
+                            r = 1;
+                        } else {
+                            r = n * this.f(n - 1);
+                        }
+                        return r;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        assertEquals(1, countSelfCalls(method));
+    }
+
+    @Test
+    public void runsDeepRecursion() {
+        var code = """
+                import io;
+                class A {
+                    public int f(int a, int b, int n) {
+                        int r;
+                        if (n < 1) {
+                            r = a;
+                        } else {
+                            r = this.f(b, a + b, n - 1);
+                        }
+                        return r;
+                    }
+                    public static void main(String[] args) {
+                        A x;
+                        x = new A();
+                        io.println(x.f(0, 1, 10));
+                        io.println(x.f(1, 0, 1000000));
+                    }
+                }
+                """;
+
+        // The arguments read the parameters they replace, and a call per step would overflow the stack
+        var output = TestUtils.backend(code, getConfig(true)).run();
+        assertEquals("55\n-1836362526", SpecsStrings.normalizeFileContents(output, true));
+    }
+
+    @Test
+    public void sameOutput() {
+        assertSameOutput("""
+                import io;
+                class A {
+                    public int f(int a, int b, int n) {
+                        int r;
+                        if (n < 1) {
+                            r = a;
+                        } else {
+                            r = this.f(b, a + b, n - 1);
+                        }
+                        return r;
+                    }
+                    public int sum(int n, int acc) {
+                        int r;
+                        if (n < 1) {
+                            r = acc;
+                        } else {
+                            r = this.sum(n - 1, acc + n);
+                        }
+                        return r;
+                    }
+                    public static void main(String[] args) {
+                        A x;
+                        x = new A();
+                        io.println(x.f(0, 1, 10));
+                        io.println(x.sum(100, 0));
+                    }
+                }
+                """, new TailCallElimination()::optimize);
+    }
+}
@@ -0,0 +1,299 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates valid Java-- programs of arbitrary size, to test and benchmark how the compiler scales.
+ * <p>
+ * The generated class has a number of int methods, each declaring int, boolean and int[] locals that are initialized
+ * before any statement reads them, followed by random assignments, if-else and while statements, calls and prints.
+ * Every loop runs a fixed number of times and calls never go more than {@link #MAX_CALL_DEPTH} methods deep, so the
+ * generated programs also run quickly when executed, whatever their size.
+ * <p>
+ * Programs only depend on the options and the seed, so a size of interest can always be generated again.
+ */
+public class JmmProgramGenerator {
+
+    public static final String CLASS_NAME = "Generated";
+
+    private static final int ARRAY_SIZE = 8;
+    private static final int LOOP_ITERATIONS = 4;
+    private static final int MAX_CALL_DEPTH = 3;
+    private static final String INDENT = "    ";
+
+    private int numMethods;
+    private int numLocals;
+    private int statementsPerBlock;
+    private int nestingDepth;
+    private int expressionSize;
+    private int callFanOut;
+    private long seed;
+
+    private Random random;
+    private StringBuilder code;
+
+    public JmmProgramGenerator() {
+        this.numMethods = 10;
+        this.numLocals = 4;
+        this.statementsPerBlock = 4;
+        this.nestingDepth = 2;
+        this.expressionSize = 4;
+        this.callFanOut = 2;
+        this.seed = 0;
+    }
+
+    /**
+     * Chooses the number of methods so that the program has about the given number of lines, keeping the other
+     * options.
+     *
+     * @param lines
+     * @return this generator
+     */
+    public JmmProgramGenerator lines(int lines) {
+        // Lines are roughly proportional to the number of methods, measure one method and scale
+        var methods = this.numMethods;
+        this.numMethods = 1;
+        var linesPerMethod = Math.max(1, generate().lines().count() - 10);
+        this.numMethods = methods;
+
+        return methods((int) Math.max(1, lines / linesPerMethod));
+    }
+
+    public JmmProgramGenerator methods(int numMethods) {
+        this.numMethods = Math.max(1, numMethods);
+        return this;
+    }
+
+    public JmmProgramGenerator locals(int numLocals) {
+        this.numLocals = Math.max(1, numLocals);
+        return this;
+    }
+
+    public JmmProgramGenerator statements(int statementsPerBlock) {
+        this.statementsPerBlock = Math.max(1, statementsPerBlock);
+        return this;
+    }
+
+    public JmmProgramGenerator nesting(int nestingDepth) {
+        this.nestingDepth = Math.max(0, nestingDepth);
+        return this;
+    }
+
+    public JmmProgramGenerator expressionSize(int expressionSize) {
+        this.expressionSize = Math.max(1, expressionSize);
+        return this;
+    }
+
+    public JmmProgramGenerator callFanOut(int callFanOut) {
+        this.callFanOut = Math.max(0, callFanOut);
+        return this;
+    }
+
+    public JmmProgramGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public String generate() {
+        random = new Random(seed);
+        code = new StringBuilder();
+
+        code.append("import io;\n\n");
+        code.append("class ").append(CLASS_NAME).append(" {\n\n");
+
+        for (int i = 0; i < numMethods; i++) {
+            generateMethod(i);
+            code.append("\n");
+        }
+
+        code.append(INDENT).append("public static void main(String[] args) {\n");
+        code.append(INDENT.repeat(2)).append(CLASS_NAME).append(" program;\n");
+        code.append(INDENT.repeat(2)).append("program = new ").append(CLASS_NAME).append("();\n");
+        code.append(INDENT.repeat(2)).append("io.println(program.").append(methodName(numMethods - 1))
+                .append("(1, 2, [1, 2, 3]));\n");
+        code.append(INDENT).append("}\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    private static String methodName(int index) {
+        return "method" + index;
+    }
+
+    private void generateMethod(int index) {
+        var scope = new Scope(index);
+
+        code.append(INDENT).append("public int ").append(methodName(index))
+                .append("(int a, int b, int[] values) {\n");
+
+        var body = INDENT.repeat(2);
+        for (var local : scope.ints) {
+            code.append(body).append("int ").append(local).append(";\n");
+        }
+        for (var local : scope.booleans) {
+            code.append(body).append("boolean ").append(local).append(";\n");
+        }
+        for (var counter : scope.counters) {
+            code.append(body).append("int ").append(counter).append(";\n");
+        }
+        code.append(body).append("int[] data;\n");
+
+        for (var local : scope.ints) {
+            code.append(body).append(local).append(" = ").append(random.nextInt(100)).append(";\n");
+        }
+        for (var local : scope.booleans) {
+            code.append(body).append(local).append(" = ").append(random.nextBoolean()).append(";\n");
+        }
+        code.append(body).append("data = new int[").append(ARRAY_SIZE).append("];\n");
+
+        generateStatements(scope, 0, 2);
+
+        code.append(body).append("return ").append(intExpr(scope, expressionSize)).append(";\n");
+        code.append(INDENT).append("}\n");
+    }
+
+    private void generateStatements(Scope scope, int depth, int indent) {
+        for (int i = 0; i < statementsPerBlock; i++) {
+            generateStatement(scope, depth, indent);
+        }
+    }
+
+    private void generateStatement(Scope scope, int depth, int indent) {
+        var prefix = INDENT.repeat(indent);
+        var canNest = depth < nestingDepth;
+
+        switch (random.nextInt(canNest ? 7 : 5)) {
+            case 0, 1 -> code.append(prefix).append(pick(scope.ints)).append(" = ")
+                    .append(intExpr(scope, expressionSize)).append(";\n");
+            case 2 -> code.append(prefix).append(pick(scope.booleans)).append(" = ")
+                    .append(boolExpr(scope)).append(";\n");
+            case 3 -> code.append(prefix).append("data[").append(random.nextInt(ARRAY_SIZE)).append("] = ")
+                    .append(intExpr(scope, expressionSize)).append(";\n");
+            case 4 -> code.append(prefix).append("io.println(").append(intExpr(scope, expressionSize)).append(");\n");
+            case 5 -> {
+                code.append(prefix).append("if (").append(boolExpr(scope)).append(") {\n");
+                generateStatements(scope, depth + 1, indent + 1);
+                code.append(prefix).append("} else {\n");
+                generateStatements(scope, depth + 1, indent + 1);
+                code.append(prefix).append("}\n");
+            }
+            default -> {
+                // Each nesting level has its own counter, so inner loops do not change the outer ones
+                var counter = scope.counters.get(depth);
+                code.append(prefix).append(counter).append(" = 0;\n");
+                code.append(prefix).append("while (").append(counter).append(" < ").append(LOOP_ITERATIONS)
+                        .append(") {\n");
+                generateStatements(scope, depth + 1, indent + 1);
+                code.append(prefix).append(INDENT).append(counter).append(" = ").append(counter).append(" + 1;\n");
+                code.append(prefix).append("}\n");
+            }
+        }
+    }
+
+    /**
+     * Builds an int expression with about the given number of operands. Parentheses are never needed, since every
+     * operator takes and returns ints, whatever the precedence.
+     */
+    private String intExpr(Scope scope, int size) {
+        if (size <= 1) {
+            return intOperand(scope);
+        }
+
+        var left = 1 + random.nextInt(size - 1);
+        var operator = switch (random.nextInt(3)) {
+            case 0 -> " + ";
+            case 1 -> " - ";
+            default -> " * ";
+        };
+
+        return intExpr(scope, left) + operator + intExpr(scope, size - left);
+    }
+
+    private String intOperand(Scope scope) {
+        return switch (random.nextInt(8)) {
+            case 0 -> String.valueOf(random.nextInt(10));
+            case 1 -> pick(scope.params);
+            case 2 -> "data[" + random.nextInt(ARRAY_SIZE) + "]";
+            case 3 -> "data.length";
+            case 4 -> pick(scope.ints) + " / " + (1 + random.nextInt(9));
+            case 5 -> call(scope);
+            default -> pick(scope.ints);
+        };
+    }
+
+    private String call(Scope scope) {
+        if (scope.callees.isEmpty()) {
+            return pick(scope.ints);
+        }
+
+        var args = intOperandNoCall(scope) + ", " + intOperandNoCall(scope) + ", data";
+        return "this." + pick(scope.callees) + "(" + args + ")";
+    }
+
+    private String intOperandNoCall(Scope scope) {
+        return random.nextBoolean() ? pick(scope.ints) : String.valueOf(random.nextInt(10));
+    }
+
+    private String boolExpr(Scope scope) {
+        var comparison = intExpr(scope, Math.max(1, expressionSize / 2)) + " < "
+                + intExpr(scope, Math.max(1, expressionSize / 2));
+
+        return switch (random.nextInt(3)) {
+            case 0 -> comparison + " && " + pick(scope.booleans);
+            case 1 -> comparison + " && !" + pick(scope.booleans);
+            default -> comparison;
+        };
+    }
+
+    private static int callLevel(int methodIndex) {
+        return methodIndex % (MAX_CALL_DEPTH + 1);
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    /**
+     * Names visible in the method being generated.
+     */
+    private class Scope {
+
+        private final List<String> params;
+        private final List<String> ints;
+        private final List<String> booleans;
+        private final List<String> counters;
+        private final List<String> callees;
+
+        private Scope(int methodIndex) {
+            this.params = List.of("a", "b");
+            this.ints = new ArrayList<>();
+            this.booleans = new ArrayList<>();
+            this.counters = new ArrayList<>();
+            this.callees = new ArrayList<>();
+
+            for (int i = 0; i < numLocals; i++) {
+                ints.add("x" + i);
+                booleans.add("flag" + i);
+            }
+
+            for (int i = 0; i < nestingDepth; i++) {
+                counters.add("i" + i);
+            }
+
+            // Only nearby methods of a lower call level, so calls never recurse and call chains stay short
+            var candidates = new ArrayList<Integer>();
+            for (int i = methodIndex - 1; i >= 0 && candidates.size() < 4 * callFanOut; i--) {
+                if (callLevel(i) < callLevel(methodIndex)) {
+                    candidates.add(i);
+                }
+            }
+
+            for (int i = 0; i < Math.min(callFanOut, candidates.size()); i++) {
+                callees.add(methodName(pick(candidates)));
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package utils;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Helpers shared by the tests of the OLLIR optimizations.
+ */
+public class OptimizationTestUtils {
+
+    /**
+     * @return a configuration that runs the '-o' optimizations if optimize is true
+     */
+    public static Map<String, String> getConfig(boolean optimize) {
+        Map<String, String> config = new HashMap<>();
+        config.put(CompilerConfig.OPTIMIZE, String.valueOf(optimize));
+        return config;
+    }
+
+    /**
+     * @return the OLLIR code of the program, checking that it compiles without errors
+     */
+    public static OllirResult getOllir(String code, boolean optimize) {
+        OllirResult ollirResult = TestUtils.optimize(code, getConfig(optimize));
+        TestUtils.noErrors(ollirResult.getReports());
+        return ollirResult;
+    }
+
+    /**
+     * @return the class built in memory for the program, before any optimization
+     */
+    public static ClassUnit toOllirClass(String code) {
+        var semanticsResult = TestUtils.analyse(code);
+        TestUtils.noErrors(semanticsResult.getReports());
+        return new JmmOptimizationImpl().toOllirClass(semanticsResult);
+    }
+
+    public static Method getMethod(ClassUnit ollirClass, String name) {
+        return ollirClass.getMethods().stream()
+                .filter(method -> method.getMethodName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    /**
+     * @return the method 'f' of the program, after the '-o' optimizations
+     */
+    public static Method getMethod(String code) {
+        return getMethod(getOllir(code, true).getOllirClass(), "f");
+    }
+
+    /**
+     * @return the index of the condition of the first loop of the method
+     */
+    public static int getLoopStart(Method method) {
+        return method.getInstructions().indexOf(method.getLabels().get("loop_condition_0"));
+    }
+
+    /**
+     * Checks that a pass, run on its own, changes the program and not what it prints.
+     *
+     * @param pass runs the pass on the OLLIR class of the program, returning true if it changed
+     */
+    public static void assertSameOutput(String code, Predicate<ClassUnit> pass) {
+        assertTrue("The pass did not change the program", isSameOutput(code, pass));
+    }
+
+    /**
+     * Checks that a pass, run on its own, changes some of the generated programs of the seeds and none of what they
+     * print.
+     *
+     * @param fromSeed the first seed
+     * @param toSeed   the seed after the last one
+     * @param pass     runs the pass on the OLLIR class of a program, returning true if it changed
+     */
+    public static void assertSameOutput(long fromSeed, long toSeed, Predicate<ClassUnit> pass) {
+        boolean changed = false;
+        for (long seed = fromSeed; seed < toSeed; seed++) {
+            changed |= isSameOutput(new JmmProgramGenerator().methods(10).nesting(3).seed(seed).generate(), pass);
+        }
+
+        assertTrue("The pass changed none of the programs", changed);
+    }
+
+    /**
+     * @return true if the pass changed the program, whose output it must not change
+     */
+    private static boolean isSameOutput(String code, Predicate<ClassUnit> pass) {
+        var expected = TestUtils.backend(getOllir(code, false)).run();
+
+        var ollirResult = getOllir(code, false);
+        boolean changed = pass.test(ollirResult.getOllirClass());
+        var output = TestUtils.backend(ollirResult).run();
+
+        assertEquals(SpecsStrings.normalizeFileContents(expected, true),
+                SpecsStrings.normalizeFileContents(output, true));
+        return changed;
+    }
+}